@@ -0,0 +1,103 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.AccountStorages;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountCreditEvent;
+import com.transfer.core.event.AccountInfoEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Cost of applying one event to storage, called directly without queue and processor thread.
+ * Refund is not measured, it always completes with exception
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountEventProcessorBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final Consumer<AccountResult> RESULT_CONSUMER = result -> {
+    };
+    private static final Consumer<Throwable> ERROR_CONSUMER = error -> {
+    };
+
+    @Param({AccountStorages.HASH_MAP, AccountStorages.PRIMITIVE})
+    private String storageType;
+
+    private AccountEventProcessorImpl processor;
+    private AccountCreateEvent createEvent;
+    private AccountInfoEvent[] infoEvents;
+    private AccountTransferEvent[] transferEvents;
+    private AccountCreditEvent[] creditEvents;
+    private int next;
+
+    /*
+     * Storage is recreated for each iteration, because create benchmark adds accounts all the time
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        AccountStorage<AccountInfo, UUID> storage = AccountStorages.create(storageType, ACCOUNTS);
+        processor = new AccountEventProcessorImpl(storage, new ManyToOneConcurrentArrayQueue<>(1));
+        UUID[] accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = processor.process(new AccountCreateEvent(RESULT_CONSUMER, ERROR_CONSUMER, Long.MAX_VALUE / 4)).getAccount();
+        }
+        createEvent = new AccountCreateEvent(RESULT_CONSUMER, ERROR_CONSUMER, 100);
+        infoEvents = new AccountInfoEvent[ACCOUNTS];
+        transferEvents = new AccountTransferEvent[ACCOUNTS];
+        creditEvents = new AccountCreditEvent[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            UUID from = accounts[i];
+            UUID to = accounts[(i + ACCOUNTS / 2) % ACCOUNTS];
+            infoEvents[i] = new AccountInfoEvent(RESULT_CONSUMER, ERROR_CONSUMER, from);
+            transferEvents[i] = new AccountTransferEvent(RESULT_CONSUMER, ERROR_CONSUMER, from, to, 1);
+            creditEvents[i] = new AccountCreditEvent(RESULT_CONSUMER, ERROR_CONSUMER, i, from, to, 1, new AccountInfo(from, 0));
+        }
+        BenchmarkData.shuffle(infoEvents, transferEvents);
+        BenchmarkData.shuffle(creditEvents, new Object[ACCOUNTS]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        processor.close();
+    }
+
+    @Benchmark
+    public AccountResult create() {
+        return processor.process(createEvent);
+    }
+
+    @Benchmark
+    public AccountResult info() {
+        return processor.process(infoEvents[nextIndex()]);
+    }
+
+    @Benchmark
+    public AccountResult transfer() {
+        return processor.process(transferEvents[nextIndex()]);
+    }
+
+    @Benchmark
+    public AccountResult credit() {
+        return processor.process(creditEvents[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == ACCOUNTS ? 0 : index + 1;
+        return index;
+    }
+}
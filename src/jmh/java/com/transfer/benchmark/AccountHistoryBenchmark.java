@@ -0,0 +1,92 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.AccountHistory;
+import com.transfer.core.AccountHistoryReader;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.AccountStorages;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Overhead of history on the processor: transfer applied directly to primitive storage with and without history listener,
+ * 0 entries means no history. Reading of one page is measured on the same history, it is done by http thread
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class AccountHistoryBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final int PAGE_SIZE = 20;
+    private static final Consumer<AccountResult> RESULT_CONSUMER = result -> {
+    };
+    private static final Consumer<Throwable> ERROR_CONSUMER = error -> {
+    };
+
+    @Param({"0", "16", "64"})
+    private int entriesPerAccount;
+
+    private AccountEventProcessorImpl processor;
+    private AccountHistory history;
+    private UUID[] accounts;
+    private AccountTransferEvent[] transferEvents;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        AccountStorage<AccountInfo, UUID> storage = AccountStorages.create(AccountStorages.PRIMITIVE, ACCOUNTS);
+        processor = new AccountEventProcessorImpl(storage, new ManyToOneConcurrentArrayQueue<>(1));
+        history = new AccountHistory(Math.max(entriesPerAccount, 1));
+        if (entriesPerAccount > 0) {
+            processor.addListener(history);
+        }
+        accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = processor.process(new AccountCreateEvent(RESULT_CONSUMER, ERROR_CONSUMER, Long.MAX_VALUE / 4)).getAccount();
+        }
+        transferEvents = new AccountTransferEvent[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            transferEvents[i] = new AccountTransferEvent(RESULT_CONSUMER, ERROR_CONSUMER, accounts[i], accounts[(i + ACCOUNTS / 2) % ACCOUNTS], 1);
+        }
+        BenchmarkData.shuffle(transferEvents, accounts);
+        //every ring is filled, so reads and writes see steady state
+        for (int i = 0; i < Math.max(entriesPerAccount, 1); i++) {
+            for (AccountTransferEvent transferEvent : transferEvents) {
+                processor.process(transferEvent);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.close();
+    }
+
+    @Benchmark
+    public AccountResult transfer() {
+        return processor.process(transferEvents[nextIndex()]);
+    }
+
+    @Benchmark
+    public AccountHistoryReader.Page readPage() {
+        return history.getHistory(accounts[nextIndex()], 0, PAGE_SIZE);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == ACCOUNTS ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,62 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.AccountStorages;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Lookup and update of existing accounts, as processor does for each transfer.
+ * Accounts are read in random order, so bigger storages show cost of cache misses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountStorageBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({AccountStorages.HASH_MAP, AccountStorages.PRIMITIVE})
+    private String storageType;
+
+    private AccountStorage<AccountInfo, UUID> storage;
+    private UUID[] accounts;
+    private AccountInfo[] updates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        storage = AccountStorages.create(storageType, size);
+        accounts = new UUID[size];
+        updates = new AccountInfo[size];
+        for (int i = 0; i < size; i++) {
+            accounts[i] = UUID.randomUUID();
+            updates[i] = new AccountInfo(accounts[i], i);
+            storage.put(new AccountInfo(accounts[i], i));
+        }
+        BenchmarkData.shuffle(accounts, updates);
+    }
+
+    @Benchmark
+    public AccountInfo get() {
+        return storage.getByUuid(accounts[nextIndex()]);
+    }
+
+    @Benchmark
+    public void put() {
+        storage.put(updates[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == size ? 0 : index + 1;
+        return index;
+    }
+}
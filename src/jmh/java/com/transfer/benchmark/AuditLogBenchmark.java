@@ -0,0 +1,89 @@
+package com.transfer.benchmark;
+
+import com.transfer.audit.AuditLog;
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.AccountStorages;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Overhead of audit log on the processor: transfer applied directly to primitive storage with and without audit recorder.
+ * Audit thread writes records to temporary directory meanwhile, records it does not keep up with are dropped
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class AuditLogBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final Consumer<AccountResult> RESULT_CONSUMER = result -> {
+    };
+    private static final Consumer<Throwable> ERROR_CONSUMER = error -> {
+    };
+
+    @Param({"false", "true"})
+    private boolean audit;
+
+    private AccountEventProcessorImpl processor;
+    private Path directory;
+    private AuditLog auditLog;
+    private UUID[] accounts;
+    private AccountTransferEvent[] transferEvents;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        AccountStorage<AccountInfo, UUID> storage = AccountStorages.create(AccountStorages.PRIMITIVE, ACCOUNTS);
+        processor = new AccountEventProcessorImpl(storage, new ManyToOneConcurrentArrayQueue<>(1));
+        directory = Files.createTempDirectory("audit-benchmark");
+        auditLog = new AuditLog(directory);
+        if (audit) {
+            processor.addListener(auditLog.recorder(0));
+        }
+        auditLog.start();
+        accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = processor.process(new AccountCreateEvent(RESULT_CONSUMER, ERROR_CONSUMER, Long.MAX_VALUE / 4)).getAccount();
+        }
+        transferEvents = new AccountTransferEvent[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            transferEvents[i] = new AccountTransferEvent(RESULT_CONSUMER, ERROR_CONSUMER, accounts[i], accounts[(i + ACCOUNTS / 2) % ACCOUNTS], 1);
+        }
+        BenchmarkData.shuffle(transferEvents, accounts);
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.close();
+        auditLog.close();
+        System.out.println("Audit records written " + auditLog.getWritten() + ", dropped " + auditLog.getDropped());
+        directory.toFile().listFiles(file -> file.delete());
+        directory.toFile().delete();
+    }
+
+    @Benchmark
+    public AccountResult transfer() {
+        return processor.process(transferEvents[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == ACCOUNTS ? 0 : index + 1;
+        return index;
+    }
+}
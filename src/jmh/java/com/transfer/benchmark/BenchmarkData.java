@@ -0,0 +1,51 @@
+package com.transfer.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+final class BenchmarkData {
+
+    //fixed seed, so every run and every implementation see the same access order
+    private static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    /*
+     * Shuffles arrays of the same length with the same permutation
+     */
+    static void shuffle(Object[] first, Object[] second) {
+        Random random = new Random(SEED);
+        for (int i = first.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            swap(first, i, j);
+            swap(second, i, j);
+        }
+    }
+
+    /*
+     * count indexes in [0, n) with Zipf distribution, index 0 is the most frequent one.
+     * exponent 0 is uniform, ~1 is typical skew of real traffic where few accounts get most of transfers
+     */
+    static int[] zipf(int count, int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        Random random = new Random(SEED);
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            indexes[i] = Math.min(index < 0 ? -index - 1 : index, n - 1);
+        }
+        return indexes;
+    }
+
+    private static void swap(Object[] array, int i, int j) {
+        Object value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+}
@@ -0,0 +1,81 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.AccountStorages;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Batches of transfers applied by processor with and without netting of hot accounts, see AccountBatchCache.
+ * Accounts of transfers are uniform (skew 0) or Zipf distributed (skew 0.99), where a handful of accounts take part
+ * in most transfers of every batch. Score is per transfer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class HotAccountBenchmark {
+
+    private static final int ACCOUNTS = 1_000_000;
+    private static final int BATCH_SIZE = AccountEventProcessorImpl.DEFAULT_BATCH_SIZE;
+    private static final int TRANSFERS = 1 << 20;
+    private static final Consumer<AccountResult> RESULT_CONSUMER = result -> {
+    };
+    private static final Consumer<Throwable> ERROR_CONSUMER = error -> {
+    };
+
+    @Param({AccountStorages.HASH_MAP, AccountStorages.PRIMITIVE})
+    private String storageType;
+
+    @Param({"false", "true"})
+    private boolean netting;
+
+    @Param({"0", "0.99"})
+    private double skew;
+
+    private AccountEventProcessorImpl processor;
+    private AccountEvent[] transferEvents;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        AccountStorage<AccountInfo, UUID> storage = AccountStorages.create(storageType, ACCOUNTS);
+        processor = new AccountEventProcessorImpl(storage, new ManyToOneConcurrentArrayQueue<>(1));
+        UUID[] accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = processor.process(new AccountCreateEvent(RESULT_CONSUMER, ERROR_CONSUMER, Long.MAX_VALUE / 4)).getAccount();
+        }
+        if (netting) {
+            processor.enableBatchNetting();
+        }
+        int[] indexes = BenchmarkData.zipf(2 * TRANSFERS, ACCOUNTS, skew);
+        transferEvents = new AccountEvent[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            transferEvents[i] = new AccountTransferEvent(RESULT_CONSUMER, ERROR_CONSUMER, accounts[indexes[2 * i]], accounts[indexes[2 * i + 1]], 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void transferBatch() {
+        processor.processBatch(transferEvents, next, BATCH_SIZE);
+        next = (next + BATCH_SIZE) & (TRANSFERS - 1);
+    }
+}
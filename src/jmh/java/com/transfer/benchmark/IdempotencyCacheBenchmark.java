@@ -0,0 +1,80 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+import com.transfer.core.IdempotencyCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Operations processor performs for event with idempotency key, on cache which is full of live keys:
+ * lookup of known key (retry), lookup of unknown key (first request) and insertion which evicts the oldest key.
+ * Keys are read in random order, so bigger caches show cost of cache misses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class IdempotencyCacheBenchmark {
+
+    //number of keys in cache, it is full, so every put evicts one
+    @Param({"1000000", "4000000"})
+    private int liveKeys;
+
+    private IdempotencyCache cache;
+    private long[] keys;
+    private long[] missedKeys;
+    private AccountResult result;
+    private long nextKey;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        cache = new IdempotencyCache(liveKeys, 0);
+        result = AccountResult.of(new AccountInfo(UUID.randomUUID(), 100), new AccountInfo(UUID.randomUUID(), 200));
+        SplittableRandom random = new SplittableRandom(42);
+        keys = new long[liveKeys];
+        missedKeys = new long[liveKeys];
+        for (int i = 0; i < liveKeys; i++) {
+            //keys of cache are (i, random), missed keys have negative high half, which is never put
+            keys[i] = random.nextLong();
+            missedKeys[i] = random.nextLong();
+            cache.complete(cache.put(i, keys[i], 0), result);
+        }
+        nextKey = liveKeys;
+    }
+
+    @Benchmark
+    public AccountResult findAndReplay() {
+        int index = nextIndex();
+        //index is put order, the oldest keys are evicted by put benchmark, so only recent ones are looked up
+        int entry = cache.find(index, keys[index], 0);
+        return entry == IdempotencyCache.NOT_FOUND ? null : cache.replay(entry);
+    }
+
+    @Benchmark
+    public int findMissed() {
+        int index = nextIndex();
+        return cache.find(-1 - index, missedKeys[index], 0);
+    }
+
+    @Benchmark
+    public int putEvicting() {
+        long key = nextKey++;
+        int entry = cache.put(key, keys[(int) (key % liveKeys)], 0);
+        cache.complete(entry, result);
+        return entry;
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == liveKeys ? 0 : index + 1;
+        //odd multiplier permutes indexes, so access order is random but every key is visited
+        return (int) ((index * 0x9E3779B1L) % liveKeys);
+    }
+}
@@ -0,0 +1,89 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountEventPublisher;
+import com.transfer.core.AccountEventSlot;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorageImpl;
+import com.transfer.core.ShardedAccountEngine;
+import com.transfer.core.IdleStrategies;
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.event.AccountEventType;
+import com.transfer.core.event.AccountInfoEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Many producers publish into one processor, each publish is measured from producer side only.
+ * Info of not existing account is published, so processor does minimum work and producers mostly compete with each other.
+ * Nested classes run the same benchmarks with different number of producer threads
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class PublisherContentionBenchmark {
+
+    private static final Consumer<AccountResult> RESULT_CONSUMER = result -> {
+    };
+    private static final Consumer<Throwable> ERROR_CONSUMER = error -> {
+    };
+
+    //event queue or ring of reusable slots
+    @Param({"queue", "ring"})
+    private String path;
+
+    private ShardedAccountEngine engine;
+    private AccountEventPublisher publisher;
+    private UUID account;
+    private AccountInfoEvent infoEvent;
+
+    @Setup
+    public void setUp() {
+        engine = new ShardedAccountEngine(1, 1024, shard -> new AccountStorageImpl(), IdleStrategies::backoff,
+                AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0);
+        engine.start();
+        publisher = engine.getPublisher();
+        account = UUID.randomUUID();
+        infoEvent = new AccountInfoEvent(RESULT_CONSUMER, ERROR_CONSUMER, account);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public boolean publish() {
+        if (path.equals("queue")) {
+            return publisher.publishEvent(infoEvent);
+        }
+        AccountEventSlot slot = publisher.claim(AccountEventType.INFO, account);
+        if (slot == null) {
+            return false;
+        }
+        slot.setInfo(account, RESULT_CONSUMER, ERROR_CONSUMER);
+        publisher.publish(slot);
+        return true;
+    }
+
+    @Threads(1)
+    public static class OneProducer extends PublisherContentionBenchmark {
+    }
+
+    @Threads(2)
+    public static class TwoProducers extends PublisherContentionBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourProducers extends PublisherContentionBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightProducers extends PublisherContentionBenchmark {
+    }
+}
@@ -0,0 +1,120 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.AccountEventPublisher;
+import com.transfer.core.AccountEventSlot;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorages;
+import com.transfer.core.IdleStrategies;
+import com.transfer.core.ShardedAccountEngine;
+import com.transfer.core.event.AccountBatchTransferEvent;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountEventType;
+import com.transfer.core.event.AccountTransferEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Full path of one transfer as http thread sees it: publish, processing on shard thread, completion of future.
+ * With several shards part of transfers cross shards and are completed by destination shard
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int BATCH_TRANSFERS = 100;
+
+    //event queue or ring of reusable slots
+    @Param({"queue", "ring"})
+    private String path;
+
+    @Param({"1", "2"})
+    private int shards;
+
+    @Param({AccountStorages.HASH_MAP, AccountStorages.PRIMITIVE})
+    private String storageType;
+
+    private ShardedAccountEngine engine;
+    private AccountEventPublisher publisher;
+    private UUID[] accounts;
+    //batch should not cross shards, so its transfers are between accounts of one shard
+    private UUID[][] shardAccounts;
+
+    @Setup
+    public void setUp() {
+        engine = new ShardedAccountEngine(shards, 1024, shard -> AccountStorages.create(storageType, ACCOUNTS), IdleStrategies::backoff,
+                AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0);
+        engine.start();
+        publisher = engine.getPublisher();
+        accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            CompletableFuture<AccountResult> future = new CompletableFuture<>();
+            publisher.publishEvent(new AccountCreateEvent(future::complete, future::completeExceptionally, Long.MAX_VALUE / 4));
+            accounts[i] = future.join().getAccount();
+        }
+        shardAccounts = new UUID[shards][];
+        for (int shard = 0; shard < shards; shard++) {
+            int owner = shard;
+            shardAccounts[shard] = Arrays.stream(accounts).filter(account -> engine.getRouter().shardOf(account) == owner).toArray(UUID[]::new);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public AccountResult transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID from = accounts[random.nextInt(ACCOUNTS)];
+        UUID to = accounts[random.nextInt(ACCOUNTS)];
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        if (path.equals("queue")) {
+            if (!publisher.publishEvent(new AccountTransferEvent(future::complete, future::completeExceptionally, from, to, 1))) {
+                throw new IllegalStateException("Queue is full");
+            }
+        } else {
+            AccountEventSlot slot = publisher.claim(AccountEventType.TRANSFER, from);
+            if (slot == null) {
+                throw new IllegalStateException("Ring is full");
+            }
+            slot.setTransfer(from, to, 1, future::complete, future::completeExceptionally);
+            publisher.publish(slot);
+        }
+        return future.join();
+    }
+
+    /*
+     * The same transfers as above, sent as one batch event, time is reported per transfer
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_TRANSFERS)
+    public AccountResult transferBatch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID[] shard = shardAccounts[random.nextInt(shards)];
+        UUID[] from = new UUID[BATCH_TRANSFERS];
+        UUID[] to = new UUID[BATCH_TRANSFERS];
+        long[] amounts = new long[BATCH_TRANSFERS];
+        for (int i = 0; i < BATCH_TRANSFERS; i++) {
+            from[i] = shard[random.nextInt(shard.length)];
+            to[i] = shard[random.nextInt(shard.length)];
+            amounts[i] = 1;
+        }
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        if (!publisher.publishEvent(new AccountBatchTransferEvent(future::complete, future::completeExceptionally, from, to, amounts, true))) {
+            throw new IllegalStateException("Queue is full");
+        }
+        return future.join();
+    }
+}
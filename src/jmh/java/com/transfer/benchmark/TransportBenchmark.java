@@ -0,0 +1,138 @@
+package com.transfer.benchmark;
+
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.AccountEventPublisher;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorages;
+import com.transfer.core.IdleStrategies;
+import com.transfer.core.ShardedAccountEngine;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.transport.BinaryClient;
+import com.transfer.transport.BinaryServer;
+import com.transfer.transport.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Transfer over loopback through http server and binary server, which share the same engine.
+ * Http request is sent on keep-alive connection, binary transfers are sent one at a time or pipelined
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int BINARY_PORT = 18091;
+    private static final int PIPELINE_DEPTH = 64;
+
+    private ShardedAccountEngine engine;
+    private HttpServer httpServer;
+    private BinaryServer binaryServer;
+    private UUID[] accounts;
+
+    @Setup
+    public void setUp() {
+        engine = new ShardedAccountEngine(1, 1024, shard -> AccountStorages.create(AccountStorages.PRIMITIVE, ACCOUNTS), IdleStrategies::backoff,
+                AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0);
+        AccountEventPublisher publisher = engine.getPublisher();
+        httpServer = new HttpServer(publisher);
+        binaryServer = new BinaryServer(publisher, BINARY_PORT);
+        engine.start();
+        httpServer.start();
+        binaryServer.start();
+        accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            CompletableFuture<AccountResult> future = new CompletableFuture<>();
+            publisher.publishEvent(new AccountCreateEvent(future::complete, future::completeExceptionally, Long.MAX_VALUE / 4));
+            accounts[i] = future.join().getAccount();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        binaryServer.close();
+        httpServer.close();
+        engine.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private BinaryClient binaryClient;
+        private URL transferUrl;
+        private final byte[] responseBuffer = new byte[1024];
+        private long correlationId;
+
+        @Setup
+        public void setUp() throws IOException {
+            binaryClient = new BinaryClient("localhost", BINARY_PORT);
+            transferUrl = new URL("http://localhost:80/account/transfer");
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            binaryClient.close();
+        }
+    }
+
+    @Benchmark
+    public int httpTransfer(Client client) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String body = "{\"fromAccount\":\"" + accounts[random.nextInt(ACCOUNTS)] + "\",\"toAccount\":\"" + accounts[random.nextInt(ACCOUNTS)]
+                + "\",\"amount\":\"0.01\"}";
+        HttpURLConnection connection = (HttpURLConnection) client.transferUrl.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        //response is read completely, so connection goes back to keep-alive pool
+        int length = 0;
+        try (InputStream in = connection.getInputStream()) {
+            int read;
+            while ((read = in.read(client.responseBuffer)) > 0) {
+                length += read;
+            }
+        }
+        return length;
+    }
+
+    @Benchmark
+    public BinaryClient.Response binaryTransfer(Client client) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        client.binaryClient.transfer(client.correlationId++, accounts[random.nextInt(ACCOUNTS)], accounts[random.nextInt(ACCOUNTS)], 1);
+        client.binaryClient.flush();
+        return client.binaryClient.read();
+    }
+
+    /*
+     * Transfers are sent in one write and responses are read after that, time is reported per transfer
+     */
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public BinaryClient.Response binaryTransferPipelined(Client client) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            client.binaryClient.transfer(client.correlationId++, accounts[random.nextInt(ACCOUNTS)], accounts[random.nextInt(ACCOUNTS)], 1);
+        }
+        client.binaryClient.flush();
+        BinaryClient.Response response = null;
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            response = client.binaryClient.read();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,34 @@
+package com.transfer;
+
+import com.transfer.transport.AccountImportStream;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Offline loader, imports accounts from NDJSON or CSV file into journal and storage of configured application,
+ * result of every line is printed to standard output. Should not be run while application is running on the same data.
+ * Usage: AccountImportTool <file> [ndjson|csv], format is taken from file extension if not given
+ */
+public class AccountImportTool {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: AccountImportTool <file> [ndjson|csv]");
+        }
+        Path file = Paths.get(args[0]);
+        AccountImportStream.Format format = AccountImportStream.Format.fromName(args.length > 1 ? args[1] : file.getFileName().toString());
+        try (TransferApplication transferApplication = new TransferApplication();
+             BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            transferApplication.startProcessing();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            transferApplication.importAccounts(reader, format, writer);
+        }
+    }
+}
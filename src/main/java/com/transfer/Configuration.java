@@ -0,0 +1,58 @@
+package com.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/*
+ * Application settings, loaded from configuration.properties on the classpath.
+ * Any value could be overridden with a system property of the same name, e.g. -Dprocessor.idle.strategy=park
+ */
+public class Configuration {
+
+    private static final String CONFIGURATION_RESOURCE = "/configuration.properties";
+
+    private final Properties properties;
+
+    public Configuration(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static Configuration load() {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Configuration.class.getResourceAsStream(CONFIGURATION_RESOURCE)) {
+            if (inputStream != null) {
+                properties.load(inputStream);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load " + CONFIGURATION_RESOURCE, e);
+        }
+        properties.putAll(System.getProperties());
+        return new Configuration(properties);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,61 @@
+package com.transfer;
+
+import com.transfer.core.Money;
+import com.transfer.load.HttpLoadTarget;
+import com.transfer.load.LoadGenerator;
+import com.transfer.load.LoadOperation;
+import com.transfer.load.LoadReport;
+import com.transfer.load.LoadResult;
+import com.transfer.load.LoadTarget;
+import com.transfer.load.PublisherLoadTarget;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Open-loop load generator, see LoadGenerator. Loads running application through http if url is given, otherwise
+ * starts processors of configured application in this process without http server and publishes events to them.
+ * Settings are load.* values of configuration, e.g. -Dload.rate=20000, result is printed and appended to load.results.file.
+ * Usage: LoadGeneratorTool [http://host:port]
+ */
+public class LoadGeneratorTool {
+
+    public static void main(String[] args) throws Exception {
+        Configuration configuration = Configuration.load();
+        String url = args.length > 0 ? args[0] : null;
+        TransferApplication transferApplication = null;
+        LoadTarget target;
+        int maxOutstanding = configuration.getInt("load.max.outstanding", LoadGenerator.DEFAULT_MAX_OUTSTANDING);
+        if (url == null) {
+            transferApplication = new TransferApplication(configuration);
+            transferApplication.startProcessing();
+            target = new PublisherLoadTarget(transferApplication.getPublisher());
+        } else {
+            int connections = configuration.getInt("load.http.connections", 64);
+            target = new HttpLoadTarget(url, new Money(configuration.getInt("money.scale", Money.DEFAULT_SCALE)), connections);
+            //operations wait for free connection in generator, so their service time starts when they are sent
+            maxOutstanding = Math.min(maxOutstanding, connections);
+        }
+        try {
+            LoadOperation[] operations = LoadOperation.values();
+            int[] weights = new int[operations.length];
+            for (LoadOperation operation : operations) {
+                weights[operation.ordinal()] = configuration.getInt("load.mix." + operation.label(), 0);
+            }
+            LoadGenerator generator = new LoadGenerator(target, configuration.getDouble("load.rate", 1000), weights,
+                    configuration.getDouble("load.zipf.exponent", 0), maxOutstanding, configuration.getLong("load.seed", 42));
+            generator.createAccounts(configuration.getInt("load.accounts", 10_000), configuration.getLong("load.account.amount", 100_000_000),
+                    configuration.getLong("load.transfer.amount", 1));
+            LoadResult result = generator.run(TimeUnit.SECONDS.toNanos(configuration.getLong("load.warmup.seconds", 10)),
+                    TimeUnit.SECONDS.toNanos(configuration.getLong("load.duration.seconds", 60)));
+            LoadReport.print(result, System.out);
+            LoadReport.append(result, configuration.getString("load.label", "local"), url == null ? "in-process" : url,
+                    Paths.get(configuration.getString("load.results.file", "data/load/results.csv")));
+        } finally {
+            target.close();
+            if (transferApplication != null) {
+                transferApplication.close();
+            }
+        }
+    }
+}
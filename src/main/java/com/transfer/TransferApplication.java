@@ -1,41 +1,309 @@
 package com.transfer;
 
+import com.transfer.audit.AuditLog;
 import com.transfer.core.*;
-import com.transfer.core.event.AccountEvent;
+import com.transfer.journal.EventJournal;
+import com.transfer.journal.JournalRecovery;
+import com.transfer.journal.JournalSyncPolicy;
+import com.transfer.journal.PendingTransfers;
+import com.transfer.ledger.Ledger;
+import com.transfer.ledger.LedgerVerifier;
+import com.transfer.metrics.MetricsRegistry;
+import com.transfer.replication.ReplicationFollower;
+import com.transfer.replication.ReplicationLeader;
+import com.transfer.snapshot.SnapshotStore;
+import com.transfer.snapshot.SnapshotWriter;
+import com.transfer.transport.AccountImportStream;
+import com.transfer.transport.BinaryServer;
+import com.transfer.transport.ClientLimiter;
 import com.transfer.transport.HttpServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 public class TransferApplication implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransferApplication.class);
 
     private final HttpServer httpServer;
-    private final AccountEventProcessor accountEventProcessor;
+    private final BinaryServer binaryServer;
+    private final ShardedAccountEngine accountEngine;
+    private final Money money;
+    private final List<EventJournal> journals = new ArrayList<>();
+    private final SnapshotWriter snapshotWriter;
+    private final long snapshotIntervalMillis;
+    private final AuditLog auditLog;
+    private final Ledger ledger;
+    private final int httpPort;
+    private final ReplicationLeader replicationLeader;
+    private final ReplicationFollower replicationFollower;
+    private boolean started;
 
     TransferApplication() {
-        BlockingQueue<AccountEvent> eventBus = new ArrayBlockingQueue<>(1024);
-        AccountStorage<AccountInfo, UUID> accountStorage = new AccountStorageImpl();
-        AccountEventPublisher accountEventPublisher = new AccountEventPublisherImpl(eventBus);
+        this(Configuration.load());
+    }
+
+    TransferApplication(Configuration configuration) {
+        int shards = configuration.getInt("processor.shards", 1);
+        String idleStrategy = configuration.getString("processor.idle.strategy", IdleStrategies.BACKOFF);
+        long idleParkNanos = configuration.getLong("processor.idle.park.nanos", 1_000_000);
+
+        this.money = new Money(configuration.getInt("money.scale", Money.DEFAULT_SCALE));
+        String storageType = configuration.getString("storage.type", AccountStorages.HASH_MAP);
+        int storageCapacity = configuration.getInt("storage.initial.capacity", 1024);
+        Supplier<AccountStorage<AccountInfo, UUID>> storageFactory = () -> AccountStorages.create(storageType, storageCapacity);
+
+        List<AccountStorage<AccountInfo, UUID>> storages = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            storages.add(storageFactory.get());
+        }
+
+        SnapshotStore snapshotStore = null;
+        PendingTransfers pendingTransfers = new PendingTransfers();
+        if (configuration.getBoolean("journal.enabled", true)) {
+            Path journalDirectory = Paths.get(configuration.getString("journal.dir", "data/journal"));
+            for (int i = 0; i < shards; i++) {
+                journals.add(new EventJournal(
+                        journalDirectory.resolve("shard-" + i),
+                        configuration.getInt("journal.segment.size", 64 * 1024 * 1024),
+                        JournalSyncPolicy.fromName(configuration.getString("journal.sync.policy", "per-batch")),
+                        configuration.getLong("journal.sync.period.millis", 10)));
+            }
+            JournalRecovery recovery = new JournalRecovery(journals, storages);
+            if (configuration.getBoolean("snapshot.enabled", true)) {
+                snapshotStore = new SnapshotStore(Paths.get(configuration.getString("snapshot.dir", "data/snapshot")));
+                LOGGER.info("About to restore accounts from snapshot and journal {}", journalDirectory);
+                long[] positions = snapshotStore.loadLatest(storages, pendingTransfers);
+                recovery.recover(positions == null ? new long[shards] : positions, pendingTransfers);
+            } else {
+                LOGGER.info("About to restore accounts from journal {}", journalDirectory);
+                recovery.recover(new long[shards], pendingTransfers);
+            }
+        }
+        //aggregates start from scan of recovered storages, processors keep them up to date from now on
+        this.ledger = configuration.getBoolean("ledger.enabled", false) ? new Ledger(storages, journals,
+                configuration.getInt("ledger.top.size", Ledger.DEFAULT_TOP_SIZE),
+                configuration.getInt("ledger.window.seconds", Ledger.DEFAULT_WINDOW_SECONDS)) : null;
+        //aggregates are verified against storages of snapshot writer, so verification needs snapshots
+        LedgerVerifier ledgerVerifier = ledger != null && snapshotStore != null && configuration.getBoolean("ledger.verify.enabled", false)
+                ? new LedgerVerifier(ledger) : null;
+        this.snapshotWriter = snapshotStore != null ? new SnapshotWriter(snapshotStore, journals, storageFactory, ledgerVerifier) : null;
+        this.snapshotIntervalMillis = TimeUnit.SECONDS.toMillis(configuration.getLong("snapshot.interval.seconds", 60));
 
-        this.accountEventProcessor = new AccountEventProcessorImpl(accountStorage, eventBus);
-        this.httpServer = new HttpServer(accountEventPublisher);
+        //many http threads publish events, each shard is consumed by its own processor thread
+        this.accountEngine = new ShardedAccountEngine(
+                shards,
+                configuration.getInt("processor.queue.capacity", 1024),
+                storages::get,
+                () -> IdleStrategies.create(idleStrategy, idleParkNanos),
+                configuration.getInt("processor.batch.size", AccountEventProcessorImpl.DEFAULT_BATCH_SIZE),
+                configuration.getLong("processor.batch.max.latency.nanos", 0),
+                admissionPolicyFactory(configuration));
+        for (int i = 0; i < journals.size(); i++) {
+            accountEngine.getProcessor(i).addListener(journals.get(i));
+        }
+        //transfer ids of shard go on after the last one recovered, so they never repeat ids of journaled transfers
+        for (int i = 0; i < shards; i++) {
+            accountEngine.getProcessor(i).setTransferSequence(pendingTransfers.getTransferSequence(i));
+        }
+        //balance changes are copied into audit buffer by processors and written to files by audit thread
+        if (configuration.getBoolean("audit.enabled", false)) {
+            this.auditLog = new AuditLog(Paths.get(configuration.getString("audit.dir", "data/audit")),
+                    configuration.getInt("audit.buffer.size", AuditLog.DEFAULT_BUFFER_SIZE),
+                    configuration.getLong("audit.file.size", 64 * 1024 * 1024),
+                    configuration.getInt("audit.max.files", 16));
+            for (int i = 0; i < shards; i++) {
+                accountEngine.getProcessor(i).addListener(auditLog.recorder(i));
+            }
+        } else {
+            this.auditLog = null;
+        }
+        if (ledger != null) {
+            for (int i = 0; i < shards; i++) {
+                accountEngine.getProcessor(i).addListener(ledger.listener(i));
+            }
+        }
+        //keys are kept only in memory, retry after restart is applied again
+        int idempotencyMaxKeys = configuration.getInt("processor.idempotency.max.keys", 0);
+        if (idempotencyMaxKeys > 0) {
+            accountEngine.enableIdempotency(idempotencyMaxKeys,
+                    TimeUnit.SECONDS.toNanos(configuration.getLong("processor.idempotency.ttl.seconds", 0)));
+        }
+        if (configuration.getBoolean("processor.batch.netting", false)) {
+            accountEngine.enableBatchNetting();
+        }
+        int dispatcherThreads = configuration.getInt("processor.dispatcher.threads", 0);
+        if (dispatcherThreads > 0) {
+            accountEngine.enableResultDispatcher(dispatcherThreads,
+                    configuration.getInt("processor.dispatcher.queue.capacity", AccountResultDispatcher.DEFAULT_QUEUE_CAPACITY));
+        }
+        int historyEntries = configuration.getInt("history.entries.per.account", 0);
+        AccountHistoryReader historyReader = historyEntries > 0 ? accountEngine.createHistory(historyEntries) : null;
+        //info requests read balances published by processors, or go through processor queue as other requests
+        AccountReader accountReader = configuration.getString("http.info.mode", "view").equals("view") ? accountEngine.createReader() : null;
+        //replication listeners go after journal, so sync follower acks batches which are already durable on leader
+        String replicationRole = configuration.getString("replication.role", "none");
+        this.replicationLeader = replicationRole.equals("leader") ? new ReplicationLeader(accountEngine,
+                configuration.getInt("replication.port", 9090),
+                configuration.getString("replication.ack", "async").equals("sync"),
+                TimeUnit.MILLISECONDS.toNanos(configuration.getLong("replication.sync.timeout.millis", 100)),
+                configuration.getInt("replication.queue.capacity", ReplicationLeader.DEFAULT_QUEUE_CAPACITY)) : null;
+        this.replicationFollower = replicationRole.equals("follower") ? new ReplicationFollower(accountEngine,
+                configuration.getString("replication.leader.host", "localhost"),
+                configuration.getInt("replication.leader.port", 9090),
+                configuration.getLong("replication.promote.after.millis", 0),
+                this::promote) : null;
+        //metrics are recorded anyway, registry only exposes them on /metrics
+        MetricsRegistry metricsRegistry = null;
+        if (configuration.getBoolean("metrics.enabled", true)) {
+            metricsRegistry = new MetricsRegistry();
+            accountEngine.registerMetrics(metricsRegistry);
+            if (auditLog != null) {
+                auditLog.register(metricsRegistry);
+            }
+            if (ledger != null) {
+                ledger.register(metricsRegistry);
+            }
+            if (ledgerVerifier != null) {
+                ledgerVerifier.register(metricsRegistry);
+            }
+            if (replicationLeader != null) {
+                replicationLeader.register(metricsRegistry);
+            }
+            if (replicationFollower != null) {
+                replicationFollower.register(metricsRegistry);
+            }
+        }
+        this.httpPort = configuration.getInt("http.port", HttpServer.DEFAULT_PORT);
+        this.httpServer = new HttpServer(accountEngine.getPublisher(), money, accountReader,
+                configuration.getInt("http.response.threads", Runtime.getRuntime().availableProcessors()), metricsRegistry,
+                clientLimiter(configuration), accountEngine.getRouter(), historyReader, ledger);
+        //binary transport shares publisher with http, so both could be used at the same time
+        this.binaryServer = configuration.getBoolean("binary.enabled", false)
+                ? new BinaryServer(accountEngine.getPublisher(), accountReader, configuration.getInt("binary.port", 8090), metricsRegistry)
+                : null;
     }
 
-    public void start() {
+    private static IntFunction<AdmissionPolicy> admissionPolicyFactory(Configuration configuration) {
+        if (!configuration.getBoolean("processor.admission.enabled", false)) {
+            return capacity -> null;
+        }
+        double highRatio = configuration.getDouble("processor.admission.high.ratio", 1.0);
+        double normalRatio = configuration.getDouble("processor.admission.normal.ratio", 0.75);
+        double lowRatio = configuration.getDouble("processor.admission.low.ratio", 0.5);
+        return capacity -> new AdmissionPolicy(capacity, highRatio, normalRatio, lowRatio);
+    }
+
+    private static ClientLimiter clientLimiter(Configuration configuration) {
+        int maxInFlight = configuration.getInt("http.client.max.inflight", 0);
+        return maxInFlight > 0 ? new ClientLimiter(maxInFlight) : null;
+    }
+
+    /*
+     * Follower only applies changes of leader until it is promoted, requests are served after that
+     */
+    public synchronized void start() {
+        if (replicationFollower != null) {
+            //follower applies replicated changes through the same listeners as processors
+            if (auditLog != null) {
+                auditLog.start();
+            }
+            LOGGER.info("About to start exchange application as replication follower");
+            replicationFollower.start();
+            return;
+        }
         LOGGER.info("About to start exchange application");
-        accountEventProcessor.start();
-        httpServer.start();
+        startServing();
+        if (replicationLeader != null) {
+            replicationLeader.start();
+        }
+    }
+
+    /*
+     * Turns follower into the primary, called manually or when leader is lost for replication.promote.after.millis
+     */
+    public synchronized void promote() {
+        if (replicationFollower == null || started) {
+            return;
+        }
+        replicationFollower.promote();
+        //replicated snapshot is applied as created accounts on every reconnect, so aggregates are counted again
+        if (ledger != null) {
+            ledger.reset();
+        }
+        LOGGER.info("About to start exchange application as promoted follower");
+        startServing();
+    }
+
+    private void startServing() {
+        started = true;
+        startProcessing();
+        httpServer.start(httpPort);
+        if (binaryServer != null) {
+            binaryServer.start();
+        }
+    }
+
+    /*
+     * Starts processors without http server, e.g. for offline import
+     */
+    void startProcessing() {
+        if (auditLog != null) {
+            auditLog.start();
+        }
+        accountEngine.start();
+        if (snapshotWriter != null) {
+            snapshotWriter.start(snapshotIntervalMillis);
+        }
+    }
+
+    /*
+     * Imports accounts through processors, so they are journaled as created accounts, see AccountImportStream
+     */
+    long importAccounts(BufferedReader reader, AccountImportStream.Format format, Writer writer) throws IOException {
+        return new AccountImportStream(accountEngine.getPublisher(), accountEngine.getRouter(), money).importAccounts(reader, format, writer);
+    }
+
+    /*
+     * Publisher of processors, e.g. for load generated in this process
+     */
+    AccountEventPublisher getPublisher() {
+        return accountEngine.getPublisher();
     }
 
     @Override
     public void close() throws Exception{
         LOGGER.info("About to stop exchange application");
         httpServer.close();
-        accountEventProcessor.close();
+        if (binaryServer != null) {
+            binaryServer.close();
+        }
+        if (replicationFollower != null) {
+            replicationFollower.close();
+        }
+        if (replicationLeader != null) {
+            replicationLeader.close();
+        }
+        accountEngine.close();
+        if (auditLog != null) {
+            auditLog.close();
+        }
+        if (snapshotWriter != null) {
+            snapshotWriter.close();
+        }
+        for (EventJournal journal : journals) {
+            journal.close();
+        }
     }
 }
@@ -0,0 +1,222 @@
+package com.transfer.audit;
+
+import com.transfer.core.AccountEventListener;
+import com.transfer.core.IdleStrategies;
+import com.transfer.metrics.MetricsRegistry;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Audit trail of every balance change, kept off the processor thread. Processors (see AuditRecorder) copy fixed layout
+ * records into lock-free ring buffer shared by all shards, audit thread drains it and writes records to files of
+ * fileSize bytes, the oldest files over maxFiles are deleted. When ring is full record is dropped and counted,
+ * so slow disk never stops processors. Files are read by AuditLogDecoder
+ */
+public class AuditLog implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuditLog.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    static final String FILE_PREFIX = "audit-";
+    static final String FILE_SUFFIX = ".log";
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final Path directory;
+    private final long fileSize;
+    private final int maxFiles;
+    private final ManyToOneRingBuffer ringBuffer;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running;
+    private FileChannel channel;
+    private long fileIndex;
+    private Thread thread;
+
+    public AuditLog(Path directory) {
+        this(directory, DEFAULT_BUFFER_SIZE, 64 * 1024 * 1024, 16);
+    }
+
+    /*
+     * bufferSize - capacity of ring in bytes, power of two, each record takes 88 bytes there
+     * fileSize - file is closed and the next one is started when it grows over this size
+     * maxFiles - number of files kept in directory
+     */
+    public AuditLog(Path directory, int bufferSize, long fileSize, int maxFiles) {
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("Audit log should keep at least one file");
+        }
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.maxFiles = maxFiles;
+        this.ringBuffer = new ManyToOneRingBuffer(new UnsafeBuffer(ByteBuffer.allocateDirect(bufferSize + RingBufferDescriptor.TRAILER_LENGTH)));
+        try {
+            Files.createDirectories(directory);
+            List<Long> files = fileIndexes(directory);
+            //every start writes into new file, tail of the previous one could be partially written
+            this.fileIndex = files.isEmpty() ? 0 : files.get(files.size() - 1) + 1;
+            this.channel = openFile(fileIndex);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open audit log in " + directory, e);
+        }
+    }
+
+    /*
+     * Listener which records changes of shard, should be added to processor of the shard
+     */
+    public AccountEventListener recorder(int shard) {
+        return new AuditRecorder(this, shard);
+    }
+
+    /*
+     * Called by processor threads, returns false if record was dropped
+     */
+    boolean append(int type, DirectBuffer record) {
+        if (!ringBuffer.write(type, record, 0, AuditRecords.RECORD_LENGTH)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Does nothing if already started
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "audit-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        IdleStrategy idleStrategy = IdleStrategies.backoff();
+        while (running) {
+            int count = drain();
+            idleStrategy.idle(count);
+        }
+        //records appended before close are still written
+        while (drain() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private int drain() {
+        int count = ringBuffer.read((type, buffer, offset, length) -> {
+            if (writeBuffer.remaining() < length) {
+                flush();
+            }
+            buffer.getBytes(offset, writeBuffer, length);
+        });
+        if (count > 0) {
+            flush();
+            written.addAndGet(count);
+        }
+        return count;
+    }
+
+    private void flush() {
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            if (channel.position() >= fileSize) {
+                rotate();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to write audit log in {}", directory, e);
+        }
+        writeBuffer.clear();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        channel = openFile(++fileIndex);
+        List<Long> files = fileIndexes(directory);
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            Files.deleteIfExists(filePath(directory, files.get(i)));
+        }
+    }
+
+    private FileChannel openFile(long index) throws IOException {
+        return FileChannel.open(filePath(directory, index), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    static List<Long> fileIndexes(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static Path filePath(Path directory, long index) {
+        return directory.resolve(String.format("%s%010d%s", FILE_PREFIX, index, FILE_SUFFIX));
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    /*
+     * Records lost because audit thread did not keep up and ring was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public void register(MetricsRegistry registry) {
+        registry.counter("transfer_audit_written_total", "Audit records written to files", "", this::getWritten);
+        registry.counter("transfer_audit_dropped_total", "Audit records dropped because audit buffer was full", "", this::getDropped);
+        registry.gauge("transfer_audit_buffer_bytes", "Bytes of audit records waiting for audit thread, sampled at scrape", "",
+                ringBuffer::size);
+    }
+
+    /*
+     * Should be called after processors are closed, so every appended record is written
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (thread != null) {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            } else {
+                while (drain() > 0) {
+                    Thread.onSpinWait();
+                }
+            }
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close audit log", e);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Thread was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
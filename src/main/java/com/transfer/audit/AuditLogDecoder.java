@@ -0,0 +1,81 @@
+package com.transfer.audit;
+
+import com.transfer.core.Money;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.UUID;
+
+/*
+ * Prints binary audit files as text, one line per record, oldest first. Amounts are printed with given money scale.
+ * Usage: AuditLogDecoder <audit dir or file> [money scale]
+ */
+public class AuditLogDecoder {
+
+    private final Money money;
+
+    public AuditLogDecoder(Money money) {
+        this.money = money;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: AuditLogDecoder <audit dir or file> [money scale]");
+        }
+        Path path = Paths.get(args[0]);
+        AuditLogDecoder decoder = new AuditLogDecoder(new Money(args.length > 1 ? Integer.parseInt(args[1]) : Money.DEFAULT_SCALE));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        if (Files.isDirectory(path)) {
+            for (long index : AuditLog.fileIndexes(path)) {
+                decoder.decode(AuditLog.filePath(path, index), writer);
+            }
+        } else {
+            decoder.decode(path, writer);
+        }
+        writer.flush();
+    }
+
+    /*
+     * Returns number of decoded records, partially written record at the end of file is skipped
+     */
+    public long decode(Path file, Writer writer) throws IOException {
+        UnsafeBuffer buffer = new UnsafeBuffer(Files.readAllBytes(file));
+        long count = 0;
+        for (int offset = 0; offset + AuditRecords.RECORD_LENGTH <= buffer.capacity(); offset += AuditRecords.RECORD_LENGTH) {
+            writer.write(toText(buffer, offset));
+            writer.write('\n');
+            count++;
+        }
+        return count;
+    }
+
+    String toText(UnsafeBuffer buffer, int offset) {
+        int type = AuditRecords.getType(buffer, offset);
+        StringBuilder text = new StringBuilder(160)
+                .append(Instant.ofEpochMilli(AuditRecords.getTimeMillis(buffer, offset)))
+                .append(" shard=").append(AuditRecords.getShard(buffer, offset))
+                .append(' ').append(AuditRecords.getTypeName(type));
+        if (type == AuditRecords.DEBIT || type == AuditRecords.CREDIT || type == AuditRecords.REFUND) {
+            text.append(" transferId=").append(AuditRecords.getTransferId(buffer, offset));
+        }
+        text.append(" account=").append(AuditRecords.getAccount(buffer, offset));
+        UUID counterparty = AuditRecords.getCounterparty(buffer, offset);
+        if (counterparty != null) {
+            text.append(" counterparty=").append(counterparty);
+        }
+        text.append(" amount=").append(money.toDecimal(AuditRecords.getAmount(buffer, offset)).toPlainString())
+                .append(" balance=").append(money.toDecimal(AuditRecords.getBalance(buffer, offset)).toPlainString());
+        if (type == AuditRecords.TRANSFER) {
+            text.append(" counterpartyBalance=").append(money.toDecimal(AuditRecords.getCounterpartyBalance(buffer, offset)).toPlainString());
+        }
+        return text.toString();
+    }
+}
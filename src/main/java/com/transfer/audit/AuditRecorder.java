@@ -0,0 +1,55 @@
+package com.transfer.audit;
+
+import com.transfer.core.AccountEventListener;
+import com.transfer.core.AccountInfo;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.util.UUID;
+
+/*
+ * Listener of one shard processor, encodes every balance change into audit record and hands it to AuditLog.
+ * Called only from processor thread, so record is built in own buffer, it never allocates and never waits
+ */
+class AuditRecorder implements AccountEventListener {
+
+    private final AuditLog auditLog;
+    private final int shard;
+    private final UnsafeBuffer record = new UnsafeBuffer(new byte[AuditRecords.RECORD_LENGTH]);
+
+    AuditRecorder(AuditLog auditLog, int shard) {
+        this.auditLog = auditLog;
+        this.shard = shard;
+    }
+
+    @Override
+    public void onAccountCreated(AccountInfo account) {
+        append(AuditRecords.CREATE, 0, account.getUuid(), null, account.getAmount(), account.getAmount(), 0);
+    }
+
+    @Override
+    public void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        append(AuditRecords.TRANSFER, 0, fromAccount.getUuid(), toAccount.getUuid(), amount, fromAccount.getAmount(), toAccount.getAmount());
+    }
+
+    @Override
+    public void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+        append(AuditRecords.DEBIT, transferId, fromAccount.getUuid(), toAccount, amount, fromAccount.getAmount(), 0);
+    }
+
+    @Override
+    public void onCredit(long transferId, AccountInfo account, long amount) {
+        append(AuditRecords.CREDIT, transferId, account.getUuid(), null, amount, account.getAmount(), 0);
+    }
+
+    @Override
+    public void onCredit(long transferId, AccountInfo account, UUID fromAccount, long amount) {
+        append(fromAccount == null ? AuditRecords.REFUND : AuditRecords.CREDIT, transferId, account.getUuid(), fromAccount, amount,
+                account.getAmount(), 0);
+    }
+
+    private void append(int type, long transferId, UUID account, UUID counterparty, long amount, long balance, long counterpartyBalance) {
+        AuditRecords.put(record, 0, type, shard, System.currentTimeMillis(), transferId, account, counterparty, amount, balance,
+                counterpartyBalance);
+        auditLog.append(type, record);
+    }
+}
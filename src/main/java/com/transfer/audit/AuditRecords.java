@@ -0,0 +1,105 @@
+package com.transfer.audit;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import java.util.UUID;
+
+/*
+ * Fixed layout of audit record, the same in memory ring and in files:
+ * [int type][int shard][long time millis][long transfer id][uuid account][uuid counterparty][long amount][long balance][long counterparty balance]
+ * uuid is two longs, missing uuid is zeros, amounts are long minor units, see Money.
+ *   create   - account, amount is initial balance
+ *   transfer - account is source, counterparty is destination, both balances are after transfer
+ *   debit    - cross shard transfer left source account, counterparty is destination in another shard
+ *   credit   - cross shard transfer arrived, counterparty is source if it is known
+ *   refund   - cross shard transfer returned to source account
+ */
+public final class AuditRecords {
+
+    public static final int CREATE = 1;
+    public static final int TRANSFER = 2;
+    public static final int DEBIT = 3;
+    public static final int CREDIT = 4;
+    public static final int REFUND = 5;
+
+    static final int TYPE_OFFSET = 0;
+    static final int SHARD_OFFSET = TYPE_OFFSET + Integer.BYTES;
+    static final int TIME_OFFSET = SHARD_OFFSET + Integer.BYTES;
+    static final int TRANSFER_ID_OFFSET = TIME_OFFSET + Long.BYTES;
+    static final int ACCOUNT_OFFSET = TRANSFER_ID_OFFSET + Long.BYTES;
+    static final int COUNTERPARTY_OFFSET = ACCOUNT_OFFSET + 2 * Long.BYTES;
+    static final int AMOUNT_OFFSET = COUNTERPARTY_OFFSET + 2 * Long.BYTES;
+    static final int BALANCE_OFFSET = AMOUNT_OFFSET + Long.BYTES;
+    static final int COUNTERPARTY_BALANCE_OFFSET = BALANCE_OFFSET + Long.BYTES;
+    public static final int RECORD_LENGTH = COUNTERPARTY_BALANCE_OFFSET + Long.BYTES;
+
+    private static final String[] TYPE_NAMES = {"", "create", "transfer", "debit", "credit", "refund"};
+
+    private AuditRecords() {
+    }
+
+    public static void put(MutableDirectBuffer buffer, int offset, int type, int shard, long timeMillis, long transferId, UUID account,
+                           UUID counterparty, long amount, long balance, long counterpartyBalance) {
+        buffer.putInt(offset + TYPE_OFFSET, type);
+        buffer.putInt(offset + SHARD_OFFSET, shard);
+        buffer.putLong(offset + TIME_OFFSET, timeMillis);
+        buffer.putLong(offset + TRANSFER_ID_OFFSET, transferId);
+        putUuid(buffer, offset + ACCOUNT_OFFSET, account);
+        putUuid(buffer, offset + COUNTERPARTY_OFFSET, counterparty);
+        buffer.putLong(offset + AMOUNT_OFFSET, amount);
+        buffer.putLong(offset + BALANCE_OFFSET, balance);
+        buffer.putLong(offset + COUNTERPARTY_BALANCE_OFFSET, counterpartyBalance);
+    }
+
+    public static int getType(DirectBuffer buffer, int offset) {
+        return buffer.getInt(offset + TYPE_OFFSET);
+    }
+
+    public static String getTypeName(int type) {
+        return type > 0 && type < TYPE_NAMES.length ? TYPE_NAMES[type] : "unknown-" + type;
+    }
+
+    public static int getShard(DirectBuffer buffer, int offset) {
+        return buffer.getInt(offset + SHARD_OFFSET);
+    }
+
+    public static long getTimeMillis(DirectBuffer buffer, int offset) {
+        return buffer.getLong(offset + TIME_OFFSET);
+    }
+
+    public static long getTransferId(DirectBuffer buffer, int offset) {
+        return buffer.getLong(offset + TRANSFER_ID_OFFSET);
+    }
+
+    public static UUID getAccount(DirectBuffer buffer, int offset) {
+        return getUuid(buffer, offset + ACCOUNT_OFFSET);
+    }
+
+    public static UUID getCounterparty(DirectBuffer buffer, int offset) {
+        return getUuid(buffer, offset + COUNTERPARTY_OFFSET);
+    }
+
+    public static long getAmount(DirectBuffer buffer, int offset) {
+        return buffer.getLong(offset + AMOUNT_OFFSET);
+    }
+
+    public static long getBalance(DirectBuffer buffer, int offset) {
+        return buffer.getLong(offset + BALANCE_OFFSET);
+    }
+
+    public static long getCounterpartyBalance(DirectBuffer buffer, int offset) {
+        return buffer.getLong(offset + COUNTERPARTY_BALANCE_OFFSET);
+    }
+
+    private static void putUuid(MutableDirectBuffer buffer, int offset, UUID uuid) {
+        buffer.putLong(offset, uuid == null ? 0 : uuid.getMostSignificantBits());
+        buffer.putLong(offset + Long.BYTES, uuid == null ? 0 : uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(DirectBuffer buffer, int offset) {
+        long msb = buffer.getLong(offset);
+        long lsb = buffer.getLong(offset + Long.BYTES);
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,177 @@
+package com.transfer.core;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Cache of balances in front of shard storage for the duration of one batch. Account is looked up in storage once per batch,
+ * the first change is written to storage at once, while account is still in cpu cache, changes of account touched again
+ * in the batch are netted and only its final balance is written at flush. So hot account (fee collector, settlement pool)
+ * hit by many transfers of batch costs one lookup and at most two writes, while each event still sees balances left by
+ * previous ones, exactly as without cache.
+ *
+ * Entries are kept in primitive arrays as in PrimitiveAccountStorage, open addressing by [uuid msb][uuid lsb], each lookup
+ * returns a copy. Table is sized for batch, when it is filled up (e.g. by large batch transfer) changes are flushed and
+ * table is cleared. Only processor thread uses it, hit and write counts could be read by metrics, such values could be stale
+ */
+final class AccountBatchCache implements AccountStorage<AccountInfo, UUID> {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private static final byte EMPTY = 0;
+    //looked up once, balance in storage is actual
+    private static final byte LOADED = 1;
+    //touched again, balance in storage is actual
+    private static final byte HOT = 2;
+    //touched again and changed, storage is updated at flush
+    private static final byte DIRTY = 3;
+
+    private final AccountStorage<AccountInfo, UUID> storage;
+    private final long[] keys;
+    private final long[] balances;
+    private final byte[] states;
+    //occupied slots in order of insertion, so flush and clear do not scan the whole table
+    private final int[] slots;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+    private long hits;
+    private long writes;
+
+    /*
+     * accountsPerBatch - expected number of distinct accounts of batch, table is sized for it
+     */
+    AccountBatchCache(AccountStorage<AccountInfo, UUID> storage, int accountsPerBatch) {
+        this.storage = storage;
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (accountsPerBatch / LOAD_FACTOR)) * 2 - 1);
+        this.keys = new long[capacity * 2];
+        this.balances = new long[capacity];
+        this.states = new byte[capacity];
+        this.maxSize = (int) (capacity * LOAD_FACTOR);
+        this.slots = new int[maxSize];
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public AccountInfo getByUuid(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int slot = find(msb, lsb);
+        if (states[slot] != EMPTY) {
+            hits++;
+            if (states[slot] == LOADED) {
+                states[slot] = HOT;
+            }
+            return new AccountInfo(uuid, balances[slot]);
+        }
+        AccountInfo account = storage.getByUuid(uuid);
+        //missing account is not cached, it could be created later in the batch
+        if (account != null) {
+            insert(slot, msb, lsb, account.getAmount());
+        }
+        return account;
+    }
+
+    @Override
+    public void put(AccountInfo account) {
+        UUID uuid = account.getUuid();
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int slot = find(msb, lsb);
+        switch (states[slot]) {
+            case EMPTY:
+                //e.g. created account
+                storage.put(account);
+                insert(slot, msb, lsb, account.getAmount());
+                break;
+            case LOADED:
+                storage.put(account);
+                balances[slot] = account.getAmount();
+                states[slot] = HOT;
+                break;
+            default:
+                balances[slot] = account.getAmount();
+                states[slot] = DIRTY;
+        }
+    }
+
+    /*
+     * Storage is flushed first, so it contains changes of the current batch
+     */
+    @Override
+    public int size() {
+        flush();
+        return storage.size();
+    }
+
+    @Override
+    public void forEach(Consumer<AccountInfo> consumer) {
+        flush();
+        storage.forEach(consumer);
+    }
+
+    /*
+     * Writes final balances of netted accounts to storage, cached balances stay valid
+     */
+    void flush() {
+        for (int i = 0; i < size; i++) {
+            int slot = slots[i];
+            if (states[slot] == DIRTY) {
+                storage.put(new AccountInfo(new UUID(keys[slot * 2], keys[slot * 2 + 1]), balances[slot]));
+                states[slot] = HOT;
+                writes++;
+            }
+        }
+    }
+
+    /*
+     * Flushes and forgets all accounts, called at the end of every batch
+     */
+    void clear() {
+        flush();
+        for (int i = 0; i < size; i++) {
+            states[slots[i]] = EMPTY;
+        }
+        size = 0;
+    }
+
+    /*
+     * Lookups answered by cache without storage
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /*
+     * Netted balances written to storage at flush, at most one per account per batch
+     */
+    long getWrites() {
+        return writes;
+    }
+
+    /*
+     * slot - empty slot found for the key, it is found again if table is cleared
+     */
+    private void insert(int slot, long msb, long lsb, long balance) {
+        if (size == maxSize) {
+            clear();
+            slot = find(msb, lsb);
+        }
+        keys[slot * 2] = msb;
+        keys[slot * 2 + 1] = lsb;
+        balances[slot] = balance;
+        states[slot] = LOADED;
+        slots[size++] = slot;
+    }
+
+    /*
+     * Slot of account, or empty slot where it should be inserted
+     */
+    private int find(long msb, long lsb) {
+        int slot = PrimitiveAccountStorage.hash(msb, lsb) & mask;
+        while (states[slot] != EMPTY && (keys[slot * 2] != msb || keys[slot * 2 + 1] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
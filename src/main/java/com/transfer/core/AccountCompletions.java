@@ -0,0 +1,106 @@
+package com.transfer.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/*
+ * Results of one processed batch together with consumers of their events. Consumers are copied out of events and slots,
+ * so slots could be reused before results are completed. Filled by processor thread, completed either by the same thread
+ * or by AccountResultDispatcher thread, which returns it to free list of processor after that
+ */
+final class AccountCompletions {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountCompletions.class);
+
+    private final Consumer<AccountResult>[] resultConsumers;
+    private final Consumer<Throwable>[] errorConsumers;
+    private final AccountResult[] results;
+    private final Exception[] errors;
+    //free list of processor which owns it, null if it is not dispatched
+    private final Queue<AccountCompletions> freeList;
+    private int size;
+    private int failed;
+    //number of events in batch, some of them were handed over to another shard and are not here
+    private int batchSize;
+    private long dispatchNanos;
+
+    AccountCompletions(int capacity) {
+        this(capacity, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    AccountCompletions(int capacity, Queue<AccountCompletions> freeList) {
+        this.resultConsumers = (Consumer<AccountResult>[]) new Consumer<?>[capacity];
+        this.errorConsumers = (Consumer<Throwable>[]) new Consumer<?>[capacity];
+        this.results = new AccountResult[capacity];
+        this.errors = new Exception[capacity];
+        this.freeList = freeList;
+    }
+
+    void add(Consumer<AccountResult> resultConsumer, AccountResult result) {
+        resultConsumers[size] = resultConsumer;
+        results[size++] = result;
+    }
+
+    void addError(Consumer<Throwable> errorConsumer, Exception error) {
+        errorConsumers[size] = errorConsumer;
+        errors[size++] = error;
+        failed++;
+    }
+
+    void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getDispatchNanos() {
+        return dispatchNanos;
+    }
+
+    void setDispatchNanos(long dispatchNanos) {
+        this.dispatchNanos = dispatchNanos;
+    }
+
+    /*
+     * Consumer which throws does not prevent completion of the others, instance could be filled again after that
+     */
+    void complete() {
+        Exception lastError = null;
+        for (int i = 0; i < size; i++) {
+            try {
+                if (errors[i] == null) {
+                    resultConsumers[i].accept(results[i]);
+                } else {
+                    lastError = errors[i];
+                    errorConsumers[i].accept(lastError);
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.error("Problems during result completion", ex);
+            }
+            resultConsumers[i] = null;
+            errorConsumers[i] = null;
+            results[i] = null;
+            errors[i] = null;
+        }
+        if (failed > 0) {
+            LOGGER.warn("Problems during event processing, {} of {} events failed, last error: {}", failed, batchSize, lastError.toString());
+        }
+        size = 0;
+        failed = 0;
+    }
+
+    /*
+     * Called after complete by thread which completed it, processor could fill it again after that
+     */
+    void recycle() {
+        if (freeList != null) {
+            freeList.offer(this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.transfer.core;
+
+import java.util.UUID;
+
+/*
+ * Callbacks about applied state changes, always invoked from processor thread right after storage is updated.
+ * Accounts passed to callbacks are already updated and could be changed by next events, so they should not be kept
+ */
+public interface AccountEventListener {
+
+    default void onAccountCreated(AccountInfo account) {
+    }
+
+    default void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+    }
+
+    /*
+     * Cross shard transfer left source account, it will be matched by credit with the same transferId on another shard
+     */
+    default void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+    }
+
+    /*
+     * Cross shard transfer arrived to destination account, or was refunded to source account
+     */
+    default void onCredit(long transferId, AccountInfo account, long amount) {
+    }
+
+    /*
+     * The same as above with source account of credit, it is null when money is refunded to source account
+     */
+    default void onCredit(long transferId, AccountInfo account, UUID fromAccount, long amount) {
+        onCredit(transferId, account, amount);
+    }
+
+    /*
+     * All events of the batch are applied, but their results are not completed yet
+     */
+    default void onBatchProcessed() {
+    }
+}
@@ -1,16 +1,34 @@
 package com.transfer.core;
 
+import com.transfer.core.event.AccountBatchTransferEvent;
 import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountCreditEvent;
+import com.transfer.core.event.AccountImportEvent;
 import com.transfer.core.event.AccountInfoEvent;
+import com.transfer.core.event.AccountRefundEvent;
+import com.transfer.core.event.AccountSettleEvent;
+import com.transfer.core.event.AccountTaskEvent;
 import com.transfer.core.event.AccountTransferEvent;
 
 public interface AccountEventProcessor extends AutoCloseable{
 
     void start();
 
-    String process(AccountCreateEvent accountCreateEvent);
+    AccountResult process(AccountCreateEvent accountCreateEvent);
 
-    String process(AccountInfoEvent accountInfoEvent);
+    AccountResult process(AccountInfoEvent accountInfoEvent);
 
-    String process(AccountTransferEvent accountTransferEvent);
+    AccountResult process(AccountTransferEvent accountTransferEvent);
+
+    AccountResult process(AccountBatchTransferEvent accountBatchTransferEvent);
+
+    AccountResult process(AccountImportEvent accountImportEvent);
+
+    AccountResult process(AccountCreditEvent accountCreditEvent);
+
+    AccountResult process(AccountRefundEvent accountRefundEvent);
+
+    AccountResult process(AccountSettleEvent accountSettleEvent);
+
+    AccountResult process(AccountTaskEvent accountTaskEvent);
 }
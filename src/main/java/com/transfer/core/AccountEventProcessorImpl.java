@@ -1,124 +1,948 @@
 package com.transfer.core;
 
-import com.google.common.collect.ImmutableList;
-import com.google.gson.Gson;
+import com.transfer.core.AccountShardRouter.AccountShard;
+import com.transfer.core.event.AccountBatchTransferEvent;
 import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountCreditEvent;
 import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountImportEvent;
 import com.transfer.core.event.AccountInfoEvent;
+import com.transfer.core.event.AccountRefundEvent;
+import com.transfer.core.event.AccountSettleEvent;
+import com.transfer.core.event.AccountTaskEvent;
 import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class AccountEventProcessorImpl implements AccountEventProcessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountEventProcessorImpl.class);
 
-    private final AccountStorage<AccountInfo, UUID> accountStorage;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
     private final AtomicBoolean running;
     private final ExecutorService executorService;
-    private final Gson gson;
-    private final BlockingQueue<AccountEvent> eventBus;
+    private final Queue<AccountEvent> eventBus;
+    private final IdleStrategy idleStrategy;
+    private final AccountShard shard;
+    private final Queue<AccountEvent> inbox;
+    private final long maxBatchLatencyNanos;
+    private final AccountEventRing ring;
+    private final AccountEvent[] batch;
+    private final AccountEventSlot[] batchSlots;
+    private final AccountResult[] batchResults;
+    private final Exception[] batchErrors;
+    private final List<AccountEvent> outbox;
+    private final AccountCompletions completions;
+    private final ProcessorMetrics metrics = new ProcessorMetrics();
+    //replaced by batch cache when netting is enabled
+    private AccountStorage<AccountInfo, UUID> accountStorage;
+    //the same storage if it is primitive and netting is not enabled, balances are changed in place without account objects
+    private PrimitiveAccountStorage primitiveStorage;
+    private AccountBatchCache batchCache;
+    private AccountResultDispatcher resultDispatcher;
+    //completions returned by dispatcher threads, at most one per slot of dispatcher queue is allocated
+    private ManyToOneConcurrentArrayQueue<AccountCompletions> freeCompletions;
+    private int allocatedCompletions;
+    private AccountEventListener[] listeners = new AccountEventListener[0];
+    private IdempotencyCache idempotencyCache;
+    //next sequence of ring to consume
+    private long ringSequence;
+    //sequence of the last transfer id given by this shard
+    private long transferSequence;
+    //set when listener failed, storage could be ahead of journal and outbox, so nothing is applied after it
+    private volatile IllegalStateException failure;
+
+    public AccountEventProcessorImpl(AccountStorage<AccountInfo, UUID> accountStorage, Queue<AccountEvent> eventBus) {
+        this(accountStorage, eventBus, IdleStrategies.backoff());
+    }
+
+    public AccountEventProcessorImpl(AccountStorage<AccountInfo, UUID> accountStorage, Queue<AccountEvent> eventBus, IdleStrategy idleStrategy) {
+        this(accountStorage, eventBus, idleStrategy, DEFAULT_BATCH_SIZE, 0);
+    }
 
-    public AccountEventProcessorImpl(AccountStorage<AccountInfo, UUID> accountStorage, BlockingQueue<AccountEvent> eventBus) {
+    /*
+     * batchSize - max number of events drained from queue and processed together in one cycle
+     * maxBatchLatencyNanos - how long processor could wait for not full batch to fill up, 0 means process whatever is in the queue
+     */
+    public AccountEventProcessorImpl(AccountStorage<AccountInfo, UUID> accountStorage, Queue<AccountEvent> eventBus, IdleStrategy idleStrategy,
+                                     int batchSize, long maxBatchLatencyNanos) {
+        this(accountStorage, eventBus, idleStrategy, batchSize, maxBatchLatencyNanos, AccountShardRouter.single());
+    }
+
+    /*
+     * shard - part of accounts owned by this processor, storage should contain only accounts of this shard
+     */
+    public AccountEventProcessorImpl(AccountStorage<AccountInfo, UUID> accountStorage, Queue<AccountEvent> eventBus, IdleStrategy idleStrategy,
+                                     int batchSize, long maxBatchLatencyNanos, AccountShard shard) {
+        this(accountStorage, eventBus, idleStrategy, batchSize, maxBatchLatencyNanos, shard, null);
+    }
+
+    /*
+     * ring - optional ring of reusable event slots, consumed together with event queue
+     */
+    public AccountEventProcessorImpl(AccountStorage<AccountInfo, UUID> accountStorage, Queue<AccountEvent> eventBus, IdleStrategy idleStrategy,
+                                     int batchSize, long maxBatchLatencyNanos, AccountShard shard, AccountEventRing ring) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
         this.accountStorage = accountStorage;
+        this.primitiveStorage = accountStorage instanceof PrimitiveAccountStorage ? (PrimitiveAccountStorage) accountStorage : null;
         this.eventBus = eventBus;
+        this.idleStrategy = idleStrategy;
+        this.shard = shard;
+        this.inbox = shard.getInbox();
+        this.maxBatchLatencyNanos = maxBatchLatencyNanos;
+        this.ring = ring;
+        this.batch = new AccountEvent[batchSize];
+        this.batchSlots = new AccountEventSlot[batchSize];
+        this.batchResults = new AccountResult[batchSize];
+        this.batchErrors = new Exception[batchSize];
+        this.completions = new AccountCompletions(batchSize);
+        this.outbox = new ArrayList<>();
         this.running = new AtomicBoolean(true);
         //only one processor thread to omit synchronisation on events, because all events are computationally not heavy, application will be bounded by IO
         //in case of heavy computation model should be changed
         this.executorService = Executors.newFixedThreadPool(1);
-        this.gson = new Gson();
+    }
+
+    public ProcessorMetrics getMetrics() {
+        return metrics;
     }
 
     /*
-     * Start processor thread which check available events in event queue and process it
+     * Processor is stopped by failed listener, events are failed without being applied until it is restarted from journal
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /*
+     * Should be called before processor is started, listeners are invoked only from processor thread.
+     * Processor does not log balance changes itself, they are recorded by listeners, e.g. AuditLog off this thread
+     */
+    public void addListener(AccountEventListener listener) {
+        AccountEventListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        newListeners[listeners.length] = listener;
+        listeners = newListeners;
+    }
+
+    /*
+     * Should be called before processor is started, with the last sequence of transfer ids of the shard
+     * found in snapshot and journal, so ids of restarted shard do not repeat ids of pending transfers
+     */
+    public void setTransferSequence(long transferSequence) {
+        this.transferSequence = transferSequence;
+    }
+
+    /*
+     * Only from processor thread, e.g. by task
+     */
+    public long getTransferSequence() {
+        return transferSequence;
+    }
+
+    /*
+     * Should be called before processor is started, without cache idempotency keys of events are ignored
+     */
+    public void setIdempotencyCache(IdempotencyCache idempotencyCache) {
+        this.idempotencyCache = idempotencyCache;
+    }
+
+    public IdempotencyCache getIdempotencyCache() {
+        return idempotencyCache;
+    }
+
+    /*
+     * Listeners in the order they are invoked, e.g. to apply replicated changes the same way as processor does
+     */
+    public List<AccountEventListener> getListeners() {
+        return Arrays.asList(listeners);
+    }
+
+    /*
+     * Should be called before processor is started. Accounts touched by batch are kept in cache until batch is applied,
+     * so hot account gets one storage lookup and at most two writes per batch instead of one per event, see AccountBatchCache.
+     * Events still see balances of each other in order, so results are the same as without it
+     */
+    public void enableBatchNetting() {
+        if (batchCache == null) {
+            batchCache = new AccountBatchCache(accountStorage, 2 * batch.length);
+            accountStorage = batchCache;
+            primitiveStorage = null;
+        }
+    }
+
+    /*
+     * Accounts found in batch cache without storage lookup, 0 if netting is not enabled
+     */
+    public long getBatchCacheHits() {
+        return batchCache != null ? batchCache.getHits() : 0;
+    }
+
+    /*
+     * Balances written to storage by batch cache, 0 if netting is not enabled
+     */
+    public long getBatchCacheWrites() {
+        return batchCache != null ? batchCache.getWrites() : 0;
+    }
+
+    /*
+     * Should be called before processor is started, without dispatcher results are completed by processor thread
+     */
+    public void setResultDispatcher(AccountResultDispatcher resultDispatcher) {
+        this.resultDispatcher = resultDispatcher;
+        this.freeCompletions = new ManyToOneConcurrentArrayQueue<>(resultDispatcher.getQueueCapacity());
+    }
+
+    /*
+     * Start processor thread which drains available events from event queue and process them in batches,
+     * when queue is empty processor thread waits according to idle strategy
      */
     public void start() {
         executorService.submit(() -> {
             while (running.get()) {
-                AccountEvent accountEvent;
-                if ((accountEvent = eventBus.poll()) != null) {
-                    handleEvent(accountEvent);
+                int count = drainBatch();
+                if (count > 0) {
+                    processBatch(count);
                 }
+                idleStrategy.idle(count);
             }
         });
     }
 
+    /*
+     * Events sent by other shards go first, they are unbounded and already half applied.
+     * Each batch entry is either event from queue or slot from ring
+     */
+    private int drainBatch() {
+        int count = 0;
+        AccountEvent accountEvent;
+        while (count < batch.length && (accountEvent = inbox.poll()) != null) {
+            batch[count++] = accountEvent;
+        }
+        while (count < batch.length && (accountEvent = eventBus.poll()) != null) {
+            batch[count++] = accountEvent;
+        }
+        while (count < batch.length && pollSlot(count)) {
+            count++;
+        }
+        if (count > 0 && count < batch.length && maxBatchLatencyNanos > 0) {
+            long deadline = System.nanoTime() + maxBatchLatencyNanos;
+            while (count < batch.length && System.nanoTime() < deadline) {
+                if ((accountEvent = eventBus.poll()) != null) {
+                    batch[count++] = accountEvent;
+                } else if (pollSlot(count)) {
+                    count++;
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean pollSlot(int index) {
+        if (ring == null) {
+            return false;
+        }
+        AccountEventSlot slot = ring.poll(ringSequence);
+        if (slot == null) {
+            return false;
+        }
+        batchSlots[index] = slot;
+        ringSequence++;
+        return true;
+    }
+
+    /*
+     * Applies events as one batch in the caller thread, exactly as processor thread does it with drained events.
+     * Should not be called while processor is started, e.g. for benchmarks and tests
+     */
+    public void processBatch(AccountEvent[] events, int offset, int count) {
+        if (count > batch.length) {
+            throw new IllegalArgumentException("Batch should not be larger than " + batch.length);
+        }
+        System.arraycopy(events, offset, batch, 0, count);
+        processBatch(count);
+    }
+
     /*
      * Thread safe, because is executed in the same thread all the time (only from executor)
+     * All events of the batch are applied to storage first, results are published after the whole batch is applied
      */
-    private void handleEvent(AccountEvent event) {
-        try {
-            String response = event.processEvent(this);
-            event.getResultConsumer().accept(response);
-        } catch (Exception ex) {
-            LOGGER.error("Problems during event processing", ex);
-            event.getErrorConsumer().accept(ex);
+    private void processBatch(int count) {
+        long batchStart = System.nanoTime();
+        long eventStart = batchStart;
+        for (int i = 0; i < count && failure == null; i++) {
+            AccountEvent event = batch[i];
+            AccountEventSlot slot = batchSlots[i];
+            metrics.recordQueueTime(event != null ? event.getPublishNanos() : slot.getPublishNanos(), batchStart);
+            try {
+                batchResults[i] = event != null ? event.processEvent(this) : process(slot);
+            } catch (Exception ex) {
+                batchErrors[i] = ex;
+            }
+            long eventEnd = System.nanoTime();
+            metrics.recordProcessing(event != null ? event.getType() : slot.getType(), eventEnd - eventStart, batchErrors[i] == null);
+            eventStart = eventEnd;
+        }
+
+        //netted balances reach storage before batch is made durable or visible
+        if (batchCache != null && failure == null) {
+            batchCache.clear();
+        }
+
+        //listeners could make batch durable or visible, results are completed only after that
+        if (failure == null) {
+            try {
+                for (AccountEventListener listener : listeners) {
+                    listener.onBatchProcessed();
+                }
+            } catch (RuntimeException ex) {
+                stop(ex);
+            }
+        }
+
+        //other shards get their part of cross shard transfers only after this batch is completed,
+        //after failure debits of the batch are not durable, so credits are dropped and the whole batch fails
+        if (failure == null) {
+            for (int i = 0; i < outbox.size(); i++) {
+                shard.send(outbox.get(i));
+            }
+        }
+        outbox.clear();
+
+        //dispatched completions are owned by dispatcher thread until they are returned to free list
+        AccountCompletions batchCompletions = resultDispatcher != null ? freeCompletions() : completions;
+        for (int i = 0; i < count; i++) {
+            AccountEvent event = batch[i];
+            AccountEventSlot slot = batchSlots[i];
+            Exception error = failure != null ? failure : batchErrors[i];
+            if (error == null) {
+                //no result means that event was handed over to another shard, which will complete it
+                if (batchResults[i] != null) {
+                    batchCompletions.add(event != null ? event.getResultConsumer() : slot.getResultConsumer(), batchResults[i]);
+                }
+            } else {
+                batchCompletions.addError(event != null ? event.getErrorConsumer() : slot.getErrorConsumer(), error);
+            }
+            batch[i] = null;
+            batchSlots[i] = null;
+            batchResults[i] = null;
+            batchErrors[i] = null;
+        }
+        batchCompletions.setBatchSize(count);
+
+        //consumers are copied out, so slots could be reused before results are completed
+        if (ring != null) {
+            ring.release(ringSequence);
+        }
+
+        if (resultDispatcher == null) {
+            batchCompletions.complete();
+        } else if (batchCompletions.size() == 0) {
+            batchCompletions.recycle();
+        } else if (batchCompletions == completions) {
+            resultDispatcher.completeInline(batchCompletions);
+        } else {
+            resultDispatcher.dispatch(batchCompletions);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Processed batch of {} events", count);
+        }
+    }
+
+    /*
+     * Completions returned by dispatcher, or new ones until there is one per slot of dispatcher queue, then own completions
+     * of processor, which are completed by processor thread as if dispatcher queues were full
+     */
+    private AccountCompletions freeCompletions() {
+        AccountCompletions free = freeCompletions.poll();
+        if (free != null) {
+            return free;
+        }
+        if (allocatedCompletions < freeCompletions.capacity()) {
+            allocatedCompletions++;
+            return new AccountCompletions(batch.length, freeCompletions);
+        }
+        return completions;
+    }
+
+    /*
+     * When destination account belongs to another shard, money leaves source account and travels there as credit event.
+     * Result is completed by destination shard, or by this shard again if credit is refunded
+     */
+    public AccountResult process(AccountTransferEvent accountTransferEvent) {
+        return transfer(accountTransferEvent.getAccountFrom(), accountTransferEvent.getAccountTo(), accountTransferEvent.getAmount(),
+                accountTransferEvent.getIdempotencyKeyHi(), accountTransferEvent.getIdempotencyKeyLo(),
+                accountTransferEvent.getResultConsumer(), accountTransferEvent.getErrorConsumer());
+    }
+
+    /*
+     * Slot is processed in place by the same code as events, nothing is copied out of it
+     */
+    private AccountResult process(AccountEventSlot slot) {
+        switch (slot.getType()) {
+            case CREATE:
+                return create(slot.getAmount(), slot.getIdempotencyKeyHi(), slot.getIdempotencyKeyLo());
+            case INFO:
+                return info(slot.getAccount());
+            case TRANSFER:
+                return transfer(slot.getAccount(), slot.getToAccount(), slot.getAmount(), slot.getIdempotencyKeyHi(), slot.getIdempotencyKeyLo(),
+                        slot.getResultConsumer(), slot.getErrorConsumer());
+            default:
+                throw new IllegalStateException("Unknown slot type " + slot.getType());
+        }
+    }
+
+    /*
+     * Result of cross shard transfer with key is known only when another shard completes it,
+     * so its outcome is sent back to this shard as settle event
+     */
+    private AccountResult transfer(UUID accountFrom, UUID accountTo, long amount, long idempotencyKeyHi, long idempotencyKeyLo,
+                                   Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
+        if (!isIdempotent(idempotencyKeyHi, idempotencyKeyLo)) {
+            return transfer(accountFrom, accountTo, amount, resultConsumer, errorConsumer);
+        }
+        if (shard.owns(accountTo)) {
+            return idempotent(idempotencyKeyHi, idempotencyKeyLo, () -> transfer(accountFrom, accountTo, amount, resultConsumer, errorConsumer));
         }
+        Consumer<AccountResult> settlingResultConsumer = result -> {
+            shard.send(new AccountSettleEvent(accountFrom, idempotencyKeyHi, idempotencyKeyLo, result));
+            resultConsumer.accept(result);
+        };
+        Consumer<Throwable> settlingErrorConsumer = error -> {
+            shard.send(new AccountSettleEvent(accountFrom, idempotencyKeyHi, idempotencyKeyLo, null));
+            errorConsumer.accept(error);
+        };
+        return idempotent(idempotencyKeyHi, idempotencyKeyLo, () -> transfer(accountFrom, accountTo, amount, settlingResultConsumer, settlingErrorConsumer));
     }
 
+    private boolean isIdempotent(long idempotencyKeyHi, long idempotencyKeyLo) {
+        return idempotencyCache != null && (idempotencyKeyHi != 0 || idempotencyKeyLo != 0);
+    }
+
+    /*
+     * Event with known key gets the first result and is not applied again. Only applied events are remembered,
+     * failed event changed nothing, so its key is forgotten and could be retried
+     */
+    private AccountResult idempotent(long idempotencyKeyHi, long idempotencyKeyLo, Supplier<AccountResult> action) {
+        long now = System.nanoTime();
+        int entry = idempotencyCache.find(idempotencyKeyHi, idempotencyKeyLo, now);
+        if (entry != IdempotencyCache.NOT_FOUND) {
+            if (idempotencyCache.isPending(entry)) {
+                throw new IllegalArgumentException("Request with the same idempotency key is in progress");
+            }
+            return idempotencyCache.replay(entry);
+        }
+        entry = idempotencyCache.put(idempotencyKeyHi, idempotencyKeyLo, now);
+        AccountResult result;
+        try {
+            result = action.get();
+        } catch (RuntimeException ex) {
+            idempotencyCache.remove(entry);
+            throw ex;
+        }
+        //no result means that another shard completes it, entry stays pending until settle event
+        if (result != null) {
+            idempotencyCache.complete(entry, result);
+        }
+        return result;
+    }
 
-    public String process(AccountTransferEvent accountTransferEvent) {
-        AccountInfo fromAccount = accountStorage.getByUuid(accountTransferEvent.getAccountFrom());
+    private AccountResult transfer(UUID accountFrom, UUID accountTo, long amount,
+                                   Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
+        if (primitiveStorage != null) {
+            return transferInPlace(accountFrom, accountTo, amount, resultConsumer, errorConsumer);
+        }
+        AccountInfo fromAccount = accountStorage.getByUuid(accountFrom);
         if (fromAccount == null) {
             throw new IllegalArgumentException("from account not present in storage");
         }
 
-        AccountInfo toAccount = accountStorage.getByUuid(accountTransferEvent.getAccountTo());
+        boolean crossShard = !shard.owns(accountTo);
+        AccountInfo toAccount;
+        if (crossShard) {
+            toAccount = null;
+        } else if (fromAccount.getUuid().equals(accountTo)) {
+            //storage could return a copy for each lookup, the same account should be changed only once
+            toAccount = fromAccount;
+        } else {
+            toAccount = accountStorage.getByUuid(accountTo);
+        }
+
+        if (!crossShard && toAccount == null) {
+            throw new IllegalArgumentException("to account not present in storage");
+        }
+
+        //amount is checked by AccountEventValidator before event is published
+        if (fromAccount.getAmount() < amount) {
+            throw new IllegalArgumentException("Not enough money for transfer");
+        }
 
+        if (crossShard) {
+            fromAccount.setAmount(fromAccount.getAmount() - amount);
+            accountStorage.put(fromAccount);
+            long transferId = AccountShardRouter.transferId(shard.getShardId(), ++transferSequence);
+            notifyDebit(transferId, fromAccount, accountTo, amount);
+            outbox.add(new AccountCreditEvent(
+                    resultConsumer,
+                    errorConsumer,
+                    transferId,
+                    fromAccount.getUuid(),
+                    accountTo,
+                    amount,
+                    new AccountInfo(fromAccount.getUuid(), fromAccount.getAmount())));
+            return null;
+        }
+
+        move(fromAccount, toAccount, amount);
+        notifyTransfer(fromAccount, toAccount, amount);
+
+        return AccountResult.of(fromAccount, toAccount);
+    }
+
+    /*
+     * The same as transfer above, balances of primitive storage are checked and changed in place,
+     * so account objects are created only for listeners
+     */
+    private AccountResult transferInPlace(UUID accountFrom, UUID accountTo, long amount,
+                                          Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
+        int from = indexOf(accountFrom);
+        if (from == PrimitiveAccountStorage.NOT_FOUND) {
+            throw new IllegalArgumentException("from account not present in storage");
+        }
+
+        boolean crossShard = !shard.owns(accountTo);
+        //self transfer finds the same index
+        int to = crossShard ? PrimitiveAccountStorage.NOT_FOUND : indexOf(accountTo);
+        if (!crossShard && to == PrimitiveAccountStorage.NOT_FOUND) {
+            throw new IllegalArgumentException("to account not present in storage");
+        }
+
+        long fromAmount = primitiveStorage.balance(from);
+        if (fromAmount < amount) {
+            throw new IllegalArgumentException("Not enough money for transfer");
+        }
+
+        if (crossShard) {
+            fromAmount -= amount;
+            primitiveStorage.balance(from, fromAmount);
+            long transferId = AccountShardRouter.transferId(shard.getShardId(), ++transferSequence);
+            if (listeners.length > 0) {
+                notifyDebit(transferId, new AccountInfo(accountFrom, fromAmount), accountTo, amount);
+            }
+            outbox.add(new AccountCreditEvent(
+                    resultConsumer,
+                    errorConsumer,
+                    transferId,
+                    accountFrom,
+                    accountTo,
+                    amount,
+                    new AccountInfo(accountFrom, fromAmount)));
+            return null;
+        }
+
+        if (to != from) {
+            //overflow is checked before any account is changed
+            long toAmount = Money.add(primitiveStorage.balance(to), amount);
+            primitiveStorage.balance(from, fromAmount - amount);
+            primitiveStorage.balance(to, toAmount);
+        }
+        fromAmount = primitiveStorage.balance(from);
+        long toAmount = primitiveStorage.balance(to);
+        if (listeners.length > 0) {
+            AccountInfo fromAccount = new AccountInfo(accountFrom, fromAmount);
+            notifyTransfer(fromAccount, to == from ? fromAccount : new AccountInfo(accountTo, toAmount), amount);
+        }
+
+        return AccountResult.of(accountFrom, fromAmount, accountTo, toAmount);
+    }
+
+    private int indexOf(UUID account) {
+        return primitiveStorage.indexOf(account.getMostSignificantBits(), account.getLeastSignificantBits());
+    }
+
+    /*
+     * Both accounts are in this shard and source has enough money
+     */
+    private void move(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        if (toAccount != fromAccount) {
+            //overflow is checked before any account is changed
+            long toAmount = Money.add(toAccount.getAmount(), amount);
+            fromAccount.setAmount(fromAccount.getAmount() - amount);
+            toAccount.setAmount(toAmount);
+            accountStorage.put(toAccount);
+            accountStorage.put(fromAccount);
+        }
+    }
+
+    /*
+     * Transfers of batch are applied one after another. Atomic batch is rolled back on the first failed transfer
+     * before any listener is notified, so journal and read view see either the whole batch or nothing
+     */
+    public AccountResult process(AccountBatchTransferEvent accountBatchTransferEvent) {
+        long idempotencyKeyHi = accountBatchTransferEvent.getIdempotencyKeyHi();
+        long idempotencyKeyLo = accountBatchTransferEvent.getIdempotencyKeyLo();
+        if (!isIdempotent(idempotencyKeyHi, idempotencyKeyLo)) {
+            return batchTransfer(accountBatchTransferEvent);
+        }
+        return idempotent(idempotencyKeyHi, idempotencyKeyLo, () -> batchTransfer(accountBatchTransferEvent));
+    }
+
+    private AccountResult batchTransfer(AccountBatchTransferEvent accountBatchTransferEvent) {
+        int size = accountBatchTransferEvent.size();
+        AccountInfo[] fromAccounts = new AccountInfo[size];
+        AccountInfo[] toAccounts = new AccountInfo[size];
+        List<AccountResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            try {
+                applyBatchTransfer(accountBatchTransferEvent, i, fromAccounts, toAccounts);
+                results.add(AccountResult.of(fromAccounts[i], toAccounts[i]));
+            } catch (IllegalArgumentException ex) {
+                if (accountBatchTransferEvent.isAtomic()) {
+                    rollbackBatchTransfers(accountBatchTransferEvent, i);
+                    throw new IllegalArgumentException("Transfer " + i + " of batch failed: " + ex.getMessage());
+                }
+                results.add(AccountResult.failed(String.valueOf(ex.getMessage())));
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (fromAccounts[i] != null) {
+                notifyTransfer(fromAccounts[i], toAccounts[i], accountBatchTransferEvent.getAmount(i));
+            }
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Batch of {} transfers applied, atomic {}", size, accountBatchTransferEvent.isAtomic());
+        }
+        return AccountResult.batch(results);
+    }
+
+    private void applyBatchTransfer(AccountBatchTransferEvent accountBatchTransferEvent, int index, AccountInfo[] fromAccounts, AccountInfo[] toAccounts) {
+        UUID accountFrom = accountBatchTransferEvent.getAccountFrom(index);
+        UUID accountTo = accountBatchTransferEvent.getAccountTo(index);
+        long amount = accountBatchTransferEvent.getAmount(index);
+        if (!shard.owns(accountFrom) || !shard.owns(accountTo)) {
+            throw new IllegalArgumentException("accounts of batch transfer should belong to the same shard");
+        }
+        AccountInfo fromAccount = accountStorage.getByUuid(accountFrom);
+        if (fromAccount == null) {
+            throw new IllegalArgumentException("from account not present in storage");
+        }
+        AccountInfo toAccount = accountFrom.equals(accountTo) ? fromAccount : accountStorage.getByUuid(accountTo);
         if (toAccount == null) {
             throw new IllegalArgumentException("to account not present in storage");
         }
+        if (amount < 0) {
+            throw new IllegalArgumentException("Should not be less then 0");
+        }
+        if (fromAccount.getAmount() < amount) {
+            throw new IllegalArgumentException("Not enough money for transfer");
+        }
+        move(fromAccount, toAccount, amount);
+        //listeners are notified after the whole batch, hash map storage returns the same instance for every lookup,
+        //so each item keeps copies with balances right after it
+        AccountInfo fromBalance = new AccountInfo(fromAccount.getUuid(), fromAccount.getAmount());
+        fromAccounts[index] = fromBalance;
+        toAccounts[index] = toAccount == fromAccount ? fromBalance : new AccountInfo(toAccount.getUuid(), toAccount.getAmount());
+    }
+
+    /*
+     * Applied transfers are reverted in reverse order, reverse transfer restores previous amounts, so it can't fail
+     */
+    private void rollbackBatchTransfers(AccountBatchTransferEvent accountBatchTransferEvent, int applied) {
+        for (int i = applied - 1; i >= 0; i--) {
+            UUID accountFrom = accountBatchTransferEvent.getAccountFrom(i);
+            UUID accountTo = accountBatchTransferEvent.getAccountTo(i);
+            if (accountFrom.equals(accountTo)) {
+                continue;
+            }
+            long amount = accountBatchTransferEvent.getAmount(i);
+            AccountInfo fromAccount = accountStorage.getByUuid(accountFrom);
+            AccountInfo toAccount = accountStorage.getByUuid(accountTo);
+            fromAccount.setAmount(fromAccount.getAmount() + amount);
+            toAccount.setAmount(toAccount.getAmount() - amount);
+            accountStorage.put(fromAccount);
+            accountStorage.put(toAccount);
+        }
+    }
 
-        BigDecimal amount = accountTransferEvent.getAmount();
+    /*
+     * Accounts of import chunk are inserted one by one, account which can't be inserted fails on its own.
+     * Chunk size bounds processor pause for other events, see AccountImporter
+     */
+    public AccountResult process(AccountImportEvent accountImportEvent) {
+        int size = accountImportEvent.size();
+        List<AccountResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            try {
+                results.add(AccountResult.of(importAccount(accountImportEvent.getAccount(i), accountImportEvent.getAmount(i))));
+            } catch (IllegalArgumentException ex) {
+                results.add(AccountResult.failed(String.valueOf(ex.getMessage())));
+            }
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Import of {} accounts processed", size);
+        }
+        return AccountResult.batch(results);
+    }
 
-        if (amount.compareTo(BigDecimal.ZERO) < 0) {
+    private AccountInfo importAccount(UUID uuid, long amount) {
+        if (amount < 0) {
             throw new IllegalArgumentException("Should not be less then 0");
         }
+        if (!shard.owns(uuid)) {
+            throw new IllegalArgumentException("imported account should belong to the shard");
+        }
+        if (accountStorage.getByUuid(uuid) != null) {
+            throw new IllegalArgumentException("account already present in storage");
+        }
+        AccountInfo accountInfo = new AccountInfo(uuid, amount);
+        accountStorage.put(accountInfo);
+        notifyCreated(accountInfo);
+        return accountInfo;
+    }
 
-        if (fromAccount.getAmount().compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Not enough money for transfer");
+    /*
+     * Cross shard transfer, step 2: money arrives to destination account, or goes back to source account if there is no destination
+     */
+    public AccountResult process(AccountCreditEvent accountCreditEvent) {
+        if (primitiveStorage != null) {
+            return creditInPlace(accountCreditEvent);
+        }
+        AccountInfo toAccount = accountStorage.getByUuid(accountCreditEvent.getAccountTo());
+        if (toAccount == null) {
+            return refund(accountCreditEvent, "to account not present in storage");
+        }
+        if (toAccount.getAmount() > Long.MAX_VALUE - accountCreditEvent.getAmount()) {
+            return refund(accountCreditEvent, "Amount overflow");
+        }
+
+        toAccount.setAmount(toAccount.getAmount() + accountCreditEvent.getAmount());
+        accountStorage.put(toAccount);
+        notifyCredit(accountCreditEvent.getTransferId(), toAccount, accountCreditEvent.getAccountFrom(), accountCreditEvent.getAmount());
+
+        return AccountResult.of(accountCreditEvent.getDebitedAccount(), toAccount);
+    }
+
+    private AccountResult creditInPlace(AccountCreditEvent accountCreditEvent) {
+        UUID accountTo = accountCreditEvent.getAccountTo();
+        int to = indexOf(accountTo);
+        if (to == PrimitiveAccountStorage.NOT_FOUND) {
+            return refund(accountCreditEvent, "to account not present in storage");
+        }
+        long toAmount = primitiveStorage.balance(to);
+        if (toAmount > Long.MAX_VALUE - accountCreditEvent.getAmount()) {
+            return refund(accountCreditEvent, "Amount overflow");
+        }
+
+        toAmount += accountCreditEvent.getAmount();
+        primitiveStorage.balance(to, toAmount);
+        if (listeners.length > 0) {
+            notifyCredit(accountCreditEvent.getTransferId(), new AccountInfo(accountTo, toAmount), accountCreditEvent.getAccountFrom(),
+                    accountCreditEvent.getAmount());
+        }
+
+        AccountInfo debitedAccount = accountCreditEvent.getDebitedAccount();
+        return AccountResult.of(debitedAccount.getUuid(), debitedAccount.getAmount(), accountTo, toAmount);
+    }
+
+    private AccountResult refund(AccountCreditEvent accountCreditEvent, String reason) {
+        outbox.add(new AccountRefundEvent(
+                accountCreditEvent.getResultConsumer(),
+                accountCreditEvent.getErrorConsumer(),
+                accountCreditEvent.getTransferId(),
+                accountCreditEvent.getAccountFrom(),
+                accountCreditEvent.getAmount(),
+                reason));
+        return null;
+    }
+
+    /*
+     * Cross shard transfer, compensation: source account gets money back and transfer fails
+     */
+    public AccountResult process(AccountRefundEvent accountRefundEvent) {
+        if (primitiveStorage != null) {
+            int from = indexOf(accountRefundEvent.getAccount());
+            if (from == PrimitiveAccountStorage.NOT_FOUND) {
+                throw new IllegalStateException("Refunded account " + accountRefundEvent.getAccount() + " not present in storage");
+            }
+            long fromAmount = Money.add(primitiveStorage.balance(from), accountRefundEvent.getAmount());
+            primitiveStorage.balance(from, fromAmount);
+            if (listeners.length > 0) {
+                notifyCredit(accountRefundEvent.getTransferId(), new AccountInfo(accountRefundEvent.getAccount(), fromAmount), null,
+                        accountRefundEvent.getAmount());
+            }
+            throw new IllegalArgumentException(accountRefundEvent.getReason());
+        }
+
+        AccountInfo fromAccount = accountStorage.getByUuid(accountRefundEvent.getAccount());
+        if (fromAccount == null) {
+            //accounts are never removed, so debited account should be always present
+            throw new IllegalStateException("Refunded account " + accountRefundEvent.getAccount() + " not present in storage");
         }
 
-        fromAccount.setAmount(fromAccount.getAmount().subtract(amount));
-        toAccount.setAmount(toAccount.getAmount().add(amount));
+        fromAccount.setAmount(Money.add(fromAccount.getAmount(), accountRefundEvent.getAmount()));
+        accountStorage.put(fromAccount);
+        notifyCredit(accountRefundEvent.getTransferId(), fromAccount, null, accountRefundEvent.getAmount());
+
+        throw new IllegalArgumentException(accountRefundEvent.getReason());
+    }
+
+    /*
+     * Cross shard transfer with key, outcome: pending entry gets result, or is forgotten if transfer was refunded
+     */
+    public AccountResult process(AccountSettleEvent accountSettleEvent) {
+        if (idempotencyCache == null) {
+            return null;
+        }
+        int entry = idempotencyCache.find(accountSettleEvent.getIdempotencyKeyHi(), accountSettleEvent.getIdempotencyKeyLo(), System.nanoTime());
+        //entry could be already evicted
+        if (entry != IdempotencyCache.NOT_FOUND && idempotencyCache.isPending(entry)) {
+            if (accountSettleEvent.getResult() != null) {
+                idempotencyCache.complete(entry, accountSettleEvent.getResult());
+            } else {
+                idempotencyCache.remove(entry);
+            }
+        }
+        return null;
+    }
 
-        LOGGER.info("Transfer from account {} to account {}, amount {}", fromAccount.getUuid(), toAccount.getUuid(), amount);
+    /*
+     * Task sees storage between events, there is no result to complete
+     */
+    public AccountResult process(AccountTaskEvent accountTaskEvent) {
+        accountTaskEvent.getTask().accept(accountStorage);
+        return null;
+    }
 
-        return gson.toJson(ImmutableList.of(fromAccount, toAccount));
+    public AccountResult process(AccountInfoEvent accountInfoEvent) {
+        return info(accountInfoEvent.getAccount());
     }
 
-    public String process(AccountInfoEvent accountInfoEvent) {
-        AccountInfo accountInfo = accountStorage.getByUuid(accountInfoEvent.getAccount());
+    private AccountResult info(UUID account) {
+        if (primitiveStorage != null) {
+            int index = indexOf(account);
+            if (index == PrimitiveAccountStorage.NOT_FOUND) {
+                throw new IllegalArgumentException("account not present");
+            }
+            return AccountResult.of(account, primitiveStorage.balance(index));
+        }
+        AccountInfo accountInfo = accountStorage.getByUuid(account);
         if (accountInfo == null) {
             throw new IllegalArgumentException("account not present");
         }
 
-        LOGGER.info("{} available amount for account {}", accountInfo.getAmount(), accountInfo.getUuid());
-        return gson.toJson(accountInfo);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} available amount for account {}", accountInfo.getAmount(), accountInfo.getUuid());
+        }
+        return AccountResult.of(accountInfo);
     }
 
-    public String process(AccountCreateEvent accountCreateEvent) {
-        if (accountCreateEvent.getAmount().compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Should not be less then 0");
+    public AccountResult process(AccountCreateEvent accountCreateEvent) {
+        return create(accountCreateEvent.getAmount(), accountCreateEvent.getIdempotencyKeyHi(), accountCreateEvent.getIdempotencyKeyLo());
+    }
+
+    private AccountResult create(long amount, long idempotencyKeyHi, long idempotencyKeyLo) {
+        if (!isIdempotent(idempotencyKeyHi, idempotencyKeyLo)) {
+            return create(amount);
         }
-        UUID uuid = UUID.randomUUID();
-        AccountInfo accountInfo = new AccountInfo(uuid, accountCreateEvent.getAmount());
+        return idempotent(idempotencyKeyHi, idempotencyKeyLo, () -> create(amount));
+    }
+
+    private AccountResult create(long amount) {
+        UUID uuid = shard.newAccountUuid();
+        AccountInfo accountInfo = new AccountInfo(uuid, amount);
         accountStorage.put(accountInfo);
+        notifyCreated(accountInfo);
+        return AccountResult.of(accountInfo);
+    }
+
+    /*
+     * Change is already in storage when listeners are notified, so if journal or any other listener fails, storage and outbox
+     * are ahead of what was recorded. Processor stops applying events, state is recovered from journal on restart
+     */
+    private void notifyCreated(AccountInfo account) {
+        try {
+            for (AccountEventListener listener : listeners) {
+                listener.onAccountCreated(account);
+            }
+        } catch (RuntimeException ex) {
+            throw stop(ex);
+        }
+    }
+
+    private void notifyTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        try {
+            for (AccountEventListener listener : listeners) {
+                listener.onTransfer(fromAccount, toAccount, amount);
+            }
+        } catch (RuntimeException ex) {
+            throw stop(ex);
+        }
+    }
+
+    private void notifyDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+        try {
+            for (AccountEventListener listener : listeners) {
+                listener.onDebit(transferId, fromAccount, toAccount, amount);
+            }
+        } catch (RuntimeException ex) {
+            throw stop(ex);
+        }
+    }
+
+    private void notifyCredit(long transferId, AccountInfo account, UUID fromAccount, long amount) {
+        try {
+            for (AccountEventListener listener : listeners) {
+                listener.onCredit(transferId, account, fromAccount, amount);
+            }
+        } catch (RuntimeException ex) {
+            throw stop(ex);
+        }
+    }
 
-        LOGGER.info("{} account created with amount {}", uuid, accountCreateEvent.getAmount());
-        return gson.toJson(accountInfo);
+    private IllegalStateException stop(RuntimeException ex) {
+        if (failure == null) {
+            LOGGER.error("Listener failed, processor is stopped until it is recovered from journal", ex);
+            failure = new IllegalStateException("Processor is stopped after listener failure", ex);
+        }
+        return failure;
     }
 
+    /*
+     * Waits for the current batch to be completed, so nothing is applied after close
+     */
     @Override
     public void close() {
         running.set(false);
         executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Processor thread was not stopped in {} seconds", CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Thread was interrupted");
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -1,8 +1,37 @@
 package com.transfer.core;
 
 import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountEventType;
+
+import java.util.UUID;
 
 public interface AccountEventPublisher {
 
+    /*
+     * Returns false if event was not accepted, because processor queue is full or event is not admitted
+     */
     boolean publishEvent(AccountEvent accountEvent);
+
+    /*
+     * True if events could be published through reusable slots, see claim
+     */
+    default boolean hasEventRing() {
+        return false;
+    }
+
+    /*
+     * Claims slot of event ring, which should be filled in place and then published, null if ring stays full or event is not admitted.
+     * type - type of event which will be written to slot, defines its priority
+     * routingAccount - account which defines shard of the event, null for account creation
+     */
+    default AccountEventSlot claim(AccountEventType type, UUID routingAccount) {
+        throw new UnsupportedOperationException("Publisher has no event ring");
+    }
+
+    /*
+     * Publishes sequence of claimed and filled slot, every claimed slot should be published
+     */
+    default void publish(AccountEventSlot slot) {
+        throw new UnsupportedOperationException("Publisher has no event ring");
+    }
 }
@@ -4,27 +4,145 @@ import com.transfer.core.event.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class AccountEventPublisherImpl implements AccountEventPublisher {
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountEventPublisherImpl.class);
 
-    private final BlockingQueue<AccountEvent> eventBus;
+    private static final long OFFER_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long OFFER_RETRY_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
 
-    public AccountEventPublisherImpl(BlockingQueue<AccountEvent> eventBus) {
+    private final Queue<AccountEvent> eventBus;
+    private final AccountEventRing ring;
+    private final AdmissionPolicy admissionPolicy;
+    //first attempt failed because queue or ring was full
+    private final AtomicLong fullCount = new AtomicLong();
+    //event was not published during whole timeout
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public AccountEventPublisherImpl(Queue<AccountEvent> eventBus) {
+        this(eventBus, null);
+    }
+
+    /*
+     * ring - optional ring of reusable slots consumed by the same processor as event queue
+     */
+    public AccountEventPublisherImpl(Queue<AccountEvent> eventBus, AccountEventRing ring) {
+        this(eventBus, ring, null);
+    }
+
+    /*
+     * admissionPolicy - if present, events are never waited for, they are rejected at once above high-water mark of their priority
+     * or when queue is full, otherwise publisher retries during offer timeout
+     */
+    public AccountEventPublisherImpl(Queue<AccountEvent> eventBus, AccountEventRing ring, AdmissionPolicy admissionPolicy) {
         this.eventBus = eventBus;
+        this.ring = ring;
+        this.admissionPolicy = admissionPolicy;
     }
 
     /*
      * Thread-safe could be called from multiple threads
+     * Queue is non blocking, so when it is full publisher retries during offer timeout before giving up,
+     * with admission policy publisher never waits
      */
     @Override
     public boolean publishEvent(AccountEvent accountEvent) {
-        try {
-            return eventBus.offer(accountEvent, 100, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
+        if (admissionPolicy != null && !admissionPolicy.admits(accountEvent.getType(), getQueueDepth())) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        accountEvent.setPublishNanos(System.nanoTime());
+        if (eventBus.offer(accountEvent)) {
+            return true;
+        }
+        fullCount.incrementAndGet();
+        if (admissionPolicy != null) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        long deadline = System.nanoTime() + OFFER_TIMEOUT_NANOS;
+        while (backOff(deadline)) {
+            //time in queue is counted from successful offer, retries are publisher wait
+            accountEvent.setPublishNanos(System.nanoTime());
+            if (eventBus.offer(accountEvent)) {
+                return true;
+            }
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public boolean hasEventRing() {
+        return ring != null;
+    }
+
+    /*
+     * Thread-safe, ring is full when processor is behind, so claim is retried during the same timeout as offer,
+     * unless there is admission policy
+     */
+    @Override
+    public AccountEventSlot claim(AccountEventType type, UUID routingAccount) {
+        if (ring == null) {
+            throw new UnsupportedOperationException("Publisher has no event ring");
+        }
+        if (admissionPolicy != null && !admissionPolicy.admits(type, getQueueDepth())) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        AccountEventSlot slot = ring.tryClaim();
+        if (slot != null) {
+            return slot;
+        }
+        fullCount.incrementAndGet();
+        if (admissionPolicy != null) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        long deadline = System.nanoTime() + OFFER_TIMEOUT_NANOS;
+        while (backOff(deadline)) {
+            if ((slot = ring.tryClaim()) != null) {
+                return slot;
+            }
+        }
+        rejectedCount.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void publish(AccountEventSlot slot) {
+        slot.getRing().publish(slot.getSequence());
+    }
+
+    public long getFullCount() {
+        return fullCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /*
+     * Sampled number of events waiting for processor in queue and ring
+     */
+    public int getQueueDepth() {
+        return eventBus.size() + (ring == null ? 0 : ring.size());
+    }
+
+    private static boolean backOff(long deadline) {
+        if (System.nanoTime() >= deadline) {
+            return false;
+        }
+        LockSupport.parkNanos(OFFER_RETRY_PARK_NANOS);
+        if (Thread.currentThread().isInterrupted()) {
             LOGGER.warn("Thread was interrupted");
             return false;
         }
+        return true;
     }
 }
@@ -0,0 +1,103 @@
+package com.transfer.core;
+
+import org.agrona.BitUtil;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Ring of preallocated event slots with many publishers and single consumer, in the way of Disruptor.
+ * Publisher claims next sequence, fills its slot and publishes it, consumer reads slots strictly in sequence order
+ * and releases them when results are completed. Nothing is allocated per event, neither by publisher nor by consumer.
+ *
+ * Claimed slot should always be published, consumer can't skip it and waits for it forever
+ */
+public class AccountEventRing {
+
+    private final AccountEventSlot[] slots;
+    private final int mask;
+    private final int indexShift;
+    //next sequence to claim
+    private final AtomicLong claimSequence = new AtomicLong();
+    //all sequences before it are consumed and their slots could be claimed again
+    private final AtomicLong releasedSequence = new AtomicLong();
+    //round of the last publish of each slot, so slot published in the previous round is not read again
+    private final AtomicIntegerArray publishedRounds;
+
+    public AccountEventRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ring capacity should be positive");
+        }
+        int size = BitUtil.findNextPositivePowerOfTwo(capacity);
+        this.slots = new AccountEventSlot[size];
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.publishedRounds = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AccountEventSlot(this);
+            publishedRounds.set(i, -1);
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /*
+     * Number of claimed slots which are not released yet, could be read from any thread
+     */
+    public int size() {
+        return (int) Math.max(0, claimSequence.get() - releasedSequence.get());
+    }
+
+    /*
+     * Thread-safe, returns slot of the next sequence, or null if ring is full
+     */
+    public AccountEventSlot tryClaim() {
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (sequence - releasedSequence.get() >= slots.length) {
+                return null;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+        AccountEventSlot slot = slots[index(sequence)];
+        slot.claimed(sequence);
+        return slot;
+    }
+
+    /*
+     * Makes filled slot visible to consumer
+     */
+    public void publish(long sequence) {
+        int index = index(sequence);
+        slots[index].published(System.nanoTime());
+        publishedRounds.lazySet(index, round(sequence));
+    }
+
+    /*
+     * Consumer only, returns published slot of the sequence or null if it is not published yet
+     */
+    AccountEventSlot poll(long sequence) {
+        int index = index(sequence);
+        return publishedRounds.get(index) == round(sequence) ? slots[index] : null;
+    }
+
+    /*
+     * Consumer only, slots of all sequences before given one could be claimed again
+     */
+    void release(long sequence) {
+        for (long i = releasedSequence.get(); i < sequence; i++) {
+            slots[index(i)].clear();
+        }
+        releasedSequence.lazySet(sequence);
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private int round(long sequence) {
+        return (int) (sequence >>> indexShift);
+    }
+}
@@ -0,0 +1,126 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountEventType;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Mutable event preallocated in AccountEventRing. Publisher fills claimed slot in place and publishes its sequence,
+ * processor reads it and clears references after result is completed, then slot is reused for another sequence.
+ * Fields are plain, they are made visible by publish and release of the ring
+ */
+public final class AccountEventSlot {
+
+    private final AccountEventRing ring;
+    private long sequence;
+    private long publishNanos;
+    private AccountEventType type;
+    private UUID account;
+    private UUID toAccount;
+    private long amount;
+    private long idempotencyKeyHi;
+    private long idempotencyKeyLo;
+    private Consumer<AccountResult> resultConsumer;
+    private Consumer<Throwable> errorConsumer;
+
+    AccountEventSlot(AccountEventRing ring) {
+        this.ring = ring;
+    }
+
+    /*
+     * Values of create and transfer should be checked by AccountEventValidator before slot is claimed
+     */
+    public void setCreate(long amount, Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
+        set(AccountEventType.CREATE, null, null, amount, resultConsumer, errorConsumer);
+    }
+
+    public void setInfo(UUID account, Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
+        set(AccountEventType.INFO, account, null, 0, resultConsumer, errorConsumer);
+    }
+
+    public void setTransfer(UUID fromAccount, UUID toAccount, long amount, Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
+        set(AccountEventType.TRANSFER, fromAccount, toAccount, amount, resultConsumer, errorConsumer);
+    }
+
+    /*
+     * Should be called after slot is filled, see AccountEvent
+     */
+    public void setIdempotencyKey(long idempotencyKeyHi, long idempotencyKeyLo) {
+        this.idempotencyKeyHi = idempotencyKeyHi;
+        this.idempotencyKeyLo = idempotencyKeyLo;
+    }
+
+    private void set(AccountEventType type, UUID account, UUID toAccount, long amount, Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
+        this.type = type;
+        this.idempotencyKeyHi = 0;
+        this.idempotencyKeyLo = 0;
+        this.account = account;
+        this.toAccount = toAccount;
+        this.amount = amount;
+        this.resultConsumer = resultConsumer;
+        this.errorConsumer = errorConsumer;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public AccountEventType getType() {
+        return type;
+    }
+
+    /*
+     * Source account for transfer, requested account for info, null for create
+     */
+    public UUID getAccount() {
+        return account;
+    }
+
+    public UUID getToAccount() {
+        return toAccount;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getIdempotencyKeyHi() {
+        return idempotencyKeyHi;
+    }
+
+    public long getIdempotencyKeyLo() {
+        return idempotencyKeyLo;
+    }
+
+    public Consumer<AccountResult> getResultConsumer() {
+        return resultConsumer;
+    }
+
+    public Consumer<Throwable> getErrorConsumer() {
+        return errorConsumer;
+    }
+
+    /*
+     * Time when slot was published, see AccountEvent
+     */
+    public long getPublishNanos() {
+        return publishNanos;
+    }
+
+    AccountEventRing getRing() {
+        return ring;
+    }
+
+    void claimed(long sequence) {
+        this.sequence = sequence;
+    }
+
+    void published(long publishNanos) {
+        this.publishNanos = publishNanos;
+    }
+
+    void clear() {
+        set(null, null, null, 0, null, null);
+    }
+}
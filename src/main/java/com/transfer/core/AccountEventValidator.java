@@ -0,0 +1,49 @@
+package com.transfer.core;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Checks of request which do not depend on storage, they are done by thread which builds event (http or binary thread),
+ * so processor thread checks only balances and presence of accounts. Slot should be checked before it is claimed,
+ * because claimed slot is always published
+ */
+public final class AccountEventValidator {
+
+    private static final LongAdder REJECTED = new LongAdder();
+
+    private AccountEventValidator() {
+    }
+
+    public static void validateCreate(long amount) {
+        validateAmount(amount);
+    }
+
+    public static void validateTransfer(UUID fromAccount, UUID toAccount, long amount) {
+        if (fromAccount == null) {
+            reject("from account should be set");
+        }
+        if (toAccount == null) {
+            reject("to account should be set");
+        }
+        validateAmount(amount);
+    }
+
+    /*
+     * Requests which failed validation, they never reached processor queue
+     */
+    public static long getRejectedCount() {
+        return REJECTED.sum();
+    }
+
+    private static void validateAmount(long amount) {
+        if (amount < 0) {
+            reject("Should not be less then 0");
+        }
+    }
+
+    private static void reject(String message) {
+        REJECTED.increment();
+        throw new IllegalArgumentException(message);
+    }
+}
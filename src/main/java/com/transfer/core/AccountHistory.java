@@ -0,0 +1,261 @@
+package com.transfer.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Recent balance changes of every account of one shard, written by processor thread as listener and read by any thread without locks.
+ * Every account has fixed ring of the last entriesPerAccount changes, older ones are overwritten, so memory per account is
+ * 48 * entriesPerAccount bytes plus index slot, and recording a change allocates nothing.
+ *
+ * Record of account is ring of entries [sequence << 8 | type][time millis][counterparty msb][counterparty lsb][amount][balance].
+ * Records are kept in segments of long arrays, accounts are found by open addressing index of [uuid msb][uuid lsb][record][head] slots,
+ * published the same way as AccountReadView. Head is number of changes written, it is next to the key, so change of account
+ * touches only its index slot and one entry. Writer marks entry as being written before it is changed and stores its
+ * sequence after that, reader checks sequence before and after copying entry, so overwritten entry is never returned
+ */
+public class AccountHistory implements AccountEventListener, AccountHistoryReader {
+
+    public static final int DEFAULT_ENTRIES_PER_ACCOUNT = 16;
+
+    private static final int SEGMENT_RECORDS = 1024;
+    private static final int ENTRY_SIZE = 6;
+    private static final int HEADER = 0;
+    private static final int TIME = 1;
+    private static final int COUNTERPARTY_MSB = 2;
+    private static final int COUNTERPARTY_LSB = 3;
+    private static final int AMOUNT = 4;
+    private static final int BALANCE = 5;
+    private static final long WRITING = -1;
+    private static final int TYPE_BITS = 8;
+
+    private static final int SLOT_SIZE = 4;
+    private static final int MSB = 0;
+    private static final int LSB = 1;
+    private static final int RECORD = 2;
+    private static final int HEAD = 3;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int entriesPerAccount;
+    private final int recordSize;
+    private volatile AtomicLongArray[] segments = new AtomicLongArray[0];
+    private volatile AtomicLongArray index;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public AccountHistory() {
+        this(DEFAULT_ENTRIES_PER_ACCOUNT);
+    }
+
+    public AccountHistory(int entriesPerAccount) {
+        if (entriesPerAccount < 1) {
+            throw new IllegalArgumentException("History should keep at least one entry per account");
+        }
+        this.entriesPerAccount = entriesPerAccount;
+        this.recordSize = entriesPerAccount * ENTRY_SIZE;
+        allocate(1024);
+    }
+
+    public int getEntriesPerAccount() {
+        return entriesPerAccount;
+    }
+
+    /*
+     * Number of accounts with history
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void onAccountCreated(AccountInfo account) {
+        record(account.getUuid(), AccountHistoryEntry.Type.CREATE, System.currentTimeMillis(), null, account.getAmount(), account.getAmount());
+    }
+
+    @Override
+    public void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        long now = System.currentTimeMillis();
+        record(fromAccount.getUuid(), AccountHistoryEntry.Type.TRANSFER, now, toAccount.getUuid(), -amount, fromAccount.getAmount());
+        record(toAccount.getUuid(), AccountHistoryEntry.Type.TRANSFER, now, fromAccount.getUuid(), amount, toAccount.getAmount());
+    }
+
+    @Override
+    public void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+        record(fromAccount.getUuid(), AccountHistoryEntry.Type.TRANSFER, System.currentTimeMillis(), toAccount, -amount, fromAccount.getAmount());
+    }
+
+    /*
+     * Credit with unknown source account, e.g. replicated credit of transfer whose debit was not seen
+     */
+    @Override
+    public void onCredit(long transferId, AccountInfo account, long amount) {
+        record(account.getUuid(), AccountHistoryEntry.Type.TRANSFER, System.currentTimeMillis(), null, amount, account.getAmount());
+    }
+
+    @Override
+    public void onCredit(long transferId, AccountInfo account, UUID fromAccount, long amount) {
+        AccountHistoryEntry.Type type = fromAccount == null ? AccountHistoryEntry.Type.REFUND : AccountHistoryEntry.Type.TRANSFER;
+        record(account.getUuid(), type, System.currentTimeMillis(), fromAccount, amount, account.getAmount());
+    }
+
+    @Override
+    public Page getHistory(UUID account, long cursor, int limit) {
+        List<AccountHistoryEntry> entries = new ArrayList<>(Math.min(Math.max(limit, 0), entriesPerAccount));
+        AtomicLongArray current = index;
+        int slot = find(current, account.getMostSignificantBits(), account.getLeastSignificantBits());
+        if (slot < 0) {
+            return new Page(entries, 0);
+        }
+        long record = current.getAcquire(slot + RECORD);
+        long head = current.getAcquire(slot + HEAD);
+        AtomicLongArray segment = segments[(int) (record / SEGMENT_RECORDS)];
+        int base = (int) (record % SEGMENT_RECORDS) * recordSize;
+        long sequence = cursor <= 0 || cursor > head ? head : cursor - 1;
+        long oldest = Math.max(1, head - entriesPerAccount + 1);
+        for (; sequence >= oldest && entries.size() < limit; sequence--) {
+            AccountHistoryEntry entry = read(segment, base, sequence);
+            if (entry == null) {
+                //writer went around the ring, older entries are overwritten too
+                return new Page(entries, 0);
+            }
+            entries.add(entry);
+        }
+        return new Page(entries, sequence >= oldest ? sequence + 1 : 0);
+    }
+
+    private AccountHistoryEntry read(AtomicLongArray segment, int base, long sequence) {
+        int offset = entryOffset(base, sequence);
+        long header = segment.getAcquire(offset + HEADER);
+        if (header >>> TYPE_BITS != sequence) {
+            return null;
+        }
+        long time = segment.getAcquire(offset + TIME);
+        long counterpartyMsb = segment.getAcquire(offset + COUNTERPARTY_MSB);
+        long counterpartyLsb = segment.getAcquire(offset + COUNTERPARTY_LSB);
+        long amount = segment.getAcquire(offset + AMOUNT);
+        long balance = segment.getAcquire(offset + BALANCE);
+        if (segment.getAcquire(offset + HEADER) != header) {
+            return null;
+        }
+        UUID counterparty = counterpartyMsb == 0 && counterpartyLsb == 0 ? null : new UUID(counterpartyMsb, counterpartyLsb);
+        return new AccountHistoryEntry(sequence, AccountHistoryEntry.Type.of((int) (header & ((1 << TYPE_BITS) - 1))), time, counterparty,
+                amount, balance);
+    }
+
+    /*
+     * Only from processor thread
+     */
+    private void record(UUID account, AccountHistoryEntry.Type type, long time, UUID counterparty, long amount, long balance) {
+        long msb = account.getMostSignificantBits();
+        long lsb = account.getLeastSignificantBits();
+        int slot = find(index, msb, lsb);
+        if (slot < 0) {
+            slot = add(msb, lsb);
+        }
+        long record = index.getPlain(slot + RECORD);
+        long sequence = index.getPlain(slot + HEAD) + 1;
+        AtomicLongArray segment = segments[(int) (record / SEGMENT_RECORDS)];
+        int offset = entryOffset((int) (record % SEGMENT_RECORDS) * recordSize, sequence);
+        //release stores of fields keep them after the mark, so reader which sees any of them sees the mark as well
+        segment.setOpaque(offset + HEADER, WRITING);
+        segment.setRelease(offset + TIME, time);
+        segment.setRelease(offset + COUNTERPARTY_MSB, counterparty == null ? 0 : counterparty.getMostSignificantBits());
+        segment.setRelease(offset + COUNTERPARTY_LSB, counterparty == null ? 0 : counterparty.getLeastSignificantBits());
+        segment.setRelease(offset + AMOUNT, amount);
+        segment.setRelease(offset + BALANCE, balance);
+        segment.setRelease(offset + HEADER, sequence << TYPE_BITS | type.ordinal());
+        index.setRelease(slot + HEAD, sequence);
+    }
+
+    private int entryOffset(int base, long sequence) {
+        return base + (int) ((sequence - 1) % entriesPerAccount) * ENTRY_SIZE;
+    }
+
+    /*
+     * Returns index slot of account, or -1 if account has no history
+     */
+    private static int find(AtomicLongArray index, long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            return -1;
+        }
+        int capacity = index.length() / SLOT_SIZE;
+        int slot = slot(msb, lsb, capacity - 1);
+        for (int probes = 0; probes < capacity; probes++) {
+            long slotMsb = index.getAcquire(slot + MSB);
+            long slotLsb = index.getAcquire(slot + LSB);
+            if (slotMsb == msb && slotLsb == lsb) {
+                return slot;
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                return -1;
+            }
+            slot = next(slot, index.length());
+        }
+        return -1;
+    }
+
+    /*
+     * New record is zeroed and head is 0, so it has no entries. Segment is published before account is put into index
+     */
+    private int add(long msb, long lsb) {
+        long record = size;
+        if (record / SEGMENT_RECORDS == segments.length) {
+            AtomicLongArray[] newSegments = Arrays.copyOf(segments, segments.length + 1);
+            newSegments[segments.length] = new AtomicLongArray(SEGMENT_RECORDS * recordSize);
+            segments = newSegments;
+        }
+        if (size >= resizeThreshold) {
+            resize();
+        }
+        size++;
+        return insert(index, mask, msb, lsb, record, 0);
+    }
+
+    private void resize() {
+        AtomicLongArray oldIndex = index;
+        AtomicLongArray newIndex = new AtomicLongArray(oldIndex.length() * 2);
+        int newMask = newIndex.length() / SLOT_SIZE - 1;
+        for (int slot = 0; slot < oldIndex.length(); slot += SLOT_SIZE) {
+            long msb = oldIndex.getPlain(slot + MSB);
+            long lsb = oldIndex.getPlain(slot + LSB);
+            if (msb != 0 || lsb != 0) {
+                insert(newIndex, newMask, msb, lsb, oldIndex.getPlain(slot + RECORD), oldIndex.getPlain(slot + HEAD));
+            }
+        }
+        this.mask = newMask;
+        this.resizeThreshold = (int) ((newMask + 1) * LOAD_FACTOR);
+        //volatile write publishes the whole filled index
+        this.index = newIndex;
+    }
+
+    private static int insert(AtomicLongArray index, int mask, long msb, long lsb, long record, long head) {
+        int slot = slot(msb, lsb, mask);
+        while (index.getPlain(slot + MSB) != 0 || index.getPlain(slot + LSB) != 0) {
+            slot = next(slot, index.length());
+        }
+        index.setRelease(slot + RECORD, record);
+        index.setRelease(slot + HEAD, head);
+        index.setRelease(slot + LSB, lsb);
+        index.setRelease(slot + MSB, msb);
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        this.index = new AtomicLongArray(capacity * SLOT_SIZE);
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int next(int slot, int length) {
+        slot += SLOT_SIZE;
+        return slot == length ? 0 : slot;
+    }
+
+    private static int slot(long msb, long lsb, int mask) {
+        return (PrimitiveAccountStorage.hash(msb, lsb) & mask) * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,81 @@
+package com.transfer.core;
+
+import java.util.UUID;
+
+/*
+ * One applied change of account balance, copied out of AccountHistory by reader.
+ * Amount is signed change of this account, balance is the account balance right after the change
+ */
+public class AccountHistoryEntry {
+
+    public enum Type {
+        CREATE, TRANSFER, REFUND;
+
+        private static final Type[] TYPES = values();
+
+        static Type of(int code) {
+            return TYPES[code];
+        }
+
+        public String getLabel() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final long timeMillis;
+    private final UUID counterparty;
+    private final long amount;
+    private final long balance;
+
+    public AccountHistoryEntry(long sequence, Type type, long timeMillis, UUID counterparty, long amount, long balance) {
+        this.sequence = sequence;
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.counterparty = counterparty;
+        this.amount = amount;
+        this.balance = balance;
+    }
+
+    /*
+     * Number of the change for this account, starting from 1, it is cursor of the next older page
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /*
+     * The other account of transfer, null for create and refund
+     */
+    public UUID getCounterparty() {
+        return counterparty;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountHistoryEntry{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", counterparty=" + counterparty +
+                ", amount=" + amount +
+                ", balance=" + balance +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.transfer.core;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Pages of recent balance changes of account, newest first. Could be called from any thread
+ */
+public interface AccountHistoryReader {
+
+    /*
+     * cursor - 0 for the newest changes, or next cursor of previous page
+     * limit - max number of entries of the page
+     */
+    Page getHistory(UUID account, long cursor, int limit);
+
+    final class Page {
+        private final List<AccountHistoryEntry> entries;
+        private final long nextCursor;
+
+        public Page(List<AccountHistoryEntry> entries, long nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<AccountHistoryEntry> getEntries() {
+            return entries;
+        }
+
+        /*
+         * Cursor of the next older page, 0 if there are no older entries left in history
+         */
+        public long getNextCursor() {
+            return nextCursor;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountImportEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Streams accounts into processors in chunks. Accounts are collected per shard and every full chunk is published
+ * as one import event, at most maxChunksInFlight chunks wait for processors, so memory does not depend on import size
+ * and events of other clients are interleaved with chunks in processor queues.
+ * Not thread safe, results are delivered to consumer on the thread which adds accounts, not in input order
+ */
+public class AccountImporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountImporter.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final int DEFAULT_MAX_CHUNKS_IN_FLIGHT = 4;
+
+    //import is low priority, chunk waits for room in queue instead of being rejected at once
+    private static final long PUBLISH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long PUBLISH_RETRY_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public interface ResultConsumer {
+        /*
+         * line - number given when account was added
+         */
+        void accept(long line, AccountResult result);
+    }
+
+    private final AccountEventPublisher publisher;
+    private final AccountShardRouter router;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final ResultConsumer resultConsumer;
+    private final Chunk[] openChunks;
+    private final ArrayDeque<Chunk> chunksInFlight = new ArrayDeque<>();
+    private long imported;
+    private long failed;
+
+    public AccountImporter(AccountEventPublisher publisher, AccountShardRouter router, ResultConsumer resultConsumer) {
+        this(publisher, router, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_CHUNKS_IN_FLIGHT, resultConsumer);
+    }
+
+    /*
+     * chunkSize - accounts inserted by processor in one step, bounds processor pause for other events
+     * maxChunksInFlight - chunks published but not completed yet, adding account waits for the oldest one above it
+     */
+    public AccountImporter(AccountEventPublisher publisher, AccountShardRouter router, int chunkSize, int maxChunksInFlight,
+                           ResultConsumer resultConsumer) {
+        if (chunkSize < 1 || maxChunksInFlight < 1) {
+            throw new IllegalArgumentException("Chunk size and chunks in flight should be positive");
+        }
+        this.publisher = publisher;
+        this.router = router;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+        this.resultConsumer = resultConsumer;
+        this.openChunks = new Chunk[router.getShardCount()];
+    }
+
+    /*
+     * account - uuid given by caller, or null to generate one
+     */
+    public void add(long line, UUID account, long amount) {
+        UUID uuid = account == null ? UUID.randomUUID() : account;
+        int shard = router.shardOf(uuid);
+        Chunk chunk = openChunks[shard];
+        if (chunk == null) {
+            chunk = new Chunk(chunkSize);
+            openChunks[shard] = chunk;
+        }
+        chunk.add(line, uuid, amount);
+        if (chunk.size == chunkSize) {
+            openChunks[shard] = null;
+            publish(chunk);
+        }
+    }
+
+    /*
+     * Publishes not full chunks and waits until results of all accounts are delivered
+     */
+    public void finish() {
+        for (int shard = 0; shard < openChunks.length; shard++) {
+            if (openChunks[shard] != null) {
+                publish(openChunks[shard]);
+                openChunks[shard] = null;
+            }
+        }
+        while (!chunksInFlight.isEmpty()) {
+            complete(chunksInFlight.poll());
+        }
+        LOGGER.info("Import finished, {} accounts imported, {} failed", imported, failed);
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    private void publish(Chunk chunk) {
+        while (chunksInFlight.size() >= maxChunksInFlight) {
+            complete(chunksInFlight.poll());
+        }
+        AccountImportEvent event = new AccountImportEvent(chunk.result::complete, chunk.result::completeExceptionally,
+                chunk.accounts, chunk.amounts, chunk.size);
+        long deadline = System.nanoTime() + PUBLISH_TIMEOUT_NANOS;
+        while (!publisher.publishEvent(event)) {
+            if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+                chunk.result.completeExceptionally(new IllegalStateException("Not enough resource capacity to import accounts"));
+                break;
+            }
+            LockSupport.parkNanos(PUBLISH_RETRY_PARK_NANOS);
+        }
+        chunksInFlight.add(chunk);
+    }
+
+    private void complete(Chunk chunk) {
+        AccountResult result;
+        try {
+            result = chunk.result.join();
+        } catch (CompletionException ex) {
+            AccountResult error = AccountResult.failed(String.valueOf(ex.getCause().getMessage()));
+            for (int i = 0; i < chunk.size; i++) {
+                deliver(chunk.lines[i], error);
+            }
+            return;
+        }
+        for (int i = 0; i < chunk.size; i++) {
+            deliver(chunk.lines[i], result.getItems().get(i));
+        }
+    }
+
+    private void deliver(long line, AccountResult result) {
+        if (result.isFailed()) {
+            failed++;
+        } else {
+            imported++;
+        }
+        resultConsumer.accept(line, result);
+    }
+
+    /*
+     * Accounts of one shard, arrays are handed over to import event, so chunk is never reused
+     */
+    private static final class Chunk {
+        private final long[] lines;
+        private final UUID[] accounts;
+        private final long[] amounts;
+        private final CompletableFuture<AccountResult> result = new CompletableFuture<>();
+        private int size;
+
+        private Chunk(int capacity) {
+            this.lines = new long[capacity];
+            this.accounts = new UUID[capacity];
+            this.amounts = new long[capacity];
+        }
+
+        private void add(long line, UUID account, long amount) {
+            lines[size] = line;
+            accounts[size] = account;
+            amounts[size] = amount;
+            size++;
+        }
+    }
+}
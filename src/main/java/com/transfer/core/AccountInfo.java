@@ -1,14 +1,16 @@
 package com.transfer.core;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
+/*
+ * Amount is fixed-point number of minor units, see Money
+ */
 public class AccountInfo {
 
     private final UUID uuid;
-    private BigDecimal amount;
+    private long amount;
 
-    public AccountInfo(UUID uuid, BigDecimal amount) {
+    public AccountInfo(UUID uuid, long amount) {
         this.uuid = uuid;
         this.amount = amount;
     }
@@ -17,11 +19,11 @@ public class AccountInfo {
         return uuid;
     }
 
-    public BigDecimal getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 }
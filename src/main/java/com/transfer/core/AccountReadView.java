@@ -0,0 +1,178 @@
+package com.transfer.core;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Balances of one shard which could be read from any thread without locks, while they are written only by processor thread.
+ * View is registered as processor listener after journal. Changes of batch are staged and published in onBatchProcessed,
+ * after journal has synced them, so readers never see balance which could be lost, and still every change is published
+ * before result of its event is completed and a client always reads its own writes.
+ *
+ * Open addressing table of [uuid msb][uuid lsb][balance] slots. Writer stores fields with release semantic and readers
+ * load them with acquire semantic, new account is published by its key after balance is set. Table is replaced on growth,
+ * old table stays valid for readers which still use it. Balance is a single long, so it is never read torn.
+ */
+public class AccountReadView implements AccountEventListener, AccountReader {
+
+    private static final int SLOT_SIZE = 3;
+    private static final int MSB = 0;
+    private static final int LSB = 1;
+    private static final int BALANCE = 2;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private volatile AtomicLongArray table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    //[uuid msb][uuid lsb][balance] changes of current batch, owned by processor thread
+    private long[] staged = new long[SLOT_SIZE * 64];
+    private int stagedSize;
+
+    public AccountReadView() {
+        allocate(1024);
+    }
+
+    /*
+     * Fills view with accounts already present in storage, should be called before processor is started
+     */
+    public AccountReadView(AccountStorage<AccountInfo, UUID> storage) {
+        this();
+        storage.forEach(account -> update(account.getUuid().getMostSignificantBits(), account.getUuid().getLeastSignificantBits(),
+                account.getAmount()));
+    }
+
+    @Override
+    public AccountInfo getAccount(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            //nil UUID marks empty slot
+            return null;
+        }
+        AtomicLongArray current = table;
+        int capacity = current.length() / SLOT_SIZE;
+        int index = slot(msb, lsb, capacity - 1);
+        for (int probes = 0; probes < capacity; probes++) {
+            long slotMsb = current.getAcquire(index + MSB);
+            long slotLsb = current.getAcquire(index + LSB);
+            if (slotMsb == msb && slotLsb == lsb) {
+                return new AccountInfo(uuid, current.getAcquire(index + BALANCE));
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                return null;
+            }
+            index = next(index, current.length());
+        }
+        return null;
+    }
+
+    @Override
+    public void onAccountCreated(AccountInfo account) {
+        stage(account.getUuid(), account.getAmount());
+    }
+
+    @Override
+    public void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        stage(fromAccount.getUuid(), fromAccount.getAmount());
+        stage(toAccount.getUuid(), toAccount.getAmount());
+    }
+
+    @Override
+    public void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+        stage(fromAccount.getUuid(), fromAccount.getAmount());
+    }
+
+    @Override
+    public void onCredit(long transferId, AccountInfo account, long amount) {
+        stage(account.getUuid(), account.getAmount());
+    }
+
+    /*
+     * Listeners added before view, e.g. journal, have finished the batch, the last change of account wins
+     */
+    @Override
+    public void onBatchProcessed() {
+        for (int i = 0; i < stagedSize; i += SLOT_SIZE) {
+            update(staged[i + MSB], staged[i + LSB], staged[i + BALANCE]);
+        }
+        stagedSize = 0;
+    }
+
+    private void stage(UUID uuid, long balance) {
+        if (stagedSize == staged.length) {
+            staged = Arrays.copyOf(staged, staged.length * 2);
+        }
+        staged[stagedSize + MSB] = uuid.getMostSignificantBits();
+        staged[stagedSize + LSB] = uuid.getLeastSignificantBits();
+        staged[stagedSize + BALANCE] = balance;
+        stagedSize += SLOT_SIZE;
+    }
+
+    /*
+     * Only from processor thread
+     */
+    private void update(long msb, long lsb, long balance) {
+        int index = slot(msb, lsb, mask);
+        while (true) {
+            long slotMsb = table.getPlain(index + MSB);
+            long slotLsb = table.getPlain(index + LSB);
+            if (slotMsb == msb && slotLsb == lsb) {
+                table.setRelease(index + BALANCE, balance);
+                return;
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                break;
+            }
+            index = next(index, table.length());
+        }
+        if (size >= resizeThreshold) {
+            resize();
+        }
+        insert(table, mask, msb, lsb, balance);
+        size++;
+    }
+
+    private void resize() {
+        AtomicLongArray oldTable = table;
+        AtomicLongArray newTable = new AtomicLongArray(oldTable.length() * 2);
+        int newMask = newTable.length() / SLOT_SIZE - 1;
+        for (int index = 0; index < oldTable.length(); index += SLOT_SIZE) {
+            long msb = oldTable.getPlain(index + MSB);
+            long lsb = oldTable.getPlain(index + LSB);
+            if (msb != 0 || lsb != 0) {
+                insert(newTable, newMask, msb, lsb, oldTable.getPlain(index + BALANCE));
+            }
+        }
+        this.mask = newMask;
+        this.resizeThreshold = (int) ((newMask + 1) * LOAD_FACTOR);
+        //volatile write publishes the whole filled table
+        this.table = newTable;
+    }
+
+    private static void insert(AtomicLongArray table, int mask, long msb, long lsb, long balance) {
+        int index = slot(msb, lsb, mask);
+        while (table.getPlain(index + MSB) != 0 || table.getPlain(index + LSB) != 0) {
+            index = next(index, table.length());
+        }
+        table.setRelease(index + BALANCE, balance);
+        table.setRelease(index + LSB, lsb);
+        table.setRelease(index + MSB, msb);
+    }
+
+    private void allocate(int capacity) {
+        this.table = new AtomicLongArray(capacity * SLOT_SIZE);
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int next(int index, int length) {
+        index += SLOT_SIZE;
+        return index == length ? 0 : index;
+    }
+
+    private static int slot(long msb, long lsb, int mask) {
+        return (PrimitiveAccountStorage.hash(msb, lsb) & mask) * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,15 @@
+package com.transfer.core;
+
+import java.util.UUID;
+
+/*
+ * Reads account state without going through processor queue, could be called from any thread
+ */
+@FunctionalInterface
+public interface AccountReader {
+
+    /*
+     * Returns a copy of account or null if account is not present
+     */
+    AccountInfo getAccount(UUID uuid);
+}
@@ -0,0 +1,97 @@
+package com.transfer.core;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Immutable result of processed event: state of one account, or of two accounts for transfer,
+ * or results of each transfer of batch, where failed transfer has only error.
+ * Processor creates it instead of response text, so serialization is done outside of processor thread
+ */
+public final class AccountResult {
+
+    private final UUID account;
+    private final long amount;
+    private final UUID secondAccount;
+    private final long secondAmount;
+    private final List<AccountResult> items;
+    private final String error;
+
+    private AccountResult(UUID account, long amount, UUID secondAccount, long secondAmount, List<AccountResult> items, String error) {
+        this.account = account;
+        this.amount = amount;
+        this.secondAccount = secondAccount;
+        this.secondAmount = secondAmount;
+        this.items = items;
+        this.error = error;
+    }
+
+    public static AccountResult of(AccountInfo account) {
+        return new AccountResult(account.getUuid(), account.getAmount(), null, 0, null, null);
+    }
+
+    public static AccountResult of(AccountInfo fromAccount, AccountInfo toAccount) {
+        return new AccountResult(fromAccount.getUuid(), fromAccount.getAmount(), toAccount.getUuid(), toAccount.getAmount(), null, null);
+    }
+
+    /*
+     * The same as above for balances which are not kept in AccountInfo, e.g. in PrimitiveAccountStorage
+     */
+    public static AccountResult of(UUID account, long amount) {
+        return new AccountResult(account, amount, null, 0, null, null);
+    }
+
+    public static AccountResult of(UUID fromAccount, long fromAmount, UUID toAccount, long toAmount) {
+        return new AccountResult(fromAccount, fromAmount, toAccount, toAmount, null, null);
+    }
+
+    public static AccountResult batch(List<AccountResult> items) {
+        return new AccountResult(null, 0, null, 0, List.copyOf(items), null);
+    }
+
+    /*
+     * Item of batch which was not applied
+     */
+    public static AccountResult failed(String error) {
+        return new AccountResult(null, 0, null, 0, null, error);
+    }
+
+    public UUID getAccount() {
+        return account;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    /*
+     * True if result is a pair of accounts, source and destination of transfer
+     */
+    public boolean isPair() {
+        return secondAccount != null;
+    }
+
+    public UUID getSecondAccount() {
+        return secondAccount;
+    }
+
+    public long getSecondAmount() {
+        return secondAmount;
+    }
+
+    public boolean isBatch() {
+        return items != null;
+    }
+
+    public List<AccountResult> getItems() {
+        return items;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
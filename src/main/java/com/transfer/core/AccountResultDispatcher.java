@@ -0,0 +1,162 @@
+package com.transfer.core;
+
+import com.transfer.metrics.LatencyHistogram;
+import com.transfer.metrics.MetricsRegistry;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Egress stage of processors: results of processed batches are completed by own threads, so processor thread
+ * only applies events. Every thread has bounded queue of batches, processors spread batches over them.
+ * When all queues are full processor completes batch itself, so it never waits for slow consumers
+ */
+public class AccountResultDispatcher implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountResultDispatcher.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final ManyToOneConcurrentArrayQueue<AccountCompletions>[] queues;
+    private final int queueCapacity;
+    private final Supplier<IdleStrategy> idleStrategyFactory;
+    private final ExecutorService executorService;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong inlineCount = new AtomicLong();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+    private final LatencyHistogram completionTime = new LatencyHistogram();
+
+    public AccountResultDispatcher(int threads) {
+        this(threads, DEFAULT_QUEUE_CAPACITY, IdleStrategies::backoff);
+    }
+
+    /*
+     * queueCapacity - max number of batches waiting for one thread
+     */
+    @SuppressWarnings("unchecked")
+    public AccountResultDispatcher(int threads, int queueCapacity, Supplier<IdleStrategy> idleStrategyFactory) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of dispatcher threads should be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        this.queues = (ManyToOneConcurrentArrayQueue<AccountCompletions>[]) new ManyToOneConcurrentArrayQueue<?>[threads];
+        for (int i = 0; i < threads; i++) {
+            queues[i] = new ManyToOneConcurrentArrayQueue<>(queueCapacity);
+        }
+        this.idleStrategyFactory = idleStrategyFactory;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "result-dispatcher-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        for (ManyToOneConcurrentArrayQueue<AccountCompletions> queue : queues) {
+            IdleStrategy idleStrategy = idleStrategyFactory.get();
+            executorService.submit(() -> {
+                while (running.get()) {
+                    int count = queue.drain(this::complete);
+                    idleStrategy.idle(count);
+                }
+                //batches which were dispatched before close are still completed
+                queue.drain(this::complete);
+            });
+        }
+    }
+
+    /*
+     * Called by processor thread, completions should not be used by it after that
+     */
+    void dispatch(AccountCompletions completions) {
+        completions.setDispatchNanos(System.nanoTime());
+        int start = Math.floorMod(next.getAndIncrement(), queues.length);
+        for (int i = 0; i < queues.length; i++) {
+            if (queues[(start + i) % queues.length].offer(completions)) {
+                return;
+            }
+        }
+        completeInline(completions);
+    }
+
+    /*
+     * Called by processor thread when batch could not be dispatched
+     */
+    void completeInline(AccountCompletions completions) {
+        inlineCount.incrementAndGet();
+        completions.complete();
+        completions.recycle();
+    }
+
+    private void complete(AccountCompletions completions) {
+        long start = System.nanoTime();
+        queueTime.record(start - completions.getDispatchNanos());
+        completions.complete();
+        completionTime.record(System.nanoTime() - start);
+        completions.recycle();
+    }
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getQueueDepth() {
+        long depth = 0;
+        for (ManyToOneConcurrentArrayQueue<AccountCompletions> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /*
+     * Batches completed by processor thread because every queue was full
+     */
+    public long getInlineCount() {
+        return inlineCount.get();
+    }
+
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    public LatencyHistogram getCompletionTime() {
+        return completionTime;
+    }
+
+    public void register(MetricsRegistry registry) {
+        registry.gauge("transfer_dispatch_queue_depth", "Processed batches waiting for result completion, sampled at scrape", "", this::getQueueDepth);
+        registry.counter("transfer_dispatch_inline_total", "Batches completed by processor thread because dispatcher queues were full", "",
+                this::getInlineCount);
+        registry.histogram("transfer_dispatch_queue_seconds", "Time from end of batch processing until its results are completed", "", queueTime);
+        registry.histogram("transfer_dispatch_completion_seconds", "Time of completing results of one batch", "", completionTime);
+    }
+
+    /*
+     * Should be called after processors are closed, so nothing is dispatched after that
+     */
+    @Override
+    public void close() {
+        running.set(false);
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Dispatcher threads were not stopped in {} seconds", CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Thread was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountEvent;
+import org.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
+
+import java.util.Queue;
+import java.util.UUID;
+
+/*
+ * Partitions accounts between shards by UUID hash, each shard is owned by exactly one processor thread.
+ * Every shard has an unbounded inbox for events sent by other shards, so shards never block on each other
+ */
+public class AccountShardRouter {
+
+    //transfer id is shard id in the highest bits and sequence of cross shard transfers of that shard in the rest
+    private static final int TRANSFER_SEQUENCE_BITS = 48;
+    public static final long MAX_TRANSFER_SEQUENCE = (1L << TRANSFER_SEQUENCE_BITS) - 1;
+    public static final int MAX_SHARDS = 1 << (Long.SIZE - 1 - TRANSFER_SEQUENCE_BITS);
+
+    private final AccountShard[] shards;
+
+    public AccountShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count should be positive");
+        }
+        if (shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count should not be greater than " + MAX_SHARDS);
+        }
+        this.shards = new AccountShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new AccountShard(this, i, new ManyToOneConcurrentLinkedQueue<>());
+        }
+    }
+
+    public static AccountShard single() {
+        return new AccountShardRouter(1).getShard(0);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public AccountShard getShard(int shardId) {
+        return shards[shardId];
+    }
+
+    public int shardOf(UUID account) {
+        return Math.floorMod(account.hashCode(), shards.length);
+    }
+
+    /*
+     * Unique while sequence of the shard is not reused, so the sequence is restored from snapshot and journal on restart
+     */
+    public static long transferId(int shardId, long sequence) {
+        if (sequence < 1 || sequence > MAX_TRANSFER_SEQUENCE) {
+            throw new IllegalStateException("Transfer sequence " + sequence + " of shard " + shardId + " is out of range");
+        }
+        return ((long) shardId << TRANSFER_SEQUENCE_BITS) | sequence;
+    }
+
+    public static int shardOfTransfer(long transferId) {
+        return (int) (transferId >>> TRANSFER_SEQUENCE_BITS);
+    }
+
+    public static long sequenceOfTransfer(long transferId) {
+        return transferId & MAX_TRANSFER_SEQUENCE;
+    }
+
+    void send(AccountEvent accountEvent) {
+        accountEvent.setPublishNanos(System.nanoTime());
+        shards[shardOf(accountEvent.getRoutingAccount())].getInbox().offer(accountEvent);
+    }
+
+    public static class AccountShard {
+        private final AccountShardRouter router;
+        private final int shardId;
+        private final Queue<AccountEvent> inbox;
+
+        private AccountShard(AccountShardRouter router, int shardId, Queue<AccountEvent> inbox) {
+            this.router = router;
+            this.shardId = shardId;
+            this.inbox = inbox;
+        }
+
+        public int getShardId() {
+            return shardId;
+        }
+
+        public boolean owns(UUID account) {
+            return router.shards.length == 1 || router.shardOf(account) == shardId;
+        }
+
+        /*
+         * Random UUID which belongs to this shard, on average takes shard count attempts
+         */
+        public UUID newAccountUuid() {
+            UUID uuid;
+            do {
+                uuid = UUID.randomUUID();
+            } while (!owns(uuid));
+            return uuid;
+        }
+
+        /*
+         * Hand over event to the shard owning its routing account
+         */
+        public void send(AccountEvent accountEvent) {
+            router.send(accountEvent);
+        }
+
+        Queue<AccountEvent> getInbox() {
+            return inbox;
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package com.transfer.core;
 
 
+import java.util.function.Consumer;
+
 public interface AccountStorage<T, R> {
 
     void put(T accountInfo);
 
     T getByUuid(R uuid);
+
+    int size();
+
+    void forEach(Consumer<T> consumer);
 }
@@ -3,6 +3,7 @@ package com.transfer.core;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class AccountStorageImpl implements AccountStorage<AccountInfo, UUID> {
 
@@ -18,4 +19,14 @@ public class AccountStorageImpl implements AccountStorage<AccountInfo, UUID> {
     public AccountInfo getByUuid(UUID uuid) {
         return storage.get(uuid);
     }
+
+    @Override
+    public int size() {
+        return storage.size();
+    }
+
+    @Override
+    public void forEach(Consumer<AccountInfo> consumer) {
+        storage.values().forEach(consumer);
+    }
 }
@@ -0,0 +1,29 @@
+package com.transfer.core;
+
+import java.util.UUID;
+
+/*
+ * Account storages available for processor, selected by name from configuration
+ */
+public final class AccountStorages {
+
+    public static final String HASH_MAP = "hash-map";
+    public static final String PRIMITIVE = "primitive";
+
+    private AccountStorages() {
+    }
+
+    /*
+     * initialCapacity is used only by primitive storage
+     */
+    public static AccountStorage<AccountInfo, UUID> create(String name, int initialCapacity) {
+        switch (name) {
+            case HASH_MAP:
+                return new AccountStorageImpl();
+            case PRIMITIVE:
+                return new PrimitiveAccountStorage(initialCapacity);
+            default:
+                throw new IllegalArgumentException("Unknown account storage: " + name);
+        }
+    }
+}
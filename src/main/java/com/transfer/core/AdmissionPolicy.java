@@ -0,0 +1,58 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountEventType;
+
+/*
+ * Non blocking admission of events into shard queue. Each event type has priority class with own high-water mark,
+ * event is rejected at once when number of waiting events is at or above its mark, so publisher thread never waits
+ * and low priority requests are shed first, leaving room for transfers
+ */
+public class AdmissionPolicy {
+
+    public enum Priority {
+        //money movement, should be admitted while there is any room
+        HIGH,
+        //account creation
+        NORMAL,
+        //queries, could be retried or answered from read view, and bulk import, which waits for room
+        LOW;
+
+        public static Priority of(AccountEventType type) {
+            switch (type) {
+                case INFO:
+                case IMPORT:
+                    return LOW;
+                case CREATE:
+                    return NORMAL;
+                default:
+                    return HIGH;
+            }
+        }
+    }
+
+    private final int[] highWaterMarks = new int[Priority.values().length];
+
+    /*
+     * Marks are given as part of queue capacity, e.g. 0.9 means that class is rejected when queue is 90% full
+     */
+    public AdmissionPolicy(int capacity, double highRatio, double normalRatio, double lowRatio) {
+        if (!(lowRatio <= normalRatio && normalRatio <= highRatio && highRatio <= 1 && lowRatio > 0)) {
+            throw new IllegalArgumentException("High-water ratios should be in (0, 1] and should not grow with lower priority");
+        }
+        highWaterMarks[Priority.HIGH.ordinal()] = mark(capacity, highRatio);
+        highWaterMarks[Priority.NORMAL.ordinal()] = mark(capacity, normalRatio);
+        highWaterMarks[Priority.LOW.ordinal()] = mark(capacity, lowRatio);
+    }
+
+    public int getHighWaterMark(Priority priority) {
+        return highWaterMarks[priority.ordinal()];
+    }
+
+    public boolean admits(AccountEventType type, int queueDepth) {
+        return queueDepth < highWaterMarks[Priority.of(type).ordinal()];
+    }
+
+    private static int mark(int capacity, double ratio) {
+        return Math.max(1, (int) (capacity * ratio));
+    }
+}
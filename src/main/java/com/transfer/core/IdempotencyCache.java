@@ -0,0 +1,221 @@
+package com.transfer.core;
+
+import org.agrona.BitUtil;
+
+import java.util.UUID;
+
+/*
+ * Results of events with idempotency key, owned by one processor thread, so it is not thread safe.
+ * Key is 128 bit, both halves 0 means no key. Entries are kept in a ring in insertion order, each entry is
+ * [key, key, insertion time, account, account, amount, second account, second account, second amount] in one long array,
+ * entries are found by open addressing index of int positions in the ring, so there is no object per key.
+ * The oldest entry is evicted when ring is full or when it is older than time to live.
+ * Entry is pending until result is known, e.g. while cross shard transfer is in flight.
+ * Result of batch has any number of items, so it is kept as object in array allocated with the first batch result.
+ * Size and replayed count could be read by other threads, e.g. by metrics, such values could be stale
+ */
+public class IdempotencyCache {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int KEY_HI = 0;
+    private static final int KEY_LO = 1;
+    private static final int TIME = 2;
+    private static final int ACCOUNT_HI = 3;
+    private static final int ACCOUNT_LO = 4;
+    private static final int AMOUNT = 5;
+    private static final int SECOND_ACCOUNT_HI = 6;
+    private static final int SECOND_ACCOUNT_LO = 7;
+    private static final int SECOND_AMOUNT = 8;
+    private static final int ENTRY_SIZE = 9;
+
+    private static final byte REMOVED = 0;
+    private static final byte PENDING = 1;
+    private static final byte SINGLE = 2;
+    private static final byte PAIR = 3;
+    private static final byte BATCH = 4;
+
+    private final long[] entries;
+    private final byte[] states;
+    private AccountResult[] batchResults;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    //ring position + 1 of entry, 0 is empty slot
+    private final int[] index;
+    private final int indexMask;
+    //ring positions of the oldest and the next entry, grow forever
+    private long head;
+    private long tail;
+    private int size;
+    private long replayed;
+
+    /*
+     * timeToLiveNanos - 0 means that entries are evicted only when cache is full
+     */
+    public IdempotencyCache(int maxEntries, long timeToLiveNanos) {
+        if (maxEntries < 1 || timeToLiveNanos < 0) {
+            throw new IllegalArgumentException("Max entries should be positive and time to live should not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.entries = new long[maxEntries * ENTRY_SIZE];
+        this.states = new byte[maxEntries];
+        //load factor is at most 0.5, so probe sequences stay short
+        this.index = new int[BitUtil.findNextPositivePowerOfTwo(maxEntries * 2)];
+        this.indexMask = index.length - 1;
+    }
+
+    /*
+     * Returns entry of key or NOT_FOUND, entry is valid only until next put
+     */
+    public int find(long keyHi, long keyLo, long nowNanos) {
+        int slot = slot(keyHi, keyLo);
+        int position;
+        while ((position = index[slot]) != 0) {
+            int entry = position - 1;
+            int offset = entry * ENTRY_SIZE;
+            if (entries[offset + KEY_HI] == keyHi && entries[offset + KEY_LO] == keyLo) {
+                return isExpired(entry, nowNanos) ? NOT_FOUND : entry;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        return NOT_FOUND;
+    }
+
+    /*
+     * Adds pending entry of key which is not in cache, evicts the oldest entries if needed
+     */
+    public int put(long keyHi, long keyLo, long nowNanos) {
+        evict(nowNanos);
+        int entry = (int) (tail++ % maxEntries);
+        int offset = entry * ENTRY_SIZE;
+        entries[offset + KEY_HI] = keyHi;
+        entries[offset + KEY_LO] = keyLo;
+        entries[offset + TIME] = nowNanos;
+        states[entry] = PENDING;
+        int slot = slot(keyHi, keyLo);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = entry + 1;
+        size++;
+        return entry;
+    }
+
+    public void complete(int entry, AccountResult result) {
+        if (result.isBatch()) {
+            if (batchResults == null) {
+                batchResults = new AccountResult[maxEntries];
+            }
+            batchResults[entry] = result;
+            states[entry] = BATCH;
+            return;
+        }
+        int offset = entry * ENTRY_SIZE;
+        entries[offset + ACCOUNT_HI] = result.getAccount().getMostSignificantBits();
+        entries[offset + ACCOUNT_LO] = result.getAccount().getLeastSignificantBits();
+        entries[offset + AMOUNT] = result.getAmount();
+        if (result.isPair()) {
+            entries[offset + SECOND_ACCOUNT_HI] = result.getSecondAccount().getMostSignificantBits();
+            entries[offset + SECOND_ACCOUNT_LO] = result.getSecondAccount().getLeastSignificantBits();
+            entries[offset + SECOND_AMOUNT] = result.getSecondAmount();
+            states[entry] = PAIR;
+        } else {
+            states[entry] = SINGLE;
+        }
+    }
+
+    public boolean isPending(int entry) {
+        return states[entry] == PENDING;
+    }
+
+    /*
+     * Result stored for entry, it is the same as the original one and counted as replayed
+     */
+    public AccountResult replay(int entry) {
+        if (states[entry] == BATCH) {
+            replayed++;
+            return batchResults[entry];
+        }
+        int offset = entry * ENTRY_SIZE;
+        AccountInfo account = new AccountInfo(new UUID(entries[offset + ACCOUNT_HI], entries[offset + ACCOUNT_LO]), entries[offset + AMOUNT]);
+        replayed++;
+        if (states[entry] == SINGLE) {
+            return AccountResult.of(account);
+        }
+        return AccountResult.of(account,
+                new AccountInfo(new UUID(entries[offset + SECOND_ACCOUNT_HI], entries[offset + SECOND_ACCOUNT_LO]), entries[offset + SECOND_AMOUNT]));
+    }
+
+    /*
+     * Key is forgotten, e.g. event failed and nothing was applied, so it could be retried with the same key.
+     * Ring position stays occupied until it is evicted
+     */
+    public void remove(int entry) {
+        if (states[entry] != REMOVED) {
+            if (states[entry] == BATCH) {
+                batchResults[entry] = null;
+            }
+            removeFromIndex(entry);
+            states[entry] = REMOVED;
+            size--;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getReplayed() {
+        return replayed;
+    }
+
+    private boolean isExpired(int entry, long nowNanos) {
+        return timeToLiveNanos > 0 && nowNanos - entries[entry * ENTRY_SIZE + TIME] >= timeToLiveNanos;
+    }
+
+    private void evict(long nowNanos) {
+        while (head < tail) {
+            int entry = (int) (head % maxEntries);
+            if (tail - head < maxEntries && states[entry] != REMOVED && !isExpired(entry, nowNanos)) {
+                return;
+            }
+            remove(entry);
+            head++;
+        }
+    }
+
+    /*
+     * Backward shift deletion, entries after removed one are moved closer to their home slot,
+     * so lookups never need tombstones
+     */
+    private void removeFromIndex(int entry) {
+        int offset = entry * ENTRY_SIZE;
+        int slot = slot(entries[offset + KEY_HI], entries[offset + KEY_LO]);
+        while (index[slot] != entry + 1) {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = 0;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & indexMask;
+            int position = index[next];
+            if (position == 0) {
+                return;
+            }
+            int nextOffset = (position - 1) * ENTRY_SIZE;
+            int home = slot(entries[nextOffset + KEY_HI], entries[nextOffset + KEY_LO]);
+            //entry at next could be moved to the free slot only if its home slot is not between free slot and next
+            if (((next - home) & indexMask) >= ((next - slot) & indexMask)) {
+                index[slot] = position;
+                index[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    private int slot(long keyHi, long keyLo) {
+        long hash = (keyHi ^ Long.rotateLeft(keyLo, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & indexMask;
+    }
+}
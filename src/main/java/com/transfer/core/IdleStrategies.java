@@ -0,0 +1,50 @@
+package com.transfer.core;
+
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingIdleStrategy;
+import org.agrona.concurrent.YieldingIdleStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Idle strategies available for processor thread, selected by name from configuration
+ */
+public final class IdleStrategies {
+
+    public static final String BUSY_SPIN = "busy-spin";
+    public static final String YIELDING = "yielding";
+    public static final String BACKOFF = "backoff";
+    public static final String PARK = "park";
+
+    private static final long BACKOFF_MAX_SPINS = 100;
+    private static final long BACKOFF_MAX_YIELDS = 10;
+    private static final long BACKOFF_MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long BACKOFF_MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private IdleStrategies() {
+    }
+
+    /*
+     * IdleStrategy instances keep state, so new instance should be created for each processor thread
+     */
+    public static IdleStrategy create(String name, long parkNanos) {
+        switch (name) {
+            case BUSY_SPIN:
+                return new BusySpinIdleStrategy();
+            case YIELDING:
+                return new YieldingIdleStrategy();
+            case BACKOFF:
+                return new BackoffIdleStrategy(BACKOFF_MAX_SPINS, BACKOFF_MAX_YIELDS, BACKOFF_MIN_PARK_NANOS, BACKOFF_MAX_PARK_NANOS);
+            case PARK:
+                return new SleepingIdleStrategy(parkNanos);
+            default:
+                throw new IllegalArgumentException("Unknown idle strategy: " + name);
+        }
+    }
+
+    public static IdleStrategy backoff() {
+        return create(BACKOFF, BACKOFF_MAX_PARK_NANOS);
+    }
+}
@@ -0,0 +1,72 @@
+package com.transfer.core;
+
+import java.math.BigDecimal;
+
+/*
+ * Fixed-point money: amount is long number of minor units, e.g. cents for scale 2.
+ * Arithmetic on minor units does not allocate, decimal values exist only on transport boundary
+ */
+public final class Money {
+
+    public static final int DEFAULT_SCALE = 2;
+    public static final Money DEFAULT = new Money(DEFAULT_SCALE);
+
+    //10^18 is the largest power of ten which fits into long
+    private static final int MAX_SCALE = 18;
+
+    private final int scale;
+
+    public Money(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale should be between 0 and " + MAX_SCALE);
+        }
+        this.scale = scale;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /*
+     * Exact conversion, throws IllegalArgumentException if amount has more fraction digits than scale or does not fit into long
+     */
+    public long parse(String amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is missed");
+        }
+        try {
+            return fromDecimal(new BigDecimal(amount));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Amount " + amount + " is not a number", e);
+        }
+    }
+
+    public long fromDecimal(BigDecimal amount) {
+        try {
+            return amount.setScale(scale).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount + " can't be represented with scale " + scale, e);
+        }
+    }
+
+    public BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    public static long add(long amount, long addend) {
+        long result = amount + addend;
+        //overflow only if both operands have the same sign, which is different from the sign of result
+        if (((amount ^ result) & (addend ^ result)) < 0) {
+            throw new IllegalArgumentException("Amount overflow");
+        }
+        return result;
+    }
+
+    public static long subtract(long amount, long subtrahend) {
+        long result = amount - subtrahend;
+        if (((amount ^ subtrahend) & (amount ^ result)) < 0) {
+            throw new IllegalArgumentException("Amount overflow");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+package com.transfer.core;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Open addressing hash table in one long array, every slot is [uuid msb][uuid lsb][balance], so account costs
+ * 24 bytes divided by load factor instead of map node, UUID, AccountInfo and BigDecimal objects.
+ * Nil UUID marks empty slot, so it can't be used as account id. Accounts are never removed.
+ *
+ * getByUuid returns a copy, changes of AccountInfo are visible only after put.
+ * Processor thread could use indexOf and balance methods to read and update balances without allocation
+ */
+public class PrimitiveAccountStorage implements AccountStorage<AccountInfo, UUID> {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int SLOT_SIZE = 3;
+    private static final int MSB = 0;
+    private static final int LSB = 1;
+    private static final int BALANCE = 2;
+    private static final float LOAD_FACTOR = 0.6f;
+    //java array can't be larger, so it is the limit of table capacity in slots
+    private static final int MAX_CAPACITY = 1 << 29;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public PrimitiveAccountStorage() {
+        this(1024);
+    }
+
+    public PrimitiveAccountStorage(int initialCapacity) {
+        allocate(Math.max(16, Integer.highestOneBit(Math.min(MAX_CAPACITY, Math.max(1, initialCapacity)) - 1) << 1));
+    }
+
+    @Override
+    public void put(AccountInfo accountInfo) {
+        long balance = accountInfo.getAmount();
+        UUID uuid = accountInfo.getUuid();
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (index != NOT_FOUND) {
+            table[index + BALANCE] = balance;
+            return;
+        }
+        if (size >= resizeThreshold) {
+            resize();
+        }
+        insert(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), balance);
+        size++;
+    }
+
+    @Override
+    public AccountInfo getByUuid(UUID uuid) {
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return index == NOT_FOUND ? null : new AccountInfo(uuid, table[index + BALANCE]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(Consumer<AccountInfo> consumer) {
+        for (int index = 0; index < table.length; index += SLOT_SIZE) {
+            if (!isEmpty(index)) {
+                consumer.accept(new AccountInfo(new UUID(table[index + MSB], table[index + LSB]), table[index + BALANCE]));
+            }
+        }
+    }
+
+    /*
+     * Returns index of account slot or NOT_FOUND, index is valid only until next put of new account
+     */
+    public int indexOf(long mostSignificantBits, long leastSignificantBits) {
+        if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+            return NOT_FOUND;
+        }
+        int index = slot(mostSignificantBits, leastSignificantBits);
+        while (!isEmpty(index)) {
+            if (table[index + MSB] == mostSignificantBits && table[index + LSB] == leastSignificantBits) {
+                return index;
+            }
+            index = next(index);
+        }
+        return NOT_FOUND;
+    }
+
+    public long balance(int index) {
+        return table[index + BALANCE];
+    }
+
+    public void balance(int index, long balance) {
+        table[index + BALANCE] = balance;
+    }
+
+    private void insert(long mostSignificantBits, long leastSignificantBits, long balance) {
+        if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+            throw new IllegalArgumentException("Nil UUID can't be used as account id");
+        }
+        int index = slot(mostSignificantBits, leastSignificantBits);
+        while (!isEmpty(index)) {
+            index = next(index);
+        }
+        table[index + MSB] = mostSignificantBits;
+        table[index + LSB] = leastSignificantBits;
+        table[index + BALANCE] = balance;
+    }
+
+    private void resize() {
+        int capacity = table.length / SLOT_SIZE;
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Storage is full, " + size + " accounts");
+        }
+        long[] oldTable = table;
+        allocate(capacity << 1);
+        for (int index = 0; index < oldTable.length; index += SLOT_SIZE) {
+            if (oldTable[index + MSB] != 0 || oldTable[index + LSB] != 0) {
+                insert(oldTable[index + MSB], oldTable[index + LSB], oldTable[index + BALANCE]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.table = new long[capacity * SLOT_SIZE];
+        //mask works with slot numbers, index in table is slot number multiplied by slot size
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int next(int index) {
+        index += SLOT_SIZE;
+        return index == table.length ? 0 : index;
+    }
+
+    private boolean isEmpty(int index) {
+        return table[index + MSB] == 0 && table[index + LSB] == 0;
+    }
+
+    private int slot(long mostSignificantBits, long leastSignificantBits) {
+        return (hash(mostSignificantBits, leastSignificantBits) & mask) * SLOT_SIZE;
+    }
+
+    /*
+     * UUID hash code is used for routing accounts to shards, so its low bits are the same inside shard and are mixed here
+     */
+    static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long hash = mostSignificantBits ^ leastSignificantBits;
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (hash ^ (hash >>> 33));
+    }
+}
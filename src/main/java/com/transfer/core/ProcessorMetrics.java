@@ -0,0 +1,63 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountEventType;
+import com.transfer.metrics.LatencyHistogram;
+import com.transfer.metrics.MetricsRegistry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Time events spend in queue and in processing, recorded by processor thread into preallocated histograms.
+ * Processing time of event is measured from the end of previous event of the same batch, so there is one clock read per event
+ */
+public class ProcessorMetrics {
+
+    private static final AccountEventType[] TYPES = AccountEventType.values();
+
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+    private final LatencyHistogram[] processingTime = new LatencyHistogram[TYPES.length];
+    private final AtomicLongArray failed = new AtomicLongArray(TYPES.length);
+
+    public ProcessorMetrics() {
+        for (int i = 0; i < TYPES.length; i++) {
+            processingTime[i] = new LatencyHistogram();
+        }
+    }
+
+    /*
+     * Events which were never published through publisher have no publish time and are skipped
+     */
+    void recordQueueTime(long publishNanos, long nowNanos) {
+        if (publishNanos != 0) {
+            queueTime.record(nowNanos - publishNanos);
+        }
+    }
+
+    void recordProcessing(AccountEventType type, long nanos, boolean success) {
+        processingTime[type.ordinal()].record(nanos);
+        if (!success) {
+            failed.incrementAndGet(type.ordinal());
+        }
+    }
+
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    public LatencyHistogram getProcessingTime(AccountEventType type) {
+        return processingTime[type.ordinal()];
+    }
+
+    public long getFailedCount(AccountEventType type) {
+        return failed.get(type.ordinal());
+    }
+
+    public void register(MetricsRegistry registry, String labels) {
+        registry.histogram("transfer_event_queue_seconds", "Time from publish until processor starts the batch of event", labels, queueTime);
+        for (AccountEventType type : TYPES) {
+            String typeLabels = labels + "," + MetricsRegistry.labels("type", type.getLabel());
+            registry.histogram("transfer_event_processing_seconds", "Time of applying event to storage", typeLabels, getProcessingTime(type));
+            registry.counter("transfer_event_failed_total", "Events completed with error", typeLabels, () -> getFailedCount(type));
+        }
+    }
+}
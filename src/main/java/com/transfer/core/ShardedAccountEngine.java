@@ -0,0 +1,210 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountTaskEvent;
+import com.transfer.metrics.MetricsRegistry;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/*
+ * Set of single writer processors, each one with own queue and storage and owning its part of accounts.
+ * Transfers inside one shard are processed without any synchronisation, transfers between shards
+ * are split to debit on source shard and credit (or refund) on destination shard, so money is never lost or created
+ */
+public class ShardedAccountEngine implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedAccountEngine.class);
+
+    private final AccountShardRouter router;
+    private final AccountEventProcessorImpl[] processors;
+    private final AccountStorage<AccountInfo, UUID>[] storages;
+    private final AccountEventPublisherImpl[] shardPublishers;
+    private final AccountEventPublisher publisher;
+    private AccountResultDispatcher resultDispatcher;
+    private AccountHistory[] histories;
+
+    public ShardedAccountEngine(int shardCount, int queueCapacity, IntFunction<AccountStorage<AccountInfo, UUID>> storageFactory,
+                                Supplier<IdleStrategy> idleStrategyFactory, int batchSize, long maxBatchLatencyNanos) {
+        this(shardCount, queueCapacity, storageFactory, idleStrategyFactory, batchSize, maxBatchLatencyNanos, capacity -> null);
+    }
+
+    /*
+     * admissionPolicyFactory - creates admission policy for capacity of shard queue, null policy means that publishers wait for free space
+     */
+    public ShardedAccountEngine(int shardCount, int queueCapacity, IntFunction<AccountStorage<AccountInfo, UUID>> storageFactory,
+                                Supplier<IdleStrategy> idleStrategyFactory, int batchSize, long maxBatchLatencyNanos,
+                                IntFunction<AdmissionPolicy> admissionPolicyFactory) {
+        this.router = new AccountShardRouter(shardCount);
+        this.processors = new AccountEventProcessorImpl[shardCount];
+        this.storages = newStorageArray(shardCount);
+        this.shardPublishers = new AccountEventPublisherImpl[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            Queue<AccountEvent> eventBus = new ManyToOneConcurrentArrayQueue<>(queueCapacity);
+            storages[i] = storageFactory.apply(i);
+            //publishers could use either queue of events or ring of reusable slots, processor consumes both
+            AccountEventRing ring = new AccountEventRing(queueCapacity);
+            processors[i] = new AccountEventProcessorImpl(storages[i], eventBus, idleStrategyFactory.get(),
+                    batchSize, maxBatchLatencyNanos, router.getShard(i), ring);
+            shardPublishers[i] = new AccountEventPublisherImpl(eventBus, ring, admissionPolicyFactory.apply(ring.getCapacity()));
+        }
+        this.publisher = shardCount == 1 ? shardPublishers[0] : new ShardedAccountEventPublisher(router, shardPublishers);
+    }
+
+    public void start() {
+        LOGGER.info("Starting {} account shards", processors.length);
+        if (resultDispatcher != null) {
+            resultDispatcher.start();
+        }
+        for (AccountEventProcessorImpl processor : processors) {
+            processor.start();
+        }
+    }
+
+    /*
+     * Creates view of balances for every shard, which could be read from any thread without processor queue.
+     * Should be called before engine is started and after journal listeners are added, so view publishes durable balances
+     */
+    public AccountReader createReader() {
+        AccountReadView[] views = new AccountReadView[processors.length];
+        for (int i = 0; i < processors.length; i++) {
+            views[i] = new AccountReadView(storages[i]);
+            processors[i].addListener(views[i]);
+        }
+        return views.length == 1 ? views[0] : uuid -> views[router.shardOf(uuid)].getAccount(uuid);
+    }
+
+    /*
+     * Every processor records the last entriesPerAccount balance changes of each account into its history,
+     * which could be read from any thread. History is kept only in memory, it is empty after restart.
+     * Should be called before engine is started
+     */
+    public AccountHistoryReader createHistory(int entriesPerAccount) {
+        histories = new AccountHistory[processors.length];
+        for (int i = 0; i < processors.length; i++) {
+            histories[i] = new AccountHistory(entriesPerAccount);
+            processors[i].addListener(histories[i]);
+        }
+        AccountHistory[] shardHistories = histories;
+        return shardHistories.length == 1 ? shardHistories[0]
+                : (account, cursor, limit) -> shardHistories[router.shardOf(account)].getHistory(account, cursor, limit);
+    }
+
+    /*
+     * Every processor remembers results of the last maxKeys events with idempotency key, keys which are older than
+     * time to live are forgotten earlier, 0 means no time limit. Should be called before engine is started
+     */
+    public void enableIdempotency(int maxKeys, long timeToLiveNanos) {
+        for (AccountEventProcessorImpl processor : processors) {
+            processor.setIdempotencyCache(new IdempotencyCache(maxKeys, timeToLiveNanos));
+        }
+    }
+
+    /*
+     * Every processor nets changes of the same account within batch into one storage write, see AccountBatchCache.
+     * Should be called before engine is started
+     */
+    public void enableBatchNetting() {
+        for (AccountEventProcessorImpl processor : processors) {
+            processor.enableBatchNetting();
+        }
+    }
+
+    /*
+     * Results of every processor are completed by dispatcher threads instead of processor thread.
+     * Should be called before engine is started
+     */
+    public void enableResultDispatcher(int threads, int queueCapacity) {
+        resultDispatcher = new AccountResultDispatcher(threads, queueCapacity, IdleStrategies::backoff);
+        for (AccountEventProcessorImpl processor : processors) {
+            processor.setResultDispatcher(resultDispatcher);
+        }
+    }
+
+    /*
+     * Exposes processor timings and publisher counters of every shard, labeled with shard id
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.counter("transfer_validation_rejected_total", "Requests rejected by validation before they were published", "",
+                AccountEventValidator::getRejectedCount);
+        if (resultDispatcher != null) {
+            resultDispatcher.register(registry);
+        }
+        for (int i = 0; i < processors.length; i++) {
+            String labels = MetricsRegistry.labels("shard", Integer.toString(i));
+            AccountEventPublisherImpl shardPublisher = shardPublishers[i];
+            processors[i].getMetrics().register(registry, labels);
+            registry.gauge("transfer_queue_depth", "Events waiting for processor, sampled at scrape", labels, shardPublisher::getQueueDepth);
+            registry.counter("transfer_publish_full_total", "Publishes which found queue full and had to wait", labels, shardPublisher::getFullCount);
+            registry.counter("transfer_publish_rejected_total", "Publishes rejected after waiting for free space", labels, shardPublisher::getRejectedCount);
+            if (histories != null) {
+                registry.gauge("transfer_history_accounts", "Accounts with recorded balance changes", labels, histories[i]::size);
+            }
+            IdempotencyCache idempotencyCache = processors[i].getIdempotencyCache();
+            if (idempotencyCache != null) {
+                registry.gauge("transfer_idempotency_keys", "Idempotency keys remembered by processor", labels, idempotencyCache::size);
+                registry.counter("transfer_idempotency_replayed_total", "Requests answered with result of earlier request with the same key",
+                        labels, idempotencyCache::getReplayed);
+            }
+            AccountEventProcessorImpl processor = processors[i];
+            registry.counter("transfer_batch_cache_hits_total", "Account lookups of batch answered without storage", labels,
+                    processor::getBatchCacheHits);
+            registry.counter("transfer_batch_cache_writes_total", "Netted balances written to storage at the end of batch", labels,
+                    processor::getBatchCacheWrites);
+        }
+    }
+
+    /*
+     * Runs task on processor thread of the shard, between events, see AccountTaskEvent
+     */
+    public void execute(int shardId, Consumer<AccountStorage<AccountInfo, UUID>> task) {
+        AccountTaskEvent event = new AccountTaskEvent(task);
+        event.setPublishNanos(System.nanoTime());
+        router.getShard(shardId).getInbox().offer(event);
+    }
+
+    /*
+     * Storage is owned by processor, it could be changed by other thread only while engine is not started
+     */
+    public AccountStorage<AccountInfo, UUID> getStorage(int shardId) {
+        return storages[shardId];
+    }
+
+    public AccountEventPublisher getPublisher() {
+        return publisher;
+    }
+
+    public AccountEventProcessorImpl getProcessor(int shardId) {
+        return processors[shardId];
+    }
+
+    public int getShardCount() {
+        return processors.length;
+    }
+
+    public AccountShardRouter getRouter() {
+        return router;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AccountStorage<AccountInfo, UUID>[] newStorageArray(int size) {
+        return (AccountStorage<AccountInfo, UUID>[]) new AccountStorage<?, ?>[size];
+    }
+
+    @Override
+    public void close() {
+        for (AccountEventProcessorImpl processor : processors) {
+            processor.close();
+        }
+        if (resultDispatcher != null) {
+            resultDispatcher.close();
+        }
+    }
+}
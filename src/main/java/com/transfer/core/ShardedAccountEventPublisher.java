@@ -0,0 +1,63 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountEventType;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Routes events to the queue of the shard which owns event account,
+ * events without account (account creation) are spread between shards round robin
+ */
+public class ShardedAccountEventPublisher implements AccountEventPublisher {
+
+    private final AccountShardRouter router;
+    private final AccountEventPublisher[] shardPublishers;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public ShardedAccountEventPublisher(AccountShardRouter router, AccountEventPublisher[] shardPublishers) {
+        if (router.getShardCount() != shardPublishers.length) {
+            throw new IllegalArgumentException("Each shard should have own publisher");
+        }
+        this.router = router;
+        this.shardPublishers = shardPublishers;
+    }
+
+    /*
+     * Thread-safe could be called from multiple threads
+     */
+    @Override
+    public boolean publishEvent(AccountEvent accountEvent) {
+        return shardPublishers[shardOf(accountEvent)].publishEvent(accountEvent);
+    }
+
+    @Override
+    public boolean hasEventRing() {
+        return shardPublishers[0].hasEventRing();
+    }
+
+    @Override
+    public AccountEventSlot claim(AccountEventType type, UUID routingAccount) {
+        return shardPublishers[shardOf(routingAccount)].claim(type, routingAccount);
+    }
+
+    /*
+     * Slot belongs to ring of its shard, so it is published there
+     */
+    @Override
+    public void publish(AccountEventSlot slot) {
+        slot.getRing().publish(slot.getSequence());
+    }
+
+    private int shardOf(AccountEvent accountEvent) {
+        return shardOf(accountEvent.getRoutingAccount());
+    }
+
+    private int shardOf(UUID account) {
+        if (account == null) {
+            return Math.floorMod(nextShard.getAndIncrement(), shardPublishers.length);
+        }
+        return router.shardOf(account);
+    }
+}
@@ -0,0 +1,63 @@
+package com.transfer.core.event;
+
+import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountResult;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Many transfers applied by processor in one step. Atomic batch is applied completely or not at all,
+ * otherwise each transfer succeeds or fails on its own and result contains outcome of each one.
+ * All accounts of the batch should belong to the shard of the first source account
+ */
+public class AccountBatchTransferEvent extends AccountEvent {
+    private final UUID[] accountsFrom;
+    private final UUID[] accountsTo;
+    private final long[] amounts;
+    private final boolean atomic;
+
+    public AccountBatchTransferEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer,
+                                     UUID[] accountsFrom, UUID[] accountsTo, long[] amounts, boolean atomic) {
+        super(resultConsumer, errorConsumer);
+        if (accountsFrom.length == 0 || accountsFrom.length != accountsTo.length || accountsFrom.length != amounts.length) {
+            throw new IllegalArgumentException("Batch should contain at least one transfer with source, destination and amount");
+        }
+        this.accountsFrom = accountsFrom;
+        this.accountsTo = accountsTo;
+        this.amounts = amounts;
+        this.atomic = atomic;
+    }
+
+    public int size() {
+        return amounts.length;
+    }
+
+    public UUID getAccountFrom(int index) {
+        return accountsFrom[index];
+    }
+
+    public UUID getAccountTo(int index) {
+        return accountsTo[index];
+    }
+
+    public long getAmount(int index) {
+        return amounts[index];
+    }
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    public AccountResult processEvent(AccountEventProcessor visitor) {
+        return visitor.process(this);
+    }
+
+    public AccountEventType getType() {
+        return AccountEventType.BATCH_TRANSFER;
+    }
+
+    public UUID getRoutingAccount() {
+        return accountsFrom[0];
+    }
+}
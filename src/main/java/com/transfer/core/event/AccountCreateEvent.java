@@ -2,24 +2,41 @@ package com.transfer.core.event;
 
 
 import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountEventValidator;
+import com.transfer.core.AccountResult;
 
-import java.math.BigDecimal;
+import java.util.UUID;
 import java.util.function.Consumer;
 
 public class AccountCreateEvent extends AccountEvent {
 
-    private final BigDecimal amount;
+    private final long amount;
 
-    public AccountCreateEvent(Consumer<String> resultConsumer, Consumer<Throwable> errorConsumer, BigDecimal amount) {
+    public AccountCreateEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer, long amount) {
         super(resultConsumer, errorConsumer);
+        AccountEventValidator.validateCreate(amount);
         this.amount = amount;
     }
 
-    public BigDecimal getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public String processEvent(AccountEventProcessor visitor) {
+    public AccountResult processEvent(AccountEventProcessor visitor) {
         return visitor.process(this);
     }
+
+    public AccountEventType getType() {
+        return AccountEventType.CREATE;
+    }
+
+    /*
+     * Create with idempotency key goes to the shard of its key, so retry reaches the shard which remembers the key
+     */
+    public UUID getRoutingAccount() {
+        if (getIdempotencyKeyHi() == 0 && getIdempotencyKeyLo() == 0) {
+            return null;
+        }
+        return new UUID(getIdempotencyKeyHi(), getIdempotencyKeyLo());
+    }
 }
@@ -0,0 +1,69 @@
+package com.transfer.core.event;
+
+
+import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Second half of transfer between accounts from different shards,
+ * amount is already debited from source account and should be credited to destination account by its shard
+ */
+public class AccountCreditEvent extends AccountEvent {
+    private final long transferId;
+    private final UUID accountFrom;
+    private final UUID accountTo;
+    private final long amount;
+    private final AccountInfo debitedAccount;
+
+    public AccountCreditEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer, long transferId, UUID accountFrom, UUID accountTo, long amount, AccountInfo debitedAccount) {
+        super(resultConsumer, errorConsumer);
+        this.transferId = transferId;
+        this.accountFrom = accountFrom;
+        this.accountTo = accountTo;
+        this.amount = amount;
+        this.debitedAccount = debitedAccount;
+    }
+
+    public long getTransferId() {
+        return transferId;
+    }
+
+
+    public UUID getAccountFrom() {
+        return accountFrom;
+    }
+
+
+    public UUID getAccountTo() {
+        return accountTo;
+    }
+
+
+    public long getAmount() {
+        return amount;
+    }
+
+    /*
+     * State of source account right after debit, it is owned by another shard, so it's a copy
+     */
+    public AccountInfo getDebitedAccount() {
+        return debitedAccount;
+    }
+
+
+    public AccountResult processEvent(AccountEventProcessor visitor) {
+        return visitor.process(this);
+    }
+
+    public AccountEventType getType() {
+        return AccountEventType.CREDIT;
+    }
+
+    public UUID getRoutingAccount() {
+        return accountTo;
+    }
+}
@@ -1,19 +1,26 @@
 package com.transfer.core.event;
 
 import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountResult;
 
+import java.util.UUID;
 import java.util.function.Consumer;
 
 public abstract class AccountEvent {
-    private final Consumer<String> resultConsumer;
+    private final Consumer<AccountResult> resultConsumer;
     private final Consumer<Throwable> errorConsumer;
+    //time when event was offered to processor queue, written by publisher before offer
+    private long publishNanos;
+    //optional key given by client, retry with the same key gets result of the first event, both halves 0 means no key
+    private long idempotencyKeyHi;
+    private long idempotencyKeyLo;
 
-    AccountEvent(Consumer<String> resultConsumer, Consumer<Throwable> errorConsumer) {
+    AccountEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer) {
         this.resultConsumer = resultConsumer;
         this.errorConsumer = errorConsumer;
     }
 
-    public Consumer<String> getResultConsumer() {
+    public Consumer<AccountResult> getResultConsumer() {
         return resultConsumer;
     }
 
@@ -21,6 +28,37 @@ public abstract class AccountEvent {
         return errorConsumer;
     }
 
-    public abstract String processEvent(AccountEventProcessor visitor);
+    public long getPublishNanos() {
+        return publishNanos;
+    }
+
+    public void setPublishNanos(long publishNanos) {
+        this.publishNanos = publishNanos;
+    }
+
+    public long getIdempotencyKeyHi() {
+        return idempotencyKeyHi;
+    }
+
+    public long getIdempotencyKeyLo() {
+        return idempotencyKeyLo;
+    }
+
+    /*
+     * Used by create, transfer and batch transfer, see IdempotencyCache
+     */
+    public void setIdempotencyKey(long idempotencyKeyHi, long idempotencyKeyLo) {
+        this.idempotencyKeyHi = idempotencyKeyHi;
+        this.idempotencyKeyLo = idempotencyKeyLo;
+    }
+
+    public abstract AccountResult processEvent(AccountEventProcessor visitor);
+
+    public abstract AccountEventType getType();
+
+    /*
+     * Account which defines shard responsible for the event, null if any shard could process it
+     */
+    public abstract UUID getRoutingAccount();
 
 }
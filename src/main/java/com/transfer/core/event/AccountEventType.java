@@ -0,0 +1,14 @@
+package com.transfer.core.event;
+
+public enum AccountEventType {
+    CREATE, INFO, TRANSFER, BATCH_TRANSFER, CREDIT, REFUND, IMPORT, SETTLE, TASK;
+
+    private final String label = name().toLowerCase();
+
+    /*
+     * Lower case name, used as metric label
+     */
+    public String getLabel() {
+        return label;
+    }
+}
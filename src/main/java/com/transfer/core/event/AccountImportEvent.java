@@ -0,0 +1,52 @@
+package com.transfer.core.event;
+
+import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountResult;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Chunk of imported accounts inserted by processor in one step, result contains outcome of each account.
+ * Accounts keep given uuids, all of them should belong to the shard of the first one, see AccountImporter
+ */
+public class AccountImportEvent extends AccountEvent {
+    private final UUID[] accounts;
+    private final long[] amounts;
+    private final int size;
+
+    public AccountImportEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer,
+                              UUID[] accounts, long[] amounts, int size) {
+        super(resultConsumer, errorConsumer);
+        if (size == 0 || size > accounts.length || size > amounts.length) {
+            throw new IllegalArgumentException("Import should contain at least one account with uuid and amount");
+        }
+        this.accounts = accounts;
+        this.amounts = amounts;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public UUID getAccount(int index) {
+        return accounts[index];
+    }
+
+    public long getAmount(int index) {
+        return amounts[index];
+    }
+
+    public AccountResult processEvent(AccountEventProcessor visitor) {
+        return visitor.process(this);
+    }
+
+    public AccountEventType getType() {
+        return AccountEventType.IMPORT;
+    }
+
+    public UUID getRoutingAccount() {
+        return accounts[0];
+    }
+}
@@ -1,6 +1,7 @@
 package com.transfer.core.event;
 
 import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountResult;
 
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -8,7 +9,7 @@ import java.util.function.Consumer;
 public class AccountInfoEvent extends AccountEvent {
     private final UUID account;
 
-    public AccountInfoEvent(Consumer<String> resultConsumer, Consumer<Throwable> errorConsumer, UUID account) {
+    public AccountInfoEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer, UUID account) {
         super(resultConsumer, errorConsumer);
         this.account = account;
     }
@@ -18,7 +19,15 @@ public class AccountInfoEvent extends AccountEvent {
     }
 
 
-    public String processEvent(AccountEventProcessor visitor) {
+    public AccountResult processEvent(AccountEventProcessor visitor) {
         return visitor.process(this);
     }
+
+    public AccountEventType getType() {
+        return AccountEventType.INFO;
+    }
+
+    public UUID getRoutingAccount() {
+        return account;
+    }
 }
@@ -0,0 +1,59 @@
+package com.transfer.core.event;
+
+
+import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountResult;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Compensation of cross shard transfer which could not be credited,
+ * amount is returned to source account and transfer is completed with error
+ */
+public class AccountRefundEvent extends AccountEvent {
+    private final long transferId;
+    private final UUID account;
+    private final long amount;
+    private final String reason;
+
+    public AccountRefundEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer, long transferId, UUID account, long amount, String reason) {
+        super(resultConsumer, errorConsumer);
+        this.transferId = transferId;
+        this.account = account;
+        this.amount = amount;
+        this.reason = reason;
+    }
+
+    public long getTransferId() {
+        return transferId;
+    }
+
+
+    public UUID getAccount() {
+        return account;
+    }
+
+
+    public long getAmount() {
+        return amount;
+    }
+
+
+    public String getReason() {
+        return reason;
+    }
+
+
+    public AccountResult processEvent(AccountEventProcessor visitor) {
+        return visitor.process(this);
+    }
+
+    public AccountEventType getType() {
+        return AccountEventType.REFUND;
+    }
+
+    public UUID getRoutingAccount() {
+        return account;
+    }
+}
@@ -0,0 +1,39 @@
+package com.transfer.core.event;
+
+import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountResult;
+
+import java.util.UUID;
+
+/*
+ * Outcome of cross shard transfer with idempotency key, sent back to shard of source account when transfer is
+ * completed by another shard, so source shard could answer retries. Result is null if transfer failed
+ */
+public class AccountSettleEvent extends AccountEvent {
+    private final UUID accountFrom;
+    private final AccountResult result;
+
+    public AccountSettleEvent(UUID accountFrom, long idempotencyKeyHi, long idempotencyKeyLo, AccountResult result) {
+        //nobody waits for it
+        super(ignored -> { }, ignored -> { });
+        this.accountFrom = accountFrom;
+        this.result = result;
+        setIdempotencyKey(idempotencyKeyHi, idempotencyKeyLo);
+    }
+
+    public AccountResult getResult() {
+        return result;
+    }
+
+    public AccountResult processEvent(AccountEventProcessor visitor) {
+        return visitor.process(this);
+    }
+
+    public AccountEventType getType() {
+        return AccountEventType.SETTLE;
+    }
+
+    public UUID getRoutingAccount() {
+        return accountFrom;
+    }
+}
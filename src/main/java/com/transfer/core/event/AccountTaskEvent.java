@@ -0,0 +1,38 @@
+package com.transfer.core.event;
+
+import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountStorage;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+ * Task which needs storage of the shard at a point between events, e.g. to copy it. It is executed by processor thread,
+ * so it sees all events before it and blocks all events after it. It is put directly into inbox of the shard, nobody waits for result
+ */
+public class AccountTaskEvent extends AccountEvent {
+    private final Consumer<AccountStorage<AccountInfo, UUID>> task;
+
+    public AccountTaskEvent(Consumer<AccountStorage<AccountInfo, UUID>> task) {
+        super(ignored -> { }, ignored -> { });
+        this.task = task;
+    }
+
+    public Consumer<AccountStorage<AccountInfo, UUID>> getTask() {
+        return task;
+    }
+
+    public AccountResult processEvent(AccountEventProcessor visitor) {
+        return visitor.process(this);
+    }
+
+    public AccountEventType getType() {
+        return AccountEventType.TASK;
+    }
+
+    public UUID getRoutingAccount() {
+        return null;
+    }
+}
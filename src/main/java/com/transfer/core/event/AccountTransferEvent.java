@@ -2,18 +2,20 @@ package com.transfer.core.event;
 
 
 import com.transfer.core.AccountEventProcessor;
+import com.transfer.core.AccountEventValidator;
+import com.transfer.core.AccountResult;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 import java.util.function.Consumer;
 
 public class AccountTransferEvent extends AccountEvent {
     private final UUID accountFrom;
     private final UUID accountTo;
-    private final BigDecimal amount;
+    private final long amount;
 
-    public AccountTransferEvent(Consumer<String> resultConsumer, Consumer<Throwable> errorConsumer, UUID accountFrom, UUID accountTo, BigDecimal amount) {
+    public AccountTransferEvent(Consumer<AccountResult> resultConsumer, Consumer<Throwable> errorConsumer, UUID accountFrom, UUID accountTo, long amount) {
         super(resultConsumer, errorConsumer);
+        AccountEventValidator.validateTransfer(accountFrom, accountTo, amount);
         this.accountFrom = accountFrom;
         this.accountTo = accountTo;
         this.amount = amount;
@@ -29,12 +31,20 @@ public class AccountTransferEvent extends AccountEvent {
     }
 
 
-    public BigDecimal getAmount() {
+    public long getAmount() {
         return amount;
     }
 
 
-    public String processEvent(AccountEventProcessor visitor) {
+    public AccountResult processEvent(AccountEventProcessor visitor) {
         return visitor.process(this);
     }
+
+    public AccountEventType getType() {
+        return AccountEventType.TRANSFER;
+    }
+
+    public UUID getRoutingAccount() {
+        return accountFrom;
+    }
 }
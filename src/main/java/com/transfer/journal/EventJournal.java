@@ -0,0 +1,277 @@
+package com.transfer.journal;
+
+import com.transfer.core.AccountEventListener;
+import com.transfer.core.AccountInfo;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Append-only journal of state changes, stored in memory-mapped segment files of fixed size.
+ * Record layout: [int length][record], see JournalRecords, length is written last, so record which is not fully written has length 0.
+ * Amounts are long minor units, see Money, so journal should be replayed with the same money scale.
+ * Position in journal is segment index in high 32 bits and offset inside segment in low 32 bits.
+ *
+ * Appends are performed only from processor thread, journal is registered as processor listener
+ * and writes every change before result of its event is completed
+ */
+public class EventJournal implements AccountEventListener, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final JournalSyncPolicy syncPolicy;
+    private final ExpandableArrayBuffer recordBuffer = new ExpandableArrayBuffer(JournalRecords.MAX_RECORD_LENGTH);
+    private final ScheduledExecutorService syncExecutor;
+
+    private volatile MappedByteBuffer currentSegment;
+    private UnsafeBuffer segmentBuffer;
+    private long segmentIndex;
+    private int writePosition;
+    private boolean dirty;
+    //end of the last completed batch, could be read by other threads, e.g. snapshot writer
+    private volatile long committedPosition;
+
+    public EventJournal(Path directory, int segmentSize, JournalSyncPolicy syncPolicy, long syncPeriodMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        try {
+            Files.createDirectories(directory);
+            List<Long> segments = segmentIndexes();
+            mapSegment(segments.isEmpty() ? 0 : segments.get(segments.size() - 1));
+            this.writePosition = findEnd(segmentBuffer);
+            this.committedPosition = position(segmentIndex, writePosition);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open journal in " + directory, e);
+        }
+
+        if (syncPolicy == JournalSyncPolicy.PERIODIC) {
+            this.syncExecutor = Executors.newSingleThreadScheduledExecutor();
+            syncExecutor.scheduleAtFixedRate(() -> currentSegment.force(), syncPeriodMillis, syncPeriodMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncExecutor = null;
+        }
+    }
+
+    public static long position(long segmentIndex, int offset) {
+        return segmentIndex << 32 | offset;
+    }
+
+    public static long segmentOf(long position) {
+        return position >>> 32;
+    }
+
+    public static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    /*
+     * Reads all records starting from position and returns position right after the last one.
+     * Should not be called concurrently with appends
+     */
+    public long replay(long fromPosition, JournalRecordHandler handler) {
+        return replay(fromPosition, Long.MAX_VALUE, handler);
+    }
+
+    /*
+     * Reads records between two positions, could be called from any thread if toPosition is not after committed position
+     */
+    public long replay(long fromPosition, long toPosition, JournalRecordHandler handler) {
+        long position = fromPosition;
+        long records = 0;
+        try {
+            for (long index : segmentIndexes()) {
+                if (index < segmentOf(fromPosition)) {
+                    continue;
+                }
+                if (index > segmentOf(toPosition)) {
+                    break;
+                }
+                UnsafeBuffer buffer = new UnsafeBuffer(mapReadOnly(index));
+                int offset = index == segmentOf(fromPosition) ? offsetOf(fromPosition) : 0;
+                int limit = index == segmentOf(toPosition) ? Math.min(offsetOf(toPosition), buffer.capacity()) : buffer.capacity();
+                int length;
+                while (offset + LENGTH_SIZE <= limit && (length = buffer.getIntVolatile(offset)) > 0) {
+                    JournalRecords.decode(buffer, offset + LENGTH_SIZE, handler);
+                    offset += LENGTH_SIZE + length;
+                    records++;
+                }
+                position = position(index, offset);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to replay journal in " + directory, e);
+        }
+        LOGGER.info("Replayed {} records from journal {}", records, directory);
+        return position;
+    }
+
+    public long getCommittedPosition() {
+        return committedPosition;
+    }
+
+    /*
+     * Removes segments which are not needed anymore, because their content is in snapshot.
+     * Segment of committed position or later should never be deleted
+     */
+    public void deleteSegmentsBefore(long firstRetainedSegment) {
+        try {
+            for (long index : segmentIndexes()) {
+                if (index >= firstRetainedSegment) {
+                    break;
+                }
+                Files.deleteIfExists(segmentPath(index));
+                LOGGER.info("Journal segment {} in {} is deleted", index, directory);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to delete journal segments in " + directory, e);
+        }
+    }
+
+    /*
+     * Forces everything appended so far to disk, regardless of sync policy
+     */
+    public void sync() {
+        currentSegment.force();
+        dirty = false;
+        committedPosition = position(segmentIndex, writePosition);
+    }
+
+    @Override
+    public void onAccountCreated(AccountInfo account) {
+        append(JournalRecords.putAccountCreated(recordBuffer, 0, account.getUuid(), account.getAmount()));
+    }
+
+    @Override
+    public void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        append(JournalRecords.putTransfer(recordBuffer, 0, fromAccount.getUuid(), toAccount.getUuid(), amount));
+    }
+
+    @Override
+    public void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+        append(JournalRecords.putDebit(recordBuffer, 0, transferId, fromAccount.getUuid(), toAccount, amount));
+    }
+
+    @Override
+    public void onCredit(long transferId, AccountInfo account, long amount) {
+        append(JournalRecords.putCredit(recordBuffer, 0, transferId, account.getUuid(), amount));
+    }
+
+    @Override
+    public void onBatchProcessed() {
+        if (syncPolicy == JournalSyncPolicy.PER_BATCH && dirty) {
+            sync();
+        } else {
+            committedPosition = position(segmentIndex, writePosition);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+        }
+        sync();
+    }
+
+    private void append(int length) {
+        if (writePosition + LENGTH_SIZE + length + LENGTH_SIZE > segmentBuffer.capacity()) {
+            rollSegment(length);
+        }
+        segmentBuffer.putBytes(writePosition + LENGTH_SIZE, recordBuffer, 0, length);
+        segmentBuffer.putIntOrdered(writePosition, length);
+        writePosition += LENGTH_SIZE + length;
+        dirty = true;
+
+        if (syncPolicy == JournalSyncPolicy.PER_EVENT) {
+            sync();
+        }
+    }
+
+    private void rollSegment(int length) {
+        if (LENGTH_SIZE + length + LENGTH_SIZE > segmentSize) {
+            throw new IllegalStateException("Journal record of " + length + " bytes does not fit into segment");
+        }
+        if (writePosition + LENGTH_SIZE <= segmentBuffer.capacity()) {
+            segmentBuffer.putIntOrdered(writePosition, END_OF_SEGMENT);
+        }
+        currentSegment.force();
+        try {
+            mapSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create journal segment in " + directory, e);
+        }
+        writePosition = 0;
+    }
+
+    private void mapSegment(long index) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(index).toFile(), "rw")) {
+            if (file.length() == 0) {
+                file.setLength(segmentSize);
+            }
+            MappedByteBuffer segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            this.segmentBuffer = new UnsafeBuffer(segment);
+            this.segmentIndex = index;
+            this.currentSegment = segment;
+        }
+    }
+
+    private MappedByteBuffer mapReadOnly(long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int findEnd(UnsafeBuffer buffer) {
+        int offset = 0;
+        while (offset + LENGTH_SIZE <= buffer.capacity()) {
+            int length = buffer.getIntVolatile(offset);
+            if (length == 0) {
+                return offset;
+            }
+            if (length == END_OF_SEGMENT) {
+                //segment is closed, next append will create new one
+                return buffer.capacity();
+            }
+            offset += LENGTH_SIZE + length;
+        }
+        return buffer.capacity();
+    }
+
+    private List<Long> segmentIndexes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,17 @@
+package com.transfer.journal;
+
+import java.util.UUID;
+
+/*
+ * Receives journal records during replay in the same order as they were appended
+ */
+public interface JournalRecordHandler {
+
+    void onAccountCreated(UUID account, long amount);
+
+    void onTransfer(UUID fromAccount, UUID toAccount, long amount);
+
+    void onDebit(long transferId, UUID fromAccount, UUID toAccount, long amount);
+
+    void onCredit(long transferId, UUID account, long amount);
+}
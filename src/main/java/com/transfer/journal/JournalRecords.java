@@ -0,0 +1,96 @@
+package com.transfer.journal;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import java.util.UUID;
+
+/*
+ * Encoding of state change records, shared by journal and replication stream.
+ * Record is [byte type][uuid account][payload], uuid is two longs, amounts are long minor units:
+ *   account created - [long amount]
+ *   transfer        - [uuid to][long amount]
+ *   debit           - [uuid to][long transfer id][long amount]
+ *   credit          - [long transfer id][long amount]
+ * Put and decode methods return length of the record, so records could be packed one after another
+ */
+public final class JournalRecords {
+
+    public static final byte ACCOUNT_CREATED = 1;
+    public static final byte TRANSFER = 2;
+    public static final byte DEBIT = 3;
+    public static final byte CREDIT = 4;
+
+    //the longest record is debit
+    public static final int MAX_RECORD_LENGTH = Byte.BYTES + 6 * Long.BYTES;
+
+    private static final int HEADER_LENGTH = Byte.BYTES + 2 * Long.BYTES;
+
+    private JournalRecords() {
+    }
+
+    public static int putAccountCreated(MutableDirectBuffer buffer, int offset, UUID account, long amount) {
+        putHeader(buffer, offset, ACCOUNT_CREATED, account);
+        buffer.putLong(offset + HEADER_LENGTH, amount);
+        return HEADER_LENGTH + Long.BYTES;
+    }
+
+    public static int putTransfer(MutableDirectBuffer buffer, int offset, UUID fromAccount, UUID toAccount, long amount) {
+        putHeader(buffer, offset, TRANSFER, fromAccount);
+        putUuid(buffer, offset + HEADER_LENGTH, toAccount);
+        buffer.putLong(offset + HEADER_LENGTH + 2 * Long.BYTES, amount);
+        return HEADER_LENGTH + 3 * Long.BYTES;
+    }
+
+    public static int putDebit(MutableDirectBuffer buffer, int offset, long transferId, UUID fromAccount, UUID toAccount, long amount) {
+        putHeader(buffer, offset, DEBIT, fromAccount);
+        putUuid(buffer, offset + HEADER_LENGTH, toAccount);
+        buffer.putLong(offset + HEADER_LENGTH + 2 * Long.BYTES, transferId);
+        buffer.putLong(offset + HEADER_LENGTH + 3 * Long.BYTES, amount);
+        return HEADER_LENGTH + 4 * Long.BYTES;
+    }
+
+    public static int putCredit(MutableDirectBuffer buffer, int offset, long transferId, UUID account, long amount) {
+        putHeader(buffer, offset, CREDIT, account);
+        buffer.putLong(offset + HEADER_LENGTH, transferId);
+        buffer.putLong(offset + HEADER_LENGTH + Long.BYTES, amount);
+        return HEADER_LENGTH + 2 * Long.BYTES;
+    }
+
+    public static int decode(DirectBuffer buffer, int offset, JournalRecordHandler handler) {
+        byte type = buffer.getByte(offset);
+        UUID account = getUuid(buffer, offset + Byte.BYTES);
+        int payload = offset + HEADER_LENGTH;
+        switch (type) {
+            case ACCOUNT_CREATED:
+                handler.onAccountCreated(account, buffer.getLong(payload));
+                return HEADER_LENGTH + Long.BYTES;
+            case TRANSFER:
+                handler.onTransfer(account, getUuid(buffer, payload), buffer.getLong(payload + 2 * Long.BYTES));
+                return HEADER_LENGTH + 3 * Long.BYTES;
+            case DEBIT:
+                handler.onDebit(buffer.getLong(payload + 2 * Long.BYTES), account, getUuid(buffer, payload),
+                        buffer.getLong(payload + 3 * Long.BYTES));
+                return HEADER_LENGTH + 4 * Long.BYTES;
+            case CREDIT:
+                handler.onCredit(buffer.getLong(payload), account, buffer.getLong(payload + Long.BYTES));
+                return HEADER_LENGTH + 2 * Long.BYTES;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static void putHeader(MutableDirectBuffer buffer, int offset, byte type, UUID account) {
+        buffer.putByte(offset, type);
+        putUuid(buffer, offset + Byte.BYTES, account);
+    }
+
+    private static void putUuid(MutableDirectBuffer buffer, int offset, UUID uuid) {
+        buffer.putLong(offset, uuid.getMostSignificantBits());
+        buffer.putLong(offset + Long.BYTES, uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(DirectBuffer buffer, int offset) {
+        return new UUID(buffer.getLong(offset), buffer.getLong(offset + Long.BYTES));
+    }
+}
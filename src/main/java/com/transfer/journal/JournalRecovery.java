@@ -0,0 +1,66 @@
+package com.transfer.journal;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * Rebuilds storage of every shard by replaying its journal.
+ * Cross shard transfer is journaled as debit on one shard and credit on another, if application stopped between them
+ * the debit has no matching credit, such transfers were never confirmed to client, so money is returned to source account
+ */
+public class JournalRecovery {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalRecovery.class);
+
+    private final List<EventJournal> journals;
+    private final List<AccountStorage<AccountInfo, UUID>> storages;
+
+    public JournalRecovery(List<EventJournal> journals, List<AccountStorage<AccountInfo, UUID>> storages) {
+        if (journals.size() != storages.size()) {
+            throw new IllegalArgumentException("Each shard should have own journal and storage");
+        }
+        this.journals = journals;
+        this.storages = storages;
+    }
+
+    /*
+     * Should be called before processors are started
+     */
+    public void recover() {
+        recover(new long[journals.size()], new PendingTransfers());
+    }
+
+    /*
+     * Storages already contain state at given positions (e.g. loaded from snapshot) together with transfers
+     * pending at that moment, only records after positions are replayed
+     */
+    public void recover(long[] positions, PendingTransfers pendingTransfers) {
+        for (int shard = 0; shard < journals.size(); shard++) {
+            journals.get(shard).replay(positions[shard],
+                    pendingTransfers.trackingHandler(shard, new StorageReplayHandler(storages.get(shard))));
+        }
+        refund(pendingTransfers);
+    }
+
+    private void refund(PendingTransfers pendingTransfers) {
+        for (Map.Entry<Long, PendingTransfers.PendingDebit> entry : pendingTransfers.getDebits().entrySet()) {
+            PendingTransfers.PendingDebit debit = entry.getValue();
+            AccountStorage<AccountInfo, UUID> storage = storages.get(debit.getShard());
+            AccountInfo account = storage.getByUuid(debit.getAccount());
+            account.setAmount(Money.add(account.getAmount(), debit.getAmount()));
+            storage.put(account);
+            journals.get(debit.getShard()).onCredit(entry.getKey(), account, debit.getAmount());
+
+            LOGGER.warn("Refund account {}, amount {} for not completed transfer {}", debit.getAccount(), debit.getAmount(), entry.getKey());
+        }
+        journals.forEach(EventJournal::sync);
+        pendingTransfers.clear();
+    }
+}
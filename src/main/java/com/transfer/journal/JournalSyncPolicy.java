@@ -0,0 +1,17 @@
+package com.transfer.journal;
+
+/*
+ * When journal content is forced from page cache to disk
+ */
+public enum JournalSyncPolicy {
+    //after every record, safest and slowest
+    PER_EVENT,
+    //once per processor batch, before results of the batch are completed
+    PER_BATCH,
+    //by background thread every sync period, last period could be lost on power failure
+    PERIODIC;
+
+    public static JournalSyncPolicy fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,136 @@
+package com.transfer.journal;
+
+import com.transfer.core.AccountShardRouter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * Cross shard transfers seen in journals: debits which are not matched with credit yet
+ * and credits replayed before their debit, it happens when journals are cut not at the same moment.
+ * Also the last sequence of transfer ids given by each shard, see AccountShardRouter.transferId
+ */
+public class PendingTransfers {
+
+    private final Map<Long, PendingDebit> debits = new HashMap<>();
+    private final Map<Integer, Long> transferSequences = new HashMap<>();
+    private Set<Long> credits = new HashSet<>();
+    private Set<Long> previousCredits = new HashSet<>();
+
+    public void onDebit(long transferId, int shard, UUID account, long amount) {
+        if (AccountShardRouter.shardOfTransfer(transferId) == shard) {
+            onTransferSequence(shard, AccountShardRouter.sequenceOfTransfer(transferId));
+        }
+        //credit could be already replayed if destination shard was replayed first
+        if (!credits.remove(transferId) && !previousCredits.remove(transferId)) {
+            debits.put(transferId, new PendingDebit(shard, account, amount));
+        }
+    }
+
+    public void onCredit(long transferId) {
+        if (debits.remove(transferId) == null) {
+            credits.add(transferId);
+        }
+    }
+
+    /*
+     * Credit could outrun its debit only by a single journal cut, older unmatched credits are refunds written by
+     * recovery, their debits are already matched, so they are dropped after second call
+     */
+    public void expireCredits() {
+        previousCredits = credits;
+        credits = new HashSet<>();
+    }
+
+    public void onTransferSequence(int shard, long sequence) {
+        transferSequences.merge(shard, sequence, Math::max);
+    }
+
+    public long getTransferSequence(int shard) {
+        return transferSequences.getOrDefault(shard, 0L);
+    }
+
+    public Map<Long, PendingDebit> getDebits() {
+        return Collections.unmodifiableMap(debits);
+    }
+
+    public Set<Long> getCredits() {
+        Set<Long> all = new HashSet<>(credits);
+        all.addAll(previousCredits);
+        return all;
+    }
+
+    /*
+     * Transfers are forgotten, sequences are kept
+     */
+    public void clear() {
+        debits.clear();
+        credits.clear();
+        previousCredits.clear();
+    }
+
+    /*
+     * Tracks transfers of shard journal, passes records to delegate if it is present
+     */
+    public JournalRecordHandler trackingHandler(int shard, JournalRecordHandler delegate) {
+        return new JournalRecordHandler() {
+            @Override
+            public void onAccountCreated(UUID account, long amount) {
+                if (delegate != null) {
+                    delegate.onAccountCreated(account, amount);
+                }
+            }
+
+            @Override
+            public void onTransfer(UUID fromAccount, UUID toAccount, long amount) {
+                if (delegate != null) {
+                    delegate.onTransfer(fromAccount, toAccount, amount);
+                }
+            }
+
+            @Override
+            public void onDebit(long transferId, UUID fromAccount, UUID toAccount, long amount) {
+                if (delegate != null) {
+                    delegate.onDebit(transferId, fromAccount, toAccount, amount);
+                }
+                PendingTransfers.this.onDebit(transferId, shard, fromAccount, amount);
+            }
+
+            @Override
+            public void onCredit(long transferId, UUID account, long amount) {
+                if (delegate != null) {
+                    delegate.onCredit(transferId, account, amount);
+                }
+                PendingTransfers.this.onCredit(transferId);
+            }
+        };
+    }
+
+    public static class PendingDebit {
+        private final int shard;
+        private final UUID account;
+        private final long amount;
+
+        public PendingDebit(int shard, UUID account, long amount) {
+            this.shard = shard;
+            this.account = account;
+            this.amount = amount;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        public UUID getAccount() {
+            return account;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+    }
+}
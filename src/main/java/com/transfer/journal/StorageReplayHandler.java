@@ -0,0 +1,49 @@
+package com.transfer.journal;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.Money;
+
+import java.util.UUID;
+
+/*
+ * Applies replayed journal records to storage
+ */
+public class StorageReplayHandler implements JournalRecordHandler {
+
+    private final AccountStorage<AccountInfo, UUID> storage;
+
+    public StorageReplayHandler(AccountStorage<AccountInfo, UUID> storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void onAccountCreated(UUID account, long amount) {
+        storage.put(new AccountInfo(account, amount));
+    }
+
+    @Override
+    public void onTransfer(UUID fromAccount, UUID toAccount, long amount) {
+        add(fromAccount, -amount);
+        add(toAccount, amount);
+    }
+
+    @Override
+    public void onDebit(long transferId, UUID fromAccount, UUID toAccount, long amount) {
+        add(fromAccount, -amount);
+    }
+
+    @Override
+    public void onCredit(long transferId, UUID account, long amount) {
+        add(account, amount);
+    }
+
+    private void add(UUID uuid, long amount) {
+        AccountInfo account = storage.getByUuid(uuid);
+        if (account == null) {
+            throw new IllegalStateException("Journal references unknown account " + uuid);
+        }
+        account.setAmount(Money.add(account.getAmount(), amount));
+        storage.put(account);
+    }
+}
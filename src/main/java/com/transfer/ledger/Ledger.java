@@ -0,0 +1,110 @@
+package com.transfer.ledger;
+
+import com.transfer.core.AccountEventListener;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.journal.EventJournal;
+import com.transfer.metrics.MetricsRegistry;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Running totals of all shards: accounts, balances, money in flight between shards, transfer count and volume in total
+ * and within the last windowSeconds, and the largest balances. Each shard keeps its part in LedgerShard listener,
+ * summary of the whole ledger is merged from published shard summaries by reader thread without touching processors,
+ * so it costs the same for 1k and for 10M accounts
+ */
+public class Ledger {
+
+    public static final int DEFAULT_TOP_SIZE = 10;
+    public static final int DEFAULT_WINDOW_SECONDS = 60;
+
+    //heap keeps more balances than reported, so accounts which lost money are replaced by the next ones, see TopBalances
+    private static final int TOP_CAPACITY_FACTOR = 4;
+
+    private final LedgerShard[] shards;
+    private final int topSize;
+    private final int windowSeconds;
+
+    public Ledger(List<AccountStorage<AccountInfo, UUID>> storages) {
+        this(storages, List.of(), DEFAULT_TOP_SIZE, DEFAULT_WINDOW_SECONDS);
+    }
+
+    /*
+     * storages - storages of shards, aggregates start from their scan, so they should be already recovered
+     * journals - journals of shards, if present summaries are stamped with journal positions, so they could be verified
+     * topSize - number of the largest balances reported
+     * windowSeconds - length of window of recent transfers
+     */
+    public Ledger(List<AccountStorage<AccountInfo, UUID>> storages, List<EventJournal> journals, int topSize, int windowSeconds) {
+        if (topSize < 1 || windowSeconds < 1) {
+            throw new IllegalArgumentException("Top size and window should be positive");
+        }
+        this.topSize = topSize;
+        this.windowSeconds = windowSeconds;
+        this.shards = new LedgerShard[storages.size()];
+        for (int i = 0; i < shards.length; i++) {
+            EventJournal journal = journals.isEmpty() ? null : journals.get(i);
+            shards[i] = new LedgerShard(storages.get(i), topSize * TOP_CAPACITY_FACTOR, windowSeconds,
+                    journal != null ? journal::getCommittedPosition : () -> 0);
+        }
+    }
+
+    /*
+     * Listener which keeps aggregates of shard, should be added to processor of the shard after its journal
+     */
+    public AccountEventListener listener(int shard) {
+        return shards[shard];
+    }
+
+    /*
+     * Aggregates are computed again by scan of storages, e.g. when replication follower is promoted.
+     * Should be called only while processors are not started
+     */
+    public void reset() {
+        for (LedgerShard shard : shards) {
+            shard.reset();
+        }
+    }
+
+    /*
+     * Summary of the whole ledger as of the last applied batch of each shard, could be called from any thread
+     */
+    public LedgerSummary getSummary() {
+        LedgerSummary[] summaries = new LedgerSummary[shards.length];
+        long[] window = new long[2];
+        long nowSecond = System.currentTimeMillis() / 1000;
+        for (int i = 0; i < shards.length; i++) {
+            summaries[i] = shards[i].getSummary();
+            shards[i].addWindow(nowSecond, window);
+        }
+        return LedgerSummary.merge(summaries, windowSeconds, window[0], window[1]);
+    }
+
+    /*
+     * Summary of shard as of its last applied batch, window values are not included
+     */
+    public LedgerSummary getShardSummary(int shard) {
+        return shards[shard].getSummary();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getTopSize() {
+        return topSize;
+    }
+
+    /*
+     * Totals are sampled at scrape, amounts are minor units
+     */
+    public void register(MetricsRegistry registry) {
+        registry.gauge("transfer_ledger_accounts", "Accounts in ledger", "", () -> getSummary().getAccounts());
+        registry.gauge("transfer_ledger_balance", "Sum of balances of all accounts in minor units", "", () -> getSummary().getBalance());
+        registry.gauge("transfer_ledger_in_flight", "Money debited by cross shard transfers and not credited yet in minor units", "",
+                () -> getSummary().getInFlight());
+        registry.counter("transfer_ledger_transfers_total", "Transfers applied", "", () -> getSummary().getTransfers());
+    }
+}
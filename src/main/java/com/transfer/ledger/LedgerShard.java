@@ -0,0 +1,189 @@
+package com.transfer.ledger;
+
+import com.transfer.core.AccountEventListener;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/*
+ * Aggregates of one shard, updated by processor listener as changes are applied, so they are never computed by scan.
+ * After each batch which changed anything new LedgerSummary is published for readers, stamped with journal position of
+ * the batch, so it could be compared with storage replayed to the same position, see LedgerVerifier.
+ * Transfers of the last seconds are counted in ring of per second buckets [second][transfers][volume], written with release
+ * semantic: bucket is zeroed before its second is set, reader checks that second is the same before and after reading it
+ */
+class LedgerShard implements AccountEventListener {
+
+    private static final int BUCKET_SIZE = 3;
+    private static final int SECOND = 0;
+    private static final int TRANSFERS = 1;
+    private static final int VOLUME = 2;
+
+    private final AccountStorage<AccountInfo, UUID> storage;
+    private final LongSupplier journalPosition;
+    private final TopBalances topBalances;
+    private final AtomicLongArray buckets;
+    private final int windowSeconds;
+    private long accounts;
+    private long balance;
+    private long created;
+    private long debited;
+    private long credited;
+    private long refunded;
+    private long transfers;
+    private long volume;
+    private long batchTransfers;
+    private long batchVolume;
+    private boolean changed;
+    private long[] top;
+    private volatile LedgerSummary summary;
+
+    /*
+     * journalPosition - committed position of shard journal, journal should be the earlier listener of processor
+     */
+    LedgerShard(AccountStorage<AccountInfo, UUID> storage, int topCapacity, int windowSeconds, LongSupplier journalPosition) {
+        this.storage = storage;
+        this.journalPosition = journalPosition;
+        this.topBalances = new TopBalances(topCapacity);
+        this.windowSeconds = windowSeconds;
+        this.buckets = new AtomicLongArray(windowSeconds * BUCKET_SIZE);
+        reset();
+    }
+
+    /*
+     * Aggregates are computed again by scan of storage, e.g. after recovery or replication, should be called
+     * only while processor is not started. Accounts of storage are counted as created
+     */
+    void reset() {
+        accounts = 0;
+        balance = 0;
+        debited = 0;
+        credited = 0;
+        refunded = 0;
+        topBalances.clear();
+        storage.forEach(account -> {
+            accounts++;
+            balance += account.getAmount();
+            update(account);
+        });
+        created = balance;
+        changed = true;
+        onBatchProcessed();
+    }
+
+    LedgerSummary getSummary() {
+        return summary;
+    }
+
+    /*
+     * Adds transfers and volume of buckets within window ending at nowSecond to sums, called by reader threads
+     */
+    void addWindow(long nowSecond, long[] sums) {
+        for (int bucket = 0; bucket < windowSeconds; bucket++) {
+            int offset = bucket * BUCKET_SIZE;
+            long second = buckets.getAcquire(offset + SECOND);
+            if (second > nowSecond - windowSeconds && second <= nowSecond) {
+                long bucketTransfers = buckets.getAcquire(offset + TRANSFERS);
+                long bucketVolume = buckets.getAcquire(offset + VOLUME);
+                //bucket could be reused for a newer second while it is read
+                if (buckets.getAcquire(offset + SECOND) == second) {
+                    sums[0] += bucketTransfers;
+                    sums[1] += bucketVolume;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onAccountCreated(AccountInfo account) {
+        accounts++;
+        balance += account.getAmount();
+        created += account.getAmount();
+        update(account);
+    }
+
+    @Override
+    public void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        transfer(amount);
+        update(fromAccount);
+        if (toAccount != fromAccount) {
+            update(toAccount);
+        }
+    }
+
+    @Override
+    public void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+        balance -= amount;
+        debited += amount;
+        transfer(amount);
+        update(fromAccount);
+    }
+
+    /*
+     * Credit without known source, e.g. replicated one
+     */
+    @Override
+    public void onCredit(long transferId, AccountInfo account, long amount) {
+        balance += amount;
+        credited += amount;
+        update(account);
+    }
+
+    @Override
+    public void onCredit(long transferId, AccountInfo account, UUID fromAccount, long amount) {
+        balance += amount;
+        if (fromAccount == null) {
+            refunded += amount;
+        } else {
+            credited += amount;
+        }
+        update(account);
+    }
+
+    @Override
+    public void onBatchProcessed() {
+        if (!changed) {
+            return;
+        }
+        if (batchTransfers > 0) {
+            addToBucket(System.currentTimeMillis() / 1000);
+        }
+        //heap is copied only when it changed, otherwise readers share the previous copy
+        if (top == null || topBalances.isChanged()) {
+            top = topBalances.copy();
+        }
+        summary = new LedgerSummary(journalPosition.getAsLong(), accounts, balance, created, debited, credited, refunded,
+                transfers, volume, top, topBalances.getOutsideMax(), windowSeconds, 0, 0);
+        changed = false;
+    }
+
+    private void transfer(long amount) {
+        transfers++;
+        volume += amount;
+        batchTransfers++;
+        batchVolume += amount;
+    }
+
+    private void update(AccountInfo account) {
+        UUID uuid = account.getUuid();
+        topBalances.update(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), account.getAmount());
+        changed = true;
+    }
+
+    private void addToBucket(long second) {
+        int offset = (int) (second % windowSeconds) * BUCKET_SIZE;
+        if (buckets.getPlain(offset + SECOND) != second) {
+            buckets.setRelease(offset + SECOND, 0);
+            buckets.setRelease(offset + TRANSFERS, 0);
+            buckets.setRelease(offset + VOLUME, 0);
+            buckets.setRelease(offset + SECOND, second);
+        }
+        buckets.setRelease(offset + TRANSFERS, buckets.getPlain(offset + TRANSFERS) + batchTransfers);
+        buckets.setRelease(offset + VOLUME, buckets.getPlain(offset + VOLUME) + batchVolume);
+        batchTransfers = 0;
+        batchVolume = 0;
+    }
+}
@@ -0,0 +1,181 @@
+package com.transfer.ledger;
+
+import com.transfer.core.AccountInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Aggregates of a shard or of the whole ledger at one moment, amounts are long minor units, see Money.
+ * Money only enters ledger by created (and imported) accounts and moves between shards as debits and credits, so
+ * balance is always created + credited + refunded - debited, and debits which were neither credited nor refunded are in flight.
+ * Largest balances are kept in heap order and sorted when they are read, they are exact if isTopExact
+ */
+public final class LedgerSummary {
+
+    private final long position;
+    private final long accounts;
+    private final long balance;
+    private final long created;
+    private final long debited;
+    private final long credited;
+    private final long refunded;
+    private final long transfers;
+    private final long volume;
+    private final long[] top;
+    private final long outsideMax;
+    private final int windowSeconds;
+    private final long windowTransfers;
+    private final long windowVolume;
+
+    LedgerSummary(long position, long accounts, long balance, long created, long debited, long credited, long refunded,
+                  long transfers, long volume, long[] top, long outsideMax, int windowSeconds, long windowTransfers, long windowVolume) {
+        this.position = position;
+        this.accounts = accounts;
+        this.balance = balance;
+        this.created = created;
+        this.debited = debited;
+        this.credited = credited;
+        this.refunded = refunded;
+        this.transfers = transfers;
+        this.volume = volume;
+        this.top = top;
+        this.outsideMax = outsideMax;
+        this.windowSeconds = windowSeconds;
+        this.windowTransfers = windowTransfers;
+        this.windowVolume = windowVolume;
+    }
+
+    /*
+     * Sum of shard summaries, window values are given separately, because they are not part of shard summary
+     */
+    static LedgerSummary merge(LedgerSummary[] shards, int windowSeconds, long windowTransfers, long windowVolume) {
+        long accounts = 0;
+        long balance = 0;
+        long created = 0;
+        long debited = 0;
+        long credited = 0;
+        long refunded = 0;
+        long transfers = 0;
+        long volume = 0;
+        long outsideMax = Long.MIN_VALUE;
+        int topLength = 0;
+        for (LedgerSummary shard : shards) {
+            accounts += shard.accounts;
+            balance += shard.balance;
+            created += shard.created;
+            debited += shard.debited;
+            credited += shard.credited;
+            refunded += shard.refunded;
+            transfers += shard.transfers;
+            volume += shard.volume;
+            outsideMax = Math.max(outsideMax, shard.outsideMax);
+            topLength += shard.top.length;
+        }
+        long[] top = new long[topLength];
+        int offset = 0;
+        for (LedgerSummary shard : shards) {
+            System.arraycopy(shard.top, 0, top, offset, shard.top.length);
+            offset += shard.top.length;
+        }
+        return new LedgerSummary(0, accounts, balance, created, debited, credited, refunded, transfers, volume, top, outsideMax,
+                windowSeconds, windowTransfers, windowVolume);
+    }
+
+    /*
+     * Journal position of shard after the last applied batch, 0 for the whole ledger
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getDebited() {
+        return debited;
+    }
+
+    public long getCredited() {
+        return credited;
+    }
+
+    public long getRefunded() {
+        return refunded;
+    }
+
+    /*
+     * Money which left source shards and has not arrived to destination yet, for the whole ledger
+     */
+    public long getInFlight() {
+        return debited - credited - refunded;
+    }
+
+    /*
+     * Invariant of balances, it holds for each shard and for the whole ledger
+     */
+    public boolean isBalanced() {
+        return balance == created + credited + refunded - debited;
+    }
+
+    /*
+     * Transfers started in ledger, cross shard transfer is counted once when it leaves source account
+     */
+    public long getTransfers() {
+        return transfers;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public long getWindowTransfers() {
+        return windowTransfers;
+    }
+
+    public long getWindowVolume() {
+        return windowVolume;
+    }
+
+    /*
+     * At most limit accounts with the largest balances, largest first
+     */
+    public List<AccountInfo> getTop(int limit) {
+        int count = top.length / TopBalances.ENTRY_SIZE;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer entry) -> top[entry * TopBalances.ENTRY_SIZE + TopBalances.BALANCE]).reversed());
+        List<AccountInfo> accounts = new ArrayList<>(Math.min(limit, count));
+        for (int i = 0; i < Math.min(limit, count); i++) {
+            int offset = order[i] * TopBalances.ENTRY_SIZE;
+            accounts.add(new AccountInfo(new UUID(top[offset + TopBalances.MSB], top[offset + TopBalances.LSB]), top[offset + TopBalances.BALANCE]));
+        }
+        return accounts;
+    }
+
+    /*
+     * True if no account outside of returned ones could have larger balance than the last of them
+     */
+    public boolean isTopExact(int limit) {
+        List<AccountInfo> accounts = getTop(limit);
+        return accounts.isEmpty() || accounts.get(accounts.size() - 1).getAmount() >= outsideMax;
+    }
+}
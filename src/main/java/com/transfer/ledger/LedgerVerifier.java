@@ -0,0 +1,99 @@
+package com.transfer.ledger;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Compares incrementally kept aggregates of shard with full scan of its copy at the same journal position, e.g. storage
+ * of SnapshotWriter replayed to position of shard summary, so processor thread is never involved.
+ * Account count, total balance, balance invariant and the largest balances (when they are exact) should be equal
+ */
+public class LedgerVerifier {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerVerifier.class);
+
+    private final Ledger ledger;
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+
+    public LedgerVerifier(Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    /*
+     * The last published summary of shard, storage should be brought to its position before verification
+     */
+    public LedgerSummary expected(int shard) {
+        return ledger.getShardSummary(shard);
+    }
+
+    /*
+     * Scans storage, which should be at position of expected summary and not changed meanwhile, returns false on mismatch
+     */
+    public boolean verify(int shard, LedgerSummary expected, AccountStorage<AccountInfo, UUID> storage) {
+        int topSize = ledger.getTopSize();
+        long[] totals = new long[2];
+        PriorityQueue<Long> top = new PriorityQueue<>(topSize + 1);
+        storage.forEach(account -> {
+            totals[0]++;
+            totals[1] += account.getAmount();
+            if (top.size() < topSize) {
+                top.add(account.getAmount());
+            } else if (account.getAmount() > top.peek()) {
+                top.poll();
+                top.add(account.getAmount());
+            }
+        });
+        boolean matched = true;
+        if (totals[0] != expected.getAccounts() || totals[1] != expected.getBalance()) {
+            LOGGER.error("Ledger of shard {} at position {} has {} accounts with balance {}, scan found {} accounts with balance {}",
+                    shard, expected.getPosition(), expected.getAccounts(), expected.getBalance(), totals[0], totals[1]);
+            matched = false;
+        }
+        if (!expected.isBalanced()) {
+            LOGGER.error("Ledger of shard {} at position {} is not balanced: balance {}, created {}, credited {}, refunded {}, debited {}",
+                    shard, expected.getPosition(), expected.getBalance(), expected.getCreated(), expected.getCredited(),
+                    expected.getRefunded(), expected.getDebited());
+            matched = false;
+        }
+        if (expected.isTopExact(topSize)) {
+            List<AccountInfo> expectedTop = expected.getTop(topSize);
+            //ties could be ordered differently, so only balances are compared
+            for (int i = expectedTop.size() - 1; i >= 0; i--) {
+                Long scanned = top.poll();
+                if (scanned == null || scanned != expectedTop.get(i).getAmount()) {
+                    LOGGER.error("Ledger of shard {} at position {} has {} as top balance {}, scan found {}",
+                            shard, expected.getPosition(), expectedTop.get(i).getAmount(), i + 1, scanned);
+                    matched = false;
+                    break;
+                }
+            }
+        }
+        verified.incrementAndGet();
+        if (!matched) {
+            mismatches.incrementAndGet();
+        }
+        return matched;
+    }
+
+    public long getVerified() {
+        return verified.get();
+    }
+
+    public long getMismatches() {
+        return mismatches.get();
+    }
+
+    public void register(MetricsRegistry registry) {
+        registry.counter("transfer_ledger_verifications_total", "Shard aggregates compared with full scan of snapshot", "", this::getVerified);
+        registry.counter("transfer_ledger_mismatches_total", "Shard aggregates which differed from full scan of snapshot", "", this::getMismatches);
+    }
+}
@@ -0,0 +1,197 @@
+package com.transfer.ledger;
+
+import java.util.Arrays;
+
+/*
+ * The largest balances of one shard, owned by processor thread. Bounded min-heap of [uuid msb][uuid lsb][balance] entries
+ * in one long array with open addressing index of heap positions, so change of account costs one probe and a few swaps.
+ * Heap keeps more entries than reported: account which lost money stays in heap, account outside of heap gets in only
+ * when it is over heap minimum. The largest balance left outside of heap is remembered, reported balances over it are exact
+ */
+final class TopBalances {
+
+    static final int MSB = 0;
+    static final int LSB = 1;
+    static final int BALANCE = 2;
+    static final int ENTRY_SIZE = 3;
+
+    private final int capacity;
+    private final long[] heap;
+    //index slot of each heap entry, so swaps update index without probing
+    private final int[] heapSlots;
+    //heap position + 1 of entry, 0 is empty slot
+    private final int[] index;
+    private final int indexMask;
+    private int size;
+    private long outsideMax = Long.MIN_VALUE;
+    private boolean changed;
+
+    TopBalances(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Top balances capacity should be positive");
+        }
+        this.capacity = capacity;
+        this.heap = new long[capacity * ENTRY_SIZE];
+        this.heapSlots = new int[capacity];
+        this.index = new int[Integer.highestOneBit(capacity * 4 - 1)];
+        this.indexMask = index.length - 1;
+    }
+
+    void update(long msb, long lsb, long balance) {
+        int slot = find(msb, lsb);
+        int position = index[slot] - 1;
+        if (position >= 0) {
+            long old = heap[position * ENTRY_SIZE + BALANCE];
+            if (old != balance) {
+                heap[position * ENTRY_SIZE + BALANCE] = balance;
+                if (balance > old) {
+                    siftDown(position);
+                } else {
+                    siftUp(position);
+                }
+                changed = true;
+            }
+            return;
+        }
+        if (size < capacity) {
+            position = size++;
+            set(position, msb, lsb, balance, slot);
+            siftUp(position);
+            changed = true;
+            return;
+        }
+        long min = heap[BALANCE];
+        if (balance <= min) {
+            outsideMax = Math.max(outsideMax, balance);
+            return;
+        }
+        //the smallest entry leaves heap, new one takes its place and sinks
+        outsideMax = Math.max(outsideMax, min);
+        removeFromIndex(heapSlots[0]);
+        set(0, msb, lsb, balance, find(msb, lsb));
+        siftDown(0);
+        changed = true;
+    }
+
+    /*
+     * Copy of entries in heap order
+     */
+    long[] copy() {
+        changed = false;
+        return Arrays.copyOf(heap, size * ENTRY_SIZE);
+    }
+
+    /*
+     * True if heap changed since the last copy
+     */
+    boolean isChanged() {
+        return changed;
+    }
+
+    /*
+     * Upper bound of balances of accounts outside of heap, Long.MIN_VALUE if there are no such accounts
+     */
+    long getOutsideMax() {
+        return outsideMax;
+    }
+
+    void clear() {
+        Arrays.fill(index, 0);
+        size = 0;
+        outsideMax = Long.MIN_VALUE;
+        changed = true;
+    }
+
+    private void set(int position, long msb, long lsb, long balance, int slot) {
+        int offset = position * ENTRY_SIZE;
+        heap[offset + MSB] = msb;
+        heap[offset + LSB] = lsb;
+        heap[offset + BALANCE] = balance;
+        heapSlots[position] = slot;
+        index[slot] = position + 1;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heap[parent * ENTRY_SIZE + BALANCE] <= heap[position * ENTRY_SIZE + BALANCE]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = position * 2 + 1;
+            int right = left + 1;
+            if (left < size && heap[left * ENTRY_SIZE + BALANCE] < heap[smallest * ENTRY_SIZE + BALANCE]) {
+                smallest = left;
+            }
+            if (right < size && heap[right * ENTRY_SIZE + BALANCE] < heap[smallest * ENTRY_SIZE + BALANCE]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int first, int second) {
+        for (int i = 0; i < ENTRY_SIZE; i++) {
+            long value = heap[first * ENTRY_SIZE + i];
+            heap[first * ENTRY_SIZE + i] = heap[second * ENTRY_SIZE + i];
+            heap[second * ENTRY_SIZE + i] = value;
+        }
+        int slot = heapSlots[first];
+        heapSlots[first] = heapSlots[second];
+        heapSlots[second] = slot;
+        index[heapSlots[first]] = first + 1;
+        index[heapSlots[second]] = second + 1;
+    }
+
+    /*
+     * Slot of account, or empty slot where it should be inserted
+     */
+    private int find(long msb, long lsb) {
+        int slot = slot(msb, lsb);
+        int position;
+        while ((position = index[slot]) != 0
+                && (heap[(position - 1) * ENTRY_SIZE + MSB] != msb || heap[(position - 1) * ENTRY_SIZE + LSB] != lsb)) {
+            slot = (slot + 1) & indexMask;
+        }
+        return slot;
+    }
+
+    /*
+     * Backward shift deletion as in IdempotencyCache, so lookups never need tombstones
+     */
+    private void removeFromIndex(int slot) {
+        index[slot] = 0;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & indexMask;
+            int position = index[next];
+            if (position == 0) {
+                return;
+            }
+            int offset = (position - 1) * ENTRY_SIZE;
+            int home = slot(heap[offset + MSB], heap[offset + LSB]);
+            if (((next - home) & indexMask) >= ((next - slot) & indexMask)) {
+                index[slot] = position;
+                heapSlots[position - 1] = slot;
+                index[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    private int slot(long msb, long lsb) {
+        long hash = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & indexMask;
+    }
+}
@@ -0,0 +1,43 @@
+package com.transfer.load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+ * Picks index of account in [0, accounts) with Zipf distribution, index 0 is the most popular one.
+ * Exponent 0 is uniform, ~1 is typical skew of real traffic where few accounts get most of requests
+ */
+public final class AccountSampler {
+
+    private final int accounts;
+    //cumulative weights, null for uniform distribution
+    private final double[] cdf;
+
+    public AccountSampler(int accounts, double exponent) {
+        if (accounts < 1) {
+            throw new IllegalArgumentException("Number of accounts should be positive");
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("Exponent should not be negative");
+        }
+        this.accounts = accounts;
+        if (exponent == 0) {
+            this.cdf = null;
+        } else {
+            this.cdf = new double[accounts];
+            double sum = 0;
+            for (int i = 0; i < accounts; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cdf[i] = sum;
+            }
+        }
+    }
+
+    public int next(SplittableRandom random) {
+        if (cdf == null) {
+            return random.nextInt(accounts);
+        }
+        int index = Arrays.binarySearch(cdf, random.nextDouble() * cdf[accounts - 1]);
+        return Math.min(index < 0 ? -index - 1 : index, accounts - 1);
+    }
+}
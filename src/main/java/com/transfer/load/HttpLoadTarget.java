@@ -0,0 +1,113 @@
+package com.transfer.load;
+
+import com.transfer.core.Money;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Load of running application through its http api. Each request is sent by one of fixed number of sender threads,
+ * every thread keeps its own keep-alive connection, so connections are the limit of concurrent requests. Outstanding
+ * operations of generator should be limited to connections, otherwise they wait in executor queue after they are counted as sent
+ */
+public class HttpLoadTarget implements LoadTarget {
+
+    private static final String UUID_FIELD = "\"uuid\":\"";
+
+    private final String url;
+    private final Money money;
+    private final ExecutorService executor;
+
+    /*
+     * url - base url of application, e.g. http://localhost:8080
+     * connections - number of sender threads and connections
+     */
+    public HttpLoadTarget(String url, Money money, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Number of connections should be positive");
+        }
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.money = money;
+        this.executor = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "load-http-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<UUID> create(long amount) {
+        return send("POST", "/account/create", "{\"amount\":\"" + money.toDecimal(amount).toPlainString() + "\"}", null);
+    }
+
+    @Override
+    public CompletableFuture<UUID> info(UUID account) {
+        return send("GET", "/account/info?account=" + account, null, account);
+    }
+
+    @Override
+    public CompletableFuture<UUID> transfer(UUID fromAccount, UUID toAccount, long amount) {
+        return send("POST", "/account/transfer", "{\"fromAccount\":\"" + fromAccount + "\",\"toAccount\":\"" + toAccount
+                + "\",\"amount\":\"" + money.toDecimal(amount).toPlainString() + "\"}", fromAccount);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * account - uuid which completes future, if null it is taken from response
+     */
+    private CompletableFuture<UUID> send(String method, String path, String body, UUID account) {
+        CompletableFuture<UUID> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                String response = request(method, path, body);
+                future.complete(account != null ? account : parseUuid(response));
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    private String request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        //response is read to the end, so connection is returned to keep-alive cache
+        String response;
+        try (InputStream inputStream = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() : connection.getErrorStream()) {
+            response = inputStream == null ? "" : new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IllegalStateException("Request " + path + " failed with status " + status + ": " + response);
+        }
+        return response;
+    }
+
+    private static UUID parseUuid(String response) {
+        int start = response.indexOf(UUID_FIELD);
+        if (start < 0) {
+            throw new IllegalStateException("Response has no uuid: " + response);
+        }
+        start += UUID_FIELD.length();
+        return UUID.fromString(response.substring(start, response.indexOf('"', start)));
+    }
+}
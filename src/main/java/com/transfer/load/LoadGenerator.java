@@ -0,0 +1,191 @@
+package com.transfer.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Open-loop load: operations are sent at fixed rate on schedule which does not depend on responses. Closed-loop client
+ * waits for response before it sends the next request, so when application stalls it stops sending and latency of requests
+ * it did not send is never measured (coordinated omission). Here response time is measured from the time operation was
+ * scheduled to be sent, so time spent behind stalled sender or behind exhausted limit of outstanding operations is counted.
+ * Operations are picked by one scheduler thread with seeded random, so runs with the same settings send the same load
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+    public static final int DEFAULT_MAX_OUTSTANDING = 10_000;
+
+    //accounts are created before load with few requests in flight, so processor queue is not overflown
+    private static final int SETUP_OUTSTANDING = 128;
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+    private final LoadTarget target;
+    private final double rate;
+    //cumulative weights of operations, indexed by ordinal
+    private final int[] mix;
+    private final double exponent;
+    private final int maxOutstanding;
+    private final SplittableRandom random;
+    private UUID[] accounts = new UUID[0];
+    private AccountSampler sampler;
+    private long accountAmount;
+    private long transferAmount = 1;
+
+    /*
+     * rate - operations per second
+     * weights - relative weights of operations, indexed by ordinal of LoadOperation
+     * exponent - Zipf exponent of account popularity, 0 is uniform, see AccountSampler
+     * maxOutstanding - operations in flight, scheduler waits when it is reached, the wait is counted in response time
+     */
+    public LoadGenerator(LoadTarget target, double rate, int[] weights, double exponent, int maxOutstanding, long seed) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate should be positive");
+        }
+        if (weights.length != LoadOperation.values().length) {
+            throw new IllegalArgumentException("Weight of every operation should be given");
+        }
+        if (maxOutstanding < 1) {
+            throw new IllegalArgumentException("Max outstanding operations should be positive");
+        }
+        this.target = target;
+        this.rate = rate;
+        this.mix = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("Weight should not be negative");
+            }
+            sum += weights[i];
+            mix[i] = sum;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("At least one operation should have weight");
+        }
+        this.exponent = exponent;
+        this.maxOutstanding = maxOutstanding;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /*
+     * Creates accounts which info and transfer operations use, created ones are not measured.
+     * amount - balance of each account, transferAmount - amount of each transfer, minor units
+     */
+    public void createAccounts(int count, long amount, long transferAmount) throws InterruptedException {
+        UUID[] created = new UUID[count];
+        AtomicLong failed = new AtomicLong();
+        Semaphore outstanding = new Semaphore(SETUP_OUTSTANDING);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            outstanding.acquire();
+            target.create(amount).whenComplete((account, error) -> {
+                if (error == null) {
+                    created[index] = account;
+                } else {
+                    failed.incrementAndGet();
+                }
+                outstanding.release();
+            });
+        }
+        outstanding.acquire(SETUP_OUTSTANDING);
+        if (failed.get() > 0) {
+            throw new IllegalStateException(failed.get() + " of " + count + " accounts were not created");
+        }
+        this.accounts = created;
+        this.sampler = new AccountSampler(count, exponent);
+        this.accountAmount = amount;
+        this.transferAmount = transferAmount;
+    }
+
+    /*
+     * Sends load for warmup and then for duration, waits for operations in flight, only operations scheduled after warmup are measured
+     */
+    public LoadResult run(long warmupNanos, long durationNanos) throws InterruptedException {
+        boolean onlyCreate = mix[mix.length - 1] == mix[LoadOperation.CREATE.ordinal()];
+        if (accounts.length == 0 && !onlyCreate) {
+            throw new IllegalStateException("Accounts should be created before info and transfer load");
+        }
+        LoadResult result = new LoadResult(rate, durationNanos);
+        AtomicBoolean failureLogged = new AtomicBoolean();
+        Semaphore outstanding = new Semaphore(maxOutstanding);
+        double intervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        for (long i = 0; ; i++) {
+            //schedule is computed from start, so late sends do not shift the following ones
+            long scheduled = start + (long) (i * intervalNanos);
+            if (scheduled - end >= 0) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) - scheduled < 0) {
+                LockSupport.parkNanos(scheduled - now);
+            }
+            outstanding.acquire();
+            long sent = System.nanoTime();
+            boolean measured = scheduled - measureStart >= 0;
+            if (measured) {
+                result.recordLag(sent - scheduled);
+            }
+            LoadOperation operation = nextOperation();
+            send(operation).whenComplete((account, error) -> {
+                long completed = System.nanoTime();
+                if (measured) {
+                    result.record(operation, completed - scheduled, completed - sent, error != null);
+                }
+                //errors are only counted, so the first one is logged to tell why
+                if (error != null && failureLogged.compareAndSet(false, true)) {
+                    LOGGER.warn("Operation {} failed: {}", operation.label(), error.toString());
+                }
+                outstanding.release();
+            });
+        }
+        if (!outstanding.tryAcquire(maxOutstanding, DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOGGER.warn("Operations in flight were not completed in {} seconds, they are not counted", DRAIN_TIMEOUT_SECONDS);
+        }
+        result.finish(System.nanoTime() - measureStart);
+        return result;
+    }
+
+    private LoadOperation nextOperation() {
+        int value = random.nextInt(mix[mix.length - 1]);
+        LoadOperation[] operations = LoadOperation.values();
+        for (int i = 0; i < mix.length - 1; i++) {
+            if (value < mix[i]) {
+                return operations[i];
+            }
+        }
+        return operations[mix.length - 1];
+    }
+
+    private CompletableFuture<UUID> send(LoadOperation operation) {
+        try {
+            switch (operation) {
+                case CREATE:
+                    return target.create(accountAmount);
+                case INFO:
+                    return target.info(accounts[sampler.next(random)]);
+                default:
+                    int from = sampler.next(random);
+                    int to = sampler.next(random);
+                    //self transfer changes nothing, so it is replaced with transfer to the next account
+                    if (to == from && accounts.length > 1) {
+                        to = (to + 1) % accounts.length;
+                    }
+                    return target.transfer(accounts[from], accounts[to], transferAmount);
+            }
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+}
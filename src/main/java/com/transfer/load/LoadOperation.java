@@ -0,0 +1,14 @@
+package com.transfer.load;
+
+import java.util.Locale;
+
+public enum LoadOperation {
+    CREATE, INFO, TRANSFER;
+
+    /*
+     * Name used in reports and settings, e.g. load.mix.transfer
+     */
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,114 @@
+package com.transfer.load;
+
+import com.transfer.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+
+/*
+ * Prints load result and appends it to csv file, one row per operation and measure, so runs of different builds (label)
+ * and rates are kept in one file and compared row by row. Latencies are microseconds.
+ * Measures: response - from scheduled send, service - from actual send, lag - how late operations were sent
+ */
+public final class LoadReport {
+
+    static final String HEADER = "time,label,target,rate,seconds,operation,measure,count,errors,throughput,"
+            + "mean_us,p50_us,p90_us,p99_us,p999_us,p9999_us,max_us";
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private LoadReport() {
+    }
+
+    public static void print(LoadResult result, PrintStream out) {
+        out.printf(Locale.ROOT, "rate %.0f/s, throughput %.0f/s, %d operations, %d errors%n",
+                result.getRate(), result.getThroughput(), result.getResponseTime().getCount(), result.getErrors());
+        out.printf(Locale.ROOT, "%-9s %-9s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "measure", "count", "errors", "p50_us", "p90_us", "p99_us", "p999_us", "p9999_us", "max_us");
+        for (Row row : rows(result)) {
+            out.printf(Locale.ROOT, "%-9s %-9s %10d %8d", row.operation, row.measure, row.latency.getCount(), row.errors);
+            for (double percentile : PERCENTILES) {
+                out.printf(Locale.ROOT, " %10.1f", micros(row.latency.valueAtPercentile(percentile)));
+            }
+            out.printf(Locale.ROOT, " %10.1f%n", micros(row.latency.getMax()));
+        }
+    }
+
+    /*
+     * Header is written if file is new
+     */
+    public static void append(LoadResult result, String label, String target, Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        boolean created = !Files.exists(file);
+        String time = Instant.now().toString();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (created) {
+                writer.write(HEADER);
+                writer.write('\n');
+            }
+            for (Row row : rows(result)) {
+                LatencyHistogram.Snapshot latency = row.latency;
+                StringBuilder line = new StringBuilder(256)
+                        .append(time).append(',').append(label).append(',').append(target).append(',')
+                        .append(String.format(Locale.ROOT, "%.0f,%.0f,", result.getRate(), result.getDurationNanos() / 1e9))
+                        .append(row.operation).append(',').append(row.measure).append(',')
+                        .append(latency.getCount()).append(',').append(row.errors).append(',')
+                        .append(String.format(Locale.ROOT, "%.1f,%.1f", throughput(result, latency), micros(mean(latency))));
+                for (double percentile : PERCENTILES) {
+                    line.append(String.format(Locale.ROOT, ",%.1f", micros(latency.valueAtPercentile(percentile))));
+                }
+                line.append(String.format(Locale.ROOT, ",%.1f", micros(latency.getMax())));
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    private static Row[] rows(LoadResult result) {
+        LoadOperation[] operations = LoadOperation.values();
+        Row[] rows = new Row[operations.length * 2 + 3];
+        int row = 0;
+        for (LoadOperation operation : operations) {
+            rows[row++] = new Row(operation.label(), "response", result.getResponseTime(operation), result.getErrors(operation));
+            rows[row++] = new Row(operation.label(), "service", result.getServiceTime(operation), result.getErrors(operation));
+        }
+        rows[row++] = new Row("all", "response", result.getResponseTime(), result.getErrors());
+        rows[row++] = new Row("all", "service", result.getServiceTime(), result.getErrors());
+        rows[row] = new Row("all", "lag", result.getSenderLag(), 0);
+        return rows;
+    }
+
+    private static double throughput(LoadResult result, LatencyHistogram.Snapshot latency) {
+        return result.getElapsedNanos() == 0 ? 0 : latency.getCount() * 1e9 / result.getElapsedNanos();
+    }
+
+    private static long mean(LatencyHistogram.Snapshot latency) {
+        return latency.getCount() == 0 ? 0 : latency.getSum() / latency.getCount();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private static final class Row {
+        private final String operation;
+        private final String measure;
+        private final LatencyHistogram.Snapshot latency;
+        private final long errors;
+
+        private Row(String operation, String measure, LatencyHistogram.Snapshot latency, long errors) {
+            this.operation = operation;
+            this.measure = measure;
+            this.latency = latency;
+            this.errors = errors;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.transfer.load;
+
+import com.transfer.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Latencies of operations scheduled after warmup, per operation and for all of them. Recorded by threads which complete
+ * operations. Response time is measured from scheduled send time and includes waiting for sender (coordinated omission
+ * is corrected), service time is measured from actual send. Sender lag is how late operations were sent
+ */
+public final class LoadResult {
+
+    private static final int ALL = LoadOperation.values().length;
+
+    private final double rate;
+    private final long durationNanos;
+    private final LatencyHistogram[] responseTimes = new LatencyHistogram[ALL + 1];
+    private final LatencyHistogram[] serviceTimes = new LatencyHistogram[ALL + 1];
+    private final AtomicLongArray errors = new AtomicLongArray(ALL + 1);
+    private final LatencyHistogram senderLag = new LatencyHistogram();
+    private volatile long elapsedNanos;
+
+    LoadResult(double rate, long durationNanos) {
+        this.rate = rate;
+        this.durationNanos = durationNanos;
+        for (int i = 0; i <= ALL; i++) {
+            responseTimes[i] = new LatencyHistogram();
+            serviceTimes[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(LoadOperation operation, long responseNanos, long serviceNanos, boolean failed) {
+        responseTimes[operation.ordinal()].record(responseNanos);
+        responseTimes[ALL].record(responseNanos);
+        serviceTimes[operation.ordinal()].record(serviceNanos);
+        serviceTimes[ALL].record(serviceNanos);
+        if (failed) {
+            errors.incrementAndGet(operation.ordinal());
+            errors.incrementAndGet(ALL);
+        }
+    }
+
+    void recordLag(long lagNanos) {
+        senderLag.record(lagNanos);
+    }
+
+    /*
+     * elapsedNanos - from the end of warmup until the last operation completed
+     */
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /*
+     * Target rate, operations per second
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public LatencyHistogram.Snapshot getResponseTime(LoadOperation operation) {
+        return responseTimes[operation.ordinal()].snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getResponseTime() {
+        return responseTimes[ALL].snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getServiceTime(LoadOperation operation) {
+        return serviceTimes[operation.ordinal()].snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getServiceTime() {
+        return serviceTimes[ALL].snapshot();
+    }
+
+    public long getErrors(LoadOperation operation) {
+        return errors.get(operation.ordinal());
+    }
+
+    public long getErrors() {
+        return errors.get(ALL);
+    }
+
+    public LatencyHistogram.Snapshot getSenderLag() {
+        return senderLag.snapshot();
+    }
+
+    /*
+     * Completed operations per second, it is below target rate if application could not keep up with it
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getResponseTime().getCount() * 1e9 / elapsedNanos;
+    }
+}
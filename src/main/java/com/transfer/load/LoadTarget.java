@@ -0,0 +1,21 @@
+package com.transfer.load;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * System under load. Calls should return at once, result is delivered by completing returned future with uuid of account,
+ * failed or rejected operation completes it exceptionally. Amounts are minor units, see Money
+ */
+public interface LoadTarget extends AutoCloseable {
+
+    CompletableFuture<UUID> create(long amount);
+
+    CompletableFuture<UUID> info(UUID account);
+
+    CompletableFuture<UUID> transfer(UUID fromAccount, UUID toAccount, long amount);
+
+    @Override
+    default void close() {
+    }
+}
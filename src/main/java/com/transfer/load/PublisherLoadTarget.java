@@ -0,0 +1,84 @@
+package com.transfer.load;
+
+import com.transfer.core.AccountEventPublisher;
+import com.transfer.core.AccountEventSlot;
+import com.transfer.core.AccountResult;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountEventType;
+import com.transfer.core.event.AccountInfoEvent;
+import com.transfer.core.event.AccountTransferEvent;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/*
+ * Load of processors in this process, events are published the same way as http server does it: into reusable slots
+ * of event ring if publisher has one, otherwise into event queue. Latency does not include http
+ */
+public class PublisherLoadTarget implements LoadTarget {
+
+    private final AccountEventPublisher publisher;
+    private final boolean ring;
+
+    public PublisherLoadTarget(AccountEventPublisher publisher) {
+        this.publisher = publisher;
+        this.ring = publisher.hasEventRing();
+    }
+
+    @Override
+    public CompletableFuture<UUID> create(long amount) {
+        CompletableFuture<UUID> future = new CompletableFuture<>();
+        Consumer<AccountResult> result = accountResult -> future.complete(accountResult.getAccount());
+        if (ring) {
+            AccountEventSlot slot = publisher.claim(AccountEventType.CREATE, null);
+            if (slot == null) {
+                return rejected(future);
+            }
+            slot.setCreate(amount, result, future::completeExceptionally);
+            publisher.publish(slot);
+        } else if (!publisher.publishEvent(new AccountCreateEvent(result, future::completeExceptionally, amount))) {
+            return rejected(future);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<UUID> info(UUID account) {
+        CompletableFuture<UUID> future = new CompletableFuture<>();
+        Consumer<AccountResult> result = accountResult -> future.complete(account);
+        if (ring) {
+            AccountEventSlot slot = publisher.claim(AccountEventType.INFO, account);
+            if (slot == null) {
+                return rejected(future);
+            }
+            slot.setInfo(account, result, future::completeExceptionally);
+            publisher.publish(slot);
+        } else if (!publisher.publishEvent(new AccountInfoEvent(result, future::completeExceptionally, account))) {
+            return rejected(future);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<UUID> transfer(UUID fromAccount, UUID toAccount, long amount) {
+        CompletableFuture<UUID> future = new CompletableFuture<>();
+        Consumer<AccountResult> result = accountResult -> future.complete(fromAccount);
+        if (ring) {
+            AccountEventSlot slot = publisher.claim(AccountEventType.TRANSFER, fromAccount);
+            if (slot == null) {
+                return rejected(future);
+            }
+            slot.setTransfer(fromAccount, toAccount, amount, result, future::completeExceptionally);
+            publisher.publish(slot);
+        } else if (!publisher.publishEvent(new AccountTransferEvent(result, future::completeExceptionally, fromAccount, toAccount, amount))) {
+            return rejected(future);
+        }
+        return future;
+    }
+
+    private static CompletableFuture<UUID> rejected(CompletableFuture<UUID> future) {
+        future.completeExceptionally(new IllegalStateException("Not enough resource capacity to process request"));
+        return future;
+    }
+}
@@ -0,0 +1,134 @@
+package com.transfer.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/*
+ * Named metrics written in Prometheus text format. Registry only keeps references to values owned by components,
+ * counters and gauges are read from suppliers at scrape time, so components update plain fields or atomics and never registry itself.
+ * Histograms of nanoseconds are exposed as summaries in seconds
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /*
+     * Builds label set from name and value pairs, e.g. labels("shard", "0")
+     */
+    public static String labels(String... namesAndValues) {
+        if (namesAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels should be name and value pairs");
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(namesAndValues[i]).append("=\"").append(namesAndValues[i + 1]).append('"');
+        }
+        return builder.toString();
+    }
+
+    public synchronized void counter(String name, String help, String labels, LongSupplier value) {
+        family(name, help, "counter").samples.add(new Sample(labels, value, null));
+    }
+
+    public synchronized void gauge(String name, String help, String labels, LongSupplier value) {
+        family(name, help, "gauge").samples.add(new Sample(labels, value, null));
+    }
+
+    public synchronized void histogram(String name, String help, String labels, LatencyHistogram histogram) {
+        family(name, help, "summary").samples.add(new Sample(labels, null, histogram));
+    }
+
+    public synchronized String toPrometheus() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            builder.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Sample sample : family.samples) {
+                if (sample.histogram == null) {
+                    appendLine(builder, name, sample.labels, null, Long.toString(sample.value.getAsLong()));
+                } else {
+                    appendSummary(builder, name, sample.labels, sample.histogram.snapshot());
+                }
+            }
+            if (family.type.equals("summary")) {
+                //max is not part of summary type, so it is exposed as separate gauge
+                builder.append("# HELP ").append(name).append("_max Max of ").append(name).append('\n');
+                builder.append("# TYPE ").append(name).append("_max gauge\n");
+                for (Sample sample : family.samples) {
+                    appendLine(builder, name + "_max", sample.labels, null, seconds(sample.histogram.getMax()));
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        return family;
+    }
+
+    private static void appendSummary(StringBuilder builder, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        for (double quantile : QUANTILES) {
+            appendLine(builder, name, labels, "quantile=\"" + quantile + "\"", seconds(snapshot.valueAtPercentile(quantile * 100)));
+        }
+        appendLine(builder, name + "_sum", labels, null, seconds(snapshot.getSum()));
+        appendLine(builder, name + "_count", labels, null, Long.toString(snapshot.getCount()));
+    }
+
+    private static void appendLine(StringBuilder builder, String name, String labels, String extraLabel, String value) {
+        builder.append(name);
+        boolean hasLabels = labels != null && !labels.isEmpty();
+        if (hasLabels || extraLabel != null) {
+            builder.append('{');
+            if (hasLabels) {
+                builder.append(labels);
+            }
+            if (extraLabel != null) {
+                builder.append(hasLabels ? "," : "").append(extraLabel);
+            }
+            builder.append('}');
+        }
+        builder.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / NANOS_PER_SECOND);
+    }
+
+    private static final class Family {
+        private final String help;
+        private final String type;
+        private final List<Sample> samples = new ArrayList<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static final class Sample {
+        private final String labels;
+        private final LongSupplier value;
+        private final LatencyHistogram histogram;
+
+        private Sample(String labels, LongSupplier value, LatencyHistogram histogram) {
+            this.labels = labels;
+            this.value = value;
+            this.histogram = histogram;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.transfer.replication;
+
+import com.transfer.core.AccountEventListener;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.Money;
+import com.transfer.journal.JournalRecordHandler;
+import com.transfer.journal.PendingTransfers;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Applies replicated records of one shard to its storage and passes changes to listeners of the shard processor,
+ * so follower journal, read view and history are kept the same way as by processor. Called only from follower thread
+ */
+class ReplicationApplier implements JournalRecordHandler {
+
+    private final AccountStorage<AccountInfo, UUID> storage;
+    private final List<AccountEventListener> listeners;
+    private final PendingTransfers pendingTransfers;
+
+    ReplicationApplier(AccountStorage<AccountInfo, UUID> storage, List<AccountEventListener> listeners, PendingTransfers pendingTransfers) {
+        this.storage = storage;
+        this.listeners = listeners;
+        this.pendingTransfers = pendingTransfers;
+    }
+
+    /*
+     * Snapshot of new epoch sends every account again, it replaces the existing one. Account which follower already has
+     * with the same balance is not passed to listeners, so resync does not append the whole book to journal and history again
+     */
+    @Override
+    public void onAccountCreated(UUID account, long amount) {
+        AccountInfo existing = storage.getByUuid(account);
+        if (existing != null && existing.getAmount() == amount) {
+            return;
+        }
+        AccountInfo accountInfo = new AccountInfo(account, amount);
+        storage.put(accountInfo);
+        for (AccountEventListener listener : listeners) {
+            listener.onAccountCreated(accountInfo);
+        }
+    }
+
+    @Override
+    public void onTransfer(UUID fromAccount, UUID toAccount, long amount) {
+        AccountInfo from = add(fromAccount, -amount);
+        AccountInfo to = add(toAccount, amount);
+        for (AccountEventListener listener : listeners) {
+            listener.onTransfer(from, to, amount);
+        }
+    }
+
+    @Override
+    public void onDebit(long transferId, UUID fromAccount, UUID toAccount, long amount) {
+        AccountInfo from = add(fromAccount, -amount);
+        for (AccountEventListener listener : listeners) {
+            listener.onDebit(transferId, from, toAccount, amount);
+        }
+    }
+
+    /*
+     * Source account of credit is known from its debit, which comes first. Credit to the debited account itself is refund,
+     * credit of debit sent before the snapshot has unknown source
+     */
+    @Override
+    public void onCredit(long transferId, UUID account, long amount) {
+        AccountInfo to = add(account, amount);
+        PendingTransfers.PendingDebit debit = pendingTransfers.getDebits().get(transferId);
+        for (AccountEventListener listener : listeners) {
+            if (debit == null) {
+                listener.onCredit(transferId, to, amount);
+            } else {
+                listener.onCredit(transferId, to, debit.getAccount().equals(account) ? null : debit.getAccount(), amount);
+            }
+        }
+    }
+
+    /*
+     * Debit without credit when follower is promoted, destination shard of the leader never got it
+     */
+    void refund(long transferId, UUID account, long amount) {
+        AccountInfo from = add(account, amount);
+        for (AccountEventListener listener : listeners) {
+            listener.onCredit(transferId, from, null, amount);
+        }
+    }
+
+    void onBatchProcessed() {
+        for (AccountEventListener listener : listeners) {
+            listener.onBatchProcessed();
+        }
+    }
+
+    private AccountInfo add(UUID uuid, long amount) {
+        AccountInfo account = storage.getByUuid(uuid);
+        if (account == null) {
+            throw new IllegalStateException("Replicated change of unknown account " + uuid);
+        }
+        account.setAmount(Money.add(account.getAmount(), amount));
+        storage.put(account);
+        return account;
+    }
+}
@@ -0,0 +1,230 @@
+package com.transfer.replication;
+
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.ShardedAccountEngine;
+import com.transfer.journal.JournalRecordHandler;
+import com.transfer.journal.JournalRecords;
+import com.transfer.journal.PendingTransfers;
+import com.transfer.metrics.MetricsRegistry;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Hot standby: applies changes streamed by ReplicationLeader to storages of its own engine, which is not started,
+ * and acks every frame after it is applied. Follower thread is the only writer of storages until promotion.
+ *
+ * Promotion stops the stream and refunds debits whose credits did not arrive, as journal recovery does,
+ * then engine could be started and take requests. It is done by promote(), or by leaderLostHandler
+ * when leader was not reachable for promoteAfterMillis after connection to it was lost
+ */
+public class ReplicationFollower implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationFollower.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RETRY_MILLIS = 200;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final ShardedAccountEngine engine;
+    private final String host;
+    private final int port;
+    private final long promoteAfterMillis;
+    private final Runnable leaderLostHandler;
+    private final ReplicationApplier[] appliers;
+    private final JournalRecordHandler[] handlers;
+    private final PendingTransfers pendingTransfers = new PendingTransfers();
+    private final AtomicLong appliedFrames = new AtomicLong();
+    private final AtomicLong appliedBytes = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private long epoch = -1;
+    private Thread thread;
+
+    public ReplicationFollower(ShardedAccountEngine engine, String host, int port) {
+        this(engine, host, port, 0, null);
+    }
+
+    /*
+     * promoteAfterMillis - how long leader could be unreachable before leaderLostHandler is called, 0 - never
+     * leaderLostHandler - called from follower thread, e.g. to promote this follower and start engine
+     */
+    public ReplicationFollower(ShardedAccountEngine engine, String host, int port, long promoteAfterMillis, Runnable leaderLostHandler) {
+        this.engine = engine;
+        this.host = host;
+        this.port = port;
+        this.promoteAfterMillis = promoteAfterMillis;
+        this.leaderLostHandler = leaderLostHandler;
+        this.appliers = new ReplicationApplier[engine.getShardCount()];
+        this.handlers = new JournalRecordHandler[appliers.length];
+        for (int i = 0; i < appliers.length; i++) {
+            appliers[i] = new ReplicationApplier(engine.getStorage(i), engine.getProcessor(i).getListeners(), pendingTransfers);
+            handlers[i] = pendingTransfers.trackingHandler(i, appliers[i]);
+        }
+    }
+
+    /*
+     * Should be called after all listeners are added to processors and before engine is started
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("Following replication leader {}:{}", host, port);
+    }
+
+    private void run() {
+        long lostMillis = 0;
+        boolean contacted = false;
+        while (running) {
+            try (Socket leaderSocket = new Socket()) {
+                leaderSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                leaderSocket.setTcpNoDelay(true);
+                socket = leaderSocket;
+                connected = true;
+                contacted = true;
+                LOGGER.info("Connected to replication leader {}:{}", host, port);
+                follow(leaderSocket);
+            } catch (IOException e) {
+                if (running && connected) {
+                    LOGGER.warn("Replication leader connection lost: {}", e.toString());
+                }
+            } finally {
+                if (connected) {
+                    lostMillis = System.currentTimeMillis();
+                }
+                connected = false;
+                socket = null;
+            }
+            if (running && contacted && promoteAfterMillis > 0 && System.currentTimeMillis() - lostMillis >= promoteAfterMillis) {
+                LOGGER.warn("Replication leader is unreachable for {} ms", promoteAfterMillis);
+                if (leaderLostHandler != null) {
+                    leaderLostHandler.run();
+                }
+                return;
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow(Socket leaderSocket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(leaderSocket.getInputStream(), ReplicationProtocol.MAX_FRAME_LENGTH));
+        OutputStream output = leaderSocket.getOutputStream();
+        byte[] bytes = new byte[ReplicationProtocol.MAX_FRAME_LENGTH];
+        UnsafeBuffer frame = new UnsafeBuffer(bytes);
+        byte[] ackBytes = new byte[ReplicationProtocol.ACK_LENGTH];
+        UnsafeBuffer ack = new UnsafeBuffer(ackBytes);
+        while (running) {
+            input.readFully(bytes, 0, ReplicationProtocol.SHARD_OFFSET);
+            int length = ReplicationProtocol.SHARD_OFFSET + frame.getInt(ReplicationProtocol.LENGTH_OFFSET);
+            if (length < ReplicationProtocol.FRAME_HEADER_LENGTH || length > bytes.length) {
+                throw new IOException("Malformed replication frame of " + length + " bytes");
+            }
+            input.readFully(bytes, ReplicationProtocol.SHARD_OFFSET, length - ReplicationProtocol.SHARD_OFFSET);
+            int shard = frame.getInt(ReplicationProtocol.SHARD_OFFSET);
+            if (shard < 0 || shard >= appliers.length) {
+                throw new IOException("Leader has shard " + shard + ", follower should have the same number of shards");
+            }
+            long frameEpoch = frame.getLong(ReplicationProtocol.EPOCH_OFFSET);
+            if (frameEpoch != epoch) {
+                //new epoch starts with snapshot, transfers pending in previous one are sent with it again
+                epoch = frameEpoch;
+                pendingTransfers.clear();
+                LOGGER.info("Replication epoch {} started", epoch);
+            }
+            for (int offset = ReplicationProtocol.FRAME_HEADER_LENGTH; offset < length; ) {
+                int snapshotRecord = ReplicationProtocol.decodeSnapshotRecord(frame, offset, shard, pendingTransfers);
+                offset += snapshotRecord > 0 ? snapshotRecord : JournalRecords.decode(frame, offset, handlers[shard]);
+            }
+            appliers[shard].onBatchProcessed();
+            appliedFrames.incrementAndGet();
+            appliedBytes.addAndGet(length);
+
+            ack.putInt(ReplicationProtocol.ACK_SHARD_OFFSET, shard);
+            ack.putLong(ReplicationProtocol.ACK_EPOCH_OFFSET, frameEpoch);
+            ack.putLong(ReplicationProtocol.ACK_SEQUENCE_OFFSET, frame.getLong(ReplicationProtocol.SEQUENCE_OFFSET));
+            ack.putLong(ReplicationProtocol.ACK_SEND_NANOS_OFFSET, frame.getLong(ReplicationProtocol.SEND_NANOS_OFFSET));
+            output.write(ackBytes);
+        }
+    }
+
+    /*
+     * Stops following and refunds cross shard transfers which were debited on leader and not credited yet.
+     * Storages are consistent after that and engine could be started, its transfer ids go on after ids of leader.
+     * Could be called from leaderLostHandler
+     */
+    public void promote() {
+        stop();
+        for (Map.Entry<Long, PendingTransfers.PendingDebit> entry : pendingTransfers.getDebits().entrySet()) {
+            PendingTransfers.PendingDebit debit = entry.getValue();
+            appliers[debit.getShard()].refund(entry.getKey(), debit.getAccount(), debit.getAmount());
+            LOGGER.warn("Refund account {}, amount {} for not completed transfer {}", debit.getAccount(), debit.getAmount(), entry.getKey());
+        }
+        for (ReplicationApplier applier : appliers) {
+            applier.onBatchProcessed();
+        }
+        for (int i = 0; i < appliers.length; i++) {
+            AccountEventProcessorImpl processor = engine.getProcessor(i);
+            processor.setTransferSequence(Math.max(processor.getTransferSequence(), pendingTransfers.getTransferSequence(i)));
+        }
+        pendingTransfers.clear();
+        LOGGER.info("Replication follower is promoted");
+    }
+
+    private void stop() {
+        running = false;
+        Socket leaderSocket = socket;
+        try {
+            if (leaderSocket != null) {
+                leaderSocket.close();
+            }
+            if (thread != null && thread != Thread.currentThread()) {
+                thread.interrupt();
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close replication socket", e);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Thread was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getAppliedFrames() {
+        return appliedFrames.get();
+    }
+
+    public long getAppliedBytes() {
+        return appliedBytes.get();
+    }
+
+    public void register(MetricsRegistry registry) {
+        registry.gauge("transfer_replication_leader_connected", "1 when follower is connected to leader", "", () -> connected ? 1 : 0);
+        registry.counter("transfer_replication_applied_frames_total", "Frames applied by follower", "", this::getAppliedFrames);
+        registry.counter("transfer_replication_applied_bytes_total", "Bytes applied by follower", "", this::getAppliedBytes);
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
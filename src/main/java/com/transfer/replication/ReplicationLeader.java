@@ -0,0 +1,389 @@
+package com.transfer.replication;
+
+import com.transfer.core.AccountEventProcessorImpl;
+import com.transfer.core.AccountShardRouter;
+import com.transfer.core.IdleStrategies;
+import com.transfer.core.ShardedAccountEngine;
+import com.transfer.metrics.LatencyHistogram;
+import com.transfer.metrics.MetricsRegistry;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Streams changes applied by processors of the engine to one follower over TCP, see ReplicationProtocol.
+ * Every shard has ReplicationSource listener, which puts frame of each processed batch into bounded queue,
+ * leader thread accepts follower and writes queued frames to it, ack reader thread reads acks.
+ *
+ * async - results are completed as soon as frame is queued, follower could miss the last batches if leader dies
+ * sync  - processor waits until follower acked the batch before its results are completed, but not longer than sync timeout,
+ *         after timeout batch is completed anyway and timeout is counted, so slow follower does not stop the leader
+ *
+ * When queue is full follower is disconnected, it connects again and gets new snapshot.
+ * Without follower sources encode nothing and track no cross shard transfers, so leader costs one check per event
+ */
+public class ReplicationLeader implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationLeader.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final long DISCONNECTED = -1;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    //processors wait for each other at the cut, busy processor could come later than the others
+    private static final long CUT_TIMEOUT_MILLIS = 5000;
+    //sender parks for short periods only, frames wait for it and in sync mode processors wait for frames
+    private static final long SENDER_MAX_PARK_NANOS = 50_000;
+
+    private final ShardedAccountEngine engine;
+    private final int port;
+    private final boolean sync;
+    private final long syncTimeoutNanos;
+    private final ReplicationSource[] sources;
+    private final ManyToOneConcurrentArrayQueue<byte[]> queue;
+    private final AtomicLong connectedEpoch = new AtomicLong(DISCONNECTED);
+    private final AtomicLongArray sentSequences;
+    private final AtomicLongArray ackedSequences;
+    private final AtomicLong syncTimeouts = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final LatencyHistogram ackTime = new LatencyHistogram();
+    private final LatencyHistogram syncWaitTime = new LatencyHistogram();
+    private volatile boolean running;
+    private long lastEpoch;
+    private ServerSocket serverSocket;
+    private Thread thread;
+
+    public ReplicationLeader(ShardedAccountEngine engine, int port, boolean sync, long syncTimeoutNanos) {
+        this(engine, port, sync, syncTimeoutNanos, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /*
+     * Registers listeners on processors, so should be created before engine is started.
+     * queueCapacity - max number of frames waiting to be written to follower
+     */
+    public ReplicationLeader(ShardedAccountEngine engine, int port, boolean sync, long syncTimeoutNanos, int queueCapacity) {
+        this.engine = engine;
+        this.port = port;
+        this.sync = sync;
+        this.syncTimeoutNanos = syncTimeoutNanos;
+        this.queue = new ManyToOneConcurrentArrayQueue<>(queueCapacity);
+        this.sources = new ReplicationSource[engine.getShardCount()];
+        this.sentSequences = new AtomicLongArray(sources.length);
+        this.ackedSequences = new AtomicLongArray(sources.length);
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new ReplicationSource(this, i);
+            engine.getProcessor(i).addListener(sources[i]);
+        }
+    }
+
+    public void start() {
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to listen for follower on port " + port, e);
+        }
+        running = true;
+        thread = new Thread(this::run, "replication-leader");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("Waiting for replication follower on port {}, {} acknowledgement", serverSocket.getLocalPort(), sync ? "sync" : "async");
+    }
+
+    /*
+     * Port follower connects to, it is chosen by system if leader was created with 0
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void run() {
+        while (running) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setTcpNoDelay(true);
+                LOGGER.info("Replication follower connected from {}", socket.getRemoteSocketAddress());
+                stream(socket, connect());
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.warn("Replication follower connection failed", e);
+                }
+            }
+        }
+    }
+
+    /*
+     * New epoch starts with snapshot of every shard taken by its processor, all of them at the same cut.
+     * Cross shard debits are tracked before that, processor runs tracking task after it has sent credits of earlier debits,
+     * so all of them are queued before the cut and only tracked debits could be in flight at the cut
+     */
+    private long connect() {
+        long epoch = ++lastEpoch;
+        queue.clear();
+        for (int i = 0; i < sources.length; i++) {
+            sentSequences.set(i, 0);
+            ackedSequences.set(i, 0);
+        }
+        connectedEpoch.set(epoch);
+        CountDownLatch tracking = new CountDownLatch(sources.length);
+        for (int i = 0; i < sources.length; i++) {
+            ReplicationSource source = sources[i];
+            engine.execute(i, storage -> {
+                source.startTracking();
+                tracking.countDown();
+            });
+        }
+        try {
+            if (!tracking.await(CUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                disconnect(epoch, "shards did not start tracking transfers in " + CUT_TIMEOUT_MILLIS + " ms");
+                return epoch;
+            }
+        } catch (InterruptedException e) {
+            disconnect(epoch, "leader was interrupted");
+            Thread.currentThread().interrupt();
+            return epoch;
+        }
+        CyclicBarrier cut = new CyclicBarrier(sources.length);
+        for (int i = 0; i < sources.length; i++) {
+            ReplicationSource source = sources[i];
+            AccountEventProcessorImpl processor = engine.getProcessor(i);
+            engine.execute(i, storage -> source.startEpoch(epoch, storage, processor.getTransferSequence(), cut));
+        }
+        return epoch;
+    }
+
+    private void stream(Socket socket, long epoch) throws IOException {
+        Thread ackReader = new Thread(() -> readAcks(socket, epoch), "replication-ack-reader");
+        ackReader.setDaemon(true);
+        ackReader.start();
+        OutputStream output = new BufferedOutputStream(socket.getOutputStream(), ReplicationProtocol.MAX_FRAME_LENGTH);
+        IdleStrategy idleStrategy = IdleStrategies.create(IdleStrategies.BACKOFF, SENDER_MAX_PARK_NANOS);
+        UnsafeBuffer header = new UnsafeBuffer(new byte[0]);
+        boolean written = false;
+        try {
+            while (running && connectedEpoch.get() == epoch) {
+                byte[] frame = queue.poll();
+                if (frame == null) {
+                    if (written) {
+                        output.flush();
+                        written = false;
+                    }
+                    idleStrategy.idle();
+                    continue;
+                }
+                idleStrategy.reset();
+                //frames of previous connection could be queued after it was closed
+                header.wrap(frame);
+                if (header.getLong(ReplicationProtocol.EPOCH_OFFSET) == epoch) {
+                    output.write(frame);
+                    sentBytes.addAndGet(frame.length);
+                    written = true;
+                }
+            }
+        } finally {
+            disconnect(epoch, "stream is closed");
+        }
+    }
+
+    private void readAcks(Socket socket, long epoch) {
+        byte[] bytes = new byte[ReplicationProtocol.ACK_LENGTH];
+        UnsafeBuffer ack = new UnsafeBuffer(bytes);
+        try {
+            DataInputStream dataInput = new DataInputStream(socket.getInputStream());
+            while (connectedEpoch.get() == epoch) {
+                dataInput.readFully(bytes);
+                if (ack.getLong(ReplicationProtocol.ACK_EPOCH_OFFSET) != epoch) {
+                    continue;
+                }
+                int shard = ack.getInt(ReplicationProtocol.ACK_SHARD_OFFSET);
+                ackedSequences.set(shard, ack.getLong(ReplicationProtocol.ACK_SEQUENCE_OFFSET));
+                ackTime.record(System.nanoTime() - ack.getLong(ReplicationProtocol.ACK_SEND_NANOS_OFFSET));
+                if (sync) {
+                    LockSupport.unpark(sources[shard].getThread());
+                }
+            }
+        } catch (IOException e) {
+            disconnect(epoch, e.getMessage());
+        }
+        try {
+            //sender could wait for frames, closed socket is noticed by it only on write
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close follower connection", e);
+        }
+    }
+
+    boolean isConnected(long epoch) {
+        return connectedEpoch.get() == epoch;
+    }
+
+    /*
+     * Called by processor thread in snapshot task, returns when processors of all shards are stopped at the cut,
+     * or false if some of them did not come in time, then follower is disconnected and gets new snapshot
+     */
+    boolean awaitCut(long epoch, CyclicBarrier cut) {
+        try {
+            cut.await(CUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | BrokenBarrierException e) {
+            disconnect(epoch, "shards were not cut for snapshot in " + CUT_TIMEOUT_MILLIS + " ms");
+            return false;
+        } catch (InterruptedException e) {
+            disconnect(epoch, "processor was interrupted at snapshot cut");
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /*
+     * Called by processor thread which credited or refunded cross shard transfer, debit belongs to shard of transfer id
+     */
+    void settle(long transferId) {
+        int shard = AccountShardRouter.shardOfTransfer(transferId);
+        if (shard < sources.length) {
+            sources[shard].settle(transferId);
+        }
+    }
+
+    /*
+     * Called by processor thread. Snapshot frames wait for space in queue, frames of batches disconnect follower
+     * which does not keep up
+     */
+    void send(int shard, long epoch, long sequence, byte[] frame, boolean snapshot) {
+        while (!queue.offer(frame)) {
+            if (!snapshot) {
+                disconnect(epoch, "replication queue is full");
+                return;
+            }
+            if (!isConnected(epoch)) {
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        sentSequences.set(shard, sequence);
+    }
+
+    /*
+     * Called by processor thread in sync mode, returns when follower acked sequence, or lost connection, or timeout passed
+     */
+    void awaitAck(int shard, long epoch, long sequence) {
+        if (!sync) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + syncTimeoutNanos;
+        long now = start;
+        while (ackedSequences.get(shard) < sequence && isConnected(epoch)) {
+            if (now - deadline >= 0) {
+                syncTimeouts.incrementAndGet();
+                break;
+            }
+            LockSupport.parkNanos(deadline - now);
+            now = System.nanoTime();
+        }
+        syncWaitTime.record(System.nanoTime() - start);
+    }
+
+    private void disconnect(long epoch, String reason) {
+        if (epoch != DISCONNECTED && connectedEpoch.compareAndSet(epoch, DISCONNECTED)) {
+            disconnects.incrementAndGet();
+            LOGGER.warn("Replication follower is disconnected: {}", reason);
+            //processors waiting for acks go on without them
+            for (ReplicationSource source : sources) {
+                Thread sourceThread = source.getThread();
+                if (sourceThread != null) {
+                    LockSupport.unpark(sourceThread);
+                }
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        return connectedEpoch.get() != DISCONNECTED;
+    }
+
+    /*
+     * Frames of shard which are sent, or queued, and not acked by follower yet
+     */
+    public long getLag(int shard) {
+        return isConnected() ? Math.max(0, sentSequences.get(shard) - ackedSequences.get(shard)) : 0;
+    }
+
+    public long getSyncTimeouts() {
+        return syncTimeouts.get();
+    }
+
+    public long getDisconnects() {
+        return disconnects.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public LatencyHistogram getAckTime() {
+        return ackTime;
+    }
+
+    /*
+     * How long processors were stopped waiting for acks, this is what sync replication costs to throughput
+     */
+    public LatencyHistogram getSyncWaitTime() {
+        return syncWaitTime;
+    }
+
+    public void register(MetricsRegistry registry) {
+        registry.gauge("transfer_replication_connected", "1 when follower is connected to leader", "", () -> isConnected() ? 1 : 0);
+        for (int i = 0; i < sources.length; i++) {
+            int shard = i;
+            registry.gauge("transfer_replication_lag_frames", "Frames sent to follower and not acked yet, one frame per processed batch",
+                    MetricsRegistry.labels("shard", Integer.toString(i)), () -> getLag(shard));
+        }
+        registry.histogram("transfer_replication_ack_seconds", "Time from frame creation until follower acked it", "", ackTime);
+        registry.histogram("transfer_replication_sync_wait_seconds", "Time processors waited for follower ack before completing batch", "",
+                syncWaitTime);
+        registry.counter("transfer_replication_sync_timeouts_total", "Batches completed without follower ack after sync timeout", "",
+                this::getSyncTimeouts);
+        registry.counter("transfer_replication_bytes_total", "Bytes written to follower", "", this::getSentBytes);
+        registry.counter("transfer_replication_disconnects_total", "Follower connections lost", "", this::getDisconnects);
+    }
+
+    /*
+     * Processors waiting for acks are released, changes after that are not replicated
+     */
+    @Override
+    public void close() {
+        running = false;
+        disconnect(connectedEpoch.get(), "leader is closed");
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+            if (thread != null) {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close replication socket", e);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Thread was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
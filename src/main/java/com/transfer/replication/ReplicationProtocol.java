@@ -0,0 +1,80 @@
+package com.transfer.replication;
+
+import com.transfer.journal.PendingTransfers;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import java.util.UUID;
+
+/*
+ * Layout of replication stream, all numbers are in native order of agrona buffers, as in journal.
+ * Leader to follower - frame: [int length][int shard][long epoch][long sequence][long send nanos][records],
+ *   length counts bytes after itself, records are JournalRecords packed one after another.
+ * Follower to leader - ack: [int shard][long epoch][long sequence][long send nanos], send nanos are echoed from frame.
+ *
+ * Epoch is number of follower connection, each connection starts with snapshot of every shard as account created records,
+ * then goes on with records of processed batches. Sequence is number of frame of shard in epoch, starting from 1,
+ * ack of sequence confirms all frames of shard up to it.
+ * Snapshot of shard starts with records which are not in journal:
+ *   transfer sequence - [byte type][long sequence], the last sequence of transfer ids of the shard, promoted follower goes on after it
+ *   pending debit     - [byte type][long transfer id][uuid account][long amount], debit of the shard which was not credited
+ *                       when snapshots were taken, follower refunds it on promotion unless its credit is replicated
+ */
+final class ReplicationProtocol {
+
+    static final int LENGTH_OFFSET = 0;
+    static final int SHARD_OFFSET = LENGTH_OFFSET + Integer.BYTES;
+    static final int EPOCH_OFFSET = SHARD_OFFSET + Integer.BYTES;
+    static final int SEQUENCE_OFFSET = EPOCH_OFFSET + Long.BYTES;
+    static final int SEND_NANOS_OFFSET = SEQUENCE_OFFSET + Long.BYTES;
+    static final int FRAME_HEADER_LENGTH = SEND_NANOS_OFFSET + Long.BYTES;
+
+    static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    static final int ACK_SHARD_OFFSET = 0;
+    static final int ACK_EPOCH_OFFSET = ACK_SHARD_OFFSET + Integer.BYTES;
+    static final int ACK_SEQUENCE_OFFSET = ACK_EPOCH_OFFSET + Long.BYTES;
+    static final int ACK_SEND_NANOS_OFFSET = ACK_SEQUENCE_OFFSET + Long.BYTES;
+    static final int ACK_LENGTH = ACK_SEND_NANOS_OFFSET + Long.BYTES;
+
+    //after types of journal records
+    static final byte TRANSFER_SEQUENCE = 16;
+    static final byte PENDING_DEBIT = 17;
+    private static final int TRANSFER_SEQUENCE_LENGTH = Byte.BYTES + Long.BYTES;
+    private static final int PENDING_DEBIT_LENGTH = Byte.BYTES + 4 * Long.BYTES;
+
+    private ReplicationProtocol() {
+    }
+
+    static int putTransferSequence(MutableDirectBuffer buffer, int offset, long sequence) {
+        buffer.putByte(offset, TRANSFER_SEQUENCE);
+        buffer.putLong(offset + Byte.BYTES, sequence);
+        return TRANSFER_SEQUENCE_LENGTH;
+    }
+
+    static int putPendingDebit(MutableDirectBuffer buffer, int offset, long transferId, UUID account, long amount) {
+        buffer.putByte(offset, PENDING_DEBIT);
+        buffer.putLong(offset + Byte.BYTES, transferId);
+        buffer.putLong(offset + Byte.BYTES + Long.BYTES, account.getMostSignificantBits());
+        buffer.putLong(offset + Byte.BYTES + 2 * Long.BYTES, account.getLeastSignificantBits());
+        buffer.putLong(offset + Byte.BYTES + 3 * Long.BYTES, amount);
+        return PENDING_DEBIT_LENGTH;
+    }
+
+    /*
+     * Snapshot record of shard goes to pending transfers, returns its length, or 0 if it is journal record
+     */
+    static int decodeSnapshotRecord(DirectBuffer buffer, int offset, int shard, PendingTransfers pendingTransfers) {
+        switch (buffer.getByte(offset)) {
+            case TRANSFER_SEQUENCE:
+                pendingTransfers.onTransferSequence(shard, buffer.getLong(offset + Byte.BYTES));
+                return TRANSFER_SEQUENCE_LENGTH;
+            case PENDING_DEBIT:
+                UUID account = new UUID(buffer.getLong(offset + Byte.BYTES + Long.BYTES), buffer.getLong(offset + Byte.BYTES + 2 * Long.BYTES));
+                pendingTransfers.onDebit(buffer.getLong(offset + Byte.BYTES), shard, account, buffer.getLong(offset + Byte.BYTES + 3 * Long.BYTES));
+                return PENDING_DEBIT_LENGTH;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.transfer.replication;
+
+import com.transfer.core.AccountEventListener;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.journal.JournalRecords;
+import com.transfer.journal.PendingTransfers;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+
+/*
+ * Listener of one shard processor which encodes applied changes into frames for ReplicationLeader.
+ * Changes are encoded only while follower is connected, epoch is started by snapshot task on processor thread,
+ * so snapshot and stream after it are cut at the same event. Everything is called from processor thread only,
+ * except settle, which is called by processors of other shards when they credit debits of this shard.
+ *
+ * Debits of the shard are tracked until they are credited or refunded while follower is connected, from tracking task which
+ * runs before the cut. Money of debit in flight is in none of shard snapshots, so it is sent with snapshot as pending debit
+ */
+class ReplicationSource implements AccountEventListener {
+
+    private static final long INACTIVE = -1;
+
+    private final ReplicationLeader leader;
+    private final int shard;
+    private final byte[] bytes = new byte[ReplicationProtocol.MAX_FRAME_LENGTH];
+    private final UnsafeBuffer buffer = new UnsafeBuffer(bytes);
+    private final Map<Long, PendingTransfers.PendingDebit> unsettled = new ConcurrentHashMap<>();
+    private long epoch = INACTIVE;
+    private boolean tracking;
+    private long sequence;
+    private long awaitedSequence;
+    private int position = ReplicationProtocol.FRAME_HEADER_LENGTH;
+    private volatile Thread thread;
+
+    ReplicationSource(ReplicationLeader leader, int shard) {
+        this.leader = leader;
+        this.shard = shard;
+    }
+
+    /*
+     * Tracking task, debits before it are forgotten, their credits are sent before processor runs it
+     */
+    void startTracking() {
+        unsettled.clear();
+        tracking = true;
+    }
+
+    /*
+     * Snapshot task, sends the last transfer sequence, debits in flight and every account of storage and starts streaming
+     * of changes after it. Snapshots of all shards are taken after the cut, when every processor is stopped at it,
+     * so credit is either in snapshot of its shard or in stream after it, and debits are pending at the same moment
+     */
+    void startEpoch(long newEpoch, AccountStorage<AccountInfo, UUID> storage, long transferSequence, CyclicBarrier cut) {
+        thread = Thread.currentThread();
+        if (!leader.awaitCut(newEpoch, cut)) {
+            return;
+        }
+        epoch = newEpoch;
+        sequence = 0;
+        awaitedSequence = 0;
+        position = ReplicationProtocol.FRAME_HEADER_LENGTH;
+        position += ReplicationProtocol.putTransferSequence(buffer, position, transferSequence);
+        unsettled.forEach((transferId, debit) -> {
+            reserve(true);
+            position += ReplicationProtocol.putPendingDebit(buffer, position, transferId, debit.getAccount(), debit.getAmount());
+        });
+        storage.forEach(account -> {
+            reserve(true);
+            position += JournalRecords.putAccountCreated(buffer, position, account.getUuid(), account.getAmount());
+        });
+        flush(true);
+    }
+
+    /*
+     * Debit of this shard is credited by another shard, or refunded by this one
+     */
+    void settle(long transferId) {
+        if (!unsettled.isEmpty()) {
+            unsettled.remove(transferId);
+        }
+    }
+
+    /*
+     * Processor thread waiting for ack, it is woken up by ack reader
+     */
+    Thread getThread() {
+        return thread;
+    }
+
+    @Override
+    public void onAccountCreated(AccountInfo account) {
+        if (epoch != INACTIVE) {
+            reserve(false);
+            position += JournalRecords.putAccountCreated(buffer, position, account.getUuid(), account.getAmount());
+        }
+    }
+
+    @Override
+    public void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+        if (epoch != INACTIVE) {
+            reserve(false);
+            position += JournalRecords.putTransfer(buffer, position, fromAccount.getUuid(), toAccount.getUuid(), amount);
+        }
+    }
+
+    @Override
+    public void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+        if (tracking) {
+            unsettled.put(transferId, new PendingTransfers.PendingDebit(shard, fromAccount.getUuid(), amount));
+        }
+        if (epoch != INACTIVE) {
+            reserve(false);
+            position += JournalRecords.putDebit(buffer, position, transferId, fromAccount.getUuid(), toAccount, amount);
+        }
+    }
+
+    @Override
+    public void onCredit(long transferId, AccountInfo account, long amount) {
+        leader.settle(transferId);
+        if (epoch != INACTIVE) {
+            reserve(false);
+            position += JournalRecords.putCredit(buffer, position, transferId, account.getUuid(), amount);
+        }
+    }
+
+    /*
+     * Frame of the batch is queued before results are completed and before other shards get credits of the batch,
+     * so follower gets debit before its credit. In sync mode processor waits here until follower applied the batch
+     */
+    @Override
+    public void onBatchProcessed() {
+        if (epoch == INACTIVE) {
+            //follower was lost before the cut
+            if (tracking && !leader.isConnected()) {
+                stopTracking();
+            }
+            return;
+        }
+        if (!leader.isConnected(epoch)) {
+            epoch = INACTIVE;
+            position = ReplicationProtocol.FRAME_HEADER_LENGTH;
+            stopTracking();
+            return;
+        }
+        if (position > ReplicationProtocol.FRAME_HEADER_LENGTH) {
+            flush(false);
+        }
+        //large batch could be sent in a few frames, ack of the last one confirms all of them
+        if (sequence > awaitedSequence) {
+            awaitedSequence = sequence;
+            leader.awaitAck(shard, epoch, sequence);
+        }
+    }
+
+    private void stopTracking() {
+        tracking = false;
+        unsettled.clear();
+    }
+
+    private void reserve(boolean snapshot) {
+        if (position + JournalRecords.MAX_RECORD_LENGTH > bytes.length) {
+            flush(snapshot);
+        }
+    }
+
+    private void flush(boolean snapshot) {
+        sequence++;
+        buffer.putInt(ReplicationProtocol.LENGTH_OFFSET, position - ReplicationProtocol.SHARD_OFFSET);
+        buffer.putInt(ReplicationProtocol.SHARD_OFFSET, shard);
+        buffer.putLong(ReplicationProtocol.EPOCH_OFFSET, epoch);
+        buffer.putLong(ReplicationProtocol.SEQUENCE_OFFSET, sequence);
+        buffer.putLong(ReplicationProtocol.SEND_NANOS_OFFSET, System.nanoTime());
+        leader.send(shard, epoch, sequence, Arrays.copyOf(bytes, position), snapshot);
+        position = ReplicationProtocol.FRAME_HEADER_LENGTH;
+    }
+}
@@ -0,0 +1,315 @@
+package com.transfer.snapshot;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.journal.PendingTransfers;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Binary snapshots of all shards, each snapshot contains accounts and pending cross shard transfers
+ * at the same journal positions, so recovery replays only records after them.
+ * Layout: [int magic][int version][int shards][long position]*shards, [long transfer sequence]*shards,
+ * then per shard [int count][uuid msb/lsb, amount]*count, then [int count][transferId, int shard, uuid msb/lsb, amount]*count
+ * for pending debits and [int count][transferId]*count for credits without debit. Amount is long number of minor units.
+ * Version 2 has no transfer sequences, transfer ids were random then, so sequences of its shards start from 0.
+ * Snapshot is written to temporary file and renamed, so incomplete snapshot is never visible.
+ * It is read sequentially through mapped windows of at most chunkSize bytes, so its size is not limited by one buffer
+ */
+public class SnapshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+
+    //DataOutputStream writes big endian values
+    private static final ByteOrder BIG_ENDIAN = ByteOrder.BIG_ENDIAN;
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 3;
+    private static final int RANDOM_TRANSFER_ID_VERSION = 2;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+
+    private final Path directory;
+    private final int chunkSize;
+
+    public SnapshotStore(Path directory) {
+        this(directory, DEFAULT_CHUNK_SIZE);
+    }
+
+    /*
+     * chunkSize - max bytes of snapshot mapped at once
+     */
+    SnapshotStore(Path directory, int chunkSize) {
+        if (chunkSize < Long.BYTES) {
+            throw new IllegalArgumentException("Chunk size should be at least " + Long.BYTES);
+        }
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create snapshot directory " + directory, e);
+        }
+    }
+
+    public Path write(long[] positions, List<AccountStorage<AccountInfo, UUID>> storages, PendingTransfers pendingTransfers) {
+        List<Long> snapshots = snapshotIndexes();
+        Path snapshot = snapshotPath(snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1) + 1);
+        Path temp = directory.resolve(snapshot.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(positions.length);
+            for (long position : positions) {
+                output.writeLong(position);
+            }
+            for (int shard = 0; shard < positions.length; shard++) {
+                output.writeLong(pendingTransfers.getTransferSequence(shard));
+            }
+            for (AccountStorage<AccountInfo, UUID> storage : storages) {
+                output.writeInt(storage.size());
+                storage.forEach(account -> {
+                    try {
+                        writeUuid(output, account.getUuid());
+                        writeAmount(output, account.getAmount());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            Map<Long, PendingTransfers.PendingDebit> debits = pendingTransfers.getDebits();
+            output.writeInt(debits.size());
+            for (Map.Entry<Long, PendingTransfers.PendingDebit> entry : debits.entrySet()) {
+                output.writeLong(entry.getKey());
+                output.writeInt(entry.getValue().getShard());
+                writeUuid(output, entry.getValue().getAccount());
+                writeAmount(output, entry.getValue().getAmount());
+            }
+            List<Long> credits = List.copyOf(pendingTransfers.getCredits());
+            output.writeInt(credits.size());
+            for (long transferId : credits) {
+                output.writeLong(transferId);
+            }
+            output.flush();
+            channel.force(true);
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Unable to write snapshot " + snapshot, e);
+        }
+        try {
+            Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write snapshot " + snapshot, e);
+        }
+        return snapshot;
+    }
+
+    /*
+     * Loads the newest snapshot into empty storages and returns its journal positions, or null if there is no snapshot
+     */
+    public long[] loadLatest(List<AccountStorage<AccountInfo, UUID>> storages, PendingTransfers pendingTransfers) {
+        List<Long> snapshots = snapshotIndexes();
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        Path snapshot = snapshotPath(snapshots.get(snapshots.size() - 1));
+        try (SnapshotReader reader = new SnapshotReader(snapshot, chunkSize)) {
+            int shards = reader.readHeader();
+            if (shards != storages.size()) {
+                throw new IllegalStateException("Snapshot " + snapshot + " is written for " + shards + " shards, but there are " + storages.size());
+            }
+            long[] positions = new long[shards];
+            for (int shard = 0; shard < shards; shard++) {
+                positions[shard] = reader.readLong();
+            }
+            if (reader.version != RANDOM_TRANSFER_ID_VERSION) {
+                for (int shard = 0; shard < shards; shard++) {
+                    pendingTransfers.onTransferSequence(shard, reader.readLong());
+                }
+            }
+            long accounts = 0;
+            for (AccountStorage<AccountInfo, UUID> storage : storages) {
+                int count = reader.readInt();
+                for (int i = 0; i < count; i++) {
+                    UUID uuid = reader.readUuid();
+                    storage.put(new AccountInfo(uuid, reader.readLong()));
+                }
+                accounts += count;
+            }
+            int debits = reader.readInt();
+            for (int i = 0; i < debits; i++) {
+                long transferId = reader.readLong();
+                int shard = reader.readInt();
+                UUID account = reader.readUuid();
+                pendingTransfers.onDebit(transferId, shard, account, reader.readLong());
+            }
+            int credits = reader.readInt();
+            for (int i = 0; i < credits; i++) {
+                pendingTransfers.onCredit(reader.readLong());
+            }
+            LOGGER.info("Loaded {} accounts from snapshot {}", accounts, snapshot);
+            return positions;
+        }
+    }
+
+    /*
+     * Journal positions of snapshots from the oldest to the newest
+     */
+    public List<long[]> positions() {
+        return snapshotIndexes().stream()
+                .map(this::snapshotPath)
+                .map(snapshot -> {
+                    try (SnapshotReader reader = new SnapshotReader(snapshot, chunkSize)) {
+                        long[] positions = new long[reader.readHeader()];
+                        for (int shard = 0; shard < positions.length; shard++) {
+                            positions[shard] = reader.readLong();
+                        }
+                        return positions;
+                    }
+                })
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * Deletes all snapshots except the given number of the newest ones
+     */
+    public void deleteOldest(int retained) {
+        List<Long> snapshots = snapshotIndexes();
+        try {
+            for (int i = 0; i < snapshots.size() - retained; i++) {
+                Files.deleteIfExists(snapshotPath(snapshots.get(i)));
+                LOGGER.info("Snapshot {} in {} is deleted", snapshots.get(i), directory);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to delete snapshots in " + directory, e);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream output, UUID uuid) throws IOException {
+        output.writeLong(uuid.getMostSignificantBits());
+        output.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeAmount(DataOutputStream output, long amount) throws IOException {
+        output.writeLong(amount);
+    }
+
+    private List<Long> snapshotIndexes() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to list snapshots in " + directory, e);
+        }
+    }
+
+    private Path snapshotPath(long index) {
+        return directory.resolve(String.format("%s%010d%s", SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX));
+    }
+
+    /*
+     * Reads snapshot from start to end, window is mapped again at current position when the next value does not fit in it
+     */
+    private static final class SnapshotReader implements AutoCloseable {
+        private final Path snapshot;
+        private final FileChannel channel;
+        private final long size;
+        private final int chunkSize;
+        private final UnsafeBuffer window = new UnsafeBuffer(new byte[0]);
+        private long windowStart;
+        private int offset;
+        private int version;
+
+        private SnapshotReader(Path snapshot, int chunkSize) {
+            this.snapshot = snapshot;
+            this.chunkSize = chunkSize;
+            try {
+                this.channel = FileChannel.open(snapshot, StandardOpenOption.READ);
+                this.size = channel.size();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read snapshot " + snapshot, e);
+            }
+        }
+
+        /*
+         * Checks magic and version, returns number of shards
+         */
+        int readHeader() {
+            if (size < 3 * Integer.BYTES || readInt() != MAGIC) {
+                throw new IllegalStateException("File " + snapshot + " is not a snapshot");
+            }
+            version = readInt();
+            if (version != VERSION && version != RANDOM_TRANSFER_ID_VERSION) {
+                throw new IllegalStateException("Snapshot " + snapshot + " has unsupported version " + version);
+            }
+            return readInt();
+        }
+
+        int readInt() {
+            ensure(Integer.BYTES);
+            int value = window.getInt(offset, BIG_ENDIAN);
+            offset += Integer.BYTES;
+            return value;
+        }
+
+        long readLong() {
+            ensure(Long.BYTES);
+            long value = window.getLong(offset, BIG_ENDIAN);
+            offset += Long.BYTES;
+            return value;
+        }
+
+        UUID readUuid() {
+            long msb = readLong();
+            return new UUID(msb, readLong());
+        }
+
+        private void ensure(int length) {
+            if (offset + length <= window.capacity()) {
+                return;
+            }
+            long position = windowStart + offset;
+            if (position + length > size) {
+                throw new IllegalStateException("Snapshot " + snapshot + " is truncated at " + position);
+            }
+            try {
+                window.wrap(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position)));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read snapshot " + snapshot, e);
+            }
+            windowStart = position;
+            offset = 0;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to close snapshot " + snapshot, e);
+            }
+        }
+    }
+}
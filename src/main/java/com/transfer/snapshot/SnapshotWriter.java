@@ -0,0 +1,124 @@
+package com.transfer.snapshot;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.journal.EventJournal;
+import com.transfer.journal.PendingTransfers;
+import com.transfer.journal.StorageReplayHandler;
+import com.transfer.ledger.LedgerSummary;
+import com.transfer.ledger.LedgerVerifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Writes snapshots in background without touching processor threads: it keeps own copy of storages and brings it
+ * to committed journal positions of all shards by replaying journals, so every snapshot is taken from a consistent point.
+ * After snapshot is written, journal segments which are not needed to recover from the older retained snapshot are deleted.
+ * With ledger verifier copy of shard is brought to position of the last shard summary instead and compared with it by full scan.
+ * Copy is created by the same storage factory as storages of processors, so it doubles memory taken by accounts
+ */
+public class SnapshotWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotWriter.class);
+
+    //previous snapshot is kept in case the newest one could not be read
+    private static final int RETAINED_SNAPSHOTS = 2;
+
+    private final SnapshotStore store;
+    private final List<EventJournal> journals;
+    private final List<AccountStorage<AccountInfo, UUID>> storages = new ArrayList<>();
+    private final PendingTransfers pendingTransfers = new PendingTransfers();
+    private final long[] positions;
+    private final LedgerVerifier verifier;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SnapshotWriter(SnapshotStore store, List<EventJournal> journals, Supplier<AccountStorage<AccountInfo, UUID>> storageFactory) {
+        this(store, journals, storageFactory, null);
+    }
+
+    /*
+     * verifier - if present, aggregates of every shard are verified when snapshot is taken
+     */
+    public SnapshotWriter(SnapshotStore store, List<EventJournal> journals, Supplier<AccountStorage<AccountInfo, UUID>> storageFactory,
+                          LedgerVerifier verifier) {
+        this.store = store;
+        this.verifier = verifier;
+        this.journals = journals;
+        for (int i = 0; i < journals.size(); i++) {
+            storages.add(storageFactory.get());
+        }
+        long[] loaded = store.loadLatest(storages, pendingTransfers);
+        this.positions = loaded == null ? new long[journals.size()] : loaded;
+    }
+
+    public void start(long intervalMillis) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (Exception e) {
+                LOGGER.error("Unable to write snapshot", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Should be called from one thread at a time, it is either snapshot writer thread or test
+     */
+    public void snapshot() {
+        long start = System.nanoTime();
+        pendingTransfers.expireCredits();
+        boolean changed = false;
+        for (int shard = 0; shard < journals.size(); shard++) {
+            EventJournal journal = journals.get(shard);
+            long committed = journal.getCommittedPosition();
+            //summary is published after journal commits the batch, so its position is usually already committed
+            LedgerSummary expected = verifier != null ? verifier.expected(shard) : null;
+            long target = expected != null && expected.getPosition() >= positions[shard] && expected.getPosition() <= committed
+                    ? expected.getPosition() : committed;
+            if (target != positions[shard]) {
+                positions[shard] = journal.replay(positions[shard], target,
+                        pendingTransfers.trackingHandler(shard, new StorageReplayHandler(storages.get(shard))));
+                changed = true;
+                if (expected != null && positions[shard] == expected.getPosition()) {
+                    verifier.verify(shard, expected, storages.get(shard));
+                }
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        LOGGER.info("Snapshot {} is written in {} ms", store.write(positions, storages, pendingTransfers),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        store.deleteOldest(RETAINED_SNAPSHOTS);
+        long[] oldestPositions = store.positions().get(0);
+        for (int shard = 0; shard < journals.size(); shard++) {
+            journals.get(shard).deleteSegmentsBefore(EventJournal.segmentOf(oldestPositions[shard]));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Snapshot writer was not stopped in 1 minute");
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Thread was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.transfer.transport;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.transfer.core.AccountEventPublisher;
+import com.transfer.core.AccountImporter;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountShardRouter;
+import com.transfer.core.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.UUID;
+
+/*
+ * Reads accounts line by line and writes result of every line as NDJSON, see AccountJsonWriter.
+ * NDJSON line is {"uuid":"...","amount":"12.34"}, CSV line is uuid,amount or just amount, uuid is optional in both
+ * and generated if missed, CSV could start with header. Empty lines are skipped, line which can't be parsed fails on its own.
+ * Only current line and chunks of AccountImporter are kept in memory, results are flushed while import goes on
+ */
+public class AccountImportStream {
+
+    private static final String UUID_FIELD = "uuid";
+    private static final String AMOUNT_FIELD = "amount";
+    private static final int FLUSH_LINES = 1000;
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format fromName(String name) {
+            if (name == null) {
+                return NDJSON;
+            }
+            String lowerCase = name.toLowerCase();
+            //accepts format name, content type or file name
+            return lowerCase.equals("csv") || lowerCase.startsWith("text/csv") || lowerCase.endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    private final AccountEventPublisher publisher;
+    private final AccountShardRouter router;
+    private final Money money;
+    private final AccountJsonWriter jsonWriter;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    public AccountImportStream(AccountEventPublisher publisher, AccountShardRouter router, Money money) {
+        this.publisher = publisher;
+        this.router = router;
+        this.money = money;
+        this.jsonWriter = new AccountJsonWriter(money);
+    }
+
+    /*
+     * Returns number of read lines. Failed write stops import, accounts of chunks published before stay imported
+     */
+    public long importAccounts(BufferedReader reader, Format format, Writer writer) throws IOException {
+        AccountImporter importer = new AccountImporter(publisher, router, (line, result) -> write(writer, line, result));
+        long line = 0;
+        boolean header = format == Format.CSV;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            text = text.trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            if (header) {
+                header = false;
+                String field = text.split(",", 2)[0].trim();
+                if (field.equalsIgnoreCase(UUID_FIELD) || field.equalsIgnoreCase(AMOUNT_FIELD)) {
+                    continue;
+                }
+            }
+            try {
+                if (format == Format.CSV) {
+                    addCsv(importer, line, text);
+                } else {
+                    addJson(importer, line, text);
+                }
+            } catch (IllegalArgumentException | IOException ex) {
+                write(writer, line, AccountResult.failed(String.valueOf(ex.getMessage())));
+            }
+            if (line % FLUSH_LINES == 0) {
+                writer.flush();
+            }
+        }
+        importer.finish();
+        writer.flush();
+        return line;
+    }
+
+    private void addCsv(AccountImporter importer, long line, String text) {
+        int comma = text.indexOf(',');
+        if (comma < 0) {
+            importer.add(line, null, money.parse(text));
+            return;
+        }
+        String uuid = text.substring(0, comma).trim();
+        importer.add(line, uuid.isEmpty() ? null : UUID.fromString(uuid), money.parse(text.substring(comma + 1).trim()));
+    }
+
+    private void addJson(AccountImporter importer, long line, String text) throws IOException {
+        JsonNode node = objectMapper.readTree(text);
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("Line should be JSON object");
+        }
+        JsonNode uuid = node.get(UUID_FIELD);
+        JsonNode amount = node.get(AMOUNT_FIELD);
+        importer.add(line, uuid == null || uuid.isNull() ? null : UUID.fromString(uuid.asText()),
+                money.parse(amount == null || amount.isNull() ? null : amount.asText()));
+    }
+
+    private void write(Writer writer, long line, AccountResult result) {
+        try {
+            writer.write(jsonWriter.toJson(line, result));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.transfer.transport;
+
+import com.transfer.core.AccountHistoryEntry;
+import com.transfer.core.AccountHistoryReader;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+import com.transfer.core.Money;
+import com.transfer.ledger.LedgerSummary;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Writes fixed response shapes without reflection: {"uuid":"...","amount":12.34} for one account,
+ * array of two such objects for transfer and array of transfer results for batch, where failed transfer is {"error":"..."}.
+ * Imported account is written with its input line: {"line":1,"uuid":"...","amount":12.34} or {"line":1,"error":"..."}.
+ * History page is {"uuid":"...","entries":[{"sequence":3,"type":"transfer","time":1700000000000,"counterparty":"...",
+ * "amount":-1.50,"balance":10.00},...],"nextCursor":3}, counterparty and nextCursor are omitted if absent.
+ * Ledger summary is {"accounts":2,"balance":12.34,"created":12.34,"inFlight":0.00,"balanced":true,"transfers":5,"volume":3.00,
+ * "window":{"seconds":60,"transfers":1,"volume":0.50},"top":[{"uuid":"...","amount":10.00},...],"topExact":true}.
+ * Amount is exact decimal of money scale
+ */
+public class AccountJsonWriter {
+
+    //two accounts with uuid and long amount fit into it, so builder is never grown
+    private static final int RESPONSE_CAPACITY = 192;
+
+    private final int scale;
+
+    public AccountJsonWriter(Money money) {
+        this.scale = money.getScale();
+    }
+
+    public String toJson(AccountResult result) {
+        if (result.isBatch()) {
+            StringBuilder json = new StringBuilder(RESPONSE_CAPACITY * result.getItems().size());
+            json.append('[');
+            for (int i = 0; i < result.getItems().size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                appendResult(json, result.getItems().get(i));
+            }
+            json.append(']');
+            return json.toString();
+        }
+        StringBuilder json = new StringBuilder(RESPONSE_CAPACITY);
+        appendResult(json, result);
+        return json.toString();
+    }
+
+    private void appendResult(StringBuilder json, AccountResult result) {
+        if (result.isFailed()) {
+            json.append("{\"error\":\"");
+            appendEscaped(json, result.getError());
+            json.append("\"}");
+        } else if (result.isPair()) {
+            json.append('[');
+            appendAccount(json, result.getAccount(), result.getAmount());
+            json.append(',');
+            appendAccount(json, result.getSecondAccount(), result.getSecondAmount());
+            json.append(']');
+        } else {
+            appendAccount(json, result.getAccount(), result.getAmount());
+        }
+    }
+
+    public String toJson(long line, AccountResult result) {
+        StringBuilder json = new StringBuilder(RESPONSE_CAPACITY);
+        json.append("{\"line\":").append(line).append(',');
+        if (result.isFailed()) {
+            json.append("\"error\":\"");
+            appendEscaped(json, result.getError());
+            json.append('"');
+        } else {
+            json.append("\"uuid\":\"").append(result.getAccount()).append("\",\"amount\":");
+            appendAmount(json, result.getAmount());
+        }
+        return json.append('}').toString();
+    }
+
+    public String toJson(AccountInfo account) {
+        StringBuilder json = new StringBuilder(RESPONSE_CAPACITY);
+        appendAccount(json, account.getUuid(), account.getAmount());
+        return json.toString();
+    }
+
+    public String toJson(UUID account, AccountHistoryReader.Page page) {
+        StringBuilder json = new StringBuilder(RESPONSE_CAPACITY * (page.getEntries().size() + 1));
+        json.append("{\"uuid\":\"").append(account).append("\",\"entries\":[");
+        for (int i = 0; i < page.getEntries().size(); i++) {
+            AccountHistoryEntry entry = page.getEntries().get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"sequence\":").append(entry.getSequence())
+                    .append(",\"type\":\"").append(entry.getType().getLabel())
+                    .append("\",\"time\":").append(entry.getTimeMillis());
+            if (entry.getCounterparty() != null) {
+                json.append(",\"counterparty\":\"").append(entry.getCounterparty()).append('"');
+            }
+            json.append(",\"amount\":");
+            appendAmount(json, entry.getAmount());
+            json.append(",\"balance\":");
+            appendAmount(json, entry.getBalance());
+            json.append('}');
+        }
+        json.append(']');
+        if (page.getNextCursor() != 0) {
+            json.append(",\"nextCursor\":").append(page.getNextCursor());
+        }
+        return json.append('}').toString();
+    }
+
+    public String toJson(LedgerSummary summary, int topSize) {
+        List<AccountInfo> top = summary.getTop(topSize);
+        StringBuilder json = new StringBuilder(RESPONSE_CAPACITY * (top.size() + 2));
+        json.append("{\"accounts\":").append(summary.getAccounts()).append(",\"balance\":");
+        appendAmount(json, summary.getBalance());
+        json.append(",\"created\":");
+        appendAmount(json, summary.getCreated());
+        json.append(",\"inFlight\":");
+        appendAmount(json, summary.getInFlight());
+        json.append(",\"balanced\":").append(summary.isBalanced())
+                .append(",\"transfers\":").append(summary.getTransfers()).append(",\"volume\":");
+        appendAmount(json, summary.getVolume());
+        json.append(",\"window\":{\"seconds\":").append(summary.getWindowSeconds())
+                .append(",\"transfers\":").append(summary.getWindowTransfers()).append(",\"volume\":");
+        appendAmount(json, summary.getWindowVolume());
+        json.append("},\"top\":[");
+        for (int i = 0; i < top.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendAccount(json, top.get(i).getUuid(), top.get(i).getAmount());
+        }
+        json.append("],\"topExact\":").append(summary.isTopExact(topSize));
+        return json.append('}').toString();
+    }
+
+    private void appendAccount(StringBuilder json, UUID uuid, long amount) {
+        json.append("{\"uuid\":\"").append(uuid).append("\",\"amount\":");
+        appendAmount(json, amount);
+        json.append('}');
+    }
+
+    private static void appendEscaped(StringBuilder json, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+    }
+
+    /*
+     * Same digits as BigDecimal.valueOf(amount, scale).toPlainString(), without BigDecimal
+     */
+    void appendAmount(StringBuilder json, long amount) {
+        if (scale == 0) {
+            json.append(amount);
+            return;
+        }
+        int start = json.length();
+        if (amount < 0) {
+            json.append('-');
+            start++;
+        }
+        //Long.MIN_VALUE can't be negated, its digits are appended as unsigned
+        json.append(Long.toUnsignedString(amount < 0 ? -amount : amount));
+        int digits = json.length() - start;
+        for (int i = digits; i <= scale; i++) {
+            json.insert(start, '0');
+        }
+        json.insert(json.length() - scale, '.');
+    }
+}
@@ -0,0 +1,152 @@
+package com.transfer.transport;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountResult;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+
+/*
+ * Blocking client of BinaryServer, used by tests and benchmarks. Requests are buffered until flush,
+ * so many of them could be sent in one write and responses read later. Not thread safe
+ */
+public class BinaryClient implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    public BinaryClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();
+    }
+
+    /*
+     * Amounts are minor units of server money scale
+     */
+    public void create(long correlationId, long amount) throws IOException {
+        create(correlationId, amount, 0, 0);
+    }
+
+    public void create(long correlationId, long amount, long idempotencyKeyHi, long idempotencyKeyLo) throws IOException {
+        ensureRemaining(BinaryProtocol.LENGTH_SIZE + BinaryProtocol.CREATE_LENGTH);
+        BinaryProtocol.putCreate(out, correlationId, amount, idempotencyKeyHi, idempotencyKeyLo);
+    }
+
+    public void info(long correlationId, UUID account) throws IOException {
+        ensureRemaining(BinaryProtocol.LENGTH_SIZE + BinaryProtocol.INFO_LENGTH);
+        BinaryProtocol.putInfo(out, correlationId, account);
+    }
+
+    public void transfer(long correlationId, UUID fromAccount, UUID toAccount, long amount) throws IOException {
+        transfer(correlationId, fromAccount, toAccount, amount, 0, 0);
+    }
+
+    public void transfer(long correlationId, UUID fromAccount, UUID toAccount, long amount,
+                         long idempotencyKeyHi, long idempotencyKeyLo) throws IOException {
+        ensureRemaining(BinaryProtocol.LENGTH_SIZE + BinaryProtocol.TRANSFER_LENGTH);
+        BinaryProtocol.putTransfer(out, correlationId, fromAccount, toAccount, amount, idempotencyKeyHi, idempotencyKeyLo);
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /*
+     * Blocks until the next response is read, responses of pipelined requests could come in any order
+     */
+    public Response read() throws IOException {
+        fill(BinaryProtocol.LENGTH_SIZE);
+        int length = in.getInt();
+        fill(length);
+        int end = in.position() + length;
+        byte status = in.get();
+        long correlationId = in.getLong();
+        Response response;
+        switch (status) {
+            case BinaryProtocol.ACCOUNT:
+                response = new Response(correlationId, status, AccountResult.of(new AccountInfo(BinaryProtocol.getUuid(in), in.getLong())), null);
+                break;
+            case BinaryProtocol.PAIR:
+                AccountInfo fromAccount = new AccountInfo(BinaryProtocol.getUuid(in), in.getLong());
+                AccountInfo toAccount = new AccountInfo(BinaryProtocol.getUuid(in), in.getLong());
+                response = new Response(correlationId, status, AccountResult.of(fromAccount, toAccount), null);
+                break;
+            default:
+                response = new Response(correlationId, status, null, BinaryProtocol.getMessage(in));
+        }
+        in.position(end);
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensureRemaining(int length) throws IOException {
+        if (out.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void fill(int length) throws IOException {
+        if (in.remaining() >= length) {
+            return;
+        }
+        in.compact();
+        while (in.position() < length) {
+            if (channel.read(in) < 0) {
+                throw new IOException("Connection is closed by server");
+            }
+        }
+        in.flip();
+    }
+
+    public static final class Response {
+        private final long correlationId;
+        private final byte status;
+        private final AccountResult result;
+        private final String error;
+
+        private Response(long correlationId, byte status, AccountResult result, String error) {
+            this.correlationId = correlationId;
+            this.status = status;
+            this.result = result;
+            this.error = error;
+        }
+
+        public long getCorrelationId() {
+            return correlationId;
+        }
+
+        /*
+         * Null if request failed
+         */
+        public AccountResult getResult() {
+            return result;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /*
+         * Request was not accepted because server is overloaded, it could be retried later
+         */
+        public boolean isRejected() {
+            return status == BinaryProtocol.REJECTED;
+        }
+    }
+}
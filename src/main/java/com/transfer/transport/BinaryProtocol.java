@@ -0,0 +1,121 @@
+package com.transfer.transport;
+
+import com.transfer.core.AccountResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/*
+ * Length prefixed binary messages of BinaryServer, big endian, every frame is [int length][byte type][long correlation id][payload],
+ * length counts bytes after itself. Amounts are long minor units, see Money, so client should use the same money scale.
+ * Requests:
+ *   create   - [long amount][long idempotency key hi][long idempotency key lo]
+ *   info     - [uuid account]
+ *   transfer - [uuid from][uuid to][long amount][long idempotency key hi][long idempotency key lo]
+ * Responses, type is status:
+ *   account  - [uuid account][long amount]
+ *   pair     - [uuid from][long amount][uuid to][long amount]
+ *   error, rejected - [short length][utf-8 message]
+ * Uuid is two longs, most significant bits first. Responses could come in any order, they are matched by correlation id
+ */
+final class BinaryProtocol {
+
+    static final int LENGTH_SIZE = Integer.BYTES;
+    static final int HEADER_SIZE = Byte.BYTES + Long.BYTES;
+    //the longest request is transfer, error message is truncated to fit
+    static final int MAX_FRAME_LENGTH = 1024;
+    private static final int MAX_MESSAGE_BYTES = MAX_FRAME_LENGTH - HEADER_SIZE - Short.BYTES;
+
+    static final byte CREATE = 1;
+    static final byte INFO = 2;
+    static final byte TRANSFER = 3;
+
+    static final byte ACCOUNT = 0;
+    static final byte PAIR = 1;
+    static final byte ERROR = 2;
+    static final byte REJECTED = 3;
+
+    static final int CREATE_LENGTH = HEADER_SIZE + 3 * Long.BYTES;
+    static final int INFO_LENGTH = HEADER_SIZE + 2 * Long.BYTES;
+    static final int TRANSFER_LENGTH = HEADER_SIZE + 7 * Long.BYTES;
+    static final int ACCOUNT_LENGTH = HEADER_SIZE + 3 * Long.BYTES;
+    static final int PAIR_LENGTH = HEADER_SIZE + 6 * Long.BYTES;
+
+    private BinaryProtocol() {
+    }
+
+    static void putCreate(ByteBuffer buffer, long correlationId, long amount, long idempotencyKeyHi, long idempotencyKeyLo) {
+        putHeader(buffer, CREATE_LENGTH, CREATE, correlationId);
+        buffer.putLong(amount).putLong(idempotencyKeyHi).putLong(idempotencyKeyLo);
+    }
+
+    static void putInfo(ByteBuffer buffer, long correlationId, UUID account) {
+        putHeader(buffer, INFO_LENGTH, INFO, correlationId);
+        putUuid(buffer, account);
+    }
+
+    static void putTransfer(ByteBuffer buffer, long correlationId, UUID fromAccount, UUID toAccount, long amount,
+                            long idempotencyKeyHi, long idempotencyKeyLo) {
+        putHeader(buffer, TRANSFER_LENGTH, TRANSFER, correlationId);
+        putUuid(buffer, fromAccount);
+        putUuid(buffer, toAccount);
+        buffer.putLong(amount).putLong(idempotencyKeyHi).putLong(idempotencyKeyLo);
+    }
+
+    /*
+     * Returns false if response does not fit into remaining part of buffer, nothing is written then
+     */
+    static boolean putResult(ByteBuffer buffer, long correlationId, AccountResult result) {
+        if (result.isPair()) {
+            if (buffer.remaining() < LENGTH_SIZE + PAIR_LENGTH) {
+                return false;
+            }
+            putHeader(buffer, PAIR_LENGTH, PAIR, correlationId);
+            putUuid(buffer, result.getAccount());
+            buffer.putLong(result.getAmount());
+            putUuid(buffer, result.getSecondAccount());
+            buffer.putLong(result.getSecondAmount());
+        } else {
+            if (buffer.remaining() < LENGTH_SIZE + ACCOUNT_LENGTH) {
+                return false;
+            }
+            putHeader(buffer, ACCOUNT_LENGTH, ACCOUNT, correlationId);
+            putUuid(buffer, result.getAccount());
+            buffer.putLong(result.getAmount());
+        }
+        return true;
+    }
+
+    /*
+     * status - ERROR or REJECTED, returns false if response does not fit into remaining part of buffer
+     */
+    static boolean putError(ByteBuffer buffer, long correlationId, byte status, String message) {
+        byte[] bytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_MESSAGE_BYTES);
+        if (buffer.remaining() < LENGTH_SIZE + HEADER_SIZE + Short.BYTES + length) {
+            return false;
+        }
+        putHeader(buffer, HEADER_SIZE + Short.BYTES + length, status, correlationId);
+        buffer.putShort((short) length).put(bytes, 0, length);
+        return true;
+    }
+
+    static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    static String getMessage(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putHeader(ByteBuffer buffer, int length, byte type, long correlationId) {
+        buffer.putInt(length).put(type).putLong(correlationId);
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,429 @@
+package com.transfer.transport;
+
+import com.transfer.core.AccountEventPublisher;
+import com.transfer.core.AccountEventSlot;
+import com.transfer.core.AccountEventValidator;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountReader;
+import com.transfer.core.AccountResult;
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountEventType;
+import com.transfer.core.event.AccountInfoEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import com.transfer.metrics.LatencyHistogram;
+import com.transfer.metrics.MetricsRegistry;
+import org.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/*
+ * Transport of BinaryProtocol over NIO, runs side by side with HttpServer on the same publisher.
+ * One selector thread accepts connections, decodes requests straight into ring slots or events and writes responses.
+ * Client could pipeline many requests on one connection, results are completed by processors into queue of the connection
+ * and encoded by selector thread, which is woken up once for all results which arrive while it is busy
+ */
+public class BinaryServer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryServer.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AccountEventPublisher accountEventPublisher;
+    private final AccountReader accountReader;
+    private final int port;
+    private final LatencyHistogram createTime = new LatencyHistogram();
+    private final LatencyHistogram infoTime = new LatencyHistogram();
+    private final LatencyHistogram transferTime = new LatencyHistogram();
+    //connections which got results since the last selector cycle
+    private final Queue<Connection> readyConnections = new ManyToOneConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+
+    public BinaryServer(AccountEventPublisher accountEventPublisher, int port) {
+        this(accountEventPublisher, null, port, null);
+    }
+
+    /*
+     * accountReader - if present, info requests are answered from it directly, otherwise they go through processor queue
+     * metricsRegistry - if present, request times are registered there
+     */
+    public BinaryServer(AccountEventPublisher accountEventPublisher, AccountReader accountReader, int port, MetricsRegistry metricsRegistry) {
+        this.accountEventPublisher = accountEventPublisher;
+        this.accountReader = accountReader;
+        this.port = port;
+        if (metricsRegistry != null) {
+            String help = "Time from binary request decoding until response is queued for writing";
+            metricsRegistry.histogram("transfer_binary_request_seconds", help, MetricsRegistry.labels("type", "create"), createTime);
+            metricsRegistry.histogram("transfer_binary_request_seconds", help, MetricsRegistry.labels("type", "info"), infoTime);
+            metricsRegistry.histogram("transfer_binary_request_seconds", help, MetricsRegistry.labels("type", "transfer"), transferTime);
+        }
+    }
+
+    public void start() {
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to start binary server on port " + port, e);
+        }
+        running.set(true);
+        thread = new Thread(this::run, "binary-server");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("Binary server is listening on port {}", port);
+    }
+
+    private void run() {
+        while (running.get()) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+                Connection connection;
+                while ((connection = readyConnections.poll()) != null) {
+                    connection.flushOrClose();
+                }
+            } catch (IOException e) {
+                LOGGER.error("Problems in binary server selector", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            SocketChannel channel = serverChannel.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey connectionKey = channel.register(selector, SelectionKey.OP_READ);
+                connectionKey.attach(new Connection(channel, connectionKey, String.valueOf(channel.getRemoteAddress())));
+            }
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.warn("Binary connection {} is closed: {}", connection.remoteAddress, e.toString());
+            connection.close();
+            return;
+        }
+        if (key.isValid() && key.isWritable()) {
+            connection.flushOrClose();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!running.getAndSet(false)) {
+            return;
+        }
+        selector.wakeup();
+        try {
+            thread.join();
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.warn("Problems during binary server close", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Socket with its buffers, read and written only by selector thread, results are added from processor threads
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final String remoteAddress;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final Queue<Response> responses = new ManyToOneConcurrentLinkedQueue<>();
+        //set while connection is in ready queue, so selector is woken up once per cycle
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        //response taken from queue which did not fit into out buffer
+        private Response pending;
+
+        private Connection(SocketChannel channel, SelectionKey key, String remoteAddress) {
+            this.channel = channel;
+            this.key = key;
+            this.remoteAddress = remoteAddress;
+        }
+
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            while (in.remaining() >= BinaryProtocol.LENGTH_SIZE) {
+                int length = in.getInt(in.position());
+                if (length < BinaryProtocol.HEADER_SIZE || length > BinaryProtocol.MAX_FRAME_LENGTH) {
+                    throw new IllegalStateException("Wrong frame length " + length);
+                }
+                if (in.remaining() < BinaryProtocol.LENGTH_SIZE + length) {
+                    break;
+                }
+                int end = in.position() + BinaryProtocol.LENGTH_SIZE + length;
+                in.position(in.position() + BinaryProtocol.LENGTH_SIZE);
+                decode(length);
+                //unknown fields at the end of frame are skipped
+                in.position(end);
+            }
+            in.compact();
+        }
+
+        /*
+         * Request is read completely before slot is claimed, claimed slot is always published
+         */
+        private void decode(int length) {
+            byte type = in.get();
+            long correlationId = in.getLong();
+            long start = System.nanoTime();
+            switch (type) {
+                case BinaryProtocol.CREATE:
+                    if (length < BinaryProtocol.CREATE_LENGTH) {
+                        break;
+                    }
+                    create(new Response(this, correlationId, createTime, start), in.getLong(), in.getLong(), in.getLong());
+                    return;
+                case BinaryProtocol.INFO:
+                    if (length < BinaryProtocol.INFO_LENGTH) {
+                        break;
+                    }
+                    info(new Response(this, correlationId, infoTime, start), BinaryProtocol.getUuid(in));
+                    return;
+                case BinaryProtocol.TRANSFER:
+                    if (length < BinaryProtocol.TRANSFER_LENGTH) {
+                        break;
+                    }
+                    transfer(new Response(this, correlationId, transferTime, start), BinaryProtocol.getUuid(in), BinaryProtocol.getUuid(in),
+                            in.getLong(), in.getLong(), in.getLong());
+                    return;
+                default:
+            }
+            new Response(this, correlationId, null, start).fail(new IllegalArgumentException("Wrong request type " + type + " or length " + length));
+        }
+
+        private void add(Response response) {
+            responses.offer(response);
+            if (scheduled.compareAndSet(false, true)) {
+                readyConnections.offer(this);
+                selector.wakeup();
+            }
+        }
+
+        private void flushOrClose() {
+            try {
+                flush();
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.warn("Binary connection {} is closed: {}", remoteAddress, e.toString());
+                close();
+            }
+        }
+
+        /*
+         * Encodes queued responses and writes as much as socket takes. If something is left, connection waits for writable
+         * socket and stops reading, so client which does not read responses can't make server queue more of them
+         */
+        private void flush() throws IOException {
+            scheduled.set(false);
+            if (!key.isValid()) {
+                return;
+            }
+            Response response = pending != null ? pending : responses.poll();
+            while (response != null) {
+                if (!response.encode(out)) {
+                    if (out.position() == 0) {
+                        throw new IllegalStateException("Response does not fit into buffer");
+                    }
+                    write();
+                    if (out.position() > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                response = responses.poll();
+            }
+            pending = response;
+            write();
+            boolean waitsForSocket = out.position() > 0 || pending != null;
+            key.interestOps(waitsForSocket ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        private void write() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Problems during binary connection close", e);
+            }
+        }
+    }
+
+    private void create(Response response, long amount, long idempotencyKeyHi, long idempotencyKeyLo) {
+        try {
+            AccountEventValidator.validateCreate(amount);
+        } catch (IllegalArgumentException ex) {
+            response.fail(ex);
+            return;
+        }
+        boolean idempotent = idempotencyKeyHi != 0 || idempotencyKeyLo != 0;
+        if (accountEventPublisher.hasEventRing()) {
+            //create with key is routed by key, see AccountCreateEvent
+            AccountEventSlot slot = accountEventPublisher.claim(AccountEventType.CREATE,
+                    idempotent ? new UUID(idempotencyKeyHi, idempotencyKeyLo) : null);
+            if (slot == null) {
+                response.reject();
+                return;
+            }
+            slot.setCreate(amount, response, response.errorConsumer);
+            slot.setIdempotencyKey(idempotencyKeyHi, idempotencyKeyLo);
+            accountEventPublisher.publish(slot);
+        } else {
+            AccountEvent event = new AccountCreateEvent(response, response.errorConsumer, amount);
+            event.setIdempotencyKey(idempotencyKeyHi, idempotencyKeyLo);
+            publish(event, response);
+        }
+    }
+
+    private void info(Response response, UUID account) {
+        if (accountReader != null) {
+            AccountInfo accountInfo = accountReader.getAccount(account);
+            if (accountInfo == null) {
+                response.fail(new IllegalArgumentException("account not present"));
+            } else {
+                response.accept(AccountResult.of(accountInfo));
+            }
+        } else if (accountEventPublisher.hasEventRing()) {
+            AccountEventSlot slot = accountEventPublisher.claim(AccountEventType.INFO, account);
+            if (slot == null) {
+                response.reject();
+                return;
+            }
+            slot.setInfo(account, response, response.errorConsumer);
+            accountEventPublisher.publish(slot);
+        } else {
+            publish(new AccountInfoEvent(response, response.errorConsumer, account), response);
+        }
+    }
+
+    private void transfer(Response response, UUID fromAccount, UUID toAccount, long amount, long idempotencyKeyHi, long idempotencyKeyLo) {
+        try {
+            AccountEventValidator.validateTransfer(fromAccount, toAccount, amount);
+        } catch (IllegalArgumentException ex) {
+            response.fail(ex);
+            return;
+        }
+        if (accountEventPublisher.hasEventRing()) {
+            AccountEventSlot slot = accountEventPublisher.claim(AccountEventType.TRANSFER, fromAccount);
+            if (slot == null) {
+                response.reject();
+                return;
+            }
+            slot.setTransfer(fromAccount, toAccount, amount, response, response.errorConsumer);
+            slot.setIdempotencyKey(idempotencyKeyHi, idempotencyKeyLo);
+            accountEventPublisher.publish(slot);
+        } else {
+            AccountEvent event = new AccountTransferEvent(response, response.errorConsumer, fromAccount, toAccount, amount);
+            event.setIdempotencyKey(idempotencyKeyHi, idempotencyKeyLo);
+            publish(event, response);
+        }
+    }
+
+    private void publish(AccountEvent event, Response response) {
+        if (!accountEventPublisher.publishEvent(event)) {
+            response.reject();
+        }
+    }
+
+    /*
+     * Result of one request, it is result consumer of event itself, so nothing else is allocated to complete it
+     */
+    private static final class Response implements Consumer<AccountResult> {
+        private final Connection connection;
+        private final long correlationId;
+        private final LatencyHistogram requestTime;
+        private final long start;
+        private final Consumer<Throwable> errorConsumer = this::fail;
+        private AccountResult result;
+        private String error;
+        private byte status;
+
+        private Response(Connection connection, long correlationId, LatencyHistogram requestTime, long start) {
+            this.connection = connection;
+            this.correlationId = correlationId;
+            this.requestTime = requestTime;
+            this.start = start;
+        }
+
+        @Override
+        public void accept(AccountResult result) {
+            this.result = result;
+            complete();
+        }
+
+        private void fail(Throwable error) {
+            this.error = error.getMessage();
+            this.status = BinaryProtocol.ERROR;
+            complete();
+        }
+
+        private void reject() {
+            this.error = "Not enough resource capacity to process request";
+            this.status = BinaryProtocol.REJECTED;
+            complete();
+        }
+
+        private void complete() {
+            if (requestTime != null) {
+                requestTime.record(System.nanoTime() - start);
+            }
+            connection.add(this);
+        }
+
+        private boolean encode(ByteBuffer buffer) {
+            return result != null
+                    ? BinaryProtocol.putResult(buffer, correlationId, result)
+                    : BinaryProtocol.putError(buffer, correlationId, status, error);
+        }
+    }
+}
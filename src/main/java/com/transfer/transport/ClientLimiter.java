@@ -0,0 +1,46 @@
+package com.transfer.transport;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Caps number of requests of one client which are waiting for processor at the same time,
+ * so single client can't fill the queue for everybody else. Clients without requests in flight are not kept
+ */
+public class ClientLimiter {
+
+    private final int maxInFlight;
+    private final ConcurrentHashMap<String, Integer> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ClientLimiter(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in flight requests per client should be positive");
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /*
+     * Returns false if client already has max requests in flight, otherwise request should be released when it is completed
+     */
+    public boolean tryAcquire(String client) {
+        if (inFlight.merge(client, 1, Integer::sum) <= maxInFlight) {
+            return true;
+        }
+        release(client);
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    public void release(String client) {
+        inFlight.computeIfPresent(client, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    public int getInFlight(String client) {
+        return inFlight.getOrDefault(client, 0);
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -1,20 +1,43 @@
 package com.transfer.transport;
 
 import com.transfer.core.AccountEventPublisher;
+import com.transfer.core.AccountEventSlot;
+import com.transfer.core.AccountEventValidator;
+import com.transfer.core.AccountHistoryReader;
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountReader;
+import com.transfer.core.AccountResult;
+import com.transfer.core.AccountShardRouter;
+import com.transfer.core.Money;
+import com.transfer.core.event.AccountBatchTransferEvent;
 import com.transfer.core.event.AccountCreateEvent;
 import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountEventType;
 import com.transfer.core.event.AccountInfoEvent;
 import com.transfer.core.event.AccountTransferEvent;
+import com.transfer.ledger.Ledger;
+import com.transfer.metrics.LatencyHistogram;
+import com.transfer.metrics.MetricsRegistry;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
 
@@ -22,29 +45,196 @@ public class HttpServer implements AutoCloseable{
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpServer.class);
 
+    public static final int DEFAULT_PORT = 80;
+
     private static final String ACCOUNT_CREATE_REQUEST = "/account/create";
     private static final String ACCOUNT_INFO_REQUEST = "/account/info";
     private static final String ACCOUNT_TRANSFER_REQUEST = "/account/transfer";
+    private static final String ACCOUNT_TRANSFER_BATCH_REQUEST = "/account/transfer/batch";
+    private static final String ACCOUNT_IMPORT_REQUEST = "/account/import";
+    private static final String ACCOUNT_HISTORY_REQUEST = "/account/history";
+    private static final String LEDGER_SUMMARY_REQUEST = "/ledger/summary";
+    private static final String METRICS_REQUEST = "/metrics";
 
     private static final String ACCOUNT_REQUEST_PARAMETER = "account";
     private static final String ACCOUNT_FROM_REQUEST_PARAMETER = "fromAccount";
     private static final String ACCOUNT_TO_REQUEST_PARAMETER = "toAccount";
     private static final String AMOUNT_REQUEST_PARAMETER = "amount";
+    private static final String TRANSFERS_REQUEST_PARAMETER = "transfers";
+    private static final String ATOMIC_REQUEST_PARAMETER = "atomic";
+    private static final String FORMAT_REQUEST_PARAMETER = "format";
+    private static final String CURSOR_REQUEST_PARAMETER = "cursor";
+    private static final String LIMIT_REQUEST_PARAMETER = "limit";
+
+    //batch is applied by processor in one step, so its size bounds processor pause for other events
+    private static final int MAX_BATCH_TRANSFERS = 10_000;
+    private static final int DEFAULT_HISTORY_LIMIT = 20;
+    private static final int MAX_HISTORY_LIMIT = 1000;
+
+    private static final String CLIENT_ID_HEADER = "X-Client-Id";
+    //create and transfer retried with the same key get result of the first request, if processor has idempotency cache
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int TOO_MANY_REQUESTS = 429;
+    //requests are rejected when processor queue is over high-water mark, which drains in milliseconds
+    private static final String RETRY_AFTER_SECONDS = "1";
 
     private final AccountEventPublisher accountEventPublisher;
+    private final Money money;
+    private final AccountReader accountReader;
+    private final AccountJsonWriter jsonWriter;
+    private final ExecutorService responseExecutor;
+    private final MetricsRegistry metricsRegistry;
+    private final ClientLimiter clientLimiter;
+    private final LatencyHistogram createTime = new LatencyHistogram();
+    private final LatencyHistogram infoTime = new LatencyHistogram();
+    private final LatencyHistogram transferTime = new LatencyHistogram();
+    private final LatencyHistogram batchTransferTime = new LatencyHistogram();
+    private final LatencyHistogram importTime = new LatencyHistogram();
+    private final LatencyHistogram historyTime = new LatencyHistogram();
+    private final LatencyHistogram ledgerTime = new LatencyHistogram();
+    private final AccountImportStream importStream;
+    private final AccountHistoryReader historyReader;
+    private final Ledger ledger;
+
     private final Javalin javalin;
 
     public HttpServer(AccountEventPublisher accountEventPublisher) {
+        this(accountEventPublisher, Money.DEFAULT);
+    }
+
+    /*
+     * money - scale of amounts, amounts which can't be represented exactly are rejected
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money) {
+        this(accountEventPublisher, money, null);
+    }
+
+    /*
+     * accountReader - if present, info requests are answered from it directly, otherwise they go through processor queue
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money, AccountReader accountReader) {
+        this(accountEventPublisher, money, accountReader, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * responseThreads - threads which serialize results completed by processor, so processor thread never builds responses
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money, AccountReader accountReader, int responseThreads) {
+        this(accountEventPublisher, money, accountReader, responseThreads, null);
+    }
+
+    /*
+     * metricsRegistry - if present, request times are registered there and the whole registry is served on /metrics
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money, AccountReader accountReader, int responseThreads,
+                      MetricsRegistry metricsRegistry) {
+        this(accountEventPublisher, money, accountReader, responseThreads, metricsRegistry, null);
+    }
+
+    /*
+     * clientLimiter - if present, caps requests of one client waiting for processor, client is identified
+     * by X-Client-Id header or by remote address
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money, AccountReader accountReader, int responseThreads,
+                      MetricsRegistry metricsRegistry, ClientLimiter clientLimiter) {
+        this(accountEventPublisher, money, accountReader, responseThreads, metricsRegistry, clientLimiter, null);
+    }
+
+    /*
+     * router - if present, accounts could be imported on /account/import, importer groups them by shard
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money, AccountReader accountReader, int responseThreads,
+                      MetricsRegistry metricsRegistry, ClientLimiter clientLimiter, AccountShardRouter router) {
+        this(accountEventPublisher, money, accountReader, responseThreads, metricsRegistry, clientLimiter, router, null);
+    }
+
+    /*
+     * historyReader - if present, balance changes of account are paged on /account/history
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money, AccountReader accountReader, int responseThreads,
+                      MetricsRegistry metricsRegistry, ClientLimiter clientLimiter, AccountShardRouter router,
+                      AccountHistoryReader historyReader) {
+        this(accountEventPublisher, money, accountReader, responseThreads, metricsRegistry, clientLimiter, router, historyReader, null);
+    }
+
+    /*
+     * ledger - if present, its totals and the largest balances are served on /ledger/summary
+     */
+    public HttpServer(AccountEventPublisher accountEventPublisher, Money money, AccountReader accountReader, int responseThreads,
+                      MetricsRegistry metricsRegistry, ClientLimiter clientLimiter, AccountShardRouter router,
+                      AccountHistoryReader historyReader, Ledger ledger) {
         this.accountEventPublisher = accountEventPublisher;
+        this.money = money;
+        this.accountReader = accountReader;
+        this.jsonWriter = new AccountJsonWriter(money);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.responseExecutor = Executors.newFixedThreadPool(responseThreads, runnable -> {
+            Thread thread = new Thread(runnable, "http-response-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.metricsRegistry = metricsRegistry;
+        this.clientLimiter = clientLimiter;
+        this.importStream = router != null ? new AccountImportStream(accountEventPublisher, router, money) : null;
+        this.historyReader = historyReader;
+        this.ledger = ledger;
+        if (metricsRegistry != null) {
+            String help = "Time from request start until response is built";
+            metricsRegistry.histogram("transfer_http_request_seconds", help, MetricsRegistry.labels("endpoint", "create"), createTime);
+            metricsRegistry.histogram("transfer_http_request_seconds", help, MetricsRegistry.labels("endpoint", "info"), infoTime);
+            metricsRegistry.histogram("transfer_http_request_seconds", help, MetricsRegistry.labels("endpoint", "transfer"), transferTime);
+            metricsRegistry.histogram("transfer_http_request_seconds", help, MetricsRegistry.labels("endpoint", "transfer_batch"), batchTransferTime);
+            metricsRegistry.histogram("transfer_http_request_seconds", help, MetricsRegistry.labels("endpoint", "import"), importTime);
+            metricsRegistry.histogram("transfer_http_request_seconds", help, MetricsRegistry.labels("endpoint", "history"), historyTime);
+            metricsRegistry.histogram("transfer_http_request_seconds", help, MetricsRegistry.labels("endpoint", "ledger"), ledgerTime);
+            if (clientLimiter != null) {
+                metricsRegistry.counter("transfer_http_client_limited_total", "Requests rejected because client had too many requests in flight",
+                        "", clientLimiter::getRejectedCount);
+            }
+        }
         this.javalin = Javalin.create();
     }
 
     public void start() {
-        javalin.start(80);
+        start(DEFAULT_PORT);
+    }
+
+    public void start(int port) {
+        javalin.start(port);
 
-        javalin.get(ACCOUNT_INFO_REQUEST, context -> processEvent(context, context.queryParamMap(), this::newInfoEvent));
-        javalin.post(ACCOUNT_CREATE_REQUEST, context -> processEvent(context, context.bodyAsClass(Map.class), this::newCreateEvent));
-        javalin.post(ACCOUNT_TRANSFER_REQUEST, context -> processEvent(context, context.bodyAsClass(Map.class), this::newTransferEvent));
+        //events are written into reusable slots of processor ring, if publisher has one
+        boolean ring = accountEventPublisher.hasEventRing();
+        if (accountReader != null) {
+            javalin.get(ACCOUNT_INFO_REQUEST, this::readInfo);
+        } else if (ring) {
+            javalin.get(ACCOUNT_INFO_REQUEST, context -> processSlot(context, infoTime, context.queryParamMap(), this::claimInfo));
+        } else {
+            javalin.get(ACCOUNT_INFO_REQUEST, context -> processEvent(context, infoTime, context.queryParamMap(), this::newInfoEvent));
+        }
+        if (ring) {
+            javalin.post(ACCOUNT_CREATE_REQUEST, context -> processSlot(context, createTime, body(context), this::claimCreate));
+            javalin.post(ACCOUNT_TRANSFER_REQUEST, context -> processSlot(context, transferTime, body(context), this::claimTransfer));
+        } else {
+            javalin.post(ACCOUNT_CREATE_REQUEST, context -> processEvent(context, createTime, body(context), this::newCreateEvent));
+            javalin.post(ACCOUNT_TRANSFER_REQUEST, context -> processEvent(context, transferTime, body(context), this::newTransferEvent));
+        }
+        //batch has no fixed size, so it always goes through event queue
+        javalin.post(ACCOUNT_TRANSFER_BATCH_REQUEST, context -> processEvent(context, batchTransferTime, body(context), this::newBatchTransferEvent));
+        if (importStream != null) {
+            javalin.post(ACCOUNT_IMPORT_REQUEST, this::importAccounts);
+        }
+        if (historyReader != null) {
+            javalin.get(ACCOUNT_HISTORY_REQUEST, this::readHistory);
+        }
+        if (ledger != null) {
+            javalin.get(LEDGER_SUMMARY_REQUEST, this::readLedger);
+        }
+        if (metricsRegistry != null) {
+            javalin.get(METRICS_REQUEST, context -> {
+                context.contentType("text/plain; version=0.0.4");
+                context.result(metricsRegistry.toPrometheus());
+            });
+        }
 
         javalin.exception(Exception.class, (e, ctx) -> {
             ctx.status(500);
@@ -53,16 +243,162 @@ public class HttpServer implements AutoCloseable{
         });
     }
 
-    private void processEvent(Context context, Map parameters, BiFunction<Map, CompletableFuture<String>, AccountEvent> biFunction) {
+    /*
+     * Executed by http thread, reads balance published by processor without waiting for it
+     */
+    private void readInfo(Context context) {
+        long start = System.nanoTime();
+        try {
+            String account = context.queryParam(ACCOUNT_REQUEST_PARAMETER);
+            if (account == null) {
+                throw new IllegalArgumentException("account parameter is missed");
+            }
+            AccountInfo accountInfo = accountReader.getAccount(UUID.fromString(account));
+            if (accountInfo == null) {
+                throw new IllegalArgumentException("account not present");
+            }
+            context.contentType("application/json");
+            context.result(jsonWriter.toJson(accountInfo));
+        } catch (Exception ex) {
+            LOGGER.warn("Problems during info request: {}", ex.toString());
+            context.status(500);
+            context.contentType("text/plain");
+            context.result("Problems during request processing: " + ex.toString());
+        } finally {
+            infoTime.record(System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Executed by http thread, copies entries out of history while processor keeps writing it.
+     * Page is newest first, nextCursor is present if there are older entries
+     */
+    private void readHistory(Context context) {
+        long start = System.nanoTime();
+        try {
+            String account = context.queryParam(ACCOUNT_REQUEST_PARAMETER);
+            if (account == null) {
+                throw new IllegalArgumentException("account parameter is missed");
+            }
+            long cursor = Long.parseLong(context.queryParam(CURSOR_REQUEST_PARAMETER, "0"));
+            int limit = Integer.parseInt(context.queryParam(LIMIT_REQUEST_PARAMETER, Integer.toString(DEFAULT_HISTORY_LIMIT)));
+            if (limit < 1 || limit > MAX_HISTORY_LIMIT) {
+                throw new IllegalArgumentException("limit should be from 1 to " + MAX_HISTORY_LIMIT);
+            }
+            UUID uuid = UUID.fromString(account);
+            context.contentType("application/json");
+            context.result(jsonWriter.toJson(uuid, historyReader.getHistory(uuid, cursor, limit)));
+        } catch (Exception ex) {
+            LOGGER.warn("Problems during history request: {}", ex.toString());
+            context.status(500);
+            context.contentType("text/plain");
+            context.result("Problems during request processing: " + ex.toString());
+        } finally {
+            historyTime.record(System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Executed by http thread, merges summaries published by processors, nothing is scanned
+     */
+    private void readLedger(Context context) {
+        long start = System.nanoTime();
         try {
-            CompletableFuture<String> completableFuture = new CompletableFuture<>();
-            AccountEvent accountEvent = biFunction.apply(parameters, completableFuture);
             context.contentType("application/json");
-            context.result(completableFuture);
+            context.result(jsonWriter.toJson(ledger.getSummary(), ledger.getTopSize()));
+        } catch (Exception ex) {
+            LOGGER.warn("Problems during ledger request: {}", ex.toString());
+            context.status(500);
+            context.contentType("text/plain");
+            context.result("Problems during request processing: " + ex.toString());
+        } finally {
+            ledgerTime.record(System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Executed by http thread for the whole import, body is read and results are written while accounts are inserted,
+     * format is given by format parameter or content type, NDJSON by default, see AccountImportStream
+     */
+    private void importAccounts(Context context) {
+        long start = System.nanoTime();
+        String client = acquireClient(context);
+        if (client == null) {
+            return;
+        }
+        try {
+            String format = context.queryParam(FORMAT_REQUEST_PARAMETER, context.contentType());
+            context.contentType("application/x-ndjson");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(context.req.getInputStream(), StandardCharsets.UTF_8));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(context.res.getOutputStream(), StandardCharsets.UTF_8));
+            long lines = importStream.importAccounts(reader, AccountImportStream.Format.fromName(format), writer);
+            LOGGER.info("Import of {} lines from client {} finished", lines, client);
+        } catch (IOException | UncheckedIOException ex) {
+            //response is already started, client sees truncated stream
+            LOGGER.warn("Import from client {} stopped: {}", client, ex.toString());
+        } finally {
+            releaseClient(client);
+            importTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private <P> void processEvent(Context context, LatencyHistogram requestTime, P parameters,
+                                  BiFunction<P, CompletableFuture<AccountResult>, AccountEvent> biFunction) {
+        long start = System.nanoTime();
+        String client = acquireClient(context);
+        if (client == null) {
+            return;
+        }
+        try {
+            CompletableFuture<AccountResult> completableFuture = new CompletableFuture<>();
+            AccountEvent accountEvent = biFunction.apply(parameters, completableFuture);
+            IdempotencyKey idempotencyKey = IdempotencyKey.parse(context.header(IDEMPOTENCY_KEY_HEADER));
+            if (idempotencyKey != null) {
+                accountEvent.setIdempotencyKey(idempotencyKey.getHi(), idempotencyKey.getLo());
+            }
             if (!accountEventPublisher.publishEvent(accountEvent)) {
-                throw new IllegalStateException("Not enough resource capacity to process request");
+                releaseClient(client);
+                reject(context, "Not enough resource capacity to process request");
+                return;
+            }
+            context.contentType("application/json");
+            //future is completed by processor thread, response is built by response thread
+            context.result(respond(completableFuture, requestTime, start, client));
+        } catch (Exception ex) {
+            releaseClient(client);
+            LOGGER.error("Problems during request parsing", ex);
+            context.status(500);
+            context.contentType("text/plain");
+            context.result("Problems during request parsing: " + ex.toString());
+        }
+    }
+
+    /*
+     * Request is parsed before slot is claimed, claimed slot is always published
+     */
+    private <P> void processSlot(Context context, LatencyHistogram requestTime, P parameters, SlotClaim<P> slotClaim) {
+        long start = System.nanoTime();
+        String client = acquireClient(context);
+        if (client == null) {
+            return;
+        }
+        try {
+            IdempotencyKey idempotencyKey = IdempotencyKey.parse(context.header(IDEMPOTENCY_KEY_HEADER));
+            CompletableFuture<AccountResult> completableFuture = new CompletableFuture<>();
+            AccountEventSlot slot = slotClaim.claim(parameters, idempotencyKey, completableFuture);
+            if (slot == null) {
+                releaseClient(client);
+                reject(context, "Not enough resource capacity to process request");
+                return;
+            }
+            try {
+                context.contentType("application/json");
+                context.result(respond(completableFuture, requestTime, start, client));
+            } finally {
+                accountEventPublisher.publish(slot);
             }
         } catch (Exception ex) {
+            releaseClient(client);
             LOGGER.error("Problems during request parsing", ex);
             context.status(500);
             context.contentType("text/plain");
@@ -70,25 +406,154 @@ public class HttpServer implements AutoCloseable{
         }
     }
 
+    /*
+     * Response is built by response thread, request time is recorded by thread which completes response, including failed ones
+     */
+    private CompletableFuture<String> respond(CompletableFuture<AccountResult> result, LatencyHistogram requestTime, long start, String client) {
+        return result.thenApplyAsync(jsonWriter::toJson, responseExecutor)
+                .whenComplete((json, error) -> {
+                    requestTime.record(System.nanoTime() - start);
+                    releaseClient(client);
+                });
+    }
+
+    /*
+     * Returns client of request, or null if request is rejected because client has too many requests in flight
+     */
+    private String acquireClient(Context context) {
+        String client = context.header(CLIENT_ID_HEADER);
+        if (client == null) {
+            client = context.ip();
+        }
+        if (clientLimiter != null && !clientLimiter.tryAcquire(client)) {
+            reject(context, "Too many requests in flight for client " + client);
+            return null;
+        }
+        return client;
+    }
+
+    private void releaseClient(String client) {
+        if (clientLimiter != null) {
+            clientLimiter.release(client);
+        }
+    }
+
+    /*
+     * Overload is reported at once, so client could back off instead of holding http thread
+     */
+    private void reject(Context context, String reason) {
+        context.status(TOO_MANY_REQUESTS);
+        context.header("Retry-After", RETRY_AFTER_SECONDS);
+        context.contentType("text/plain");
+        context.result(reason);
+    }
+
+    /*
+     * Parses request and fills claimed slot, returns null if slot could not be claimed.
+     * Everything is parsed before slot is claimed, so claimed slot is never left unpublished
+     */
+    private interface SlotClaim<P> {
+        AccountEventSlot claim(P parameters, IdempotencyKey idempotencyKey, CompletableFuture<AccountResult> future);
+    }
+
+    /*
+     * Json object of request body, values are strings except nested ones, e.g. transfers of batch
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> Map<String, V> body(Context context) {
+        return context.bodyAsClass(Map.class);
+    }
+
+    private AccountEventSlot claimTransfer(Map<String, String> parameters, IdempotencyKey idempotencyKey, CompletableFuture<AccountResult> future) {
+        UUID fromAccount = UUID.fromString(parameters.get(ACCOUNT_FROM_REQUEST_PARAMETER));
+        UUID toAccount = UUID.fromString(parameters.get(ACCOUNT_TO_REQUEST_PARAMETER));
+        long amount = money.parse(parameters.get(AMOUNT_REQUEST_PARAMETER));
+        AccountEventValidator.validateTransfer(fromAccount, toAccount, amount);
+        AccountEventSlot slot = accountEventPublisher.claim(AccountEventType.TRANSFER, fromAccount);
+        if (slot != null) {
+            slot.setTransfer(fromAccount, toAccount, amount, future::complete, future::completeExceptionally);
+            if (idempotencyKey != null) {
+                slot.setIdempotencyKey(idempotencyKey.getHi(), idempotencyKey.getLo());
+            }
+        }
+        return slot;
+    }
+
+    /*
+     * Create with idempotency key is routed by key, see AccountCreateEvent
+     */
+    private AccountEventSlot claimCreate(Map<String, String> parameters, IdempotencyKey idempotencyKey, CompletableFuture<AccountResult> future) {
+        long amount = money.parse(parameters.get(AMOUNT_REQUEST_PARAMETER));
+        AccountEventValidator.validateCreate(amount);
+        UUID routingAccount = idempotencyKey == null ? null : new UUID(idempotencyKey.getHi(), idempotencyKey.getLo());
+        AccountEventSlot slot = accountEventPublisher.claim(AccountEventType.CREATE, routingAccount);
+        if (slot != null) {
+            slot.setCreate(amount, future::complete, future::completeExceptionally);
+            if (idempotencyKey != null) {
+                slot.setIdempotencyKey(idempotencyKey.getHi(), idempotencyKey.getLo());
+            }
+        }
+        return slot;
+    }
+
+    private AccountEventSlot claimInfo(Map<String, List<String>> parameters, IdempotencyKey idempotencyKey, CompletableFuture<AccountResult> future) {
+        UUID account = UUID.fromString(parameters.get(ACCOUNT_REQUEST_PARAMETER).get(0));
+        AccountEventSlot slot = accountEventPublisher.claim(AccountEventType.INFO, account);
+        if (slot != null) {
+            slot.setInfo(account, future::complete, future::completeExceptionally);
+        }
+        return slot;
+    }
 
-    private AccountEvent newTransferEvent(Map<String, String> parameters, CompletableFuture<String> future) {
+    private AccountEvent newTransferEvent(Map<String, String> parameters, CompletableFuture<AccountResult> future) {
         return new AccountTransferEvent(
                 future::complete,
                 future::completeExceptionally,
                 UUID.fromString(parameters.get(ACCOUNT_FROM_REQUEST_PARAMETER)),
                 UUID.fromString(parameters.get(ACCOUNT_TO_REQUEST_PARAMETER)),
-                new BigDecimal(parameters.get(AMOUNT_REQUEST_PARAMETER)));
+                money.parse(parameters.get(AMOUNT_REQUEST_PARAMETER)));
+    }
+
+    /*
+     * Body is {"atomic":true,"transfers":[{"fromAccount":"...","toAccount":"...","amount":"..."},...]}, batch is atomic by default
+     */
+    @SuppressWarnings("unchecked")
+    private AccountEvent newBatchTransferEvent(Map<String, Object> parameters, CompletableFuture<AccountResult> future) {
+        List<Map<String, String>> transfers = (List<Map<String, String>>) parameters.get(TRANSFERS_REQUEST_PARAMETER);
+        if (transfers == null || transfers.isEmpty()) {
+            throw new IllegalArgumentException("transfers parameter is missed");
+        }
+        if (transfers.size() > MAX_BATCH_TRANSFERS) {
+            throw new IllegalArgumentException("Batch should not contain more than " + MAX_BATCH_TRANSFERS + " transfers");
+        }
+        UUID[] accountsFrom = new UUID[transfers.size()];
+        UUID[] accountsTo = new UUID[transfers.size()];
+        long[] amounts = new long[transfers.size()];
+        for (int i = 0; i < transfers.size(); i++) {
+            Map<String, String> transfer = transfers.get(i);
+            accountsFrom[i] = UUID.fromString(transfer.get(ACCOUNT_FROM_REQUEST_PARAMETER));
+            accountsTo[i] = UUID.fromString(transfer.get(ACCOUNT_TO_REQUEST_PARAMETER));
+            amounts[i] = money.parse(transfer.get(AMOUNT_REQUEST_PARAMETER));
+        }
+        Object atomic = parameters.get(ATOMIC_REQUEST_PARAMETER);
+        return new AccountBatchTransferEvent(
+                future::complete,
+                future::completeExceptionally,
+                accountsFrom,
+                accountsTo,
+                amounts,
+                atomic == null || Boolean.TRUE.equals(atomic));
     }
 
-    private AccountEvent newCreateEvent(Map<String, String> parameters, CompletableFuture<String> future) {
+    private AccountEvent newCreateEvent(Map<String, String> parameters, CompletableFuture<AccountResult> future) {
         return new AccountCreateEvent(
                 future::complete,
                 future::completeExceptionally,
-                new BigDecimal(parameters.get(AMOUNT_REQUEST_PARAMETER))
+                money.parse(parameters.get(AMOUNT_REQUEST_PARAMETER))
         );
     }
 
-    private AccountEvent newInfoEvent(Map<String, List<String>> parameters, CompletableFuture<String> future) {
+    private AccountEvent newInfoEvent(Map<String, List<String>> parameters, CompletableFuture<AccountResult> future) {
         return new AccountInfoEvent(
                 future::complete,
                 future::completeExceptionally,
@@ -99,5 +564,6 @@ public class HttpServer implements AutoCloseable{
     @Override
     public void close() {
         javalin.stop();
+        responseExecutor.shutdown();
     }
 }
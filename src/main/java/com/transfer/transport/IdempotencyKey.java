@@ -0,0 +1,78 @@
+package com.transfer.transport;
+
+import java.util.UUID;
+
+/*
+ * Idempotency-Key header as two longs for IdempotencyCache. UUID key is taken as is,
+ * any other key is hashed by two independent 64 bit hashes, so collision of different keys is practically impossible
+ */
+final class IdempotencyKey {
+
+    static final int MAX_LENGTH = 255;
+
+    private static final int UUID_LENGTH = 36;
+    private static final long FIRST_SEED = 0x9E3779B97F4A7C15L;
+    private static final long SECOND_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    private final long hi;
+    private final long lo;
+
+    private IdempotencyKey(long hi, long lo) {
+        //both halves 0 means no key
+        this.hi = hi;
+        this.lo = hi == 0 && lo == 0 ? 1 : lo;
+    }
+
+    /*
+     * Returns null for missed header
+     */
+    static IdempotencyKey parse(String header) {
+        if (header == null) {
+            return null;
+        }
+        if (header.isEmpty() || header.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key should have from 1 to " + MAX_LENGTH + " characters");
+        }
+        if (isUuid(header)) {
+            UUID uuid = UUID.fromString(header);
+            return new IdempotencyKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+        return new IdempotencyKey(hash(header, FIRST_SEED), hash(header, SECOND_SEED));
+    }
+
+    long getHi() {
+        return hi;
+    }
+
+    long getLo() {
+        return lo;
+    }
+
+    private static boolean isUuid(String key) {
+        if (key.length() != UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = key.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(String key, long seed) {
+        long hash = seed ^ key.length();
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+            hash = Long.rotateLeft(hash, 29) + seed;
+        }
+        //final mix of murmur3, so every input bit affects every output bit
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ hash >>> 33;
+    }
+}
@@ -0,0 +1,89 @@
+package com.transfer.audit
+
+import com.transfer.core.AccountInfo
+import com.transfer.core.Money
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class AuditLogSpec extends Specification {
+
+    def directory = Files.createTempDirectory("audit")
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "should write balance changes and decode them as text"() {
+        given:
+        def auditLog = new AuditLog(directory)
+        def recorder = auditLog.recorder(1)
+        def from = new AccountInfo(UUID.randomUUID(), 10000)
+        def to = new AccountInfo(UUID.randomUUID(), 0)
+        auditLog.start()
+
+        when:
+        recorder.onAccountCreated(from)
+        recorder.onAccountCreated(to)
+        from.amount = 7000
+        to.amount = 3000
+        recorder.onTransfer(from, to, 3000)
+        from.amount = 6000
+        recorder.onDebit(42, from, UUID.randomUUID(), 1000)
+        from.amount = 7000
+        recorder.onCredit(42, from, null, 1000)
+        auditLog.close()
+        def text = new StringWriter()
+        def count = new AuditLogDecoder(new Money(2)).decode(AuditLog.filePath(directory, 0), text)
+        def lines = text.toString().readLines()
+
+        then:
+        count == 5
+        auditLog.written == 5
+        auditLog.dropped == 0
+        lines*.split(' ')*.getAt(2) == ['create', 'create', 'transfer', 'debit', 'refund']
+        lines.every { it.contains(' shard=1 ') }
+        lines[2].contains("account=${from.uuid} counterparty=${to.uuid} amount=30.00 balance=70.00 counterpartyBalance=30.00")
+        lines[4].contains("transferId=42 account=${from.uuid} amount=10.00 balance=70.00")
+    }
+
+    def "should drop records instead of waiting when buffer is full"() {
+        given: 'audit thread is not started, so nothing is drained'
+        def auditLog = new AuditLog(directory, 1024, 1024 * 1024, 1)
+        def recorder = auditLog.recorder(0)
+        def account = new AccountInfo(UUID.randomUUID(), 100)
+
+        when:
+        100.times { recorder.onAccountCreated(account) }
+        auditLog.close()
+
+        then:
+        auditLog.dropped > 0
+        auditLog.written + auditLog.dropped == 100
+        Files.size(AuditLog.filePath(directory, 0)) == auditLog.written * AuditRecords.RECORD_LENGTH
+    }
+
+    def "should rotate files and keep only the newest ones"() {
+        given:
+        def auditLog = new AuditLog(directory, AuditLog.DEFAULT_BUFFER_SIZE, AuditRecords.RECORD_LENGTH * 2, 2)
+        def recorder = auditLog.recorder(0)
+        def account = new AccountInfo(UUID.randomUUID(), 100)
+        auditLog.start()
+
+        when: 'every record is written separately, so every second one closes file'
+        (1..10).each {
+            account.amount = it
+            recorder.onAccountCreated(account)
+            long deadline = System.currentTimeMillis() + 5000
+            while (auditLog.written < it && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1)
+            }
+        }
+        auditLog.close()
+
+        then:
+        AuditLog.fileIndexes(directory) == [4L, 5L]
+        Files.size(AuditLog.filePath(directory, 4)) == AuditRecords.RECORD_LENGTH * 2
+        Files.size(AuditLog.filePath(directory, 5)) == 0
+    }
+}
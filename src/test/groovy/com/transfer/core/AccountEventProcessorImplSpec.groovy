@@ -13,7 +13,7 @@ class AccountEventProcessorImplSpec extends Specification {
 
     def "should call put storage on create event"() {
         given:
-        def createEvent = new AccountCreateEvent({ _ -> }, { _ -> }, new BigDecimal(1))
+        def createEvent = new AccountCreateEvent({ _ -> }, { _ -> }, 1)
         when:
         accountEventProcessor.process(createEvent)
         then:
@@ -2,6 +2,9 @@ package com.transfer.core
 
 import com.transfer.core.event.AccountCreateEvent
 import com.transfer.core.event.AccountEvent
+import com.transfer.core.event.AccountEventType
+import com.transfer.core.event.AccountInfoEvent
+import com.transfer.core.event.AccountTransferEvent
 import spock.lang.Specification
 
 import java.util.concurrent.ArrayBlockingQueue
@@ -15,7 +18,7 @@ class AccountEventPublisherImplSpec extends Specification {
 
     def "publish event should return false when queue is full"() {
         given:
-        def createEvent = new AccountCreateEvent({ _ -> }, { _ -> }, new BigDecimal(1))
+        def createEvent = new AccountCreateEvent({ _ -> }, { _ -> }, 1)
         when: "add events under capacity"
         (1..capacity).each {
             accountEventPublisher.publishEvent(createEvent)
@@ -24,4 +27,50 @@ class AccountEventPublisherImplSpec extends Specification {
         assert !accountEventPublisher.publishEvent(createEvent)
 
     }
+
+    def "claim should return null when ring is full until slots are released"() {
+        given:
+        def ring = new AccountEventRing(2)
+        def publisher = new AccountEventPublisherImpl(eventBus, ring)
+        when: "claim all slots and publish them"
+        def first = publisher.claim(AccountEventType.CREATE, null)
+        def second = publisher.claim(AccountEventType.CREATE, null)
+        first.setCreate(1, { _ -> }, { _ -> })
+        second.setCreate(2, { _ -> }, { _ -> })
+        publisher.publish(second)
+        then: "ring is full and consumer sees only published sequences in order"
+        publisher.claim(AccountEventType.CREATE, null) == null
+        ring.poll(0) == null
+        ring.poll(1).is(second)
+        when: "first slot is published and both are released by consumer"
+        publisher.publish(first)
+        ring.release(2)
+        def third = publisher.claim(AccountEventType.CREATE, null)
+        then: "slot is reused for the next sequence and cleared"
+        ring.poll(0).is(first)
+        third.is(first)
+        third.sequence == 2
+        third.type == null
+        ring.poll(2) == null
+    }
+
+    def "admission policy should shed low priority events first and never wait"() {
+        given:
+        def queue = new ArrayBlockingQueue<AccountEvent>(4)
+        def publisher = new AccountEventPublisherImpl(queue, null, new AdmissionPolicy(4, 1.0, 0.75, 0.5))
+        def create = { new AccountCreateEvent({ _ -> }, { _ -> }, 1) }
+        def info = { new AccountInfoEvent({ _ -> }, { _ -> }, UUID.randomUUID()) }
+        def transfer = { new AccountTransferEvent({ _ -> }, { _ -> }, UUID.randomUUID(), UUID.randomUUID(), 1) }
+
+        expect: "info is admitted below half of capacity, creation below three quarters, transfer while there is room"
+        publisher.publishEvent(info())
+        publisher.publishEvent(info())
+        !publisher.publishEvent(info())
+        publisher.publishEvent(create())
+        !publisher.publishEvent(create())
+        publisher.publishEvent(transfer())
+        !publisher.publishEvent(transfer())
+        publisher.rejectedCount == 3
+        queue.size() == 4
+    }
 }
@@ -0,0 +1,165 @@
+package com.transfer.core
+
+import com.transfer.core.event.AccountBatchTransferEvent
+import com.transfer.core.event.AccountCreateEvent
+import com.transfer.core.event.AccountTransferEvent
+import spock.lang.Specification
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class AccountHistorySpec extends Specification {
+
+    def "should page changes of account newest first"() {
+        given:
+        def history = new AccountHistory(8)
+        def account = new AccountInfo(UUID.randomUUID(), 100)
+        def other = new AccountInfo(UUID.randomUUID(), 0)
+        history.onAccountCreated(account)
+        history.onAccountCreated(other)
+
+        when:
+        (1..3).each {
+            account.amount -= 10
+            other.amount += 10
+            history.onTransfer(account, other, 10)
+        }
+        def first = history.getHistory(account.uuid, 0, 3)
+        def second = history.getHistory(account.uuid, first.nextCursor, 3)
+
+        then:
+        first.entries*.sequence == [4L, 3L, 2L]
+        first.entries*.balance == [70L, 80L, 90L]
+        first.entries.every { it.type == AccountHistoryEntry.Type.TRANSFER && it.amount == -10 && it.counterparty == other.uuid }
+        first.nextCursor == 2
+        second.entries*.sequence == [1L]
+        second.entries[0].type == AccountHistoryEntry.Type.CREATE
+        second.entries[0].counterparty == null
+        second.nextCursor == 0
+        history.getHistory(other.uuid, 0, 10).entries*.amount == [10L, 10L, 10L, 0L]
+        history.getHistory(UUID.randomUUID(), 0, 10).entries.empty
+    }
+
+    def "should record balance after each transfer of batch which reuses account"() {
+        given:
+        def storage = new AccountStorageImpl()
+        def hot = new AccountInfo(UUID.randomUUID(), 100)
+        def others = (1..3).collect { new AccountInfo(UUID.randomUUID(), 0) }
+        ([hot] + others).each { storage.put(it) }
+        def history = new AccountHistory(8)
+        def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(1))
+        processor.addListener(history)
+
+        when: 'hot account pays three others and gets paid back by the last one'
+        processor.process(new AccountBatchTransferEvent({ _ -> }, { _ -> }, [hot.uuid] * 3 + [others[2].uuid] as UUID[],
+                others*.uuid + [hot.uuid] as UUID[], [10L, 20L, 30L, 5L] as long[], true))
+
+        then:
+        history.getHistory(hot.uuid, 0, 10).entries*.balance == [45L, 40L, 70L, 90L]
+        history.getHistory(others[2].uuid, 0, 10).entries*.balance == [25L, 30L]
+
+        cleanup:
+        processor.close()
+    }
+
+    def "should keep only the last entries of account"() {
+        given:
+        def history = new AccountHistory(4)
+        def account = new AccountInfo(UUID.randomUUID(), 0)
+        history.onAccountCreated(account)
+
+        when:
+        (1..10).each {
+            account.amount += it
+            history.onCredit(it, account, UUID.randomUUID(), it)
+        }
+        def page = history.getHistory(account.uuid, 0, 10)
+
+        then:
+        page.entries*.sequence == [11L, 10L, 9L, 8L]
+        page.entries*.amount == [10L, 9L, 8L, 7L]
+        page.nextCursor == 0
+        history.getHistory(account.uuid, 3, 10).entries.empty
+    }
+
+    def "should record cross shard transfer and refund on both shards"() {
+        given:
+        def engine = new ShardedAccountEngine(2, 64, { shard -> new AccountStorageImpl() }, IdleStrategies.&backoff,
+                AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+        def history = engine.createHistory(8)
+        engine.start()
+        def from = create(engine, 100)
+        def to = create(engine, 0)
+        while (engine.router.shardOf(to) == engine.router.shardOf(from)) {
+            to = create(engine, 0)
+        }
+        def missing = UUID.randomUUID()
+        while (engine.router.shardOf(missing) == engine.router.shardOf(from)) {
+            missing = UUID.randomUUID()
+        }
+
+        when:
+        transfer(engine, from, to, 30).get(5, TimeUnit.SECONDS)
+        transfer(engine, from, missing, 20).handle { result, error -> error }.get(5, TimeUnit.SECONDS)
+        def fromEntries = history.getHistory(from, 0, 10).entries
+        def toEntries = history.getHistory(to, 0, 10).entries
+
+        then:
+        fromEntries*.type == [AccountHistoryEntry.Type.REFUND, AccountHistoryEntry.Type.TRANSFER, AccountHistoryEntry.Type.TRANSFER,
+                              AccountHistoryEntry.Type.CREATE]
+        fromEntries*.amount == [20L, -20L, -30L, 100L]
+        fromEntries*.balance == [70L, 50L, 70L, 100L]
+        fromEntries[1].counterparty == missing
+        toEntries[0].counterparty == from
+        toEntries[0].amount == 30
+        toEntries[0].balance == 30
+
+        cleanup:
+        engine.close()
+    }
+
+    def "should never return entry which is being overwritten"() {
+        given:
+        def history = new AccountHistory(4)
+        def account = new AccountInfo(UUID.randomUUID(), 0)
+        def other = new AccountInfo(UUID.randomUUID(), 0)
+        history.onAccountCreated(account)
+        def writes = 200_000
+        def writer = Thread.start {
+            for (long i = 1; i <= writes; i++) {
+                account.amount = i
+                history.onCredit(i, account, other.uuid, i)
+            }
+        }
+
+        when: 'amount and balance of every entry are written from the same number, so torn entry has them different'
+        def torn = 0
+        def read = 0
+        while (writer.alive) {
+            history.getHistory(account.uuid, 0, 4).entries.each {
+                read++
+                if (it.amount != it.balance || it.sequence != it.amount + 1) {
+                    torn++
+                }
+            }
+        }
+        writer.join()
+
+        then:
+        torn == 0
+        history.getHistory(account.uuid, 0, 1).entries[0].balance == writes
+    }
+
+    private static UUID create(ShardedAccountEngine engine, long amount) {
+        def future = new CompletableFuture<AccountResult>()
+        engine.publisher.publishEvent(new AccountCreateEvent(future.&complete, future.&completeExceptionally, amount))
+        future.get(5, TimeUnit.SECONDS).account
+    }
+
+    private static CompletableFuture<AccountResult> transfer(ShardedAccountEngine engine, UUID from, UUID to, long amount) {
+        def future = new CompletableFuture<AccountResult>()
+        engine.publisher.publishEvent(new AccountTransferEvent(future.&complete, future.&completeExceptionally, from, to, amount))
+        future
+    }
+}
@@ -0,0 +1,73 @@
+package com.transfer.core
+
+import spock.lang.Specification
+
+class AccountImporterSpec extends Specification {
+
+    static final int SHARDS = 4
+
+    def storages = (0..<SHARDS).collect { new AccountStorageImpl() }
+    def engine = new ShardedAccountEngine(SHARDS, 64, { shard -> storages[shard] }, IdleStrategies.&backoff,
+            AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+    def created = Collections.synchronizedList([])
+    def results = [:]
+
+    def setup() {
+        (0..<SHARDS).each { shard ->
+            engine.getProcessor(shard).addListener(new AccountEventListener() {
+                @Override
+                void onAccountCreated(AccountInfo account) {
+                    created << account.uuid
+                }
+            })
+        }
+        engine.start()
+    }
+
+    def cleanup() {
+        engine.close()
+    }
+
+    def "should insert accounts into storage of owning shard in chunks"() {
+        given:
+        def importer = new AccountImporter(engine.publisher, engine.router, 3, 2, { line, result -> results[line as int] = result })
+        def supplied = (1..10).collect { UUID.randomUUID() }
+
+        when:
+        supplied.eachWithIndex { uuid, i -> importer.add(i + 1, uuid, i * 100) }
+        importer.add(11, null, 5)
+        importer.finish()
+
+        then: "every line has own result"
+        results.size() == 11
+        importer.imported == 11
+        (1..10).every { results[it].account == supplied[it - 1] && results[it].amount == (it - 1) * 100 }
+        results[11].amount == 5
+
+        and: "accounts are in storage of their shard and seen by listeners"
+        results.values().every { storages[engine.router.shardOf(it.account)].getByUuid(it.account).amount == it.amount }
+        created.size() == 11
+    }
+
+    def "should fail only lines which can't be imported"() {
+        given:
+        def importer = new AccountImporter(engine.publisher, engine.router, { line, result -> results[line as int] = result })
+        def uuid = UUID.randomUUID()
+
+        when:
+        importer.add(1, uuid, 10)
+        importer.add(2, uuid, 20)
+        importer.add(3, UUID.randomUUID(), -1)
+        importer.add(4, new UUID(0, 0), 1)
+        importer.finish()
+
+        then:
+        !results[1].failed
+        results[2].error == "account already present in storage"
+        results[3].error == "Should not be less then 0"
+        !results[4].failed
+        importer.imported == 2
+        importer.failed == 2
+        storages[engine.router.shardOf(uuid)].getByUuid(uuid).amount == 10
+    }
+}
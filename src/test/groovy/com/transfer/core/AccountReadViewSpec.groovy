@@ -0,0 +1,50 @@
+package com.transfer.core
+
+import spock.lang.Specification
+
+class AccountReadViewSpec extends Specification {
+
+    def view = new AccountReadView()
+
+    def "should publish every change made by processor when batch is processed"() {
+        given:
+        def first = new AccountInfo(UUID.randomUUID(), 100)
+        def second = new AccountInfo(UUID.randomUUID(), 10)
+
+        when:
+        view.onAccountCreated(first)
+        view.onAccountCreated(second)
+        view.onBatchProcessed()
+        first.amount = 70
+        second.amount = 40
+        view.onTransfer(first, second, 30)
+
+        then: 'change is not published before journal of batch is synced'
+        view.getAccount(first.uuid).amount == 100
+
+        when:
+        view.onBatchProcessed()
+
+        then:
+        view.getAccount(first.uuid).amount == 70
+        view.getAccount(second.uuid).amount == 40
+        view.getAccount(UUID.randomUUID()) == null
+        view.getAccount(new UUID(0, 0)) == null
+    }
+
+    def "should keep accounts when table grows"() {
+        given:
+        def storage = new AccountStorageImpl()
+        (1..5000).each { storage.put(new AccountInfo(UUID.randomUUID(), it)) }
+
+        when:
+        def loaded = new AccountReadView(storage)
+        (1..5000).each { loaded.onAccountCreated(new AccountInfo(UUID.randomUUID(), it)) }
+        loaded.onBatchProcessed()
+
+        then:
+        def accounts = []
+        storage.forEach { accounts << it }
+        accounts.every { loaded.getAccount(it.uuid).amount == it.amount }
+    }
+}
@@ -0,0 +1,133 @@
+package com.transfer.core
+
+import com.transfer.core.event.AccountBatchTransferEvent
+import com.transfer.core.event.AccountEvent
+import com.transfer.core.event.AccountTaskEvent
+import com.transfer.core.event.AccountTransferEvent
+import spock.lang.Specification
+
+import java.util.concurrent.ArrayBlockingQueue
+
+class BatchNettingSpec extends Specification {
+
+    def hot = UUID.randomUUID()
+    def accounts = (1..8).collect { UUID.randomUUID() }
+
+    def "netted batch should give the same results and balances as sequential processing"() {
+        given:
+        def sequentialStorage = storage(storageType)
+        def nettedStorage = storage(storageType)
+        def sequential = new AccountEventProcessorImpl(sequentialStorage, new ArrayBlockingQueue<>(1))
+        def netted = new AccountEventProcessorImpl(nettedStorage, new ArrayBlockingQueue<>(1))
+        netted.enableBatchNetting()
+        def sequentialResults = []
+        def nettedResults = []
+
+        and: "hot account pays everyone until it runs out of money in the middle of batch, then gets paid back"
+        def transfers = []
+        accounts.each { transfers << [hot, it, 30] }
+        accounts.each { transfers << [it, hot, 10] }
+        transfers << [hot, hot, 5]
+        transfers << [accounts[0], UUID.randomUUID(), 1]
+
+        when:
+        transfers.each {
+            try {
+                sequentialResults << describe(sequential.process(event(it, [])))
+            } catch (IllegalArgumentException e) {
+                sequentialResults << e.message
+            }
+        }
+        netted.processBatch(transfers.collect { event(it, nettedResults) } as AccountEvent[], 0, transfers.size())
+
+        then:
+        nettedResults == sequentialResults
+        nettedResults.count { it == 'Not enough money for transfer' } == 5
+        nettedResults.last() == 'to account not present in storage'
+        balances(nettedStorage) == balances(sequentialStorage)
+        balances(nettedStorage)[hot] == 90
+
+        and: "every changed account is written to storage once"
+        netted.batchCacheWrites == 9
+        netted.batchCacheHits > 0
+
+        cleanup:
+        sequential.close()
+        netted.close()
+
+        where:
+        storageType << [AccountStorages.HASH_MAP, AccountStorages.PRIMITIVE]
+    }
+
+    def "task and the next batch should see balances netted so far"() {
+        given:
+        def storage = storage(AccountStorages.PRIMITIVE)
+        def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(1))
+        processor.enableBatchNetting()
+        def seen = [:]
+        def task = new AccountTaskEvent({ it.forEach { account -> seen[account.uuid] = account.amount } })
+
+        when:
+        processor.processBatch([event([hot, accounts[0], 40], []), task, event([accounts[0], hot, 15], [])] as AccountEvent[], 0, 3)
+
+        then: "task runs between transfers and reads storage directly"
+        seen[hot] == 60
+        seen[accounts[0]] == 140
+        storage.getByUuid(hot).amount == 75
+
+        when:
+        processor.processBatch([event([hot, accounts[1], 75], [])] as AccountEvent[], 0, 1)
+        then:
+        storage.getByUuid(hot).amount == 0
+        storage.getByUuid(accounts[1]).amount == 175
+
+        cleanup:
+        processor.close()
+    }
+
+    def "batch touching more accounts than cache holds should be applied completely"() {
+        given: "cache of processor with batch of 2 holds 8 accounts"
+        def storage = storage(AccountStorages.PRIMITIVE)
+        def others = (1..30).collect { UUID.randomUUID() }
+        others.each { storage.put(new AccountInfo(it, 0)) }
+        def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(1), IdleStrategies.backoff(), 2, 0)
+        processor.enableBatchNetting()
+        def results = []
+        def batchTransfer = new AccountBatchTransferEvent({ results << it }, { results << it.message },
+                [hot] * 30 as UUID[], others as UUID[], [1L] * 30 as long[], true)
+
+        when:
+        processor.processBatch([batchTransfer, event([others[29], hot, 1], [])] as AccountEvent[], 0, 2)
+
+        then:
+        results[0].items.size() == 30
+        results[0].items.last().amount == 70
+        storage.getByUuid(hot).amount == 71
+        others.take(29).every { storage.getByUuid(it).amount == 1 }
+        storage.getByUuid(others[29]).amount == 0
+
+        cleanup:
+        processor.close()
+    }
+
+    private AccountStorage<AccountInfo, UUID> storage(String storageType) {
+        def storage = AccountStorages.create(storageType, 16)
+        storage.put(new AccountInfo(hot, 100))
+        accounts.each { storage.put(new AccountInfo(it, 100)) }
+        storage
+    }
+
+    private static AccountTransferEvent event(List transfer, List results) {
+        new AccountTransferEvent({ results << describe(it) }, { results << it.message }, transfer[0], transfer[1], transfer[2])
+    }
+
+    private static String describe(AccountResult result) {
+        "${result.account}=${result.amount} ${result.secondAccount}=${result.secondAmount}"
+    }
+
+    private static Map<UUID, Long> balances(AccountStorage<AccountInfo, UUID> storage) {
+        def balances = [:]
+        storage.forEach { balances[it.uuid] = it.amount }
+        balances
+    }
+}
@@ -0,0 +1,85 @@
+package com.transfer.core
+
+import com.transfer.core.event.AccountBatchTransferEvent
+import com.transfer.core.event.AccountCreateEvent
+import spock.lang.Specification
+
+import java.util.concurrent.ArrayBlockingQueue
+
+class BatchTransferSpec extends Specification {
+
+    def transfers = []
+
+    def listener = new AccountEventListener() {
+        @Override
+        void onTransfer(AccountInfo fromAccount, AccountInfo toAccount, long amount) {
+            transfers << amount
+        }
+    }
+
+    def "atomic batch should be rolled back on failed transfer with each storage"() {
+        given:
+        def storage = AccountStorages.create(storageType, 16)
+        def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(1))
+        processor.addListener(listener)
+        def first = create(processor, 100)
+        def second = create(processor, 0)
+        def third = create(processor, Long.MAX_VALUE)
+
+        when: "the last transfer overflows destination"
+        processor.process(batch([first, second, first], [second, first, third], [70, 20, 1], true))
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Transfer 2 of batch failed: Amount overflow"
+        storage.getByUuid(first).amount == 100
+        storage.getByUuid(second).amount == 0
+        storage.getByUuid(third).amount == Long.MAX_VALUE
+        transfers.isEmpty()
+
+        when: "batch without failed transfers"
+        def result = processor.process(batch([first, second, first], [second, first, first], [70, 20, 5], true))
+        then: "each transfer has own result and listeners see every transfer"
+        result.items*.amount == [30, 50, 50]
+        result.items*.secondAmount == [70, 50, 50]
+        storage.getByUuid(first).amount == 50
+        storage.getByUuid(second).amount == 50
+        transfers == [70, 20, 5]
+
+        cleanup:
+        processor.close()
+
+        where:
+        storageType << [AccountStorages.HASH_MAP, AccountStorages.PRIMITIVE]
+    }
+
+    def "not atomic batch should apply transfers independently"() {
+        given:
+        def storage = new AccountStorageImpl()
+        def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(1))
+        processor.addListener(listener)
+        def first = create(processor, 100)
+        def second = create(processor, 0)
+
+        when:
+        def result = processor.process(batch([first, first, first], [second, UUID.randomUUID(), second], [70, 10, 40], false))
+        then:
+        result.items.size() == 3
+        !result.items[0].failed
+        result.items[1].error == "to account not present in storage"
+        result.items[2].error == "Not enough money for transfer"
+        storage.getByUuid(first).amount == 30
+        storage.getByUuid(second).amount == 70
+        transfers == [70]
+
+        cleanup:
+        processor.close()
+    }
+
+    private static UUID create(AccountEventProcessorImpl processor, long amount) {
+        processor.process(new AccountCreateEvent({ _ -> }, { _ -> }, amount)).account
+    }
+
+    private static AccountBatchTransferEvent batch(List<UUID> from, List<UUID> to, List<Long> amounts, boolean atomic) {
+        new AccountBatchTransferEvent({ _ -> }, { _ -> }, from as UUID[], to as UUID[], amounts as long[], atomic)
+    }
+}
@@ -0,0 +1,85 @@
+package com.transfer.core
+
+import spock.lang.Specification
+
+class IdempotencyCacheSpec extends Specification {
+
+    def account = new AccountInfo(UUID.randomUUID(), 10)
+    def secondAccount = new AccountInfo(UUID.randomUUID(), 20)
+
+    def "should replay stored result of key"() {
+        given:
+        def cache = new IdempotencyCache(4, 0)
+
+        when:
+        def single = cache.put(1, 2, 0)
+        def pair = cache.put(3, 4, 0)
+        then:
+        cache.isPending(cache.find(1, 2, 0))
+        cache.find(5, 6, 0) == IdempotencyCache.NOT_FOUND
+
+        when:
+        cache.complete(single, AccountResult.of(account))
+        cache.complete(pair, AccountResult.of(account, secondAccount))
+        def singleResult = cache.replay(cache.find(1, 2, 0))
+        def pairResult = cache.replay(cache.find(3, 4, 0))
+        then:
+        !singleResult.pair
+        singleResult.account == account.uuid
+        singleResult.amount == 10
+        pairResult.secondAccount == secondAccount.uuid
+        pairResult.secondAmount == 20
+        cache.replayed == 2
+    }
+
+    def "should evict the oldest keys by count and by time"() {
+        given:
+        def cache = new IdempotencyCache(2, 100)
+
+        when:
+        cache.put(1, 1, 0)
+        cache.put(2, 2, 10)
+        cache.put(3, 3, 20)
+        then: "the first key is evicted by count"
+        cache.size() == 2
+        cache.find(1, 1, 20) == IdempotencyCache.NOT_FOUND
+        cache.find(2, 2, 20) != IdempotencyCache.NOT_FOUND
+
+        when:
+        cache.put(4, 4, 115)
+        then: "the second key is older than time to live"
+        cache.find(2, 2, 115) == IdempotencyCache.NOT_FOUND
+        cache.find(3, 3, 115) != IdempotencyCache.NOT_FOUND
+        cache.find(3, 3, 120) == IdempotencyCache.NOT_FOUND
+        cache.size() == 2
+    }
+
+    def "should keep index consistent with random puts and removes"() {
+        given:
+        def cache = new IdempotencyCache(64, 0)
+        def random = new Random(42)
+        //keys in put order, removed key keeps its position until it is evicted
+        def inserted = []
+        def removed = [] as Set
+
+        when:
+        10_000.times {
+            long key = random.nextInt(200) + 1
+            int entry = cache.find(key, 0, 0)
+            if (entry != IdempotencyCache.NOT_FOUND) {
+                if (random.nextBoolean()) {
+                    cache.remove(entry)
+                    removed << inserted.lastIndexOf(key)
+                }
+            } else {
+                cache.put(key, 0, 0)
+                inserted << key
+            }
+        }
+        def live = (Math.max(0, inserted.size() - 64)..<inserted.size()).findAll { !removed.contains(it) }.collect { inserted[it] } as Set
+
+        then:
+        cache.size() == live.size()
+        (1..200).every { long key -> (cache.find(key, 0, 0) != IdempotencyCache.NOT_FOUND) == live.contains(key) }
+    }
+}
@@ -0,0 +1,147 @@
+package com.transfer.core
+
+import com.transfer.core.event.AccountBatchTransferEvent
+import com.transfer.core.event.AccountCreateEvent
+import com.transfer.core.event.AccountInfoEvent
+import com.transfer.core.event.AccountTransferEvent
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class IdempotentProcessingSpec extends Specification {
+
+    def engine = new ShardedAccountEngine(2, 64, { shard -> new AccountStorageImpl() }, IdleStrategies.&backoff,
+            AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+    def reader
+
+    def setup() {
+        engine.enableIdempotency(1024, 0)
+        reader = engine.createReader()
+        engine.start()
+    }
+
+    def cleanup() {
+        engine.close()
+    }
+
+    def "should create account once for the same key"() {
+        when:
+        def first = create(100, 7)
+        def retry = create(100, 7)
+        def other = create(100, 8)
+
+        then:
+        retry.account == first.account
+        other.account != first.account
+        engine.getProcessor(0).idempotencyCache.replayed + engine.getProcessor(1).idempotencyCache.replayed == 1
+    }
+
+    def "should apply transfer once and replay its result"() {
+        given:
+        def from = create(100, 0).account
+        def to = createIn(crossShard ? 1 - engine.router.shardOf(from) : engine.router.shardOf(from))
+
+        when:
+        def first = transfer(from, to, 30, 5)
+        //cross shard result is settled on source shard asynchronously
+        waitSettled(from, to)
+        def retry = transfer(from, to, 30, 5)
+
+        then:
+        retry.amount == first.amount
+        retry.secondAmount == first.secondAmount
+        reader.getAccount(from).amount == 70
+        reader.getAccount(to).amount == 30
+
+        where:
+        crossShard << [false, true]
+    }
+
+    def "should forget key of failed transfer, so it could be retried"() {
+        given:
+        def from = create(10, 0).account
+        def to = create(0, 0).account
+
+        when:
+        transfer(from, to, 30, 9)
+        then:
+        def e = thrown(Exception)
+        e.cause.message == "Not enough money for transfer"
+
+        when:
+        deposit(from)
+        def retry = transfer(from, to, 30, 9)
+        then:
+        retry.secondAmount == 30
+    }
+
+    def "should apply batch transfer once and replay its result"() {
+        given: 'accounts of one shard'
+        def from = create(100, 0).account
+        def to = createIn(engine.router.shardOf(from))
+
+        when:
+        def first = batchTransfer(from, to, 4)
+        def retry = batchTransfer(from, to, 4)
+
+        then: 'the second transfer of batch failed, it is replayed too'
+        retry.is(first)
+        first.items*.failed == [false, true, false]
+        reader.getAccount(from).amount == 60
+        reader.getAccount(to).amount == 40
+        engine.getProcessor(engine.router.shardOf(from)).idempotencyCache.replayed == 1
+    }
+
+    private AccountResult batchTransfer(UUID from, UUID to, long key) {
+        def future = new CompletableFuture<AccountResult>()
+        def event = new AccountBatchTransferEvent(future.&complete, future.&completeExceptionally,
+                [from, from, to] as UUID[], [to, to, from] as UUID[], [50, 1000, 10] as long[], false)
+        event.setIdempotencyKey(0, key)
+        assert engine.publisher.publishEvent(event)
+        return future.get(5, TimeUnit.SECONDS)
+    }
+
+    private AccountResult create(long amount, long key) {
+        def future = new CompletableFuture<AccountResult>()
+        def event = new AccountCreateEvent(future.&complete, future.&completeExceptionally, amount)
+        event.setIdempotencyKey(0, key)
+        assert engine.publisher.publishEvent(event)
+        return future.get(5, TimeUnit.SECONDS)
+    }
+
+    private UUID createIn(int shard) {
+        UUID uuid
+        while (engine.router.shardOf(uuid = create(0, 0).account) != shard) {
+        }
+        return uuid
+    }
+
+    private AccountResult transfer(UUID from, UUID to, long amount, long key) {
+        def future = new CompletableFuture<AccountResult>()
+        def event = new AccountTransferEvent(future.&complete, future.&completeExceptionally, from, to, amount)
+        event.setIdempotencyKey(0, key)
+        assert engine.publisher.publishEvent(event)
+        return future.get(5, TimeUnit.SECONDS)
+    }
+
+    private void deposit(UUID to) {
+        def rich = create(100, 0).account
+        transfer(rich, to, 100, 0)
+    }
+
+    private void waitSettled(UUID from, UUID to) {
+        def cache = engine.getProcessor(engine.router.shardOf(from)).idempotencyCache
+        long deadline = System.currentTimeMillis() + 5000
+        //settle event reaches source shard after credit, each info round trip gives it time to be processed
+        while (System.currentTimeMillis() < deadline) {
+            def future = new CompletableFuture<AccountResult>()
+            engine.publisher.publishEvent(new AccountInfoEvent(future.&complete, future.&completeExceptionally, from))
+            future.get(5, TimeUnit.SECONDS)
+            def entry = cache.find(0, 5, System.nanoTime())
+            if (entry != IdempotencyCache.NOT_FOUND && !cache.isPending(entry)) {
+                return
+            }
+        }
+    }
+}
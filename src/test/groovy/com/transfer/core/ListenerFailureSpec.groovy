@@ -0,0 +1,82 @@
+package com.transfer.core
+
+import com.transfer.core.event.AccountEvent
+import com.transfer.core.event.AccountInfoEvent
+import com.transfer.core.event.AccountTransferEvent
+import spock.lang.Specification
+
+import java.util.concurrent.ArrayBlockingQueue
+
+class ListenerFailureSpec extends Specification {
+
+    def router = new AccountShardRouter(2)
+    def from = router.getShard(0).newAccountUuid()
+    def to = router.getShard(0).newAccountUuid()
+    def remote = router.getShard(1).newAccountUuid()
+    def storage = new AccountStorageImpl()
+    def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(1), IdleStrategies.backoff(),
+            AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0, router.getShard(0))
+    def results = []
+
+    def setup() {
+        storage.put(new AccountInfo(from, 100))
+        storage.put(new AccountInfo(to, 0))
+    }
+
+    def cleanup() {
+        processor.close()
+    }
+
+    def "should fail whole batch and keep credits when listener fails to complete batch"() {
+        given:
+        def calls = 0
+        processor.addListener(new AccountEventListener() {
+            @Override
+            void onBatchProcessed() {
+                calls++
+                throw new IllegalStateException("disk is full")
+            }
+        })
+
+        when:
+        processor.processBatch([transfer(to, 10), transfer(remote, 20)] as AccountEvent[], 0, 2)
+
+        then: 'debit is not durable, so credit does not leave this shard'
+        results.size() == 2
+        results.every { it instanceof IllegalStateException && it.cause.message == "disk is full" }
+        router.getShard(1).inbox.isEmpty()
+        processor.failed
+
+        when:
+        processor.processBatch([transfer(to, 10), new AccountInfoEvent({ results << it }, { results << it }, from)] as AccountEvent[], 0, 2)
+
+        then: 'later events fail without being applied, listener is not called again'
+        results.size() == 4
+        results.drop(2).every { it.is(results[0]) }
+        calls == 1
+    }
+
+    def "should not apply events after listener failed in the middle of batch"() {
+        given:
+        processor.addListener(new AccountEventListener() {
+            @Override
+            void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+                throw new IllegalStateException("journal is closed")
+            }
+        })
+
+        when:
+        processor.processBatch([transfer(to, 10), transfer(remote, 20), transfer(to, 30)] as AccountEvent[], 0, 3)
+
+        then: 'transfer applied before failure is not acknowledged either'
+        results.size() == 3
+        results.every { it instanceof IllegalStateException }
+        router.getShard(1).inbox.isEmpty()
+        storage.getByUuid(to).amount == 10
+        storage.getByUuid(from).amount == 70
+    }
+
+    private AccountTransferEvent transfer(UUID toAccount, long amount) {
+        new AccountTransferEvent({ results << it }, { results << it }, from, toAccount, amount)
+    }
+}
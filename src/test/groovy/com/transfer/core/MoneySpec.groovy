@@ -0,0 +1,52 @@
+package com.transfer.core
+
+import spock.lang.Specification
+
+class MoneySpec extends Specification {
+
+    def money = new Money(2)
+
+    def "should parse amounts exactly"() {
+        expect:
+        money.parse(amount) == minorUnits
+        money.toDecimal(minorUnits) == new BigDecimal(amount)
+
+        where:
+        amount                  | minorUnits
+        "0"                     | 0
+        "0.1"                   | 10
+        "2000.50"               | 200050
+        "1.000"                 | 100
+        "-3.01"                 | -301
+        "92233720368547758.07"  | Long.MAX_VALUE
+    }
+
+    def "should reject amounts which can't be represented"() {
+        when:
+        money.parse(amount)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        amount << ["0.001", "92233720368547758.08", "1e100", "XXX", null]
+    }
+
+    def "should detect overflow"() {
+        when:
+        operation()
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        operation << [{ Money.add(Long.MAX_VALUE, 1) }, { Money.subtract(Long.MIN_VALUE, 1) }, { Money.add(Long.MIN_VALUE, -1) }]
+    }
+
+    def "should add and subtract without overflow"() {
+        expect:
+        Money.add(Long.MAX_VALUE - 1, 1) == Long.MAX_VALUE
+        Money.subtract(0, Long.MAX_VALUE) == -Long.MAX_VALUE
+        Money.add(-5, 3) == -2
+    }
+}
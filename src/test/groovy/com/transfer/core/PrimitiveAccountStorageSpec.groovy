@@ -0,0 +1,59 @@
+package com.transfer.core
+
+import com.transfer.core.event.AccountTransferEvent
+import spock.lang.Specification
+
+import java.util.concurrent.ArrayBlockingQueue
+
+class PrimitiveAccountStorageSpec extends Specification {
+
+    def storage = new PrimitiveAccountStorage(16)
+
+    def "should keep accounts when table grows"() {
+        given:
+        def accounts = (1..10_000).collect { new AccountInfo(UUID.randomUUID(), it) }
+
+        when:
+        accounts.each { storage.put(it) }
+
+        then:
+        storage.size() == accounts.size()
+        accounts.every { storage.getByUuid(it.uuid).amount == it.amount }
+        storage.getByUuid(UUID.randomUUID()) == null
+    }
+
+    def "should update balance in place without allocation"() {
+        given:
+        def uuid = UUID.randomUUID()
+        storage.put(new AccountInfo(uuid, 1025))
+
+        when:
+        def index = storage.indexOf(uuid.mostSignificantBits, uuid.leastSignificantBits)
+        storage.balance(index, storage.balance(index) - 25)
+
+        then:
+        storage.getByUuid(uuid).amount == 1000
+        storage.size() == 1
+    }
+
+    def "should reject nil uuid"() {
+        when:
+        storage.put(new AccountInfo(new UUID(0, 0), 1))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should keep balance when account transfers to itself"() {
+        given:
+        def uuid = UUID.randomUUID()
+        storage.put(new AccountInfo(uuid, 10))
+        def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(10))
+
+        when:
+        processor.process(new AccountTransferEvent({ _ -> }, { _ -> }, uuid, uuid, 3))
+
+        then:
+        storage.getByUuid(uuid).amount == 10
+    }
+}
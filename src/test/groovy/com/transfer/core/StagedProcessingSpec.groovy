@@ -0,0 +1,135 @@
+package com.transfer.core
+
+import com.transfer.core.event.AccountCreateEvent
+import com.transfer.core.event.AccountTransferEvent
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+
+class StagedProcessingSpec extends Specification {
+
+    def engine = new ShardedAccountEngine(2, 64, { shard -> new AccountStorageImpl() }, IdleStrategies.&backoff,
+            AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+
+    def cleanup() {
+        engine.close()
+    }
+
+    def "should complete results on dispatcher threads"() {
+        given:
+        engine.enableResultDispatcher(2, 16)
+        engine.start()
+        def from = create(100)
+        def to = create(0)
+
+        when:
+        def threads = [] as Set
+        def futures = (1..20).collect {
+            def future = new CompletableFuture()
+            engine.publisher.publishEvent(new AccountTransferEvent({ result ->
+                threads << Thread.currentThread().name
+                future.complete(result)
+            }, future.&completeExceptionally, from, to, 1))
+            future
+        }
+        futures*.get(5, TimeUnit.SECONDS)
+
+        then:
+        threads.every { it.startsWith("result-dispatcher-") }
+        futures.last().get().amount == 80
+    }
+
+    def "should complete failed events on dispatcher threads"() {
+        given:
+        engine.enableResultDispatcher(1, 16)
+        engine.start()
+        def from = create(10)
+        def future = new CompletableFuture()
+
+        when:
+        engine.publisher.publishEvent(new AccountTransferEvent(future.&complete, future.&completeExceptionally, from, UUID.randomUUID(), 20))
+        future.get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(Exception)
+        e.cause instanceof IllegalArgumentException
+    }
+
+    def "should complete batch by processor thread when dispatcher queues are full"() {
+        given: 'dispatcher is not started, so its only queue is never drained'
+        def dispatcher = new AccountResultDispatcher(1, 1, IdleStrategies.&backoff)
+        def queue = new ConcurrentLinkedQueue()
+        def processor = new AccountEventProcessorImpl(new AccountStorageImpl(), queue)
+        processor.setResultDispatcher(dispatcher)
+
+        when:
+        def first = new CompletableFuture()
+        def second = new CompletableFuture()
+        queue.offer(new AccountCreateEvent(first.&complete, first.&completeExceptionally, 1))
+        processor.start()
+        waitFor { dispatcher.queueDepth == 1 }
+        queue.offer(new AccountCreateEvent(second.&complete, second.&completeExceptionally, 2))
+
+        then:
+        second.get(5, TimeUnit.SECONDS).amount == 2
+        dispatcher.inlineCount == 1
+        !first.done
+
+        when:
+        dispatcher.start()
+
+        then:
+        first.get(5, TimeUnit.SECONDS).amount == 1
+
+        cleanup:
+        processor.close()
+        dispatcher.close()
+    }
+
+    def "should reuse completions returned by dispatcher instead of allocating them for every batch"() {
+        given:
+        engine.enableResultDispatcher(1, 4)
+        engine.start()
+
+        when:
+        (1..100).each { create(it) }
+
+        then:
+        (0..1).every { engine.getProcessor(it).allocatedCompletions <= 4 }
+        engine.getProcessor(0).allocatedCompletions + engine.getProcessor(1).allocatedCompletions > 0
+    }
+
+    def "should reject negative amount before event is published"() {
+        given:
+        def rejected = AccountEventValidator.rejectedCount
+
+        when:
+        operation.call()
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == message
+        AccountEventValidator.rejectedCount == rejected + 1
+
+        where:
+        operation                                                                              | message
+        ({ new AccountCreateEvent(null, null, -1) })                                          | "Should not be less then 0"
+        ({ new AccountTransferEvent(null, null, UUID.randomUUID(), UUID.randomUUID(), -1) }) | "Should not be less then 0"
+        ({ new AccountTransferEvent(null, null, null, UUID.randomUUID(), 1) })               | "from account should be set"
+    }
+
+    private UUID create(long amount) {
+        def future = new CompletableFuture<AccountResult>()
+        engine.publisher.publishEvent(new AccountCreateEvent(future.&complete, future.&completeExceptionally, amount))
+        future.get(5, TimeUnit.SECONDS).account
+    }
+
+    private static void waitFor(Closure<Boolean> condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (!condition.call() && System.nanoTime() < deadline) {
+            Thread.sleep(1)
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.transfer.journal
+
+import com.transfer.core.AccountEventProcessorImpl
+import com.transfer.core.AccountInfo
+import com.transfer.core.AccountResult
+import com.transfer.core.AccountStorageImpl
+import com.transfer.core.IdleStrategies
+import com.transfer.core.event.AccountCreateEvent
+import com.transfer.core.event.AccountTransferEvent
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CompletableFuture
+
+class EventJournalSpec extends Specification {
+
+    def directory = Files.createTempDirectory("journal")
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "should restore accounts and balances from journal"() {
+        given:
+        def first = new AccountInfo(UUID.randomUUID(), 10050)
+        def second = new AccountInfo(UUID.randomUUID(), 2000)
+        def journal = newJournal(directory)
+
+        when: 'create two accounts and transfer between them'
+        journal.onAccountCreated(first)
+        journal.onAccountCreated(second)
+        journal.onTransfer(first, second, 50)
+        journal.onBatchProcessed()
+        journal.close()
+
+        and: 'restore storage from the same directory'
+        def storage = new AccountStorageImpl()
+        new JournalRecovery([newJournal(directory)], [storage]).recover()
+
+        then:
+        storage.getByUuid(first.uuid).amount == 10000
+        storage.getByUuid(second.uuid).amount == 2050
+    }
+
+    def "should continue journal in new segments when segment is full"() {
+        given:
+        def journal = newJournal(directory, 256)
+        def accounts = (1..50).collect { new AccountInfo(UUID.randomUUID(), it) }
+
+        when: 'append much more than one segment, reopen and append again'
+        accounts.take(25).each { journal.onAccountCreated(it) }
+        journal.close()
+        journal = newJournal(directory, 256)
+        accounts.drop(25).each { journal.onAccountCreated(it) }
+        journal.close()
+
+        and:
+        def storage = new AccountStorageImpl()
+        new JournalRecovery([newJournal(directory, 256)], [storage]).recover()
+
+        then:
+        Files.list(directory).count() > 1
+        accounts.every { storage.getByUuid(it.uuid).amount == it.amount }
+    }
+
+    def "should refund cross shard debit without credit only once"() {
+        given:
+        def account = new AccountInfo(UUID.randomUUID(), 100)
+        def journals = [newJournal(directory.resolve("shard-0")), newJournal(directory.resolve("shard-1"))]
+
+        when: 'debit is journaled on first shard, but credit never reached second shard'
+        journals[0].onAccountCreated(account)
+        account.amount = 70
+        journals[0].onDebit(42L, account, UUID.randomUUID(), 30)
+        journals*.close()
+
+        and: 'recover twice'
+        def storage = new AccountStorageImpl()
+        journals = [newJournal(directory.resolve("shard-0")), newJournal(directory.resolve("shard-1"))]
+        new JournalRecovery(journals, [storage, new AccountStorageImpl()]).recover()
+        journals*.close()
+        def storageAfterRestart = new AccountStorageImpl()
+        new JournalRecovery([newJournal(directory.resolve("shard-0")), newJournal(directory.resolve("shard-1"))],
+                [storageAfterRestart, new AccountStorageImpl()]).recover()
+
+        then:
+        storage.getByUuid(account.uuid).amount == 100
+        storageAfterRestart.getByUuid(account.uuid).amount == 100
+    }
+
+    def "should journal processed events before completing them"() {
+        given:
+        def journal = newJournal(directory)
+        def eventBus = new ArrayBlockingQueue(16)
+        def processor = new AccountEventProcessorImpl(new AccountStorageImpl(), eventBus, IdleStrategies.backoff())
+        processor.addListener(journal)
+        processor.start()
+
+        when:
+        def from = uuid(publish(eventBus) { f -> new AccountCreateEvent(f.&complete, f.&completeExceptionally, 10) })
+        def to = uuid(publish(eventBus) { f -> new AccountCreateEvent(f.&complete, f.&completeExceptionally, 5) })
+        publish(eventBus) { f -> new AccountTransferEvent(f.&complete, f.&completeExceptionally, from, to, 3) }
+        processor.close()
+        journal.close()
+
+        and:
+        def storage = new AccountStorageImpl()
+        new JournalRecovery([newJournal(directory)], [storage]).recover()
+
+        then:
+        storage.getByUuid(from).amount == 7
+        storage.getByUuid(to).amount == 8
+    }
+
+    private static EventJournal newJournal(directory, segmentSize = 1024 * 1024) {
+        new EventJournal(directory, segmentSize, JournalSyncPolicy.PER_BATCH, 10)
+    }
+
+    private static AccountResult publish(queue, Closure<?> eventFactory) {
+        def future = new CompletableFuture<AccountResult>()
+        queue.offer(eventFactory(future))
+        future.get()
+    }
+
+    private static UUID uuid(AccountResult response) {
+        response.account
+    }
+}
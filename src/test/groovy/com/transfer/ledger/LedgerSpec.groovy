@@ -0,0 +1,154 @@
+package com.transfer.ledger
+
+import com.transfer.core.AccountInfo
+import com.transfer.core.AccountStorageImpl
+import com.transfer.journal.EventJournal
+import com.transfer.journal.JournalSyncPolicy
+import com.transfer.snapshot.SnapshotStore
+import com.transfer.snapshot.SnapshotWriter
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class LedgerSpec extends Specification {
+
+    def directory = Files.createTempDirectory("ledger")
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "should keep totals of shards and money in flight between them"() {
+        given: 'shard 0 already has an account when ledger is created'
+        def storages = [new AccountStorageImpl(), new AccountStorageImpl()]
+        def existing = new AccountInfo(UUID.randomUUID(), 500)
+        storages[0].put(existing)
+        def ledger = new Ledger(storages, [], 2, 60)
+        def first = new AccountInfo(UUID.randomUUID(), 1000)
+        def second = new AccountInfo(UUID.randomUUID(), 300)
+
+        when: 'transfer within shard 0 is applied, cross shard transfer is only debited'
+        ledger.listener(0).onAccountCreated(first)
+        ledger.listener(1).onAccountCreated(second)
+        first.amount = 900
+        existing.amount = 600
+        ledger.listener(0).onTransfer(first, existing, 100)
+        first.amount = 700
+        ledger.listener(0).onDebit(1L, first, second.uuid, 200)
+        (0..1).each { ledger.listener(it).onBatchProcessed() }
+        def debited = ledger.summary
+
+        and:
+        second.amount = 500
+        ledger.listener(1).onCredit(1L, second, first.uuid, 200)
+        ledger.listener(1).onBatchProcessed()
+        def credited = ledger.summary
+
+        then:
+        debited.accounts == 3
+        debited.balance == 1600
+        debited.inFlight == 200
+        debited.balanced
+
+        and:
+        credited.balance == 1800
+        credited.created == 1800
+        credited.inFlight == 0
+        credited.balanced
+        credited.transfers == 2
+        credited.volume == 300
+        credited.windowTransfers == 2
+        credited.windowVolume == 300
+        credited.getTop(2)*.amount == [700, 600]
+        credited.getTop(2)*.uuid == [first.uuid, existing.uuid]
+        credited.isTopExact(2)
+
+        and: 'each shard is balanced on its own'
+        ledger.getShardSummary(0).balance == 1300
+        ledger.getShardSummary(0).balanced
+        ledger.getShardSummary(1).balanced
+    }
+
+    def "should report largest balances exactly while accounts outside of heap are smaller"() {
+        given: 'two large accounts among small ones, heap keeps 4 balances and 2 are reported'
+        def top = new TopBalances(4)
+        def random = new Random(11)
+        def uuids = (0..<50).collect { UUID.randomUUID() }
+        def balances = [:]
+        def update = { int account, long balance ->
+            balances[account] = balance
+            top.update(uuids[account].mostSignificantBits, uuids[account].leastSignificantBits, balance)
+        }
+        def summary = { new LedgerSummary(0, 0, 0, 0, 0, 0, 0, 0, 0, top.copy(), top.outsideMax, 1, 0, 0) }
+        def expected = { balances.values().sort().reverse().take(2) }
+        update(0, 50_000)
+        update(1, 40_000)
+
+        when:
+        2000.times { update(2 + random.nextInt(48), random.nextInt(1000)) }
+
+        then:
+        summary().isTopExact(2)
+        summary().getTop(2)*.amount == expected()
+
+        when: 'one of them loses money and an account outside of heap becomes second'
+        update(0, 10)
+        update(2, 5_000)
+
+        then:
+        summary().isTopExact(2)
+        summary().getTop(2)*.amount == [40_000L, 5_000L]
+
+        when: 'every balance changes randomly'
+        def checked = 0
+        2000.times {
+            update(random.nextInt(50), random.nextInt(100_000))
+            if (summary().isTopExact(2)) {
+                assert summary().getTop(2)*.amount == expected()
+                checked++
+            }
+        }
+
+        then:
+        checked > 0
+    }
+
+    def "should verify shard aggregates against snapshot storage at the same journal position"() {
+        given: 'journal is added to processor before ledger, so summaries are stamped with committed positions'
+        def journal = new EventJournal(directory.resolve("shard-0"), 1024 * 1024, JournalSyncPolicy.PER_BATCH, 10)
+        def ledger = new Ledger([new AccountStorageImpl()], [journal], 2, 60)
+        def verifier = new LedgerVerifier(ledger)
+        def writer = new SnapshotWriter(new SnapshotStore(directory.resolve("snapshot")), [journal], { new AccountStorageImpl() }, verifier)
+        def listeners = [journal, ledger.listener(0)]
+        def first = new AccountInfo(UUID.randomUUID(), 1000)
+        def second = new AccountInfo(UUID.randomUUID(), 0)
+
+        when:
+        listeners*.onAccountCreated(first)
+        listeners*.onAccountCreated(second)
+        listeners*.onBatchProcessed()
+        first.amount = 600
+        second.amount = 400
+        listeners*.onTransfer(first, second, 400)
+        listeners*.onBatchProcessed()
+        writer.snapshot()
+
+        then:
+        ledger.getShardSummary(0).position == journal.committedPosition
+        verifier.verified == 1
+        verifier.mismatches == 0
+
+        when: 'storage differs from aggregates'
+        def storage = new AccountStorageImpl()
+        storage.put(new AccountInfo(first.uuid, 600))
+        storage.put(new AccountInfo(second.uuid, 500))
+
+        then:
+        !verifier.verify(0, verifier.expected(0), storage)
+        verifier.verified == 2
+        verifier.mismatches == 1
+
+        cleanup:
+        journal.close()
+    }
+}
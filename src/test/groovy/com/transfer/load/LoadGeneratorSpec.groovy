@@ -0,0 +1,100 @@
+package com.transfer.load
+
+import com.transfer.core.AccountEventProcessorImpl
+import com.transfer.core.AccountStorages
+import com.transfer.core.IdleStrategies
+import com.transfer.core.ShardedAccountEngine
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class LoadGeneratorSpec extends Specification {
+
+    def "should send every scheduled operation to processors"() {
+        given:
+        def engine = new ShardedAccountEngine(2, 1024, { AccountStorages.create(AccountStorages.PRIMITIVE, 1000) }, IdleStrategies.&backoff,
+                AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+        engine.start()
+        def generator = new LoadGenerator(new PublisherLoadTarget(engine.publisher), 2000, [1, 4, 5] as int[], 0.99, 1000, 42)
+
+        when: 'operations scheduled within 0.5 seconds after warmup are measured'
+        generator.createAccounts(100, 1_000_000, 1)
+        def result = generator.run(TimeUnit.MILLISECONDS.toNanos(200), TimeUnit.MILLISECONDS.toNanos(500))
+
+        then:
+        result.responseTime.count == 1000
+        result.serviceTime.count == 1000
+        result.errors == 0
+        LoadOperation.values().every { result.getResponseTime(it).count > 0 }
+        result.responseTime.sum >= result.serviceTime.sum
+        result.throughput > 0
+
+        cleanup:
+        engine.close()
+    }
+
+    def "should count time operations waited behind stalled sender in response time"() {
+        given: 'target answers at once, but one call stalls for 200 ms'
+        def calls = 0
+        def target = [create  : { long amount ->
+            if (++calls == 100) {
+                Thread.sleep(200)
+            }
+            CompletableFuture.completedFuture(UUID.randomUUID())
+        }] as LoadTarget
+        def generator = new LoadGenerator(target, 1000, [1, 0, 0] as int[], 0, 1000, 42)
+
+        when:
+        def result = generator.run(0, TimeUnit.SECONDS.toNanos(1))
+
+        then: 'about 200 operations scheduled during stall were sent late, closed-loop service time does not show it'
+        result.responseTime.count == 1000
+        result.responseTime.valueAtPercentile(90) > TimeUnit.MILLISECONDS.toNanos(50)
+        result.serviceTime.valueAtPercentile(90) < TimeUnit.MILLISECONDS.toNanos(10)
+        result.senderLag.max >= TimeUnit.MILLISECONDS.toNanos(150)
+    }
+
+    def "should append results of every run to csv file"() {
+        given:
+        def directory = Files.createTempDirectory("load")
+        def file = directory.resolve("results").resolve("results.csv")
+        def target = [create: { long amount -> CompletableFuture.failedFuture(new IllegalStateException("rejected")) }] as LoadTarget
+        def generator = new LoadGenerator(target, 1000, [1, 0, 0] as int[], 0, 1000, 42)
+
+        when:
+        2.times { LoadReport.append(generator.run(0, TimeUnit.MILLISECONDS.toNanos(50)), "build-$it", "test", file) }
+        def lines = Files.readAllLines(file)
+        def header = lines[0].split(",") as List
+        def rows = lines.drop(1).collect { it.split(",") as List }
+
+        then: 'header is written once, each run has response and service rows of every operation and of all, and lag row'
+        lines[0] == LoadReport.HEADER
+        rows.size() == 2 * (LoadOperation.values().length * 2 + 3)
+        rows.every { it.size() == header.size() }
+        def created = rows.find { it[header.indexOf("label")] == "build-1" && it[header.indexOf("operation")] == "create" && it[header.indexOf("measure")] == "response" }
+        created[header.indexOf("count")] == "50"
+        created[header.indexOf("errors")] == "50"
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
+
+    def "should pick popular accounts more often with larger exponent"() {
+        given:
+        def random = new SplittableRandom(42)
+        def sampler = new AccountSampler(100, exponent)
+
+        when:
+        def first = (1..10_000).count { sampler.next(random) == 0 }
+
+        then:
+        first >= minimum && first <= maximum
+
+        where:
+        exponent | minimum | maximum
+        0        | 50      | 200
+        1        | 1700    | 2200
+    }
+}
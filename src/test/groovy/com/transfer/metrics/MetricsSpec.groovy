@@ -0,0 +1,71 @@
+package com.transfer.metrics
+
+import spock.lang.Specification
+
+class MetricsSpec extends Specification {
+
+    def "histogram should keep values with bounded relative error"() {
+        given:
+        def histogram = new LatencyHistogram()
+        when:
+        (1..1000).each { histogram.record(it * 1000L) }
+        def snapshot = histogram.snapshot()
+        then:
+        snapshot.count == 1000
+        snapshot.sum == 500500000L
+        snapshot.max == 1000000L
+        Math.abs(snapshot.valueAtPercentile(50) - 500000) <= 500000 / 16
+        Math.abs(snapshot.valueAtPercentile(99) - 990000) <= 990000 / 16
+        snapshot.valueAtPercentile(100) == 1000000L
+    }
+
+    def "histogram should keep small values exactly and clamp huge ones"() {
+        given:
+        def histogram = new LatencyHistogram()
+        when:
+        histogram.record(7)
+        histogram.record(-5)
+        histogram.record(Long.MAX_VALUE)
+        def snapshot = histogram.snapshot()
+        then:
+        snapshot.valueAtPercentile(10) == 0
+        snapshot.valueAtPercentile(50) == 7
+        snapshot.max == LatencyHistogram.MAX_VALUE
+        snapshot.valueAtPercentile(100) == LatencyHistogram.MAX_VALUE
+    }
+
+    def "bucket of every value should contain it"() {
+        expect:
+        [0L, 31L, 32L, 33L, 1000L, 65535L, 123456789L, LatencyHistogram.MAX_VALUE].every { value ->
+            int index = LatencyHistogram.indexOf(value)
+            LatencyHistogram.highestValueOf(index) >= value && (index == 0 || LatencyHistogram.highestValueOf(index - 1) < value)
+        }
+    }
+
+    def "registry should write prometheus text format"() {
+        given:
+        def registry = new MetricsRegistry()
+        def histogram = new LatencyHistogram()
+        histogram.record(2_000_000)
+        registry.counter("requests_total", "Requests", MetricsRegistry.labels("shard", "0"), { 5L })
+        registry.histogram("request_seconds", "Request time", "", histogram)
+        when:
+        def text = registry.toPrometheus()
+        then:
+        text.contains("# TYPE requests_total counter\nrequests_total{shard=\"0\"} 5\n")
+        text.contains("# TYPE request_seconds summary\n")
+        text.contains("request_seconds{quantile=\"0.5\"} 0.002")
+        text.contains("request_seconds_count 1\n")
+        text.contains("# TYPE request_seconds_max gauge\nrequest_seconds_max 0.002\n")
+    }
+
+    def "registry should reject metric registered with another type"() {
+        given:
+        def registry = new MetricsRegistry()
+        registry.counter("value", "Value", "", { 1L })
+        when:
+        registry.gauge("value", "Value", "", { 1L })
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
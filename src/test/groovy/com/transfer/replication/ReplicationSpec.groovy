@@ -0,0 +1,251 @@
+package com.transfer.replication
+
+import com.transfer.core.AccountEventListener
+import com.transfer.core.AccountEventProcessorImpl
+import com.transfer.core.AccountInfo
+import com.transfer.core.AccountResult
+import com.transfer.core.AccountStorageImpl
+import com.transfer.core.IdleStrategies
+import com.transfer.core.ShardedAccountEngine
+import com.transfer.core.event.AccountCreateEvent
+import com.transfer.core.event.AccountTransferEvent
+import com.transfer.journal.JournalRecords
+import com.transfer.journal.PendingTransfers
+import org.agrona.concurrent.UnsafeBuffer
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ReplicationSpec extends Specification {
+
+    def "follower should get snapshot and changes of leader and take over after promotion"() {
+        given:
+        def leaderEngine = engine()
+        def leader = new ReplicationLeader(leaderEngine, 0, true, TimeUnit.SECONDS.toNanos(5))
+        leaderEngine.start()
+        leader.start()
+        def accounts = (1..10).collect { create(leaderEngine, 100) }
+        def followerEngine = engine()
+        def follower = new ReplicationFollower(followerEngine, "localhost", leader.port)
+
+        when: 'accounts created before follower connected come with snapshot, transfers after it with stream'
+        follower.start()
+        //one snapshot frame of every shard
+        waitFor { follower.appliedFrames >= 2 }
+        (0..<10).each { transfer(leaderEngine, accounts[it], accounts[(it + 3) % 10], 10 + it).get(5, TimeUnit.SECONDS) }
+        create(leaderEngine, 7)
+        waitFor { leader.getLag(0) == 0 && leader.getLag(1) == 0 }
+
+        then: 'in sync mode transfer is completed only after follower applied it'
+        balances(followerEngine) == balances(leaderEngine)
+        balances(followerEngine).size() == 11
+        leader.syncWaitTime.snapshot().count > 0
+        leader.syncTimeouts == 0
+
+        when:
+        leader.close()
+        leaderEngine.close()
+        follower.promote()
+        followerEngine.start()
+        def result = transfer(followerEngine, accounts[0], accounts[1], 1).get(5, TimeUnit.SECONDS)
+
+        then: 'promoted shards go on with transfer ids after the last ones of leader'
+        result.account == accounts[0]
+        result.amount == balances(leaderEngine)[accounts[0]] - 1
+        (0..1).sum { leaderEngine.getProcessor(it).transferSequence } > 0
+        (0..1).every { followerEngine.getProcessor(it).transferSequence >= leaderEngine.getProcessor(it).transferSequence }
+
+        cleanup:
+        follower?.close()
+        followerEngine?.close()
+    }
+
+    def "promoted follower should refund debit whose credit was in flight when shards were cut for snapshot"() {
+        given: 'shard 0 stops after debit before it sends credit, shard 1 stops on credit before it is replicated'
+        def leaderEngine = engine()
+        def debited = new CountDownLatch(1)
+        def sendCredit = new CountDownLatch(1)
+        def processCredit = new CountDownLatch(1)
+        def stopAfterDebit = false
+        def stopOnCredit = false
+        leaderEngine.getProcessor(0).addListener(new AccountEventListener() {
+            def debitInBatch = false
+
+            @Override
+            void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+                debitInBatch = stopAfterDebit
+            }
+
+            @Override
+            void onBatchProcessed() {
+                if (debitInBatch) {
+                    debitInBatch = false
+                    debited.countDown()
+                    sendCredit.await()
+                }
+            }
+        })
+        //added before replication source of the shard, so credit is not encoded while it waits
+        leaderEngine.getProcessor(1).addListener(new AccountEventListener() {
+            @Override
+            void onCredit(long transferId, AccountInfo account, long amount) {
+                if (stopOnCredit) {
+                    processCredit.await()
+                }
+            }
+        })
+        def leader = new ReplicationLeader(leaderEngine, 0, false, TimeUnit.SECONDS.toNanos(5))
+        leaderEngine.start()
+        leader.start()
+        def from = create(leaderEngine, 100)
+        def to = create(leaderEngine, 100)
+        while (leaderEngine.router.shardOf(from) != 0) {
+            from = create(leaderEngine, 100)
+        }
+        while (leaderEngine.router.shardOf(to) != 1) {
+            to = create(leaderEngine, 100)
+        }
+        //without follower cross shard transfers are not tracked
+        transfer(leaderEngine, to, from, 10).get(5, TimeUnit.SECONDS)
+        assert leader.sources.every { it.unsettled.isEmpty() }
+        def total = balances(leaderEngine).values().sum()
+        def trackShard1 = new CountDownLatch(1)
+        leaderEngine.execute(1) { trackShard1.await() }
+        def followerEngine = engine()
+        def follower = new ReplicationFollower(followerEngine, "localhost", leader.port)
+
+        when: 'debit is made after shard 0 started tracking, shard 1 is cut before credit arrives, leader dies before credit is replicated'
+        follower.start()
+        waitFor { leader.sources[0].tracking }
+        stopAfterDebit = true
+        stopOnCredit = true
+        def transferred = transfer(leaderEngine, from, to, 30)
+        debited.await(5, TimeUnit.SECONDS)
+        trackShard1.countDown()
+        //snapshot task of shard 1 is started, so credit is queued after it
+        waitFor { leader.sources[1].thread != null }
+        sendCredit.countDown()
+        waitFor { follower.appliedFrames >= 2 }
+        leader.close()
+        processCredit.countDown()
+        //transfer is completed by shard 1 after credit
+        transferred.get(5, TimeUnit.SECONDS)
+        leaderEngine.close()
+        follower.promote()
+
+        then: 'money of debit is back on account it was taken from'
+        balances(followerEngine).values().sum() == total
+        balances(followerEngine)[from] == 110
+
+        cleanup:
+        follower?.close()
+        followerEngine?.close()
+    }
+
+    def "promoted follower should refund debit whose credit did not arrive"() {
+        given: 'fake leader sends account creation and debit to another shard, in stream or as pending in snapshot, then disappears'
+        def followerEngine = engine()
+        def from = UUID.randomUUID()
+        def to = UUID.randomUUID()
+        while (followerEngine.router.shardOf(to) == followerEngine.router.shardOf(from)) {
+            to = UUID.randomUUID()
+        }
+        int shard = followerEngine.router.shardOf(from)
+        def serverSocket = new ServerSocket(0)
+        def follower = new ReplicationFollower(followerEngine, "localhost", serverSocket.localPort)
+        follower.start()
+
+        when:
+        def socket = serverSocket.accept()
+        def frame = new UnsafeBuffer(new byte[ReplicationProtocol.MAX_FRAME_LENGTH])
+        int length = ReplicationProtocol.FRAME_HEADER_LENGTH
+        if (pendingInSnapshot) {
+            length += ReplicationProtocol.putTransferSequence(frame, length, 42)
+            length += ReplicationProtocol.putPendingDebit(frame, length, 42, from, 30)
+            length += JournalRecords.putAccountCreated(frame, length, from, 70)
+        } else {
+            length += JournalRecords.putAccountCreated(frame, length, from, 100)
+            length += JournalRecords.putDebit(frame, length, 42, from, to, 30)
+        }
+        frame.putInt(ReplicationProtocol.LENGTH_OFFSET, length - ReplicationProtocol.SHARD_OFFSET)
+        frame.putInt(ReplicationProtocol.SHARD_OFFSET, shard)
+        frame.putLong(ReplicationProtocol.EPOCH_OFFSET, 1)
+        frame.putLong(ReplicationProtocol.SEQUENCE_OFFSET, 1)
+        socket.outputStream.write(frame.byteArray(), 0, length)
+        def ack = new UnsafeBuffer(socket.inputStream.readNBytes(ReplicationProtocol.ACK_LENGTH))
+        def balanceBeforePromotion = followerEngine.getStorage(shard).getByUuid(from).amount
+        socket.close()
+        serverSocket.close()
+        follower.promote()
+
+        then:
+        ack.getLong(ReplicationProtocol.ACK_SEQUENCE_OFFSET) == 1
+        balanceBeforePromotion == 70
+        followerEngine.getStorage(shard).getByUuid(from).amount == 100
+
+        cleanup:
+        follower.close()
+        followerEngine.close()
+
+        where:
+        pendingInSnapshot << [false, true]
+    }
+
+    def "resync snapshot should pass only changed accounts to listeners"() {
+        given:
+        def storage = new AccountStorageImpl()
+        def created = []
+        def listener = new AccountEventListener() {
+            @Override
+            void onAccountCreated(AccountInfo account) {
+                created << account.amount
+            }
+        }
+        def applier = new ReplicationApplier(storage, [listener], new PendingTransfers())
+        def same = UUID.randomUUID()
+        def changed = UUID.randomUUID()
+        applier.onAccountCreated(same, 100)
+        applier.onAccountCreated(changed, 100)
+
+        when: 'the next epoch sends both accounts again'
+        applier.onAccountCreated(same, 100)
+        applier.onAccountCreated(changed, 70)
+
+        then:
+        created == [100, 100, 70]
+        storage.getByUuid(changed).amount == 70
+    }
+
+    private static ShardedAccountEngine engine() {
+        new ShardedAccountEngine(2, 64, { shard -> new AccountStorageImpl() }, IdleStrategies.&backoff,
+                AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+    }
+
+    private static Map<UUID, Long> balances(ShardedAccountEngine engine) {
+        def balances = [:]
+        (0..<engine.shardCount).each { engine.getStorage(it).forEach { balances[it.uuid] = it.amount } }
+        balances
+    }
+
+    private static void waitFor(Closure<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 5000
+        while (!condition()) {
+            assert System.currentTimeMillis() < deadline
+            Thread.sleep(10)
+        }
+    }
+
+    private static UUID create(ShardedAccountEngine engine, long amount) {
+        def future = new CompletableFuture<AccountResult>()
+        engine.publisher.publishEvent(new AccountCreateEvent(future.&complete, future.&completeExceptionally, amount))
+        future.get(5, TimeUnit.SECONDS).account
+    }
+
+    private static CompletableFuture<AccountResult> transfer(ShardedAccountEngine engine, UUID from, UUID to, long amount) {
+        def future = new CompletableFuture<AccountResult>()
+        engine.publisher.publishEvent(new AccountTransferEvent(future.&complete, future.&completeExceptionally, from, to, amount))
+        future
+    }
+}
@@ -0,0 +1,209 @@
+package com.transfer.snapshot
+
+import com.transfer.core.AccountEventListener
+import com.transfer.core.AccountEventProcessorImpl
+import com.transfer.core.AccountInfo
+import com.transfer.core.AccountShardRouter
+import com.transfer.core.AccountStorageImpl
+import com.transfer.core.IdleStrategies
+import com.transfer.core.event.AccountEvent
+import com.transfer.core.event.AccountTransferEvent
+import com.transfer.journal.EventJournal
+import com.transfer.journal.JournalRecovery
+import com.transfer.journal.JournalSyncPolicy
+import com.transfer.journal.PendingTransfers
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.ArrayBlockingQueue
+
+class SnapshotSpec extends Specification {
+
+    def directory = Files.createTempDirectory("snapshot")
+    def store = new SnapshotStore(directory.resolve("snapshot"))
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "should restore accounts from snapshot and journal written after it"() {
+        given:
+        def first = new AccountInfo(UUID.randomUUID(), 10050)
+        def second = new AccountInfo(UUID.randomUUID(), 2000)
+        def journal = newJournal("shard-0")
+        def writer = new SnapshotWriter(store, [journal], { new AccountStorageImpl() })
+
+        when: 'accounts are created before snapshot, transfer is done after it'
+        journal.onAccountCreated(first)
+        journal.onAccountCreated(second)
+        journal.onBatchProcessed()
+        writer.snapshot()
+        journal.onTransfer(first, second, 50)
+        journal.onBatchProcessed()
+        journal.close()
+
+        and:
+        def storage = new AccountStorageImpl()
+        def pendingTransfers = new PendingTransfers()
+        def positions = store.loadLatest([storage], pendingTransfers)
+
+        then: 'snapshot contains state before transfer'
+        storage.getByUuid(first.uuid).amount == 10050
+
+        when:
+        new JournalRecovery([newJournal("shard-0")], [storage]).recover(positions, pendingTransfers)
+
+        then:
+        storage.getByUuid(first.uuid).amount == 10000
+        storage.getByUuid(second.uuid).amount == 2050
+    }
+
+    def "should delete journal segments and snapshots which are not needed for recovery"() {
+        given:
+        def journal = newJournal("shard-0", 256)
+        def writer = new SnapshotWriter(store, [journal], { new AccountStorageImpl() })
+        def accounts = (1..60).collect { new AccountInfo(UUID.randomUUID(), it) }
+
+        when: 'snapshot is taken after every 20 accounts'
+        accounts.collate(20).each { chunk ->
+            chunk.each { journal.onAccountCreated(it) }
+            journal.onBatchProcessed()
+            writer.snapshot()
+        }
+        journal.close()
+
+        and:
+        def storage = new AccountStorageImpl()
+        def pendingTransfers = new PendingTransfers()
+        def positions = store.loadLatest([storage], pendingTransfers)
+        new JournalRecovery([newJournal("shard-0", 256)], [storage]).recover(positions, pendingTransfers)
+
+        then:
+        store.positions().size() == 2
+        !Files.exists(directory.resolve("shard-0").resolve("journal-0000000000.log"))
+        accounts.every { storage.getByUuid(it.uuid).amount == it.amount }
+    }
+
+    def "should not write snapshot when journal is not changed"() {
+        given:
+        def journal = newJournal("shard-0")
+        def writer = new SnapshotWriter(store, [journal], { new AccountStorageImpl() })
+
+        when:
+        journal.onAccountCreated(new AccountInfo(UUID.randomUUID(), 1))
+        journal.onBatchProcessed()
+        writer.snapshot()
+        writer.snapshot()
+
+        then:
+        store.positions().size() == 1
+
+        cleanup:
+        journal.close()
+    }
+
+    def "should refund debit pending in snapshot only if credit is not journaled after it"() {
+        given:
+        def account = new AccountInfo(UUID.randomUUID(), 100)
+        def other = new AccountInfo(UUID.randomUUID(), 0)
+        def journals = [newJournal("shard-0"), newJournal("shard-1")]
+        def writer = new SnapshotWriter(store, journals, { new AccountStorageImpl() })
+
+        when: 'two cross shard transfers are debited before snapshot, only one is credited after it'
+        journals[0].onAccountCreated(account)
+        journals[1].onAccountCreated(other)
+        account.amount = 70
+        journals[0].onDebit(1L, account, other.uuid, 10)
+        journals[0].onDebit(2L, account, other.uuid, 20)
+        journals*.onBatchProcessed()
+        writer.snapshot()
+        other.amount = 10
+        journals[1].onCredit(1L, other, 10)
+        journals*.close()
+
+        and:
+        def storages = [new AccountStorageImpl(), new AccountStorageImpl()]
+        def pendingTransfers = new PendingTransfers()
+        def positions = store.loadLatest(storages, pendingTransfers)
+        new JournalRecovery([newJournal("shard-0"), newJournal("shard-1")], storages).recover(positions, pendingTransfers)
+
+        then:
+        storages[0].getByUuid(account.uuid).amount == 90
+        storages[1].getByUuid(other.uuid).amount == 10
+    }
+
+    def "should read snapshot in windows smaller than its records"() {
+        given: 'windows of 12 bytes, so values of accounts and pending transfers cross window boundaries'
+        def chunkedStore = new SnapshotStore(directory.resolve("chunked"), 12)
+        def storages = [new AccountStorageImpl(), new AccountStorageImpl()]
+        def accounts = (1..100).collect { new AccountInfo(UUID.randomUUID(), it * 100) }
+        accounts.eachWithIndex { account, i -> storages[i % 2].put(account) }
+        def pendingTransfers = new PendingTransfers()
+        pendingTransfers.onDebit(7L, 1, accounts[0].uuid, 30)
+        pendingTransfers.onCredit(9L)
+
+        when:
+        chunkedStore.write([11L, 22L] as long[], storages, pendingTransfers)
+        def restored = [new AccountStorageImpl(), new AccountStorageImpl()]
+        def restoredTransfers = new PendingTransfers()
+        def positions = chunkedStore.loadLatest(restored, restoredTransfers)
+
+        then:
+        positions == [11L, 22L] as long[]
+        chunkedStore.positions()*.toList() == [[11L, 22L]]
+        accounts.withIndex().every { account, i -> restored[i % 2].getByUuid(account.uuid).amount == account.amount }
+        restoredTransfers.debits.keySet() == [7L] as Set
+        restoredTransfers.credits == [9L] as Set
+    }
+
+    def "should restore transfer sequence of shard, so transfer ids are not repeated after restart"() {
+        given: 'processor of the second shard journals its debits'
+        def router = new AccountShardRouter(2)
+        def account = new AccountInfo(router.getShard(1).newAccountUuid(), 100)
+        def other = router.getShard(0).newAccountUuid()
+        def journals = [newJournal("shard-0"), newJournal("shard-1")]
+        def writer = new SnapshotWriter(store, journals, { new AccountStorageImpl() })
+        def storage = new AccountStorageImpl()
+        storage.put(account)
+        def processor = new AccountEventProcessorImpl(storage, new ArrayBlockingQueue<>(1), IdleStrategies.backoff(),
+                AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0, router.getShard(1))
+        journals[1].onAccountCreated(account)
+        processor.addListener(journals[1])
+        processor.transferSequence = 41
+        def transferIds = []
+        processor.addListener(new AccountEventListener() {
+            @Override
+            void onDebit(long transferId, AccountInfo fromAccount, UUID toAccount, long amount) {
+                transferIds << transferId
+            }
+        })
+
+        when: 'one transfer is debited before snapshot and one after it'
+        processor.processBatch([transfer(account.uuid, other)] as AccountEvent[], 0, 1)
+        writer.snapshot()
+        processor.processBatch([transfer(account.uuid, other)] as AccountEvent[], 0, 1)
+        processor.close()
+        journals*.close()
+
+        and:
+        def snapshotTransfers = new PendingTransfers()
+        def storages = [new AccountStorageImpl(), new AccountStorageImpl()]
+        def positions = store.loadLatest(storages, snapshotTransfers)
+        def snapshotSequence = snapshotTransfers.getTransferSequence(1)
+        new JournalRecovery([newJournal("shard-0"), newJournal("shard-1")], storages).recover(positions, snapshotTransfers)
+
+        then:
+        transferIds == [AccountShardRouter.transferId(1, 42), AccountShardRouter.transferId(1, 43)]
+        snapshotSequence == 42
+        snapshotTransfers.getTransferSequence(1) == 43
+        snapshotTransfers.getTransferSequence(0) == 0
+    }
+
+    private static AccountTransferEvent transfer(UUID from, UUID to) {
+        new AccountTransferEvent({ _ -> }, { _ -> }, from, to, 10)
+    }
+
+    private EventJournal newJournal(String shard, int segmentSize = 1024 * 1024) {
+        new EventJournal(directory.resolve(shard), segmentSize, JournalSyncPolicy.PER_BATCH, 10)
+    }
+}
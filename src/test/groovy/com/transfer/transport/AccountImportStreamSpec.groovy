@@ -0,0 +1,90 @@
+package com.transfer.transport
+
+import com.transfer.core.AccountEventProcessorImpl
+import com.transfer.core.AccountStorageImpl
+import com.transfer.core.IdleStrategies
+import com.transfer.core.Money
+import com.transfer.core.ShardedAccountEngine
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+
+class AccountImportStreamSpec extends Specification {
+
+    def engine = new ShardedAccountEngine(2, 64, { shard -> new AccountStorageImpl() }, IdleStrategies.&backoff,
+            AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+    def importStream = new AccountImportStream(engine.publisher, engine.router, Money.DEFAULT)
+
+    def setup() {
+        engine.start()
+    }
+
+    def cleanup() {
+        engine.close()
+    }
+
+    def "should import NDJSON lines and write result of each line"() {
+        given:
+        def uuid = UUID.randomUUID()
+        def input = """{"uuid":"$uuid","amount":"12.50"}
+{"amount":7}
+
+{"amount":-1}
+not json
+{"uuid":"$uuid","amount":1}
+"""
+        def output = new StringWriter()
+
+        when:
+        def lines = importStream.importAccounts(new BufferedReader(new StringReader(input)), AccountImportStream.Format.NDJSON, output)
+        def results = parse(output)
+
+        then:
+        lines == 6
+        results.keySet() == [1, 2, 4, 5, 6] as Set
+        results[1] == [line: 1, uuid: uuid.toString(), amount: 12.5]
+        results[2].amount == 7
+        results[2].uuid != null
+        results[4].error == "Should not be less then 0"
+        results[5].error != null
+        results[6].error == "account already present in storage"
+    }
+
+    def "should import CSV with optional header and uuid"() {
+        given:
+        def uuid = UUID.randomUUID()
+        def input = "uuid,amount\n$uuid, 3.25\n,4\n5\nwrong-uuid,1\n"
+        def output = new StringWriter()
+
+        when:
+        importStream.importAccounts(new BufferedReader(new StringReader(input)), AccountImportStream.Format.CSV, output)
+        def results = parse(output)
+
+        then:
+        results.keySet() == [2, 3, 4, 5] as Set
+        results[2] == [line: 2, uuid: uuid.toString(), amount: 3.25]
+        results[3].amount == 4
+        results[4].amount == 5
+        results[5].error != null
+        engine.createReader().getAccount(uuid).amount == 325
+    }
+
+    def "should take format from name, content type or file name"() {
+        expect:
+        AccountImportStream.Format.fromName(name) == format
+
+        where:
+        name                         | format
+        null                         | AccountImportStream.Format.NDJSON
+        "csv"                        | AccountImportStream.Format.CSV
+        "text/csv; charset=utf-8"    | AccountImportStream.Format.CSV
+        "accounts.csv"               | AccountImportStream.Format.CSV
+        "application/x-ndjson"       | AccountImportStream.Format.NDJSON
+    }
+
+    private static Map parse(StringWriter output) {
+        output.toString().readLines().collectEntries {
+            def result = new JsonSlurper().parseText(it)
+            [(result.line): result]
+        }
+    }
+}
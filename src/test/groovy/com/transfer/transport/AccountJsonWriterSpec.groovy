@@ -0,0 +1,87 @@
+package com.transfer.transport
+
+import com.google.gson.Gson
+import com.transfer.core.AccountHistoryEntry
+import com.transfer.core.AccountHistoryReader
+import com.transfer.core.AccountInfo
+import com.transfer.core.AccountStorageImpl
+import com.transfer.core.AccountResult
+import com.transfer.core.Money
+import com.transfer.ledger.Ledger
+import spock.lang.Specification
+
+class AccountJsonWriterSpec extends Specification {
+
+    def "should render amount as exact decimal"() {
+        given:
+        def writer = new AccountJsonWriter(new Money(scale))
+        def json = new StringBuilder()
+
+        when:
+        writer.appendAmount(json, amount)
+
+        then:
+        json.toString() == BigDecimal.valueOf(amount, scale).toPlainString()
+
+        where:
+        [amount, scale] << [[0L, 5L, -5L, 123L, 100L, -12345L, Long.MAX_VALUE, Long.MIN_VALUE], [0, 1, 2, 6, 18]].combinations()
+    }
+
+    def "should render account and transfer result"() {
+        given:
+        def writer = new AccountJsonWriter(Money.DEFAULT)
+        def from = new AccountInfo(UUID.randomUUID(), 7050)
+        def to = new AccountInfo(UUID.randomUUID(), 5)
+        def gson = new Gson()
+
+        when:
+        def account = gson.fromJson(writer.toJson(AccountResult.of(from)), Map)
+        def transfer = gson.fromJson(writer.toJson(AccountResult.of(from, to)), List)
+
+        then:
+        account == [uuid: from.uuid.toString(), amount: 70.5d]
+        transfer == [[uuid: from.uuid.toString(), amount: 70.5d], [uuid: to.uuid.toString(), amount: 0.05d]]
+    }
+
+    def "should render history page"() {
+        given:
+        def writer = new AccountJsonWriter(Money.DEFAULT)
+        def account = UUID.randomUUID()
+        def other = UUID.randomUUID()
+        def entries = [new AccountHistoryEntry(5, AccountHistoryEntry.Type.TRANSFER, 1000, other, -150, 1000),
+                       new AccountHistoryEntry(4, AccountHistoryEntry.Type.CREATE, 900, null, 1150, 1150)]
+
+        when:
+        def page = new Gson().fromJson(writer.toJson(account, new AccountHistoryReader.Page(entries, nextCursor)), Map)
+
+        then:
+        page.uuid == account.toString()
+        page.entries == [[sequence: 5d, type: "transfer", time: 1000d, counterparty: other.toString(), amount: -1.5d, balance: 10d],
+                         [sequence: 4d, type: "create", time: 900d, amount: 11.5d, balance: 11.5d]]
+        page.nextCursor == expectedCursor
+
+        where:
+        nextCursor | expectedCursor
+        4          | 4d
+        0          | null
+    }
+
+    def "should render ledger summary"() {
+        given:
+        def writer = new AccountJsonWriter(Money.DEFAULT)
+        def ledger = new Ledger([new AccountStorageImpl()], [], 1, 60)
+        def from = new AccountInfo(UUID.randomUUID(), 10000)
+        def to = new AccountInfo(UUID.randomUUID(), 0)
+        ledger.listener(0).onAccountCreated(from)
+        from.amount = 7500
+        ledger.listener(0).onDebit(1L, from, to.uuid, 2500)
+        ledger.listener(0).onBatchProcessed()
+
+        when:
+        def summary = new Gson().fromJson(writer.toJson(ledger.summary, 1), Map)
+
+        then:
+        summary == [accounts: 1d, balance: 75d, created: 100d, inFlight: 25d, balanced: true, transfers: 1d, volume: 25d,
+                    window: [seconds: 60d, transfers: 1d, volume: 25d], top: [[uuid: from.uuid.toString(), amount: 75d]], topExact: true]
+    }
+}
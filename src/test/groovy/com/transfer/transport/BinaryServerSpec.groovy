@@ -0,0 +1,88 @@
+package com.transfer.transport
+
+import com.transfer.core.AccountEventProcessorImpl
+import com.transfer.core.AccountStorageImpl
+import com.transfer.core.IdleStrategies
+import com.transfer.core.ShardedAccountEngine
+import spock.lang.Shared
+import spock.lang.Specification
+
+class BinaryServerSpec extends Specification {
+
+    static final int PORT = 18090
+
+    @Shared
+    def engine = new ShardedAccountEngine(2, 1024, { shard -> new AccountStorageImpl() }, IdleStrategies.&backoff,
+            AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0)
+    @Shared
+    def server
+    @Shared
+    def client
+
+    def setupSpec() {
+        engine.enableIdempotency(1024, 0)
+        server = new BinaryServer(engine.publisher, PORT)
+        engine.start()
+        server.start()
+        client = new BinaryClient("localhost", PORT)
+    }
+
+    def cleanupSpec() {
+        client.close()
+        server.close()
+        engine.close()
+    }
+
+    def "should answer pipelined requests matched by correlation id"() {
+        when: "many creates are sent in one write"
+        (1..200).each { client.create(it, it * 100) }
+        client.flush()
+        def created = (1..200).collect { client.read() }.collectEntries { [(it.correlationId): it.result] }
+
+        then:
+        created.size() == 200
+        (1..200).every { created[it as long].amount == it * 100 }
+
+        when: "transfer and info of created accounts"
+        def from = created[1L].account
+        def to = created[2L].account
+        client.transfer(300, from, to, 50)
+        client.flush()
+        def transfer = client.read()
+        client.info(301, to)
+        client.flush()
+        def info = client.read()
+
+        then:
+        transfer.correlationId == 300
+        transfer.result.amount == 50
+        transfer.result.secondAccount == to
+        transfer.result.secondAmount == 250
+        info.correlationId == 301
+        info.result.amount == 250
+    }
+
+    def "should return processing errors and idempotent results"() {
+        given:
+        client.create(1, 10)
+        client.flush()
+        def account = client.read().result.account
+        client.create(1, 0)
+        client.flush()
+        def other = client.read().result.account
+
+        when:
+        client.transfer(2, account, other, 100)
+        client.info(3, UUID.randomUUID())
+        client.create(4, 5, 0, 77)
+        client.create(5, 5, 0, 77)
+        client.flush()
+        def responses = (1..4).collect { client.read() }.collectEntries { [(it.correlationId): it] }
+
+        then:
+        responses[2L].result == null
+        responses[2L].error == "Not enough money for transfer"
+        responses[3L].error == "account not present"
+        responses[4L].result.account == responses[5L].result.account
+    }
+}
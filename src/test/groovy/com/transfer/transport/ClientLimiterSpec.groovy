@@ -0,0 +1,32 @@
+package com.transfer.transport
+
+import spock.lang.Specification
+
+class ClientLimiterSpec extends Specification {
+
+    def limiter = new ClientLimiter(2)
+
+    def "should cap requests in flight per client"() {
+        expect:
+        limiter.tryAcquire("a")
+        limiter.tryAcquire("a")
+        !limiter.tryAcquire("a")
+        limiter.tryAcquire("b")
+        limiter.getInFlight("a") == 2
+        limiter.rejectedCount == 1
+
+        when:
+        limiter.release("a")
+        then:
+        limiter.tryAcquire("a")
+    }
+
+    def "should forget client without requests in flight"() {
+        when:
+        limiter.tryAcquire("a")
+        limiter.release("a")
+        then:
+        limiter.getInFlight("a") == 0
+        limiter.inFlight.isEmpty()
+    }
+}
@@ -0,0 +1,73 @@
+package com.transfer.transport
+
+import com.transfer.core.AccountEventProcessorImpl
+import com.transfer.core.AccountEventPublisherImpl
+import com.transfer.core.AccountStorageImpl
+import com.transfer.core.AdmissionPolicy
+import com.transfer.core.Money
+import com.transfer.core.event.AccountCreateEvent
+import groovyx.net.http.HttpResponseException
+import groovyx.net.http.RESTClient
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+
+import java.util.concurrent.ArrayBlockingQueue
+
+import static groovyx.net.http.ContentType.JSON
+
+@Stepwise
+class HttpAdmissionSpec extends Specification {
+
+    @Shared
+            eventBus = new ArrayBlockingQueue<>(4)
+    @Shared
+            accountEventPublisher = new AccountEventPublisherImpl(eventBus, null, new AdmissionPolicy(4, 1.0, 0.75, 0.5))
+    @Shared
+            accountEventProcessor = new AccountEventProcessorImpl(new AccountStorageImpl(), eventBus)
+    @Shared
+            httpServer = new HttpServer(accountEventPublisher, Money.DEFAULT, null, 1, null, new ClientLimiter(16))
+    @Shared
+            client = new RESTClient('http://localhost:80/')
+
+    def setupSpec() {
+        httpServer.start()
+    }
+
+    def cleanupSpec() {
+        httpServer.close()
+        accountEventProcessor.close()
+    }
+
+    def "should reject low and normal priority requests above their high-water marks with 429"() {
+        given: "processor is not started and queue has 3 of 4 events"
+        3.times { eventBus.offer(new AccountCreateEvent({ _ -> }, { _ -> }, 1)) }
+
+        when:
+        client.get(path: '/account/info', query: [account: UUID.randomUUID().toString()])
+        then:
+        HttpResponseException info = thrown(HttpResponseException)
+        info.response.status == 429
+        info.response.headers['Retry-After'].value == '1'
+
+        when:
+        client.post(path: '/account/create', body: [amount: '1'], requestContentType: JSON)
+        then:
+        HttpResponseException create = thrown(HttpResponseException)
+        create.response.status == 429
+        accountEventPublisher.rejectedCount == 2
+    }
+
+    def "should admit transfer while queue has room"() {
+        given:
+        accountEventProcessor.start()
+
+        when: "transfer between not existing accounts is admitted and processed"
+        client.post(path: '/account/transfer', body: [fromAccount: UUID.randomUUID().toString(), toAccount: UUID.randomUUID().toString(), amount: '1'],
+                requestContentType: JSON)
+        then:
+        HttpResponseException e = thrown(HttpResponseException)
+        e.response.status == 500
+        accountEventPublisher.rejectedCount == 2
+    }
+}
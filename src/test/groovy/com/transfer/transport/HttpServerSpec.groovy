@@ -74,6 +74,18 @@ class HttpServerSpec extends Specification {
         assert e.response.status == 500: 'response status should be 500 because of serve side exception'
     }
 
+    def "should not create account with amount which can't be represented exactly"() {
+        given:
+        def amount = '0.001'
+
+        when:
+        client.post(path: '/account/create', body: [amount: amount], requestContentType: JSON)
+
+        then: 'server returns 500 code (server error)'
+        HttpResponseException e = thrown(HttpResponseException)
+        assert e.response.status == 500: 'response status should be 500 because amount has more fraction digits than money scale'
+    }
+
     def "should not create account with missed amount parameter"() {
         when:
         client.post(path: '/account/create')
@@ -237,4 +249,31 @@ class HttpServerSpec extends Specification {
         HttpResponseException e = thrown(HttpResponseException)
         assert e.response.status == 500: 'response status should be 500 because of non existing account'
     }
+
+    def "should apply batch of transfers and return result of each one"() {
+        given: 'two accounts'
+        def uuidFrom = client.post(path: '/account/create', body: [amount: '100'], requestContentType: JSON).data.uuid
+        def uuidTo = client.post(path: '/account/create', body: [amount: '0'], requestContentType: JSON).data.uuid
+
+        when: 'atomic batch with failed last transfer'
+        client.post(path: '/account/transfer/batch',
+                body: [transfers: [[fromAccount: uuidFrom, toAccount: uuidTo, amount: '60'],
+                                   [fromAccount: uuidFrom, toAccount: uuidTo, amount: '60']]], requestContentType: JSON)
+        then: 'nothing is applied'
+        HttpResponseException e = thrown(HttpResponseException)
+        e.response.status == 500
+        client.get(path: '/account/info', query: [account: uuidFrom]).data.amount == 100
+
+        when: 'the same batch is applied per transfer'
+        def response = client.post(path: '/account/transfer/batch',
+                body: [atomic   : false,
+                       transfers: [[fromAccount: uuidFrom, toAccount: uuidTo, amount: '60'],
+                                   [fromAccount: uuidFrom, toAccount: uuidTo, amount: '60.5']]], requestContentType: JSON)
+        then: 'first transfer is applied and second one is reported as failed'
+        response.status == 200
+        response.data.size() == 2
+        response.data[0][0].amount == 40
+        response.data[0][1].amount == 60
+        response.data[1].error == 'Not enough money for transfer'
+    }
 }
@@ -0,0 +1,84 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountReadViewTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountReadViewTest.class);
+
+    private static final int SHARDS = 2;
+    private static final int TRANSFERS = 2000;
+    private static final int READERS = 4;
+
+    private final ShardedAccountEngine accountEngine = new ShardedAccountEngine(SHARDS, 1024, shard -> new AccountStorageImpl(),
+            IdleStrategies::backoff, AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0);
+    private final AccountReader accountReader = accountEngine.createReader();
+    private final AccountEventPublisher accountEventPublisher = accountEngine.getPublisher();
+    private final ExecutorService executorService = Executors.newFixedThreadPool(READERS);
+
+    @BeforeClass
+    public void init() {
+        accountEngine.start();
+    }
+
+    @AfterClass
+    public void close() {
+        accountEngine.close();
+        executorService.shutdown();
+    }
+
+    @Test
+    public void shouldReadOwnWritesWhileOtherThreadsRead() throws Exception {
+        UUID first = createAccount(TRANSFERS);
+        UUID second = createAccount(0);
+        assertThat(accountReader.getAccount(first).getAmount()).isEqualTo(TRANSFERS);
+
+        //readers see every balance between initial and final one, never anything else
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        CompletableFuture<?>[] readers = new CompletableFuture<?>[READERS];
+        for (int i = 0; i < READERS; i++) {
+            readers[i] = CompletableFuture.runAsync(() -> {
+                while (running.get()) {
+                    assertThat(accountReader.getAccount(first).getAmount()).isBetween(0L, (long) TRANSFERS);
+                    reads.incrementAndGet();
+                    Thread.yield();
+                }
+            }, executorService);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= TRANSFERS; i++) {
+            CompletableFuture<AccountResult> future = new CompletableFuture<>();
+            accountEventPublisher.publishEvent(new AccountTransferEvent(future::complete, future::completeExceptionally, first, second, 1));
+            future.get(10, TimeUnit.SECONDS);
+            //result is completed only after both shards published their change
+            assertThat(accountReader.getAccount(first).getAmount()).isEqualTo(TRANSFERS - i);
+            assertThat(accountReader.getAccount(second).getAmount()).isEqualTo(i);
+        }
+        running.set(false);
+        CompletableFuture.allOf(readers).get(10, TimeUnit.SECONDS);
+
+        LOGGER.info("{} reads by {} threads during {} transfers in {} ms", reads.get(), READERS, TRANSFERS,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private UUID createAccount(long amount) throws Exception {
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountCreateEvent(future::complete, future::completeExceptionally, amount));
+        return future.get().getAccount();
+    }
+}
@@ -0,0 +1,78 @@
+package com.transfer.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Compares heap used per account and lookup latency of storages, e.g. for 10M accounts run with -Dstorage.accounts=10000000
+ */
+public class AccountStorageFootprintTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountStorageFootprintTest.class);
+
+    private static final int ACCOUNTS = Integer.getInteger("storage.accounts", 500_000);
+    private static final int LOOKUPS = 2_000_000;
+
+    @Test
+    public void primitiveStorageShouldUseLessMemory() {
+        UUID[] accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = UUID.randomUUID();
+        }
+
+        long hashMapBytes = measure("hash-map", new AccountStorageImpl(), accounts);
+        long primitiveBytes = measure("primitive", new PrimitiveAccountStorage(), accounts);
+
+        assertThat(primitiveBytes).isLessThan(hashMapBytes);
+    }
+
+    private long measure(String name, AccountStorage<AccountInfo, UUID> storage, UUID[] accounts) {
+        long before = usedMemory();
+        for (UUID uuid : accounts) {
+            //accounts get their own UUID instances, as it happens when they are created by processor
+            storage.put(new AccountInfo(new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()), 100_000));
+        }
+        long bytes = usedMemory() - before;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += storage.getByUuid(accounts[random.nextInt(accounts.length)]) == null ? 0 : 1;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += storage.getByUuid(accounts[random.nextInt(accounts.length)]) == null ? 0 : 1;
+        }
+        long lookupNanos = (System.nanoTime() - start) / LOOKUPS;
+
+        if (storage instanceof PrimitiveAccountStorage) {
+            //lookup through primitive api, without AccountInfo copy
+            PrimitiveAccountStorage primitiveStorage = (PrimitiveAccountStorage) storage;
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                UUID uuid = accounts[random.nextInt(accounts.length)];
+                found += primitiveStorage.balance(primitiveStorage.indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())) > 0 ? 1 : 0;
+            }
+            LOGGER.info("Storage {}: indexOf and balance {} ns", name, (System.nanoTime() - start) / LOOKUPS);
+        }
+
+        LOGGER.info("Storage {}: {} accounts, {} bytes per account, getByUuid {} ns",
+                name, storage.size(), bytes / accounts.length, lookupNanos);
+        assertThat(found).isEqualTo(storage instanceof PrimitiveAccountStorage ? 3L * LOOKUPS : 2L * LOOKUPS);
+        return bytes;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,84 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountInfoEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchEventProcessorTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchEventProcessorTest.class);
+
+    private static final int TRANSFERS = 50000;
+    private static final int PRODUCERS = 4;
+
+    @DataProvider
+    public Object[][] batchSizes() {
+        return new Object[][]{{1}, {16}, {64}, {256}, {1024}};
+    }
+
+    @Test(dataProvider = "batchSizes")
+    public void shouldKeepBalancesAndReportThroughput(int batchSize) throws Exception {
+        Queue<AccountEvent> eventBus = new ManyToOneConcurrentArrayQueue<>(4096);
+        AccountEventPublisher accountEventPublisher = new AccountEventPublisherImpl(eventBus);
+        ExecutorService executorService = Executors.newFixedThreadPool(PRODUCERS);
+        try (AccountEventProcessor accountEventProcessor = new AccountEventProcessorImpl(new AccountStorageImpl(), eventBus,
+                IdleStrategies.backoff(), batchSize, TimeUnit.MICROSECONDS.toNanos(50))) {
+            accountEventProcessor.start();
+            UUID first = createAccount(accountEventPublisher, TRANSFERS);
+            UUID second = createAccount(accountEventPublisher, TRANSFERS);
+
+            long start = System.nanoTime();
+            CompletableFuture<?>[] producers = new CompletableFuture<?>[PRODUCERS];
+            for (int i = 0; i < PRODUCERS; i++) {
+                producers[i] = CompletableFuture.runAsync(() -> {
+                    //producers do not wait for each result, so processor could drain many events at once
+                    CompletableFuture<?>[] results = new CompletableFuture<?>[TRANSFERS / PRODUCERS];
+                    for (int j = 0; j < results.length; j++) {
+                        boolean forward = j % 2 == 0;
+                        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+                        results[j] = future;
+                        if (!accountEventPublisher.publishEvent(new AccountTransferEvent(future::complete, future::completeExceptionally,
+                                forward ? first : second, forward ? second : first, 1))) {
+                            future.completeExceptionally(new IllegalStateException("Queue is full"));
+                        }
+                    }
+                    CompletableFuture.allOf(results).join();
+                }, executorService);
+            }
+            CompletableFuture.allOf(producers).get(1, TimeUnit.MINUTES);
+            long elapsedNanos = System.nanoTime() - start;
+
+            LOGGER.info("Batch size {}: {} events/sec with {} producers", batchSize,
+                    TRANSFERS * TimeUnit.SECONDS.toNanos(1) / elapsedNanos, PRODUCERS);
+
+            assertThat(getAmount(accountEventPublisher, first)).isEqualTo(TRANSFERS);
+            assertThat(getAmount(accountEventPublisher, second)).isEqualTo(TRANSFERS);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private UUID createAccount(AccountEventPublisher accountEventPublisher, long amount) throws Exception {
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountCreateEvent(future::complete, future::completeExceptionally, amount));
+        return future.get().getAccount();
+    }
+
+    private long getAmount(AccountEventPublisher accountEventPublisher, UUID uuid) throws Exception {
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountInfoEvent(future::complete, future::completeExceptionally, uuid));
+        return future.get().getAmount();
+    }
+}
@@ -1,6 +1,5 @@
 package com.transfer.core;
 
-import com.google.gson.Gson;
 import com.transfer.core.event.AccountCreateEvent;
 import com.transfer.core.event.AccountEvent;
 import com.transfer.core.event.AccountInfoEvent;
@@ -10,8 +9,6 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import static org.assertj.core.api.Assertions.assertThat;
 
-import java.math.BigDecimal;
-import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -23,7 +20,6 @@ public class ConcurrencyEventProcessorTest {
     private final AccountEventPublisherImpl accountEventPublisher = new AccountEventPublisherImpl(eventBus);
     private final AccountEventProcessor accountEventProcessor = new AccountEventProcessorImpl(accountStorage, eventBus);
     private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-    private final Gson gson = new Gson();
 
     @BeforeClass
     public void init() {
@@ -38,17 +34,17 @@ public class ConcurrencyEventProcessorTest {
     @Test
     public void shouldCorrectServeConcurrentRequests() throws Exception {
         //Creating 2 accounts and saving it UUIDs
-        BigDecimal amountFirst = new BigDecimal(200000);
-        CompletableFuture<String> futureFirst = new CompletableFuture<>();
+        long amountFirst = Money.DEFAULT.parse("200000");
+        CompletableFuture<AccountResult> futureFirst = new CompletableFuture<>();
         AccountCreateEvent accountCreateEventFirst = new AccountCreateEvent(futureFirst::complete, futureFirst::completeExceptionally, amountFirst);
         accountEventPublisher.publishEvent(accountCreateEventFirst);
-        UUID uuidFirst = UUID.fromString((String) gson.fromJson(futureFirst.get(), Map.class).get("uuid"));
+        UUID uuidFirst = futureFirst.get().getAccount();
 
-        BigDecimal amountSecond = new BigDecimal(300000);
-        CompletableFuture<String> futureSecond = new CompletableFuture<>();
+        long amountSecond = Money.DEFAULT.parse("300000");
+        CompletableFuture<AccountResult> futureSecond = new CompletableFuture<>();
         AccountCreateEvent accountCreateEventSecond = new AccountCreateEvent(futureSecond::complete, futureSecond::completeExceptionally, amountSecond);
         accountEventPublisher.publishEvent(accountCreateEventSecond);
-        UUID uuidSecond = UUID.fromString((String) gson.fromJson(futureSecond.get(), Map.class).get("uuid"));
+        UUID uuidSecond = futureSecond.get().getAccount();
 
 
         AtomicInteger totalNumberOfRequest = new AtomicInteger(10000);
@@ -72,8 +68,8 @@ public class ConcurrencyEventProcessorTest {
                         toAccount = uuidFirst;
                     }
 
-                    CompletableFuture<String> future = new CompletableFuture<>();
-                    AccountTransferEvent accountTransferEvent = new AccountTransferEvent(future::complete, future::completeExceptionally, fromAccount, toAccount, new BigDecimal(1));
+                    CompletableFuture<AccountResult> future = new CompletableFuture<>();
+                    AccountTransferEvent accountTransferEvent = new AccountTransferEvent(future::complete, future::completeExceptionally, fromAccount, toAccount, Money.DEFAULT.parse("1"));
                     accountEventPublisher.publishEvent(accountTransferEvent);
                     try {
                         future.get();
@@ -91,11 +87,11 @@ public class ConcurrencyEventProcessorTest {
         futureFirst = new CompletableFuture<>();
         AccountInfoEvent accountInfoEventFirst = new AccountInfoEvent(futureFirst::complete, futureFirst::completeExceptionally, uuidFirst);
         accountEventPublisher.publishEvent(accountInfoEventFirst);
-        assertThat(amountFirst).isEqualTo(new BigDecimal((Double) gson.fromJson(futureFirst.get(), Map.class).get("amount")));
+        assertThat(amountFirst).isEqualTo(futureFirst.get().getAmount());
 
         futureSecond = new CompletableFuture<>();
         AccountInfoEvent accountInfoEventSecond = new AccountInfoEvent(futureSecond::complete, futureSecond::completeExceptionally, uuidSecond);
         accountEventPublisher.publishEvent(accountInfoEventSecond);
-        assertThat(amountSecond).isEqualTo(new BigDecimal((Double) gson.fromJson(futureSecond.get(), Map.class).get("amount")));
+        assertThat(amountSecond).isEqualTo(futureSecond.get().getAmount());
     }
 }
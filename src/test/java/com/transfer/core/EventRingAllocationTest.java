@@ -0,0 +1,159 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountEventType;
+import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Allocation profile of publishing through event queue and through ring of reusable slots.
+ * Bytes are taken from per thread allocation counters of the JVM, the same counters which are sampled by JFR allocation events,
+ * so test shows how much garbage each event leaves on publisher thread and on processor thread
+ */
+public class EventRingAllocationTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventRingAllocationTest.class);
+
+    private static final int WARM_UP_TRANSFERS = 200_000;
+    private static final int TRANSFERS = 200_000;
+
+    private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final AtomicLong completed = new AtomicLong();
+    private final Consumer<AccountResult> resultConsumer = result -> completed.incrementAndGet();
+    private final Consumer<Throwable> errorConsumer = error -> completed.incrementAndGet();
+    private volatile long processorThreadId;
+
+    @Test
+    public void shouldNotAllocateOnPublisherThreadWithRing() throws Exception {
+        Queue<AccountEvent> eventBus = new ManyToOneConcurrentArrayQueue<>(1024);
+        AccountEventRing ring = new AccountEventRing(1024);
+        AccountEventPublisher publisher = new AccountEventPublisherImpl(eventBus, ring);
+        try (AccountEventProcessorImpl processor = new AccountEventProcessorImpl(new AccountStorageImpl(), eventBus,
+                IdleStrategies.backoff(), AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0, AccountShardRouter.single(), ring)) {
+            processor.addListener(new AccountEventListener() {
+                @Override
+                public void onBatchProcessed() {
+                    processorThreadId = Thread.currentThread().getId();
+                }
+            });
+            processor.start();
+            UUID first = createAccount(publisher);
+            UUID second = createAccount(publisher);
+
+            publishToQueue(publisher, first, second, WARM_UP_TRANSFERS);
+            publishToRing(publisher, first, second, WARM_UP_TRANSFERS);
+
+            long[] queueBytes = allocatedBytes(() -> publishToQueue(publisher, first, second, TRANSFERS));
+            long[] ringBytes = allocatedBytes(() -> publishToRing(publisher, first, second, TRANSFERS));
+
+            LOGGER.info("Queue: {} bytes per event on publisher thread, {} bytes per event on processor thread",
+                    queueBytes[0] / TRANSFERS, queueBytes[1] / TRANSFERS);
+            LOGGER.info("Ring: {} bytes per event on publisher thread, {} bytes per event on processor thread",
+                    ringBytes[0] / TRANSFERS, ringBytes[1] / TRANSFERS);
+
+            //queue path allocates event object per transfer, ring path only reuses slots
+            assertThat(queueBytes[0] / TRANSFERS).isGreaterThanOrEqualTo(24);
+            assertThat(ringBytes[0] / TRANSFERS).isLessThan(4);
+            //processor allocates only immutable result for each event
+            assertThat(ringBytes[1] / TRANSFERS).isLessThan(64);
+        }
+    }
+
+    @Test
+    public void shouldNotAllocateAccountsOnProcessorThreadWithPrimitiveStorage() throws Exception {
+        Queue<AccountEvent> eventBus = new ManyToOneConcurrentArrayQueue<>(1024);
+        AccountEventRing ring = new AccountEventRing(1024);
+        AccountEventPublisher publisher = new AccountEventPublisherImpl(eventBus, ring);
+        //copies returned by lookups could be removed by escape analysis, so they are counted as well as bytes
+        AtomicLong copies = new AtomicLong();
+        PrimitiveAccountStorage storage = new PrimitiveAccountStorage() {
+            @Override
+            public AccountInfo getByUuid(UUID uuid) {
+                copies.incrementAndGet();
+                return super.getByUuid(uuid);
+            }
+        };
+        try (AccountEventProcessorImpl processor = new AccountEventProcessorImpl(storage, eventBus,
+                IdleStrategies.backoff(), AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0, AccountShardRouter.single(), ring)) {
+            processor.start();
+            //processor thread is taken from completion of create, listener would make processor create accounts for it
+            UUID first = createAccount(publisher);
+            UUID second = createAccount(publisher);
+
+            publishToRing(publisher, first, second, WARM_UP_TRANSFERS);
+            long[] ringBytes = allocatedBytes(() -> publishToRing(publisher, first, second, TRANSFERS));
+
+            LOGGER.info("Primitive storage: {} bytes per event on processor thread", ringBytes[1] / TRANSFERS);
+            //balances are checked and changed in place, processor allocates only immutable result for each event
+            assertThat(copies.get()).isZero();
+            assertThat(ringBytes[1] / TRANSFERS).isLessThan(64);
+        }
+    }
+
+    private long[] allocatedBytes(Runnable publishing) {
+        long publisherThreadId = Thread.currentThread().getId();
+        long publisherBefore = threadBean.getThreadAllocatedBytes(publisherThreadId);
+        long processorBefore = threadBean.getThreadAllocatedBytes(processorThreadId);
+        publishing.run();
+        return new long[]{
+                threadBean.getThreadAllocatedBytes(publisherThreadId) - publisherBefore,
+                threadBean.getThreadAllocatedBytes(processorThreadId) - processorBefore};
+    }
+
+    private void publishToQueue(AccountEventPublisher publisher, UUID first, UUID second, int transfers) {
+        long expected = completed.get() + transfers;
+        for (int i = 0; i < transfers; i++) {
+            boolean forward = i % 2 == 0;
+            while (!publisher.publishEvent(new AccountTransferEvent(resultConsumer, errorConsumer,
+                    forward ? first : second, forward ? second : first, 1))) {
+                Thread.yield();
+            }
+        }
+        awaitCompleted(expected);
+    }
+
+    private void publishToRing(AccountEventPublisher publisher, UUID first, UUID second, int transfers) {
+        long expected = completed.get() + transfers;
+        for (int i = 0; i < transfers; i++) {
+            boolean forward = i % 2 == 0;
+            AccountEventSlot slot;
+            while ((slot = publisher.claim(AccountEventType.TRANSFER, forward ? first : second)) == null) {
+                Thread.yield();
+            }
+            slot.setTransfer(forward ? first : second, forward ? second : first, 1, resultConsumer, errorConsumer);
+            publisher.publish(slot);
+        }
+        awaitCompleted(expected);
+    }
+
+    private void awaitCompleted(long expected) {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (completed.get() < expected) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.yield();
+        }
+    }
+
+    private UUID createAccount(AccountEventPublisher publisher) throws Exception {
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        publisher.publishEvent(new AccountCreateEvent(result -> {
+            processorThreadId = Thread.currentThread().getId();
+            future.complete(result);
+        }, future::completeExceptionally, 1_000_000));
+        return future.get().getAccount();
+    }
+}
@@ -0,0 +1,111 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdleStrategyProcessorTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdleStrategyProcessorTest.class);
+
+    private static final long IDLE_MEASURE_MILLIS = 500;
+    private static final int TRANSFERS = 20000;
+    private static final int PRODUCERS = 2;
+
+    @DataProvider
+    public Object[][] idleStrategies() {
+        return new Object[][]{
+                {IdleStrategies.BUSY_SPIN},
+                {IdleStrategies.YIELDING},
+                {IdleStrategies.BACKOFF},
+                {IdleStrategies.PARK}
+        };
+    }
+
+    @Test(dataProvider = "idleStrategies")
+    public void shouldReportIdleCpuUsage(String idleStrategy) throws Exception {
+        Queue<AccountEvent> eventBus = new ManyToOneConcurrentArrayQueue<>(1024);
+        try (AccountEventProcessor accountEventProcessor = newProcessor(idleStrategy, eventBus)) {
+            accountEventProcessor.start();
+            //let backoff strategies reach their steady state
+            Thread.sleep(100);
+
+            double cpuUsage = measureCpuUsage();
+            LOGGER.info("Idle strategy {}: idle cpu usage {}%", idleStrategy, String.format("%.1f", cpuUsage * 100));
+
+            if (IdleStrategies.PARK.equals(idleStrategy) || IdleStrategies.BACKOFF.equals(idleStrategy)) {
+                assertThat(cpuUsage).isLessThan(0.3);
+            }
+        }
+    }
+
+    @Test(dataProvider = "idleStrategies")
+    public void shouldReportThroughputUnderLoad(String idleStrategy) throws Exception {
+        Queue<AccountEvent> eventBus = new ManyToOneConcurrentArrayQueue<>(1024);
+        AccountEventPublisher accountEventPublisher = new AccountEventPublisherImpl(eventBus);
+        ExecutorService executorService = Executors.newFixedThreadPool(PRODUCERS);
+        try (AccountEventProcessor accountEventProcessor = newProcessor(idleStrategy, eventBus)) {
+            accountEventProcessor.start();
+            UUID first = createAccount(accountEventPublisher, TRANSFERS);
+            UUID second = createAccount(accountEventPublisher, TRANSFERS);
+
+            AtomicInteger remaining = new AtomicInteger(TRANSFERS);
+            long start = System.nanoTime();
+            CompletableFuture<?>[] producers = new CompletableFuture<?>[PRODUCERS];
+            for (int i = 0; i < PRODUCERS; i++) {
+                producers[i] = CompletableFuture.runAsync(() -> {
+                    int current;
+                    while ((current = remaining.decrementAndGet()) >= 0) {
+                        boolean forward = current % 2 == 0;
+                        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+                        accountEventPublisher.publishEvent(new AccountTransferEvent(future::complete, future::completeExceptionally,
+                                forward ? first : second, forward ? second : first, 1));
+                        future.join();
+                    }
+                }, executorService);
+            }
+            CompletableFuture.allOf(producers).get(1, TimeUnit.MINUTES);
+            long elapsedNanos = System.nanoTime() - start;
+
+            LOGGER.info("Idle strategy {}: {} transfers/sec with {} producers", idleStrategy,
+                    TRANSFERS * TimeUnit.SECONDS.toNanos(1) / elapsedNanos, PRODUCERS);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private AccountEventProcessor newProcessor(String idleStrategy, Queue<AccountEvent> eventBus) {
+        return new AccountEventProcessorImpl(new AccountStorageImpl(), eventBus, IdleStrategies.create(idleStrategy, TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    private UUID createAccount(AccountEventPublisher accountEventPublisher, long amount) throws Exception {
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountCreateEvent(future::complete, future::completeExceptionally, amount));
+        return future.get().getAccount();
+    }
+
+    /*
+     * Share of one core consumed by the whole process during measurement window, processor thread is the only active one
+     */
+    private double measureCpuUsage() throws InterruptedException {
+        com.sun.management.OperatingSystemMXBean osBean =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpuStart = osBean.getProcessCpuTime();
+        long wallStart = System.nanoTime();
+        Thread.sleep(IDLE_MEASURE_MILLIS);
+        return (double) (osBean.getProcessCpuTime() - cpuStart) / (System.nanoTime() - wallStart);
+    }
+}
@@ -0,0 +1,120 @@
+package com.transfer.core;
+
+import com.transfer.core.event.AccountCreateEvent;
+import com.transfer.core.event.AccountInfoEvent;
+import com.transfer.core.event.AccountTransferEvent;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ShardedAccountEngineTest {
+
+    private static final int SHARDS = 4;
+    private static final int ACCOUNTS = 32;
+
+    private final ShardedAccountEngine accountEngine = new ShardedAccountEngine(SHARDS, 1024, shard -> new AccountStorageImpl(),
+            IdleStrategies::backoff, AccountEventProcessorImpl.DEFAULT_BATCH_SIZE, 0);
+    private final AccountEventPublisher accountEventPublisher = accountEngine.getPublisher();
+    private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
+
+    @BeforeClass
+    public void init() {
+        accountEngine.start();
+    }
+
+    @AfterClass
+    public void close() {
+        accountEngine.close();
+        executorService.shutdown();
+    }
+
+    @Test
+    public void shouldConserveMoneyForConcurrentTransfersBetweenShards() throws Exception {
+        List<UUID> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(createAccount(100));
+        }
+        assertThat(accounts.stream().mapToInt(accountEngine.getRouter()::shardOf).distinct().count()).isGreaterThan(1);
+
+        //random transfers in all directions, some of them fail because of not enough money
+        AtomicInteger totalNumberOfRequest = new AtomicInteger(20000);
+        int producers = Runtime.getRuntime().availableProcessors() + 1;
+        CountDownLatch latch = new CountDownLatch(producers);
+        for (int i = 0; i < producers; i++) {
+            executorService.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (totalNumberOfRequest.decrementAndGet() >= 0) {
+                    CompletableFuture<AccountResult> future = new CompletableFuture<>();
+                    accountEventPublisher.publishEvent(new AccountTransferEvent(future::complete, future::completeExceptionally,
+                            accounts.get(random.nextInt(ACCOUNTS)), accounts.get(random.nextInt(ACCOUNTS)), random.nextInt(1, 50)));
+                    try {
+                        future.get();
+                    } catch (Exception ignored) {
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+
+        long total = 0;
+        for (UUID account : accounts) {
+            total += getAmount(account);
+        }
+        assertThat(total).isEqualTo(100 * ACCOUNTS);
+    }
+
+    @Test
+    public void shouldCompleteCrossShardTransferWithBothAccounts() throws Exception {
+        UUID from = createAccount(100);
+        UUID to;
+        do {
+            to = createAccount(10);
+        } while (accountEngine.getRouter().shardOf(to) == accountEngine.getRouter().shardOf(from));
+
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountTransferEvent(future::complete, future::completeExceptionally, from, to, 30));
+        AccountResult result = future.get();
+
+        assertThat(result.getAccount()).isEqualTo(from);
+        assertThat(result.getAmount()).isEqualTo(70);
+        assertThat(result.getSecondAccount()).isEqualTo(to);
+        assertThat(result.getSecondAmount()).isEqualTo(40);
+    }
+
+    @Test
+    public void shouldRefundCrossShardTransferToMissingAccount() throws Exception {
+        UUID from = createAccount(100);
+        UUID missing;
+        do {
+            missing = UUID.randomUUID();
+        } while (accountEngine.getRouter().shardOf(missing) == accountEngine.getRouter().shardOf(from));
+
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountTransferEvent(future::complete, future::completeExceptionally, from, missing, 30));
+
+        assertThat(catchThrowable(future::get)).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(getAmount(from)).isEqualTo(100);
+    }
+
+    private UUID createAccount(long amount) throws Exception {
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountCreateEvent(future::complete, future::completeExceptionally, amount));
+        return future.get().getAccount();
+    }
+
+    private long getAmount(UUID account) throws Exception {
+        CompletableFuture<AccountResult> future = new CompletableFuture<>();
+        accountEventPublisher.publishEvent(new AccountInfoEvent(future::complete, future::completeExceptionally, account));
+        return future.get().getAmount();
+    }
+}
@@ -0,0 +1,113 @@
+package com.transfer.snapshot;
+
+import com.transfer.core.AccountInfo;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.AccountStorageImpl;
+import com.transfer.journal.EventJournal;
+import com.transfer.journal.JournalRecovery;
+import com.transfer.journal.JournalSyncPolicy;
+import com.transfer.journal.PendingTransfers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Compares startup from journal only with startup from snapshot, e.g. for 10M accounts run with -Drecovery.accounts=10000000
+ */
+public class RecoveryTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecoveryTest.class);
+
+    private static final int ACCOUNTS = Integer.getInteger("recovery.accounts", 100_000);
+    //every account gets some transfers, so journal is longer than snapshot, as it is in real life
+    private static final int TRANSFERS_PER_ACCOUNT = 4;
+
+    private Path directory;
+    private SnapshotStore store;
+    private UUID[] accounts;
+    private long total;
+
+    @BeforeClass
+    public void writeJournalAndSnapshot() throws Exception {
+        directory = Files.createTempDirectory("recovery");
+        store = new SnapshotStore(directory.resolve("snapshot"));
+        accounts = new UUID[ACCOUNTS];
+        AccountInfo[] infos = new AccountInfo[ACCOUNTS];
+        try (EventJournal journal = newJournal()) {
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accounts[i] = UUID.randomUUID();
+                infos[i] = new AccountInfo(accounts[i], 1000);
+                journal.onAccountCreated(infos[i]);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < ACCOUNTS * TRANSFERS_PER_ACCOUNT; i++) {
+                journal.onTransfer(infos[random.nextInt(ACCOUNTS)], infos[random.nextInt(ACCOUNTS)], 1);
+            }
+            journal.onBatchProcessed();
+
+            try (SnapshotWriter writer = new SnapshotWriter(store, List.of(journal), AccountStorageImpl::new)) {
+                long start = System.nanoTime();
+                writer.snapshot();
+                LOGGER.info("Snapshot of {} accounts is written in {} ms", ACCOUNTS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+        total = 1000L * ACCOUNTS;
+    }
+
+    @AfterClass
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void shouldRecoverFromJournal() {
+        AccountStorage<AccountInfo, UUID> storage = new AccountStorageImpl();
+        long start = System.nanoTime();
+        try (EventJournal journal = newJournal()) {
+            new JournalRecovery(List.of(journal), List.of(storage)).recover();
+        }
+        LOGGER.info("Cold start from journal: {} accounts in {} ms", storage.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        assertRecovered(storage);
+    }
+
+    @Test
+    public void shouldRecoverFromSnapshot() {
+        AccountStorage<AccountInfo, UUID> storage = new AccountStorageImpl();
+        long start = System.nanoTime();
+        try (EventJournal journal = newJournal()) {
+            PendingTransfers pendingTransfers = new PendingTransfers();
+            long[] positions = store.loadLatest(List.of(storage), pendingTransfers);
+            new JournalRecovery(List.of(journal), List.of(storage)).recover(positions, pendingTransfers);
+        }
+        LOGGER.info("Start from snapshot: {} accounts in {} ms", storage.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        assertRecovered(storage);
+    }
+
+    private void assertRecovered(AccountStorage<AccountInfo, UUID> storage) {
+        assertThat(storage.size()).isEqualTo(ACCOUNTS);
+        long[] sum = {0};
+        storage.forEach(account -> sum[0] += account.getAmount());
+        assertThat(sum[0]).isEqualTo(total);
+        assertThat(storage.getByUuid(accounts[ACCOUNTS - 1])).isNotNull();
+    }
+
+    private EventJournal newJournal() {
+        return new EventJournal(directory.resolve("journal"), 64 * 1024 * 1024, JournalSyncPolicy.PER_BATCH, 10);
+    }
+}